@@ -0,0 +1,113 @@
+package bank.recommendationservice.fintech.benchmarks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Сравнение результатов JMH (формат JSON) с базовым результатом.
+ * <p>
+ * Сравниваются время операции (основная метрика) и объем выделенной памяти на операцию
+ * ({@code gc.alloc.rate.norm}). Регрессией считается рост любой из метрик больше чем на заданную долю.
+ */
+public class BaselineComparison {
+    private static final String ALLOCATION_METRIC = "gc.alloc.rate.norm";
+
+    private final List<Row> rows;
+    private final double threshold;
+
+    private BaselineComparison(List<Row> rows, double threshold) {
+        this.rows = rows;
+        this.threshold = threshold;
+    }
+
+    /**
+     * @param baseline  файл базового результата
+     * @param current   файл текущего результата
+     * @param threshold допустимое ухудшение, например {@code 0.15} для 15%
+     * @return результат сравнения по бенчмаркам, которые есть в обоих файлах
+     */
+    public static BaselineComparison compare(Path baseline, Path current, double threshold) throws IOException {
+        Map<String, JsonNode> baselineResults = read(baseline);
+        List<Row> rows = new ArrayList<>();
+        for (Map.Entry<String, JsonNode> entry : read(current).entrySet()) {
+            JsonNode before = baselineResults.get(entry.getKey());
+            if (before == null) {
+                continue;
+            }
+            JsonNode after = entry.getValue();
+            rows.add(new Row(entry.getKey(),
+                    after.path("primaryMetric").path("scoreUnit").asText(),
+                    score(before), score(after),
+                    allocation(before), allocation(after)));
+        }
+        return new BaselineComparison(rows, threshold);
+    }
+
+    public boolean hasRegressions() {
+        return rows.stream().anyMatch(this::isRegression);
+    }
+
+    public void print(PrintStream out) {
+        out.printf("%n%-100s %14s %14s %8s %14s %14s %8s%n",
+                "Бенчмарк", "База", "Сейчас", "Δ", "База, Б/оп", "Сейчас, Б/оп", "Δ");
+        for (Row row : rows) {
+            out.printf("%-100s %14.3f %14.3f %+7.1f%% %14.0f %14.0f %+7.1f%%%s%n",
+                    row.name + ", " + row.unit, row.baselineScore, row.currentScore, change(row.baselineScore, row.currentScore),
+                    row.baselineAllocation, row.currentAllocation, change(row.baselineAllocation, row.currentAllocation),
+                    isRegression(row) ? "  <-- РЕГРЕССИЯ" : "");
+        }
+    }
+
+    private boolean isRegression(Row row) {
+        return change(row.baselineScore, row.currentScore) > threshold * 100
+                || change(row.baselineAllocation, row.currentAllocation) > threshold * 100;
+    }
+
+    private static double change(double before, double after) {
+        return before > 0 ? (after - before) / before * 100 : 0;
+    }
+
+    private static Map<String, JsonNode> read(Path file) throws IOException {
+        Map<String, JsonNode> results = new LinkedHashMap<>();
+        for (JsonNode result : new ObjectMapper().readTree(file.toFile())) {
+            results.put(key(result), result);
+        }
+        return results;
+    }
+
+    /**
+     * Ключ результата - имя бенчмарка и значения параметров, например
+     * {@code DynamicRuleBenchmark.evaluateDynamicRules cacheMode=NONE ruleCount=10}.
+     */
+    private static String key(JsonNode result) {
+        String benchmark = result.path("benchmark").asText();
+        StringBuilder key = new StringBuilder(benchmark.substring(benchmark.lastIndexOf('.', benchmark.lastIndexOf('.') - 1) + 1));
+        Iterator<Map.Entry<String, JsonNode>> params = result.path("params").fields();
+        while (params.hasNext()) {
+            Map.Entry<String, JsonNode> param = params.next();
+            key.append(' ').append(param.getKey()).append('=').append(param.getValue().asText());
+        }
+        return key.toString();
+    }
+
+    private static double score(JsonNode result) {
+        return result.path("primaryMetric").path("score").asDouble();
+    }
+
+    private static double allocation(JsonNode result) {
+        return result.path("secondaryMetrics").path(ALLOCATION_METRIC).path("score").asDouble();
+    }
+
+    private record Row(String name, String unit, double baselineScore, double currentScore,
+                       double baselineAllocation, double currentAllocation) {
+    }
+}
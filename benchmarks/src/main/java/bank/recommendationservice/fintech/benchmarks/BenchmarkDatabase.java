@@ -0,0 +1,77 @@
+package bank.recommendationservice.fintech.benchmarks;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * База данных H2 с синтетическими пользователями, продуктами и транзакциями для бенчмарков.
+ * <p>
+ * По умолчанию база создается в памяти и заполняется {@link DatasetGenerator} с фиксированным зерном,
+ * поэтому каждый запуск работает с одинаковым набором. Если задано системное свойство
+ * {@code benchmark.database} (путь к файлу базы без {@code .mv.db}), используется заранее сгенерированный
+ * набор большего объема, открытый только для чтения.
+ */
+public class BenchmarkDatabase {
+    private static final long SEED = 42;
+    private static final int POOL_SIZE = 16;
+
+    private final HikariDataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final List<UUID> userIds;
+    private final boolean inMemory;
+
+    private BenchmarkDatabase(HikariDataSource dataSource, boolean inMemory) {
+        this.dataSource = dataSource;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.inMemory = inMemory;
+        this.userIds = jdbcTemplate.queryForList("SELECT id FROM users ORDER BY username", UUID.class);
+    }
+
+    /**
+     * Открывает базу из {@code benchmark.database} или создает отдельную базу в памяти и заполняет ее.
+     *
+     * @param name                имя базы в памяти, чтобы бенчмарки в одной JVM не пересекались
+     * @param userCount           количество пользователей базы в памяти
+     * @param transactionsPerUser среднее количество транзакций на пользователя базы в памяти
+     * @return база с данными
+     */
+    public static BenchmarkDatabase create(String name, int userCount, int transactionsPerUser) {
+        String file = System.getProperty("benchmark.database");
+        if (file != null) {
+            return new BenchmarkDatabase(
+                    newDataSource("jdbc:h2:file:" + Path.of(file).toAbsolutePath() + ";ACCESS_MODE_DATA=r"), false);
+        }
+        HikariDataSource dataSource = newDataSource("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1");
+        new DatasetGenerator(SEED, userCount, (long) userCount * transactionsPerUser).generate(new JdbcTemplate(dataSource));
+        return new BenchmarkDatabase(dataSource, true);
+    }
+
+    public JdbcTemplate getJdbcTemplate() {
+        return jdbcTemplate;
+    }
+
+    public List<UUID> getUserIds() {
+        return userIds;
+    }
+
+    /**
+     * Удаляет базу в памяти и закрывает пул соединений.
+     */
+    public void shutdown() {
+        if (inMemory) {
+            jdbcTemplate.execute("SHUTDOWN");
+        }
+        dataSource.close();
+    }
+
+    private static HikariDataSource newDataSource(String url) {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(url);
+        dataSource.setMaximumPoolSize(POOL_SIZE);
+        return dataSource;
+    }
+}
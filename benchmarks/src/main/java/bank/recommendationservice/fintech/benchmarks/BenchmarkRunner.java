@@ -0,0 +1,65 @@
+package bank.recommendationservice.fintech.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Запускает бенчмарки с профилировщиком GC (скорость и объем выделения памяти на операцию),
+ * сохраняет результат в JSON и сравнивает его с базовым результатом.
+ * <p>
+ * Аргументы командной строки передаются JMH как есть, например {@code -f 1 -wi 1 RuleBenchmark}.
+ * Системные свойства:
+ * <ul>
+ *     <li>{@code benchmark.result} - файл результата, по умолчанию {@code target/jmh-result.json};</li>
+ *     <li>{@code benchmark.baseline} - базовый результат, по умолчанию {@code baseline/jmh-baseline.json};</li>
+ *     <li>{@code benchmark.regression-threshold} - допустимое ухудшение, по умолчанию {@code 0.15} (15%);</li>
+ *     <li>{@code benchmark.fail-on-regression} - завершиться с кодом 1 при регрессии;</li>
+ *     <li>{@code benchmark.update-baseline} - заменить базовый результат текущим.</li>
+ * </ul>
+ */
+public final class BenchmarkRunner {
+
+    private BenchmarkRunner() {
+    }
+
+    public static void main(String[] args) throws CommandLineOptionException, RunnerException, IOException {
+        Path result = Path.of(System.getProperty("benchmark.result", "target/jmh-result.json"));
+        Path baseline = Path.of(System.getProperty("benchmark.baseline", "baseline/jmh-baseline.json"));
+        double threshold = Double.parseDouble(System.getProperty("benchmark.regression-threshold", "0.15"));
+
+        Files.createDirectories(result.toAbsolutePath().getParent());
+        ChainedOptionsBuilder options = new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.JSON)
+                .result(result.toString());
+        new Runner(options.build()).run();
+
+        if (Boolean.getBoolean("benchmark.update-baseline")) {
+            Files.createDirectories(baseline.toAbsolutePath().getParent());
+            Files.copy(result, baseline, StandardCopyOption.REPLACE_EXISTING);
+            System.out.println("Базовый результат обновлен: " + baseline);
+            return;
+        }
+        if (!Files.exists(baseline)) {
+            System.out.println("Базовый результат " + baseline + " не найден, сравнение пропущено");
+            return;
+        }
+        BaselineComparison comparison = BaselineComparison.compare(baseline, result, threshold);
+        comparison.print(System.out);
+        if (comparison.hasRegressions() && Boolean.getBoolean("benchmark.fail-on-regression")) {
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package bank.recommendationservice.fintech.benchmarks;
+
+import bank.recommendationservice.fintech.model.UserRecommendations;
+import bank.recommendationservice.fintech.other.ExecutionMode;
+import bank.recommendationservice.fintech.other.ProductType;
+import bank.recommendationservice.fintech.repository.RecommendationsRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Путь через прогретые кэши Caffeine: агрегат пользователя в {@link RecommendationsRepository}
+ * (построение ключа и поиск) и готовые рекомендации пользователя.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CacheLookupBenchmark {
+    private static final int USER_COUNT = 1_000;
+    private static final int TRANSACTIONS_PER_USER = 50;
+
+    private BenchmarkDatabase database;
+    private RecommendationsRepository recommendationsRepository;
+    private Cache<UUID, UserRecommendations> recommendationCache;
+    private List<UUID> userIds;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        database = BenchmarkDatabase.create("cache_lookup", USER_COUNT, TRANSACTIONS_PER_USER);
+        RecommendationFixture fixture = new RecommendationFixture(database, RecommendationFixture.CacheMode.WARM,
+                ExecutionMode.SEQUENTIAL, List.of());
+        recommendationsRepository = fixture.getRecommendationsRepository();
+        recommendationCache = fixture.getRecommendationCache();
+        userIds = database.getUserIds();
+        for (UUID userId : userIds) {
+            recommendationsRepository.usesProductOfType(userId, ProductType.DEBIT.name());
+            fixture.getRecommendationService().getRecommendations(userId);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        database.shutdown();
+    }
+
+    @Benchmark
+    public boolean usesProductOfType() {
+        return recommendationsRepository.usesProductOfType(nextUserId(), ProductType.DEBIT.name());
+    }
+
+    @Benchmark
+    public UserRecommendations recommendationCacheLookup() {
+        return recommendationCache.getIfPresent(nextUserId());
+    }
+
+    private UUID nextUserId() {
+        UUID userId = userIds.get(next);
+        next = (next + 1) % userIds.size();
+        return userId;
+    }
+}
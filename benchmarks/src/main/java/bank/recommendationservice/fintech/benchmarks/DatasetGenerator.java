@@ -0,0 +1,303 @@
+package bank.recommendationservice.fintech.benchmarks;
+
+import bank.recommendationservice.fintech.other.ProductType;
+import com.zaxxer.hikari.HikariDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.UUID;
+
+/**
+ * Генератор синтетических пользователей, продуктов и транзакций для нагрузочного тестирования.
+ * <p>
+ * Данные воспроизводимы: при одинаковых зерне, количестве пользователей и транзакций генерируется
+ * один и тот же набор. Распределения приближены к реальным:
+ * <ul>
+ *     <li>активность пользователей сильно неравномерна (распределение Парето): небольшая доля пользователей
+ *     делает большую часть транзакций, у части пользователей транзакций нет совсем;</li>
+ *     <li>каждый пользователь пользуется только некоторыми типами продуктов: дебетовыми - почти все,
+ *     инвестиционными - немногие;</li>
+ *     <li>суммы распределены логарифмически равномерно в своем диапазоне для каждого типа продукта,
+ *     доля пополнений зависит от типа продукта.</li>
+ * </ul>
+ * Строки пишутся во временные CSV-файлы порциями и загружаются через
+ * {@code INSERT ... DIRECT SELECT ... FROM CSVREAD(...)}, поэтому объем временных файлов ограничен
+ * размером порции, а индексы строятся один раз после загрузки.
+ */
+public class DatasetGenerator {
+    private static final Logger logger = LoggerFactory.getLogger(DatasetGenerator.class);
+
+    private static final int PRODUCTS_PER_TYPE = 5;
+    private static final int CHUNK_SIZE = 1_000_000;
+    private static final double PARETO_ALPHA = 1.2;
+    private static final String[] FIRST_NAMES = {"Иван", "Анна", "Петр", "Мария", "Алексей", "Ольга", "Дмитрий", "Елена"};
+    private static final String[] LAST_NAMES = {"Иванов", "Смирнова", "Кузнецов", "Попова", "Соколов", "Лебедева"};
+
+    private static final Map<ProductType, ProductProfile> PROFILES = new EnumMap<>(Map.of(
+            ProductType.DEBIT, new ProductProfile(0.9, 0.55, 0.5, 100, 50_000),
+            ProductType.SAVING, new ProductProfile(0.4, 0.2, 0.8, 1_000, 200_000),
+            ProductType.CREDIT, new ProductProfile(0.3, 0.15, 0.4, 5_000, 300_000),
+            ProductType.INVEST, new ProductProfile(0.15, 0.1, 0.7, 10_000, 1_000_000)
+    ));
+
+    private final long seed;
+    private final int userCount;
+    private final long transactionCount;
+
+    /**
+     * @param seed             зерно генератора случайных чисел
+     * @param userCount        количество пользователей
+     * @param transactionCount общее количество транзакций
+     */
+    public DatasetGenerator(long seed, int userCount, long transactionCount) {
+        if (userCount < 1 || transactionCount < 0) {
+            throw new IllegalArgumentException("Некорректный размер набора: пользователей " + userCount
+                    + ", транзакций " + transactionCount);
+        }
+        this.seed = seed;
+        this.userCount = userCount;
+        this.transactionCount = transactionCount;
+    }
+
+    /**
+     * Создает таблицы {@code users}, {@code products} и {@code transactions} и заполняет их.
+     *
+     * @param jdbcTemplate подключение к пустой базе H2
+     */
+    public void generate(JdbcTemplate jdbcTemplate) {
+        long start = System.nanoTime();
+        createTables(jdbcTemplate);
+        SplittableRandom random = new SplittableRandom(seed);
+        Map<ProductType, List<UUID>> products = insertProducts(jdbcTemplate, random);
+        try (BulkLoader users = new BulkLoader(jdbcTemplate, "users", "id, username, first_name, last_name",
+                "CAST(ID AS UUID), USERNAME, FIRST_NAME, LAST_NAME");
+             BulkLoader transactions = new BulkLoader(jdbcTemplate, "transactions", "id, product_id, user_id, type, amount",
+                     "CAST(ID AS UUID), CAST(PRODUCT_ID AS UUID), CAST(USER_ID AS UUID), TYPE, CAST(AMOUNT AS INT)")) {
+            long[] transactionsPerUser = transactionsPerUser(random);
+            for (int i = 0; i < userCount; i++) {
+                UUID userId = randomUuid(random);
+                users.add(userId, "user" + i,
+                        FIRST_NAMES[random.nextInt(FIRST_NAMES.length)], LAST_NAMES[random.nextInt(LAST_NAMES.length)]);
+                generateUserTransactions(transactions, random, userId, transactionsPerUser[i], products);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось записать временный CSV-файл", e);
+        }
+        createIndexes(jdbcTemplate);
+        logger.info("Сгенерировано пользователей: {}, транзакций: {} за {} с", userCount, transactionCount,
+                (System.nanoTime() - start) / 1_000_000_000);
+    }
+
+    /**
+     * Генерирует набор в файл базы H2.
+     * <p>
+     * Аргументы: {@code --output=<путь к базе без .mv.db>} (обязательный), {@code --transactions=1000000},
+     * {@code --users=<по умолчанию транзакций / 50>}, {@code --seed=42}.
+     */
+    public static void main(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (!arg.startsWith("--") || separator < 0) {
+                throw new IllegalArgumentException("Ожидается аргумент вида --name=value: " + arg);
+            }
+            options.put(arg.substring(2, separator), arg.substring(separator + 1));
+        }
+        String output = options.get("output");
+        if (output == null) {
+            throw new IllegalArgumentException("Не задан путь к базе: --output=<путь>");
+        }
+        long transactions = Long.parseLong(options.getOrDefault("transactions", "1000000"));
+        int users = Integer.parseInt(options.getOrDefault("users", String.valueOf(Math.max(100, transactions / 50))));
+        long seed = Long.parseLong(options.getOrDefault("seed", "42"));
+
+        try (HikariDataSource dataSource = new HikariDataSource()) {
+            dataSource.setJdbcUrl("jdbc:h2:file:" + Path.of(output).toAbsolutePath());
+            dataSource.setMaximumPoolSize(1);
+            new DatasetGenerator(seed, users, transactions).generate(new JdbcTemplate(dataSource));
+        }
+    }
+
+    /**
+     * Распределяет транзакции по пользователям пропорционально весам Парето.
+     */
+    private long[] transactionsPerUser(SplittableRandom random) {
+        double[] weights = new double[userCount];
+        double total = 0;
+        for (int i = 0; i < userCount; i++) {
+            weights[i] = Math.pow(1 - random.nextDouble(), -1 / PARETO_ALPHA);
+            total += weights[i];
+        }
+        long[] counts = new long[userCount];
+        long assigned = 0;
+        for (int i = 0; i < userCount; i++) {
+            counts[i] = (long) (transactionCount * weights[i] / total);
+            assigned += counts[i];
+        }
+        for (int i = 0; assigned < transactionCount; i = (i + 1) % userCount, assigned++) {
+            counts[i]++;
+        }
+        return counts;
+    }
+
+    private void generateUserTransactions(BulkLoader transactions, SplittableRandom random, UUID userId, long count,
+                                          Map<ProductType, List<UUID>> products) throws IOException {
+        List<ProductType> ownedTypes = new ArrayList<>();
+        List<UUID> ownedProducts = new ArrayList<>();
+        double totalShare = 0;
+        for (Map.Entry<ProductType, ProductProfile> entry : PROFILES.entrySet()) {
+            if (random.nextDouble() < entry.getValue().ownership()) {
+                List<UUID> ofType = products.get(entry.getKey());
+                ownedTypes.add(entry.getKey());
+                ownedProducts.add(ofType.get(random.nextInt(ofType.size())));
+                totalShare += entry.getValue().share();
+            }
+        }
+        if (ownedTypes.isEmpty()) {
+            ownedTypes.add(ProductType.DEBIT);
+            ownedProducts.add(products.get(ProductType.DEBIT).get(0));
+            totalShare = PROFILES.get(ProductType.DEBIT).share();
+        }
+
+        for (long i = 0; i < count; i++) {
+            int owned = pickOwned(random, ownedTypes, totalShare);
+            ProductProfile profile = PROFILES.get(ownedTypes.get(owned));
+            String type = random.nextDouble() < profile.depositShare() ? "DEPOSIT" : "WITHDRAW";
+            transactions.add(randomUuid(random), ownedProducts.get(owned), userId, type, profile.amount(random));
+        }
+    }
+
+    private static int pickOwned(SplittableRandom random, List<ProductType> ownedTypes, double totalShare) {
+        double point = random.nextDouble() * totalShare;
+        for (int i = 0; i < ownedTypes.size() - 1; i++) {
+            point -= PROFILES.get(ownedTypes.get(i)).share();
+            if (point < 0) {
+                return i;
+            }
+        }
+        return ownedTypes.size() - 1;
+    }
+
+    private static Map<ProductType, List<UUID>> insertProducts(JdbcTemplate jdbcTemplate, SplittableRandom random) {
+        Map<ProductType, List<UUID>> products = new EnumMap<>(ProductType.class);
+        List<Object[]> rows = new ArrayList<>();
+        for (ProductType productType : ProductType.values()) {
+            List<UUID> ids = new ArrayList<>(PRODUCTS_PER_TYPE);
+            for (int i = 0; i < PRODUCTS_PER_TYPE; i++) {
+                UUID id = randomUuid(random);
+                ids.add(id);
+                rows.add(new Object[]{id, productType.name(), productType.name() + " " + (i + 1)});
+            }
+            products.put(productType, ids);
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO products (id, type, name) VALUES (?, ?, ?)", rows);
+        return products;
+    }
+
+    private static void createTables(JdbcTemplate jdbcTemplate) {
+        jdbcTemplate.execute("CREATE TABLE users (id UUID PRIMARY KEY, username VARCHAR(255), "
+                + "first_name VARCHAR(255), last_name VARCHAR(255))");
+        jdbcTemplate.execute("CREATE TABLE products (id UUID PRIMARY KEY, type VARCHAR(32), name VARCHAR(255))");
+        jdbcTemplate.execute("CREATE TABLE transactions (id UUID NOT NULL, product_id UUID, user_id UUID, "
+                + "type VARCHAR(32), amount INT)");
+    }
+
+    private static void createIndexes(JdbcTemplate jdbcTemplate) {
+        jdbcTemplate.execute("ALTER TABLE transactions ADD PRIMARY KEY (id)");
+        jdbcTemplate.execute("CREATE INDEX transactions_user_id ON transactions (user_id)");
+        jdbcTemplate.execute("CREATE INDEX users_username ON users (username)");
+    }
+
+    private static UUID randomUuid(SplittableRandom random) {
+        return new UUID(random.nextLong(), random.nextLong());
+    }
+
+    /**
+     * Параметры продукта одного типа.
+     *
+     * @param ownership    доля пользователей, которые пользуются продуктом
+     * @param share        относительная доля транзакций по продукту у его пользователей
+     * @param depositShare доля пополнений среди транзакций
+     * @param minAmount    минимальная сумма транзакции
+     * @param maxAmount    максимальная сумма транзакции
+     */
+    private record ProductProfile(double ownership, double share, double depositShare, int minAmount, int maxAmount) {
+        int amount(SplittableRandom random) {
+            return (int) Math.round(minAmount * Math.pow((double) maxAmount / minAmount, random.nextDouble()));
+        }
+    }
+
+    /**
+     * Пишет строки таблицы во временный CSV-файл и загружает его в таблицу каждые {@link #CHUNK_SIZE} строк.
+     */
+    private static final class BulkLoader implements AutoCloseable {
+        private final JdbcTemplate jdbcTemplate;
+        private final String table;
+        private final String columns;
+        private final String select;
+        private final Path file;
+        private BufferedWriter writer;
+        private int rows;
+
+        private BulkLoader(JdbcTemplate jdbcTemplate, String table, String columns, String select) throws IOException {
+            this.jdbcTemplate = jdbcTemplate;
+            this.table = table;
+            this.columns = columns;
+            this.select = select;
+            this.file = Files.createTempFile(table, ".csv");
+            open();
+        }
+
+        void add(Object... values) throws IOException {
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                writer.write(values[i].toString());
+            }
+            writer.newLine();
+            if (++rows == CHUNK_SIZE) {
+                flush();
+                open();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                flush();
+            } finally {
+                Files.deleteIfExists(file);
+            }
+        }
+
+        private void open() throws IOException {
+            writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+            writer.write(columns.toUpperCase().replace(" ", ""));
+            writer.newLine();
+            rows = 0;
+        }
+
+        private void flush() throws IOException {
+            writer.close();
+            if (rows > 0) {
+                String path = file.toAbsolutePath().toString().replace("'", "''");
+                jdbcTemplate.execute("INSERT INTO " + table + " (" + columns + ") DIRECT SELECT " + select
+                        + " FROM CSVREAD('" + path + "', NULL, 'charset=UTF-8')");
+            }
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package bank.recommendationservice.fintech.benchmarks;
+
+import bank.recommendationservice.fintech.model.DynamicRule;
+import bank.recommendationservice.fintech.other.ExecutionMode;
+import bank.recommendationservice.fintech.service.RecommendationService;
+import bank.recommendationservice.fintech.service.RuleCompiler;
+import bank.recommendationservice.fintech.service.RuleIndex;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Predicate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link RecommendationService#evaluateDynamicRules} для всех правил набора одного пользователя
+ * и те же правила, скомпилированные {@link RuleCompiler} ({@code evaluateCompiledRules})
+ * и собранные в {@link RuleIndex} ({@code evaluateRuleIndex}).
+ * <p>
+ * С {@code cacheMode=WARM} кэши агрегатов заполняются до начала измерений, и бенчмарк измеряет разбор
+ * запросов правил и некэшируемые запросы; с {@code cacheMode=NONE} - все SQL-запросы.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DynamicRuleBenchmark {
+    private static final int USER_COUNT = 1_000;
+    private static final int TRANSACTIONS_PER_USER = 50;
+
+    @Param({"10", "100", "1000"})
+    public int ruleCount;
+
+    @Param({"NONE", "WARM"})
+    public RecommendationFixture.CacheMode cacheMode;
+
+    private BenchmarkDatabase database;
+    private RecommendationService recommendationService;
+    private List<DynamicRule> dynamicRules;
+    private List<Predicate<UUID>> compiledRules;
+    private RuleIndex ruleIndex;
+    private List<UUID> userIds;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        database = BenchmarkDatabase.create("dynamic_rules", USER_COUNT, TRANSACTIONS_PER_USER);
+        dynamicRules = DynamicRules.generate(ruleCount);
+        RecommendationFixture fixture = new RecommendationFixture(database, cacheMode, ExecutionMode.SEQUENTIAL, dynamicRules);
+        recommendationService = fixture.getRecommendationService();
+        RuleCompiler ruleCompiler = new RuleCompiler(fixture.getRecommendationsRepository());
+        compiledRules = dynamicRules.stream().map(ruleCompiler::compile).toList();
+        ruleIndex = new RuleIndex(fixture.getRecommendationsRepository(), dynamicRules);
+        userIds = database.getUserIds();
+        if (cacheMode == RecommendationFixture.CacheMode.WARM) {
+            for (UUID userId : userIds) {
+                dynamicRules.forEach(rule -> recommendationService.evaluateDynamicRules(rule, userId));
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        database.shutdown();
+    }
+
+    @Benchmark
+    public void evaluateDynamicRules(Blackhole blackhole) {
+        UUID userId = userIds.get(next);
+        next = (next + 1) % userIds.size();
+        for (DynamicRule rule : dynamicRules) {
+            blackhole.consume(recommendationService.evaluateDynamicRules(rule, userId));
+        }
+    }
+
+    @Benchmark
+    public void evaluateCompiledRules(Blackhole blackhole) {
+        UUID userId = userIds.get(next);
+        next = (next + 1) % userIds.size();
+        for (Predicate<UUID> rule : compiledRules) {
+            blackhole.consume(rule.test(userId));
+        }
+    }
+
+    @Benchmark
+    public BitSet evaluateRuleIndex() {
+        UUID userId = userIds.get(next);
+        next = (next + 1) % userIds.size();
+        return ruleIndex.match(userId);
+    }
+}
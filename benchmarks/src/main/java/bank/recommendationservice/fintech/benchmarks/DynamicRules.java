@@ -0,0 +1,67 @@
+package bank.recommendationservice.fintech.benchmarks;
+
+import bank.recommendationservice.fintech.model.DynamicRule;
+import bank.recommendationservice.fintech.model.DynamicRuleQuery;
+import bank.recommendationservice.fintech.other.ComparisonType;
+import bank.recommendationservice.fintech.other.ProductType;
+import bank.recommendationservice.fintech.other.QueryType;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Генератор динамических правил для бенчмарков.
+ */
+public final class DynamicRules {
+    private static final long SEED = 7;
+
+    /**
+     * {@link QueryType#TRANSACTION_SUM_COMPARE} не используется: запрос репозитория обращается к колонке
+     * {@code transaction_type}, которой нет в таблице {@code transactions}.
+     */
+    private static final QueryType[] QUERY_TYPES = {
+            QueryType.USER_OF,
+            QueryType.ACTIVE_USER_OF,
+            QueryType.TRANSACTION_SUM_COMPARE_DEPOSIT_WITHDRAW
+    };
+
+    private DynamicRules() {
+    }
+
+    /**
+     * Создает правила с одним запросом каждое, перебирая типы запросов, продуктов и сравнений.
+     * Аргументы запросов заполняются и в разобранном виде, как после проверки правила при сохранении.
+     *
+     * @param count количество правил
+     * @return правила с заполненными id
+     */
+    public static List<DynamicRule> generate(int count) {
+        Random random = new Random(SEED);
+        ProductType[] productTypes = ProductType.values();
+        ComparisonType[] comparisonTypes = ComparisonType.values();
+        List<DynamicRule> rules = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            QueryType queryType = QUERY_TYPES[i % QUERY_TYPES.length];
+            ProductType productType = productTypes[(i / QUERY_TYPES.length) % productTypes.length];
+            ComparisonType comparisonType = queryType == QueryType.TRANSACTION_SUM_COMPARE_DEPOSIT_WITHDRAW
+                    ? comparisonTypes[i % comparisonTypes.length]
+                    : null;
+            List<String> arguments = comparisonType != null
+                    ? List.of(productType.name(), comparisonType.getComparisonType())
+                    : List.of(productType.name());
+
+            DynamicRuleQuery query = new DynamicRuleQuery(queryType.getQueryType(), arguments);
+            query.setQueryType(queryType);
+            query.setProductType(productType);
+            query.setComparisonType(comparisonType);
+            DynamicRule rule = new DynamicRule("Продукт " + i, new UUID(random.nextLong(), random.nextLong()),
+                    "Текст продукта " + i, new ArrayList<>(List.of(query)));
+            rule.setId((long) i + 1);
+            query.setDynamicRule(rule);
+            rules.add(rule);
+        }
+        return rules;
+    }
+}
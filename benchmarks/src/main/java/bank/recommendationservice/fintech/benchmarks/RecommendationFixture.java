@@ -0,0 +1,174 @@
+package bank.recommendationservice.fintech.benchmarks;
+
+import bank.recommendationservice.fintech.interfaces.RecommendationRuleSet;
+import bank.recommendationservice.fintech.interfaces.Rule;
+import bank.recommendationservice.fintech.model.DynamicRule;
+import bank.recommendationservice.fintech.model.RuleStats;
+import bank.recommendationservice.fintech.model.UserInfo;
+import bank.recommendationservice.fintech.model.UserRecommendations;
+import bank.recommendationservice.fintech.other.ExecutionMode;
+import bank.recommendationservice.fintech.repository.DynamicRuleRepository;
+import bank.recommendationservice.fintech.repository.RecommendationsRepository;
+import bank.recommendationservice.fintech.repository.RuleCatalogRepository;
+import bank.recommendationservice.fintech.repository.RuleStatsRepository;
+import bank.recommendationservice.fintech.ruleimpl.*;
+import bank.recommendationservice.fintech.rulesetimpl.Invest500;
+import bank.recommendationservice.fintech.rulesetimpl.SimpleCredit;
+import bank.recommendationservice.fintech.rulesetimpl.TopSaving;
+import bank.recommendationservice.fintech.service.RecommendationService;
+import bank.recommendationservice.fintech.service.RuleDependencyService;
+import bank.recommendationservice.fintech.service.RuleExecutor;
+import bank.recommendationservice.fintech.service.RuleStatsService;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Proxy;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Собирает сервис рекомендаций так же, как это делает Spring, но без контекста приложения:
+ * репозиторий рекомендаций работает с {@link BenchmarkDatabase}, а JPA-репозитории правил и статистики
+ * заменены реализациями в памяти.
+ */
+public class RecommendationFixture {
+    private final RecommendationsRepository recommendationsRepository;
+    private final Map<String, Rule> rules = new LinkedHashMap<>();
+    private final RecommendationService recommendationService;
+    private final Cache<UUID, UserRecommendations> recommendationCache;
+
+    /**
+     * @param database      база с данными пользователей
+     * @param cacheMode     режим кэшей агрегатов и рекомендаций
+     * @param executionMode режим выполнения правил
+     * @param dynamicRules  динамические правила, которые вернет репозиторий правил
+     */
+    public RecommendationFixture(BenchmarkDatabase database, CacheMode cacheMode, ExecutionMode executionMode,
+                                 List<DynamicRule> dynamicRules) {
+        this.recommendationsRepository = new RecommendationsRepository(database.getJdbcTemplate(),
+                cacheMode.<String, Boolean>newCache(),
+                cacheMode.<String, Integer>newCache(),
+                cacheMode.<String, Integer>newCache(),
+                cacheMode.<String, Optional<UserInfo>>newCache());
+
+        UsesAtLeastOneDebitProduct usesAtLeastOneDebitProduct = register(new UsesAtLeastOneDebitProduct(recommendationsRepository));
+        UsesNoInvestProducts usesNoInvestProducts = register(new UsesNoInvestProducts(recommendationsRepository));
+        UsesNoCreditProducts usesNoCreditProducts = register(new UsesNoCreditProducts(recommendationsRepository));
+        SavingDepositsTotalGreaterThan1_000 savingDeposits = register(new SavingDepositsTotalGreaterThan1_000(recommendationsRepository));
+        DebitOrSavingDepositsTotalGreaterThanOrEqualsTo50_000 debitOrSavingDeposits =
+                register(new DebitOrSavingDepositsTotalGreaterThanOrEqualsTo50_000(recommendationsRepository));
+        DebitDepositsTotalGreaterThanWithdraws debitDepositsGreaterThanWithdraws =
+                register(new DebitDepositsTotalGreaterThanWithdraws(recommendationsRepository));
+        DebitWithdrawsTotalGreaterThan100_000 debitWithdraws = register(new DebitWithdrawsTotalGreaterThan100_000(recommendationsRepository));
+
+        List<RecommendationRuleSet> ruleSets = List.of(
+                new Invest500(usesAtLeastOneDebitProduct, usesNoInvestProducts, savingDeposits),
+                new SimpleCredit(usesNoCreditProducts, debitDepositsGreaterThanWithdraws, debitWithdraws),
+                new TopSaving(usesAtLeastOneDebitProduct, debitOrSavingDeposits, debitDepositsGreaterThanWithdraws));
+
+        DynamicRuleRepository dynamicRuleRepository = inMemoryRepository(DynamicRuleRepository.class, dynamicRules);
+        RuleStatsRepository ruleStatsRepository = inMemoryRepository(RuleStatsRepository.class, List.of());
+
+        this.recommendationCache = cacheMode.newCache();
+        RuleDependencyService ruleDependencyService =
+                new RuleDependencyService(inMemoryCatalog(dynamicRules), ruleSets, recommendationCache);
+        RuleExecutor ruleExecutor = new RuleExecutor(executionMode, 60_000, 16, true);
+        this.recommendationService = new RecommendationService(ruleDependencyService, recommendationsRepository,
+                newRuleStatsService(ruleStatsRepository, dynamicRuleRepository), recommendationCache, ruleExecutor);
+    }
+
+    public RecommendationService getRecommendationService() {
+        return recommendationService;
+    }
+
+    public RecommendationsRepository getRecommendationsRepository() {
+        return recommendationsRepository;
+    }
+
+    public Cache<UUID, UserRecommendations> getRecommendationCache() {
+        return recommendationCache;
+    }
+
+    /**
+     * @return правила по простому имени класса
+     */
+    public Map<String, Rule> getRules() {
+        return rules;
+    }
+
+    private <T extends Rule> T register(T rule) {
+        rules.put(rule.getClass().getSimpleName(), rule);
+        return rule;
+    }
+
+    /**
+     * Конструктор {@link RuleStatsService} видим только Spring (пакетный доступ).
+     * Каталог правил при расчете рекомендаций не используется.
+     */
+    private static RuleStatsService newRuleStatsService(RuleStatsRepository ruleStatsRepository,
+                                                        DynamicRuleRepository dynamicRuleRepository) {
+        try {
+            Constructor<RuleStatsService> constructor = RuleStatsService.class
+                    .getDeclaredConstructor(RuleStatsRepository.class, DynamicRuleRepository.class,
+                            RuleCatalogRepository.class);
+            constructor.setAccessible(true);
+            return constructor.newInstance(ruleStatsRepository, dynamicRuleRepository, null);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Не удалось создать RuleStatsService", e);
+        }
+    }
+
+    /**
+     * Каталог правил в памяти: {@code streamRules} возвращает переданные правила.
+     */
+    private static RuleCatalogRepository inMemoryCatalog(List<DynamicRule> dynamicRules) {
+        return new RuleCatalogRepository(null) {
+            @Override
+            public Stream<DynamicRule> streamRules(int chunkSize) {
+                return dynamicRules.stream();
+            }
+        };
+    }
+
+    /**
+     * Реализация JPA-репозитория в памяти: {@code findAll} возвращает переданные сущности,
+     * {@code findByDynamicRuleId} - пустую статистику, {@code save} возвращает аргумент.
+     */
+    @SuppressWarnings("unchecked")
+    private static <R> R inMemoryRepository(Class<R> repositoryType, List<?> entities) {
+        return (R) Proxy.newProxyInstance(repositoryType.getClassLoader(), new Class<?>[]{repositoryType},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "findAll" -> entities;
+                    case "findByDynamicRuleId" -> new RuleStats();
+                    case "save" -> args[0];
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    case "toString" -> repositoryType.getSimpleName() + " (в памяти)";
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    /**
+     * Режим кэшей агрегатов пользователя и рекомендаций.
+     */
+    public enum CacheMode {
+        /**
+         * Кэши ничего не хранят - каждый вызов обращается к базе данных.
+         */
+        NONE,
+        /**
+         * Обычные кэши, как в приложении: после прогрева вызовы обслуживаются из Caffeine.
+         */
+        WARM;
+
+        <K, V> Cache<K, V> newCache() {
+            Caffeine<Object, Object> builder = Caffeine.newBuilder().executor(Runnable::run);
+            return this == NONE ? builder.maximumSize(0).build() : builder.maximumSize(1_000_000).build();
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package bank.recommendationservice.fintech.benchmarks;
+
+import bank.recommendationservice.fintech.dto.RecommendationDTO;
+import bank.recommendationservice.fintech.other.ExecutionMode;
+import bank.recommendationservice.fintech.service.RecommendationService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link RecommendationService#getRecommendations(UUID)} целиком: три статических рулсета
+ * и динамические правила против H2 в памяти.
+ * <p>
+ * С {@code cacheMode=NONE} каждый вызов выполняет все SQL-запросы правил, с {@code cacheMode=WARM}
+ * ответ берется из кэша рекомендаций, заполненного до начала измерений.
+ * <p>
+ * {@code executionMode=VIRTUAL_THREADS} использует виртуальные потоки, только если форк JMH запущен на Java 21+
+ * (см. {@code -jvm}); на Java 17 режим переходит на пул платформенных потоков и повторяет {@code PLATFORM_THREADS}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RecommendationServiceBenchmark {
+    private static final int USER_COUNT = 1_000;
+    private static final int TRANSACTIONS_PER_USER = 50;
+    private static final int DYNAMIC_RULE_COUNT = 10;
+
+    @Param({"NONE", "WARM"})
+    public RecommendationFixture.CacheMode cacheMode;
+
+    @Param({"SEQUENTIAL", "PLATFORM_THREADS", "VIRTUAL_THREADS"})
+    public ExecutionMode executionMode;
+
+    private BenchmarkDatabase database;
+    private RecommendationService recommendationService;
+    private List<UUID> userIds;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        database = BenchmarkDatabase.create("recommendations", USER_COUNT, TRANSACTIONS_PER_USER);
+        RecommendationFixture fixture = new RecommendationFixture(database, cacheMode, executionMode,
+                DynamicRules.generate(DYNAMIC_RULE_COUNT));
+        recommendationService = fixture.getRecommendationService();
+        userIds = database.getUserIds();
+        if (cacheMode == RecommendationFixture.CacheMode.WARM) {
+            userIds.forEach(recommendationService::getRecommendations);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        database.shutdown();
+    }
+
+    @Benchmark
+    public List<RecommendationDTO> getRecommendations() {
+        UUID userId = userIds.get(next);
+        next = (next + 1) % userIds.size();
+        return recommendationService.getRecommendations(userId);
+    }
+}
@@ -0,0 +1,63 @@
+package bank.recommendationservice.fintech.benchmarks;
+
+import bank.recommendationservice.fintech.interfaces.Rule;
+import bank.recommendationservice.fintech.other.ExecutionMode;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Оценка каждого статического правила по отдельности без кэшей агрегатов - стоимость SQL-запроса правила.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RuleBenchmark {
+    private static final int USER_COUNT = 1_000;
+    private static final int TRANSACTIONS_PER_USER = 50;
+
+    @Param({
+            "UsesAtLeastOneDebitProduct",
+            "UsesNoInvestProducts",
+            "UsesNoCreditProducts",
+            "SavingDepositsTotalGreaterThan1_000",
+            "DebitOrSavingDepositsTotalGreaterThanOrEqualsTo50_000",
+            "DebitDepositsTotalGreaterThanWithdraws",
+            "DebitWithdrawsTotalGreaterThan100_000"
+    })
+    public String rule;
+
+    private BenchmarkDatabase database;
+    private Rule evaluatedRule;
+    private List<UUID> userIds;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        database = BenchmarkDatabase.create("rules", USER_COUNT, TRANSACTIONS_PER_USER);
+        RecommendationFixture fixture = new RecommendationFixture(database, RecommendationFixture.CacheMode.NONE,
+                ExecutionMode.SEQUENTIAL, List.of());
+        evaluatedRule = fixture.getRules().get(rule);
+        if (evaluatedRule == null) {
+            throw new IllegalArgumentException("Неизвестное правило: " + rule);
+        }
+        userIds = database.getUserIds();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        database.shutdown();
+    }
+
+    @Benchmark
+    public boolean evaluate() {
+        UUID userId = userIds.get(next);
+        next = (next + 1) % userIds.size();
+        return evaluatedRule.evaluate(userId);
+    }
+}
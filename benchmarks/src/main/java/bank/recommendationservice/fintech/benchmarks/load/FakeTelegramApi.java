@@ -0,0 +1,186 @@
+package bank.recommendationservice.fintech.benchmarks.load;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Заглушка Telegram Bot API для нагрузочного теста команды {@code /recommend}.
+ * <p>
+ * Сервис запускается с {@code telegram.bot.api-url=http://<хост>:<порт>/bot}: бот забирает отсюда
+ * сообщения методом {@code getUpdates} (длинный опрос), а ответы присылает методом {@code sendMessage}.
+ * Каждое сообщение отправляется из отдельного чата, поэтому ответ однозначно сопоставляется с запросом.
+ * Остальные методы Bot API отвечают успехом.
+ * <p>
+ * Как и настоящий Bot API, {@code getUpdates} возвращает обновления с id не меньше {@code offset}
+ * и повторяет их в каждом ответе, пока бот не подтвердит их следующим {@code offset}; запрос с {@code offset}
+ * удаляет все обновления с меньшим id. Без новых обновлений запрос ждет до {@code timeout} секунд.
+ */
+public class FakeTelegramApi implements AutoCloseable {
+    private static final int MAX_UPDATES_PER_POLL = 100;
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "fake-telegram-api");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final NavigableMap<Long, String> updates = new TreeMap<>();
+    private final Map<Long, CompletableFuture<String>> pending = new ConcurrentHashMap<>();
+    private final AtomicLong nextUpdateId = new AtomicLong(1);
+    private final AtomicLong nextChatId = new AtomicLong(1_000_000);
+
+    public FakeTelegramApi(int port) throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.createContext("/", this::handle);
+        server.setExecutor(executor);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Ставит в очередь сообщение {@code /recommend <username>} от нового чата.
+     *
+     * @param username имя пользователя из команды
+     * @return текст ответа бота; не завершается, если бот не ответил - ограничение по времени задает вызывающий
+     */
+    public CompletableFuture<String> sendRecommendCommand(String username) {
+        long updateId = nextUpdateId.getAndIncrement();
+        long chatId = nextChatId.getAndIncrement();
+        CompletableFuture<String> reply = new CompletableFuture<>();
+        reply.whenComplete((text, e) -> pending.remove(chatId));
+        pending.put(chatId, reply);
+        synchronized (updates) {
+            updates.put(updateId, update(updateId, chatId, "/recommend " + username));
+            updates.notifyAll();
+        }
+        return reply;
+    }
+
+    /**
+     * @return порт, на котором слушает заглушка
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * @return количество обновлений, которые бот еще не подтвердил
+     */
+    public int getUnconfirmedCount() {
+        synchronized (updates) {
+            return updates.size();
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        String method = path.substring(path.lastIndexOf('/') + 1);
+        String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+        Map<String, String> parameters = parseForm(body);
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query != null) {
+            parameters.putAll(parseForm(query));
+        }
+        String response;
+        try {
+            response = switch (method) {
+                case "getUpdates" -> getUpdates(parameters);
+                case "sendMessage" -> sendMessage(parameters);
+                default -> "{\"ok\":true,\"result\":true}";
+            };
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            response = "{\"ok\":true,\"result\":[]}";
+        }
+        byte[] bytes = response.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private String getUpdates(Map<String, String> parameters) throws InterruptedException {
+        long offset = Long.parseLong(parameters.getOrDefault("offset", "0"));
+        int limit = Math.min(MAX_UPDATES_PER_POLL, Integer.parseInt(parameters.getOrDefault("limit", "100")));
+        long timeoutNanos = TimeUnit.SECONDS.toNanos(Long.parseLong(parameters.getOrDefault("timeout", "0")));
+        List<String> batch = new ArrayList<>();
+        synchronized (updates) {
+            updates.headMap(offset, false).clear();
+            long deadline = System.nanoTime() + timeoutNanos;
+            while (updates.isEmpty()) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    break;
+                }
+                TimeUnit.NANOSECONDS.timedWait(updates, remaining);
+            }
+            for (String update : updates.values()) {
+                if (batch.size() == limit) {
+                    break;
+                }
+                batch.add(update);
+            }
+        }
+        return "{\"ok\":true,\"result\":[" + String.join(",", batch) + "]}";
+    }
+
+    private String sendMessage(Map<String, String> parameters) {
+        long chatId = Long.parseLong(parameters.get("chat_id"));
+        String text = parameters.getOrDefault("text", "");
+        CompletableFuture<String> reply = pending.get(chatId);
+        if (reply != null) {
+            reply.complete(text);
+        }
+        long now = System.currentTimeMillis() / 1000;
+        return "{\"ok\":true,\"result\":{\"message_id\":" + nextUpdateId.getAndIncrement()
+                + ",\"date\":" + now + ",\"chat\":{\"id\":" + chatId + ",\"type\":\"private\"}}}";
+    }
+
+    private static String update(long updateId, long chatId, String text) {
+        long now = System.currentTimeMillis() / 1000;
+        return "{\"update_id\":" + updateId
+                + ",\"message\":{\"message_id\":" + updateId + ",\"date\":" + now
+                + ",\"chat\":{\"id\":" + chatId + ",\"type\":\"private\"}"
+                + ",\"from\":{\"id\":" + chatId + ",\"is_bot\":false,\"first_name\":\"load\"}"
+                + ",\"text\":\"" + text.replace("\\", "\\\\").replace("\"", "\\\"") + "\"}}";
+    }
+
+    private static Map<String, String> parseForm(String body) {
+        Map<String, String> parameters = new HashMap<>();
+        for (String pair : body.split("&")) {
+            int separator = pair.indexOf('=');
+            if (separator > 0) {
+                parameters.put(URLDecoder.decode(pair.substring(0, separator), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(separator + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return parameters;
+    }
+}
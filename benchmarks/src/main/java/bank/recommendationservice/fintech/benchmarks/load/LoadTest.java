@@ -0,0 +1,320 @@
+package bank.recommendationservice.fintech.benchmarks.load;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Нагрузочный тест запущенного сервиса по открытой модели: запросы отправляются с постоянной частотой
+ * независимо от того, успевает ли сервис отвечать, как это делают независимые клиенты.
+ * <p>
+ * Задержка отсчитывается от запланированного времени запроса (коррекция координированного пропуска),
+ * поэтому очередь перед перегруженным сервисом видна в перцентилях, а не скрыта замедлением генератора.
+ * Пользователи выбираются из синтетического набора ({@link bank.recommendationservice.fintech.benchmarks.DatasetGenerator})
+ * по закону Ципфа: небольшая доля пользователей получает большую часть запросов.
+ * <p>
+ * Сценарии:
+ * <ul>
+ *     <li>{@code recommendation} - {@code GET /recommendation/{user_id}};</li>
+ *     <li>{@code rule} - {@code GET /rule};</li>
+ *     <li>{@code bot} - команда {@code /recommend <username>} через заглушку Bot API ({@link FakeTelegramApi}),
+ *     задержка - до ответа бота в {@code sendMessage}.</li>
+ * </ul>
+ * Системные свойства:
+ * <ul>
+ *     <li>{@code load.base-url} - адрес сервиса, по умолчанию {@code http://localhost:8080};</li>
+ *     <li>{@code load.database} - набор данных сервиса (путь без {@code .mv.db}), по умолчанию {@code data/dataset};</li>
+ *     <li>{@code load.rate} - запросов в секунду, по умолчанию {@code 200};</li>
+ *     <li>{@code load.duration} - длительность измерения в секундах, по умолчанию {@code 60};</li>
+ *     <li>{@code load.warmup} - прогрев в секундах (не входит в отчет), по умолчанию {@code 10};</li>
+ *     <li>{@code load.mix} - доли сценариев, по умолчанию {@code recommendation:80,rule:10,bot:10};</li>
+ *     <li>{@code load.zipf-exponent} - показатель распределения Ципфа, по умолчанию {@code 1.0};</li>
+ *     <li>{@code load.telegram-port} - порт заглушки Bot API, по умолчанию {@code 8081};</li>
+ *     <li>{@code load.timeout} - время ожидания ответа в секундах, по умолчанию {@code 10};</li>
+ *     <li>{@code load.max-in-flight} - предел одновременных запросов генератора, по умолчанию {@code 10000};</li>
+ *     <li>{@code load.output} - файл отчета, по умолчанию {@code target/load-test-report.txt}.</li>
+ * </ul>
+ */
+public final class LoadTest {
+    private static final long SEED = 42;
+    private static final String BOT_SUCCESS_PREFIX = "Рекомендации для";
+
+    private final String baseUrl;
+    private final double rate;
+    private final Duration warmup;
+    private final Duration duration;
+    private final Duration timeout;
+    private final int maxInFlight;
+    private final Map<Scenario, Integer> mix;
+    private final ZipfianGenerator<User> users;
+    private final FakeTelegramApi telegramApi;
+    private final HttpClient httpClient;
+    private final Map<Scenario, ScenarioStats> stats = new EnumMap<>(Scenario.class);
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private LoadTest(String baseUrl, double rate, Duration warmup, Duration duration, Duration timeout, int maxInFlight,
+                     Map<Scenario, Integer> mix, ZipfianGenerator<User> users, FakeTelegramApi telegramApi) {
+        this.baseUrl = baseUrl;
+        this.rate = rate;
+        this.warmup = warmup;
+        this.duration = duration;
+        this.timeout = timeout;
+        this.maxInFlight = maxInFlight;
+        this.mix = mix;
+        this.users = users;
+        this.telegramApi = telegramApi;
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(timeout)
+                .build();
+        mix.keySet().forEach(scenario -> stats.put(scenario, new ScenarioStats(scenario.label)));
+    }
+
+    public static void main(String[] args) throws IOException {
+        String baseUrl = System.getProperty("load.base-url", "http://localhost:8080");
+        Path database = Path.of(System.getProperty("load.database", "data/dataset"));
+        double rate = Double.parseDouble(System.getProperty("load.rate", "200"));
+        Duration duration = Duration.ofSeconds(Long.getLong("load.duration", 60));
+        Duration warmup = Duration.ofSeconds(Long.getLong("load.warmup", 10));
+        Map<Scenario, Integer> mix = parseMix(System.getProperty("load.mix", "recommendation:80,rule:10,bot:10"));
+        double zipfExponent = Double.parseDouble(System.getProperty("load.zipf-exponent", "1.0"));
+        int telegramPort = Integer.getInteger("load.telegram-port", 8081);
+        Duration timeout = Duration.ofSeconds(Long.getLong("load.timeout", 10));
+        int maxInFlight = Integer.getInteger("load.max-in-flight", 10_000);
+        Path output = Path.of(System.getProperty("load.output", "target/load-test-report.txt"));
+
+        ZipfianGenerator<User> users = new ZipfianGenerator<>(loadUsers(database), zipfExponent, SEED);
+        FakeTelegramApi telegramApi = null;
+        if (mix.containsKey(Scenario.BOT)) {
+            telegramApi = new FakeTelegramApi(telegramPort);
+            telegramApi.start();
+            System.out.printf("Заглушка Bot API: http://localhost:%d/bot%n", telegramPort);
+        }
+        try {
+            LoadTest test = new LoadTest(baseUrl, rate, warmup, duration, timeout, maxInFlight, mix, users, telegramApi);
+            test.run();
+            String report = test.report(zipfExponent);
+            System.out.print(report);
+            Files.createDirectories(output.toAbsolutePath().getParent());
+            Files.writeString(output, report, StandardCharsets.UTF_8);
+            System.out.println("Отчет сохранен: " + output);
+        } finally {
+            if (telegramApi != null) {
+                telegramApi.close();
+            }
+        }
+    }
+
+    /**
+     * Отправляет запросы с постоянным интервалом. Если генератор отстал от расписания, пропущенные запросы
+     * отправляются сразу, а их задержка по-прежнему считается от запланированного времени.
+     */
+    private void run() {
+        double intervalNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+        long start = System.nanoTime();
+        long measureFrom = start + warmup.toNanos();
+        long end = measureFrom + duration.toNanos();
+        System.out.printf("Прогрев %d с, измерение %d с, %.0f запр/с%n", warmup.toSeconds(), duration.toSeconds(), rate);
+        for (long i = 0; ; i++) {
+            long intended = start + (long) (i * intervalNanos);
+            if (intended - end >= 0) {
+                break;
+            }
+            long wait = intended - System.nanoTime();
+            while (wait > 0) {
+                LockSupport.parkNanos(wait);
+                wait = intended - System.nanoTime();
+            }
+            fire(pickScenario(), intended, intended - measureFrom >= 0);
+        }
+        awaitInFlight();
+    }
+
+    private void fire(Scenario scenario, long intended, boolean measured) {
+        ScenarioStats scenarioStats = measured ? stats.get(scenario) : null;
+        long actualStart = System.nanoTime();
+        if (inFlight.get() >= maxInFlight) {
+            if (scenarioStats != null) {
+                scenarioStats.recordError(intended, actualStart, actualStart, "генератор: превышен load.max-in-flight");
+            }
+            return;
+        }
+        inFlight.incrementAndGet();
+        CompletableFuture<String> outcome = switch (scenario) {
+            case RECOMMENDATION -> get("/recommendation/" + users.next().id());
+            case RULE -> get("/rule");
+            case BOT -> bot(users.next().username());
+        };
+        outcome.whenComplete((errorKind, failure) -> {
+            inFlight.decrementAndGet();
+            if (scenarioStats == null) {
+                return;
+            }
+            long now = System.nanoTime();
+            if (failure != null) {
+                scenarioStats.recordError(intended, actualStart, now, describe(failure));
+            } else if (errorKind != null) {
+                scenarioStats.recordError(intended, actualStart, now, errorKind);
+            } else {
+                scenarioStats.recordSuccess(intended, actualStart, now);
+            }
+        });
+    }
+
+    /**
+     * @return {@code null} при ответе 2xx, иначе описание ошибки
+     */
+    private CompletableFuture<String> get(String path) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .timeout(timeout)
+                .header("Accept", "application/json")
+                .GET()
+                .build();
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                .thenApply(response -> response.statusCode() / 100 == 2 ? null : "HTTP " + response.statusCode());
+    }
+
+    /**
+     * @return {@code null}, если бот прислал рекомендации, иначе описание ошибки
+     */
+    private CompletableFuture<String> bot(String username) {
+        return telegramApi.sendRecommendCommand(username)
+                .orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS)
+                .thenApply(text -> text.startsWith(BOT_SUCCESS_PREFIX) ? null : "бот: " + firstLine(text));
+    }
+
+    private Scenario pickScenario() {
+        int total = mix.values().stream().mapToInt(Integer::intValue).sum();
+        int point = ThreadLocalRandom.current().nextInt(total);
+        for (Map.Entry<Scenario, Integer> entry : mix.entrySet()) {
+            point -= entry.getValue();
+            if (point < 0) {
+                return entry.getKey();
+            }
+        }
+        throw new IllegalStateException("Недостижимо");
+    }
+
+    private void awaitInFlight() {
+        long deadline = System.nanoTime() + timeout.toNanos() + TimeUnit.SECONDS.toNanos(1);
+        while (inFlight.get() > 0 && System.nanoTime() - deadline < 0) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(50));
+        }
+    }
+
+    private String report(double zipfExponent) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        PrintStream out = new PrintStream(buffer, true, StandardCharsets.UTF_8);
+        out.printf("Нагрузочный тест %s%n", LocalDateTime.now());
+        out.printf("Сервис: %s, частота: %.0f запр/с, измерение: %d с (прогрев %d с), сценарии: %s, Ципф s=%.2f%n",
+                baseUrl, rate, duration.toSeconds(), warmup.toSeconds(), mix, zipfExponent);
+        stats.values().forEach(scenarioStats -> scenarioStats.print(out, duration.toSeconds()));
+        stats.values().forEach(scenarioStats -> scenarioStats.printDistribution(out));
+        return buffer.toString(StandardCharsets.UTF_8);
+    }
+
+    private static String describe(Throwable failure) {
+        Throwable cause = failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+        if (cause instanceof HttpTimeoutException || cause instanceof TimeoutException) {
+            return "timeout";
+        }
+        return cause.getClass().getSimpleName();
+    }
+
+    private static String firstLine(String text) {
+        int newLine = text.indexOf('\n');
+        return newLine >= 0 ? text.substring(0, newLine) : text;
+    }
+
+    /**
+     * Разбирает строку вида {@code recommendation:80,rule:10,bot:10}.
+     */
+    static Map<Scenario, Integer> parseMix(String mix) {
+        Map<Scenario, Integer> weights = new EnumMap<>(Scenario.class);
+        for (String part : mix.split(",")) {
+            String[] nameAndWeight = part.trim().split(":");
+            if (nameAndWeight.length != 2) {
+                throw new IllegalArgumentException("Неверный формат load.mix: " + mix);
+            }
+            int weight = Integer.parseInt(nameAndWeight[1].trim());
+            if (weight > 0) {
+                weights.put(Scenario.of(nameAndWeight[0].trim()), weight);
+            }
+        }
+        if (weights.isEmpty()) {
+            throw new IllegalArgumentException("В load.mix не задан ни один сценарий: " + mix);
+        }
+        return weights;
+    }
+
+    private static List<User> loadUsers(Path database) {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl("jdbc:h2:file:" + database.toAbsolutePath() + ";ACCESS_MODE_DATA=r;FILE_LOCK=NO");
+        dataSource.setMaximumPoolSize(1);
+        try (dataSource) {
+            List<User> users = new ArrayList<>(new JdbcTemplate(dataSource).query(
+                    "SELECT id, username FROM users ORDER BY username",
+                    (rs, rowNum) -> new User(rs.getString("id"), rs.getString("username"))));
+            System.out.printf("Загружено пользователей: %d%n", users.size());
+            return users;
+        }
+    }
+
+    /**
+     * Сценарий нагрузочного теста.
+     */
+    enum Scenario {
+        RECOMMENDATION("recommendation", "GET /recommendation/{user_id}"),
+        RULE("rule", "GET /rule"),
+        BOT("bot", "Telegram /recommend <username>");
+
+        private final String name;
+        private final String label;
+
+        Scenario(String name, String label) {
+            this.name = name;
+            this.label = label;
+        }
+
+        static Scenario of(String name) {
+            for (Scenario scenario : values()) {
+                if (scenario.name.equals(name)) {
+                    return scenario;
+                }
+            }
+            throw new IllegalArgumentException("Неизвестный сценарий: " + name);
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    private record User(String id, String username) {
+    }
+}
@@ -0,0 +1,124 @@
+package bank.recommendationservice.fintech.benchmarks.load;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.PrintStream;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Статистика одного сценария нагрузочного теста.
+ * <p>
+ * Задержка с коррекцией координированного пропуска отсчитывается от запланированного времени запроса:
+ * если сервис (или сам генератор) не успевает и запрос уходит позже, ожидание в очереди тоже входит
+ * в задержку - так ее видит клиент в открытой модели нагрузки. Для сравнения отдельно записывается
+ * время обслуживания - от фактической отправки до ответа, без коррекции.
+ */
+public class ScenarioStats {
+    private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.HOURS.toMicros(1);
+
+    private final String name;
+    private final Histogram latency = new ConcurrentHistogram(HIGHEST_TRACKABLE_MICROS, 3);
+    private final Histogram serviceTime = new ConcurrentHistogram(HIGHEST_TRACKABLE_MICROS, 3);
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final Map<String, AtomicLong> errorsByKind = new TreeMap<>();
+
+    public ScenarioStats(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Записывает успешный ответ.
+     *
+     * @param intendedStartNanos запланированное время запроса, {@link System#nanoTime()}
+     * @param actualStartNanos   фактическое время отправки
+     * @param endNanos           время получения ответа
+     */
+    public void recordSuccess(long intendedStartNanos, long actualStartNanos, long endNanos) {
+        record(intendedStartNanos, actualStartNanos, endNanos);
+    }
+
+    /**
+     * Записывает ошибку. Задержка ошибочных ответов тоже учитывается - быстрый отказ не должен улучшать перцентили
+     * незаметно, поэтому доля ошибок выводится рядом с ними.
+     *
+     * @param kind вид ошибки, например {@code HTTP 503} или {@code timeout}
+     */
+    public void recordError(long intendedStartNanos, long actualStartNanos, long endNanos, String kind) {
+        record(intendedStartNanos, actualStartNanos, endNanos);
+        errors.incrementAndGet();
+        synchronized (errorsByKind) {
+            errorsByKind.computeIfAbsent(kind, k -> new AtomicLong()).incrementAndGet();
+        }
+    }
+
+    public long getRequests() {
+        return requests.get();
+    }
+
+    public long getErrors() {
+        return errors.get();
+    }
+
+    public Histogram getLatency() {
+        return latency;
+    }
+
+    public Histogram getServiceTime() {
+        return serviceTime;
+    }
+
+    /**
+     * Печатает сводку сценария.
+     *
+     * @param out             поток вывода
+     * @param durationSeconds длительность измерения, для расчета пропускной способности
+     */
+    public void print(PrintStream out, double durationSeconds) {
+        long total = requests.get();
+        out.printf("%n== %s ==%n", name);
+        out.printf("Запросов: %d, пропускная способность: %.1f запр/с, ошибок: %d (%.2f%%)%n",
+                total, total / durationSeconds, errors.get(), total > 0 ? errors.get() * 100.0 / total : 0);
+        synchronized (errorsByKind) {
+            errorsByKind.forEach((kind, count) -> out.printf("    %s: %d%n", kind, count.get()));
+        }
+        out.printf("%-40s %10s %10s %10s %10s %10s%n", "Задержка, мс", "p50", "p90", "p99", "p99.9", "max");
+        printPercentiles(out, "с коррекцией (от запланированного)", latency);
+        printPercentiles(out, "время обслуживания (без коррекции)", serviceTime);
+    }
+
+    /**
+     * Печатает полное распределение задержки с коррекцией в формате HdrHistogram (мс).
+     */
+    public void printDistribution(PrintStream out) {
+        out.printf("%n== %s: распределение задержки (мс) ==%n", name);
+        latency.outputPercentileDistribution(out, 1000.0);
+    }
+
+    private void record(long intendedStartNanos, long actualStartNanos, long endNanos) {
+        requests.incrementAndGet();
+        latency.recordValue(toMicros(endNanos - intendedStartNanos));
+        serviceTime.recordValue(toMicros(endNanos - actualStartNanos));
+    }
+
+    private static long toMicros(long nanos) {
+        return Math.min(HIGHEST_TRACKABLE_MICROS, Math.max(0, TimeUnit.NANOSECONDS.toMicros(nanos)));
+    }
+
+    private static void printPercentiles(PrintStream out, String label, Histogram histogram) {
+        out.printf("%-40s %10.2f %10.2f %10.2f %10.2f %10.2f%n", label,
+                histogram.getValueAtPercentile(50) / 1000.0,
+                histogram.getValueAtPercentile(90) / 1000.0,
+                histogram.getValueAtPercentile(99) / 1000.0,
+                histogram.getValueAtPercentile(99.9) / 1000.0,
+                histogram.getMaxValue() / 1000.0);
+    }
+}
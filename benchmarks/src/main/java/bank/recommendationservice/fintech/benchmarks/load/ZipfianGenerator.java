@@ -0,0 +1,70 @@
+package bank.recommendationservice.fintech.benchmarks.load;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Выбирает элементы с популярностью по закону Ципфа: вероятность элемента ранга {@code k}
+ * пропорциональна {@code 1 / k^s}. Ранги назначаются элементам случайно (с фиксированным зерном),
+ * чтобы популярность не зависела от порядка элементов в источнике.
+ *
+ * @param <T> тип элемента
+ */
+public class ZipfianGenerator<T> {
+    private final List<T> itemsByRank;
+    private final double[] cumulative;
+
+    /**
+     * @param items    элементы
+     * @param exponent показатель {@code s}; 0 - равномерное распределение, около 1 - типичная популярность
+     * @param seed     зерно для назначения рангов
+     */
+    public ZipfianGenerator(List<T> items, double exponent, long seed) {
+        if (items.isEmpty()) {
+            throw new IllegalArgumentException("Список элементов пуст");
+        }
+        this.itemsByRank = new ArrayList<>(items);
+        Collections.shuffle(itemsByRank, new Random(seed));
+        this.cumulative = new double[items.size()];
+        double sum = 0;
+        for (int rank = 1; rank <= items.size(); rank++) {
+            sum += 1 / Math.pow(rank, exponent);
+            cumulative[rank - 1] = sum;
+        }
+        for (int i = 0; i < cumulative.length; i++) {
+            cumulative[i] /= sum;
+        }
+    }
+
+    public T next() {
+        return itemsByRank.get(rankOf(ThreadLocalRandom.current().nextDouble()));
+    }
+
+    /**
+     * @return элемент с рангом {@code rank} (0 - самый популярный)
+     */
+    public T byRank(int rank) {
+        return itemsByRank.get(rank);
+    }
+
+    /**
+     * @param point случайное число из [0, 1)
+     * @return ранг (с 0), на который приходится {@code point}
+     */
+    int rankOf(double point) {
+        int low = 0;
+        int high = cumulative.length - 1;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (cumulative[middle] <= point) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+}
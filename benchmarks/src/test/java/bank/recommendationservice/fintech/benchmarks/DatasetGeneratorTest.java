@@ -0,0 +1,85 @@
+package bank.recommendationservice.fintech.benchmarks;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DatasetGeneratorTest {
+    private static final String CHECKSUM_SQL = "SELECT COUNT(*) || ':' || SUM(t.amount) || ':' || SUM(LENGTH(u.username)) "
+            + "|| ':' || COUNT(DISTINCT t.user_id) FROM transactions t JOIN users u ON u.id = t.user_id";
+
+    private final List<HikariDataSource> dataSources = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        dataSources.forEach(HikariDataSource::close);
+    }
+
+    @Test
+    void testGenerate_ExactCounts() {
+        // data
+        JdbcTemplate jdbcTemplate = newDatabase("counts");
+
+        // test
+        new DatasetGenerator(1, 500, 20_000).generate(jdbcTemplate);
+
+        // check
+        assertEquals(500, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM users", Integer.class));
+        assertEquals(20_000, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM transactions", Integer.class));
+        assertEquals(0, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM transactions t LEFT JOIN products p ON p.id = t.product_id WHERE p.id IS NULL",
+                Integer.class));
+    }
+
+    @Test
+    void testGenerate_SameSeedSameData() {
+        // data
+        JdbcTemplate first = newDatabase("first");
+        JdbcTemplate second = newDatabase("second");
+        JdbcTemplate other = newDatabase("other");
+
+        // test
+        new DatasetGenerator(7, 300, 10_000).generate(first);
+        new DatasetGenerator(7, 300, 10_000).generate(second);
+        new DatasetGenerator(8, 300, 10_000).generate(other);
+
+        // check
+        String checksum = first.queryForObject(CHECKSUM_SQL, String.class);
+        assertEquals(checksum, second.queryForObject(CHECKSUM_SQL, String.class));
+        assertNotEquals(checksum, other.queryForObject(CHECKSUM_SQL, String.class));
+    }
+
+    @Test
+    void testGenerate_SkewedActivityAndProductMix() {
+        // data
+        JdbcTemplate jdbcTemplate = newDatabase("skew");
+
+        // test
+        new DatasetGenerator(42, 1_000, 50_000).generate(jdbcTemplate);
+
+        // check
+        Long topUsersTransactions = jdbcTemplate.queryForObject("SELECT SUM(c) FROM (SELECT COUNT(*) c FROM transactions "
+                + "GROUP BY user_id ORDER BY c DESC LIMIT 200)", Long.class);
+        assertTrue(topUsersTransactions > 25_000, "20% самых активных пользователей должны делать больше половины транзакций");
+        Integer debitUsers = jdbcTemplate.queryForObject("SELECT COUNT(DISTINCT t.user_id) FROM transactions t "
+                + "JOIN products p ON p.id = t.product_id WHERE p.type = 'DEBIT'", Integer.class);
+        Integer investUsers = jdbcTemplate.queryForObject("SELECT COUNT(DISTINCT t.user_id) FROM transactions t "
+                + "JOIN products p ON p.id = t.product_id WHERE p.type = 'INVEST'", Integer.class);
+        assertTrue(debitUsers > investUsers * 3);
+    }
+
+    private JdbcTemplate newDatabase(String name) {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1");
+        dataSources.add(dataSource);
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("DROP ALL OBJECTS");
+        return jdbcTemplate;
+    }
+}
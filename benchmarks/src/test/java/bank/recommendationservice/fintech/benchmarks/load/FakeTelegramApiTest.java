@@ -0,0 +1,73 @@
+package bank.recommendationservice.fintech.benchmarks.load;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FakeTelegramApiTest {
+    private final HttpClient client = HttpClient.newHttpClient();
+    private FakeTelegramApi telegramApi;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        telegramApi = new FakeTelegramApi(0);
+        telegramApi.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        telegramApi.close();
+    }
+
+    @Test
+    void testGetUpdates_RedeliversUntilConfirmedByOffset() throws Exception {
+        // data
+        telegramApi.sendRecommendCommand("first");
+        telegramApi.sendRecommendCommand("second");
+
+        // test
+        String unconfirmed = getUpdates("");
+        String redelivered = getUpdates("");
+        String afterFirst = getUpdates("offset=2");
+        String afterAll = getUpdates("offset=3");
+
+        // check
+        assertTrue(unconfirmed.contains("\"update_id\":1") && unconfirmed.contains("\"update_id\":2"));
+        assertEquals(unconfirmed, redelivered);
+        assertFalse(afterFirst.contains("\"update_id\":1"));
+        assertTrue(afterFirst.contains("\"update_id\":2"));
+        assertEquals("{\"ok\":true,\"result\":[]}", afterAll);
+        assertEquals(0, telegramApi.getUnconfirmedCount());
+    }
+
+    @Test
+    void testGetUpdates_LimitsBatchSize() throws Exception {
+        // data
+        telegramApi.sendRecommendCommand("first");
+        telegramApi.sendRecommendCommand("second");
+
+        // test
+        String batch = getUpdates("limit=1");
+
+        // check
+        assertTrue(batch.contains("\"update_id\":1"));
+        assertFalse(batch.contains("\"update_id\":2"));
+        assertEquals(2, telegramApi.getUnconfirmedCount());
+    }
+
+    private String getUpdates(String form) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(
+                        URI.create("http://localhost:" + telegramApi.getPort() + "/bottoken/getUpdates"))
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(HttpRequest.BodyPublishers.ofString(form))
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString()).body();
+    }
+}
@@ -0,0 +1,46 @@
+package bank.recommendationservice.fintech.benchmarks.load;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ScenarioStatsTest {
+    private static final long MILLIS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    void testRecord_LatencyCountsFromIntendedStart() {
+        // data
+        ScenarioStats stats = new ScenarioStats("test");
+
+        // test
+        // запрос запланирован на 0, отправлен с опозданием на 90 мс и обслужен за 10 мс
+        stats.recordSuccess(0, 90 * MILLIS, 100 * MILLIS);
+
+        // check
+        assertEquals(100, stats.getLatency().getMaxValue() / 1000, 1);
+        assertEquals(10, stats.getServiceTime().getMaxValue() / 1000, 1);
+    }
+
+    @Test
+    void testRecordError_CountedInRequestsAndErrors() {
+        // data
+        ScenarioStats stats = new ScenarioStats("test");
+
+        // test
+        stats.recordSuccess(0, 0, MILLIS);
+        stats.recordError(0, 0, MILLIS, "HTTP 503");
+        stats.recordError(0, 0, MILLIS, "HTTP 503");
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        stats.print(new PrintStream(buffer, true, StandardCharsets.UTF_8), 1);
+
+        // check
+        assertEquals(3, stats.getRequests());
+        assertEquals(2, stats.getErrors());
+        assertTrue(buffer.toString(StandardCharsets.UTF_8).contains("HTTP 503: 2"));
+    }
+}
@@ -0,0 +1,58 @@
+package bank.recommendationservice.fintech.benchmarks.load;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ZipfianGeneratorTest {
+
+    @Test
+    void testRankOf_Boundaries() {
+        // data
+        ZipfianGenerator<Integer> generator = new ZipfianGenerator<>(List.of(1, 2, 3, 4), 1.0, 7);
+
+        // test & check
+        assertEquals(0, generator.rankOf(0.0));
+        assertEquals(3, generator.rankOf(0.9999999));
+    }
+
+    @Test
+    void testNext_TopRankDominates() {
+        // data
+        List<Integer> items = IntStream.range(0, 1000).boxed().toList();
+        ZipfianGenerator<Integer> generator = new ZipfianGenerator<>(items, 1.0, 7);
+        Map<Integer, Integer> hits = new HashMap<>();
+
+        // test
+        for (int i = 0; i < 100_000; i++) {
+            hits.merge(generator.next(), 1, Integer::sum);
+        }
+
+        // check
+        // при s = 1 и 1000 элементах на первый ранг приходится около 13% запросов, на десятый - около 1.3%
+        int top = hits.getOrDefault(generator.byRank(0), 0);
+        int tenth = hits.getOrDefault(generator.byRank(9), 0);
+        assertTrue(top > 11_000 && top < 15_000, "top = " + top);
+        assertTrue(top > tenth * 7, "top = " + top + ", tenth = " + tenth);
+    }
+
+    @Test
+    void testConstructor_SameSeedSameRanking() {
+        // data
+        List<Integer> items = IntStream.range(0, 100).boxed().toList();
+
+        // test
+        ZipfianGenerator<Integer> first = new ZipfianGenerator<>(items, 1.0, 3);
+        ZipfianGenerator<Integer> second = new ZipfianGenerator<>(items, 1.0, 3);
+
+        // check
+        for (int rank = 0; rank < 100; rank++) {
+            assertEquals(first.byRank(rank), second.byRank(rank));
+        }
+    }
+}
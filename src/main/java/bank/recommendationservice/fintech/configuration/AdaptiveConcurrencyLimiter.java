@@ -0,0 +1,179 @@
+package bank.recommendationservice.fintech.configuration;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Адаптивный ограничитель количества одновременно обрабатываемых запросов.
+ * <p>
+ * Лимит подстраивается по наблюдаемой задержке (градиентный алгоритм): долгосрочная средняя задержка
+ * сравнивается с текущей, и если текущая растет (запросы начинают стоять в очереди к базе данных),
+ * лимит уменьшается. Пока задержка стабильна и лимит используется хотя бы наполовину, лимит растет
+ * на размер небольшой очереди. Запросы, завершившиеся перегрузкой (таймаут, 5xx), уменьшают лимит
+ * мультипликативно.
+ * <p>
+ * Запросы сверх лимита не ждут, а сразу отклоняются - {@link #tryAcquire()} возвращает {@code null}.
+ * Метрики {@code concurrency.limit}, {@code concurrency.in_flight} и {@code concurrency.rejected}
+ * публикуются с тегом {@code limiter}.
+ */
+public class AdaptiveConcurrencyLimiter implements MeterBinder {
+    private static final double SMOOTHING = 0.2;
+    private static final double RTT_TOLERANCE = 1.5;
+    private static final double MIN_GRADIENT = 0.5;
+    private static final int LONG_WINDOW = 600;
+
+    private final String name;
+    private final int minLimit;
+    private final int maxLimit;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong rejected = new AtomicLong();
+
+    private volatile double limit;
+    private double longRtt;
+    private long samples;
+
+    private static final Logger logger = LoggerFactory.getLogger(AdaptiveConcurrencyLimiter.class);
+
+    /**
+     * @param name         имя ограничителя, используется в логах и в теге метрик
+     * @param initialLimit начальный лимит
+     * @param minLimit     минимальный лимит
+     * @param maxLimit     максимальный лимит
+     */
+    public AdaptiveConcurrencyLimiter(String name, int initialLimit, int minLimit, int maxLimit) {
+        if (minLimit < 1 || minLimit > maxLimit || initialLimit < minLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("Некорректные границы лимита " + name + ": " + minLimit
+                    + " <= " + initialLimit + " <= " + maxLimit);
+        }
+        this.name = name;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.limit = initialLimit;
+    }
+
+    /**
+     * Пытается занять место под запрос.
+     *
+     * @return разрешение, которое нужно завершить через {@link Permit#onSuccess()} или {@link Permit#onDropped()};
+     * {@code null}, если лимит исчерпан и запрос нужно отклонить
+     */
+    public Permit tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= getLimit()) {
+                rejected.incrementAndGet();
+                return null;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return new Permit(current + 1);
+            }
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("concurrency.limit", this, AdaptiveConcurrencyLimiter::getLimit)
+                .tag("limiter", name)
+                .description("Текущий адаптивный лимит одновременных запросов")
+                .register(registry);
+        Gauge.builder("concurrency.in_flight", this, AdaptiveConcurrencyLimiter::getInFlight)
+                .tag("limiter", name)
+                .description("Количество запросов в обработке")
+                .register(registry);
+        FunctionCounter.builder("concurrency.rejected", this, AdaptiveConcurrencyLimiter::getRejected)
+                .tag("limiter", name)
+                .description("Количество запросов, отклоненных из-за лимита")
+                .register(registry);
+    }
+
+    private synchronized void onSample(long rttNanos, int inFlightAtStart, boolean dropped) {
+        double current = limit;
+        double newLimit;
+        if (dropped) {
+            newLimit = current * MIN_GRADIENT;
+        } else {
+            samples++;
+            if (samples == 1) {
+                longRtt = rttNanos;
+            } else {
+                double factor = 2.0 / (Math.min(samples, LONG_WINDOW) + 1);
+                longRtt = longRtt * (1 - factor) + rttNanos * factor;
+            }
+            // После перегрузки базовая задержка могла вырасти надолго - догоняем ее, чтобы лимит не залипал внизу
+            if (longRtt / rttNanos > 2) {
+                longRtt *= 0.95;
+            }
+            // Лимит используется меньше чем наполовину - задержка ничего не говорит о его достаточности
+            if (inFlightAtStart < current / 2) {
+                return;
+            }
+            double gradient = Math.max(MIN_GRADIENT, Math.min(1.0, RTT_TOLERANCE * longRtt / rttNanos));
+            double queueSize = Math.sqrt(current);
+            newLimit = current * gradient + queueSize;
+        }
+        newLimit = current * (1 - SMOOTHING) + newLimit * SMOOTHING;
+        newLimit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+        if ((int) newLimit != (int) current) {
+            logger.debug("Лимит {} изменен: {} -> {}", name, (int) current, (int) newLimit);
+        }
+        limit = newLimit;
+    }
+
+    /**
+     * Разрешение на обработку одного запроса. Повторное завершение игнорируется.
+     */
+    public final class Permit {
+        private final long startNanos = System.nanoTime();
+        private final int inFlightAtStart;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(int inFlightAtStart) {
+            this.inFlightAtStart = inFlightAtStart;
+        }
+
+        /**
+         * Запрос обработан - его задержка учитывается при подстройке лимита.
+         */
+        public void onSuccess() {
+            release(false);
+        }
+
+        /**
+         * Запрос завершился из-за перегрузки (таймаут, недоступность зависимостей) - лимит уменьшается.
+         */
+        public void onDropped() {
+            release(true);
+        }
+
+        private void release(boolean dropped) {
+            if (released.compareAndSet(false, true)) {
+                inFlight.decrementAndGet();
+                onSample(Math.max(1, System.nanoTime() - startNanos), inFlightAtStart, dropped);
+            }
+        }
+    }
+}
@@ -1,10 +1,19 @@
 package bank.recommendationservice.fintech.configuration;
 
+import bank.recommendationservice.fintech.model.UserInfo;
+import bank.recommendationservice.fintech.model.UserRecommendations;
 import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 
 @Configuration
@@ -22,6 +31,7 @@ public class CacheConfig {
     @Bean
     public Cache<String, Boolean> productTypeCache() {
         return Caffeine.newBuilder()
+                .recordStats()
                 .expireAfterWrite(60, TimeUnit.DAYS)
                 .build();
     }
@@ -40,6 +50,7 @@ public class CacheConfig {
     @Bean
     public Cache<String, Double> transactionSumCache() {
         return Caffeine.newBuilder()
+                .recordStats()
                 .expireAfterWrite(60, TimeUnit.DAYS)
                 .build();
     }
@@ -58,7 +69,77 @@ public class CacheConfig {
     @Bean
     public Cache<String, Integer> transactionCountCache() {
         return Caffeine.newBuilder()
+                .recordStats()
                 .expireAfterWrite(60, TimeUnit.DAYS)
                 .build();
     }
+
+
+    /**
+     * {@code Cache<UUID, UserRecommendations>} для хранения результатов оценки всех правил по пользователю.
+     * Ключ - id пользователя.
+     * Значение - результат каждого динамического правила и статического рулсета для пользователя.
+     * Кэш обновляется частично при изменении данных пользователя и сбрасывается целиком при изменении правил.
+     * Значения в кэше истекают через 60 дней, размер кэша ограничен 100 000 пользователей.
+     *
+     * @return кэш
+     */
+    @Bean
+    public Cache<UUID, UserRecommendations> recommendationCache() {
+        return Caffeine.newBuilder()
+                .recordStats()
+                .maximumSize(100_000)
+                .expireAfterWrite(60, TimeUnit.DAYS)
+                .build();
+    }
+
+
+    /**
+     * {@code Cache<String, Optional<UserInfo>>} для хранения пользователей по имени пользователя.
+     * Ключ - имя пользователя (username).
+     * Значение - данные пользователя или {@code Optional.empty()}, если пользователь не найден
+     * (или найдено несколько пользователей с таким именем).
+     * Найденные пользователи хранятся сутки, ненайденные - 10 минут, чтобы новые пользователи
+     * становились доступны без сброса кэша. Размер кэша ограничен 100 000 записей.
+     *
+     * @return кэш
+     */
+    @Bean
+    public Cache<String, Optional<UserInfo>> userCache() {
+        return Caffeine.newBuilder()
+                .recordStats()
+                .maximumSize(100_000)
+                .expireAfter(new Expiry<String, Optional<UserInfo>>() {
+                    @Override
+                    public long expireAfterCreate(String userName, Optional<UserInfo> user, long currentTime) {
+                        return (user.isPresent() ? Duration.ofDays(1) : Duration.ofMinutes(10)).toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String userName, Optional<UserInfo> user,
+                                                  long currentTime, long currentDuration) {
+                        return expireAfterCreate(userName, user, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String userName, Optional<UserInfo> user,
+                                                long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+    }
+
+
+    /**
+     * Метрики всех кэшей Caffeine: попадания и промахи ({@code cache.gets}), загрузки и их суммарное время
+     * ({@code cache.load}, {@code cache.load.duration}), вытеснения и размер. Тег {@code cache} - имя бина кэша.
+     *
+     * @param caches кэши по имени бина
+     * @return привязка метрик кэшей к реестру
+     */
+    @Bean
+    public MeterBinder cacheMetrics(Map<String, Cache<?, ?>> caches) {
+        return registry -> caches.forEach((name, cache) -> CaffeineCacheMetrics.monitor(registry, cache, name));
+    }
 }
@@ -0,0 +1,33 @@
+package bank.recommendationservice.fintech.configuration;
+
+import bank.recommendationservice.fintech.interfaces.CacheInvalidationTransport;
+import bank.recommendationservice.fintech.repository.PostgresCacheInvalidationTransport;
+import bank.recommendationservice.fintech.repository.RuleSetVersionRepository;
+import bank.recommendationservice.fintech.service.InProcessCacheInvalidationTransport;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import javax.sql.DataSource;
+
+@Configuration
+public class CacheInvalidationConfig {
+
+    /**
+     * Транспорт шины сброса кэшей между экземплярами сервиса: LISTEN/NOTIFY, если правила хранятся
+     * в PostgreSQL (общей базе всех экземпляров), иначе - доставка внутри процесса (один экземпляр).
+     *
+     * @return транспорт шины сброса кэшей
+     */
+    @Bean
+    public CacheInvalidationTransport cacheInvalidationTransport(
+            @Qualifier("rulesJdbcTemplate") NamedParameterJdbcTemplate jdbcTemplate,
+            @Qualifier("defaultDataSource") DataSource dataSource,
+            RuleSetVersionRepository ruleSetVersionRepository) {
+        if (ruleSetVersionRepository.isPostgres()) {
+            return new PostgresCacheInvalidationTransport(jdbcTemplate.getJdbcTemplate(), dataSource);
+        }
+        return new InProcessCacheInvalidationTransport();
+    }
+}
@@ -0,0 +1,45 @@
+package bank.recommendationservice.fintech.configuration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Адаптивные ограничители одновременных запросов.
+ * <p>
+ * У REST API рекомендаций и у Telegram-бота отдельные лимиты, чтобы всплеск в одном канале
+ * не вытеснял другой.
+ */
+@Configuration
+public class ConcurrencyLimitConfig implements WebMvcConfigurer {
+
+    @Value("${recommendation.concurrency.min-limit:4}")
+    private int minLimit;
+
+    @Value("${recommendation.concurrency.max-limit:200}")
+    private int maxLimit;
+
+    @Value("${recommendation.concurrency.api.initial-limit:20}")
+    private int apiInitialLimit;
+
+    @Value("${recommendation.concurrency.telegram.initial-limit:10}")
+    private int telegramInitialLimit;
+
+    @Bean
+    public AdaptiveConcurrencyLimiter recommendationApiLimiter() {
+        return new AdaptiveConcurrencyLimiter("recommendation-api", apiInitialLimit, minLimit, maxLimit);
+    }
+
+    @Bean
+    public AdaptiveConcurrencyLimiter telegramLimiter() {
+        return new AdaptiveConcurrencyLimiter("telegram", telegramInitialLimit, minLimit, maxLimit);
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new ConcurrencyLimitInterceptor(recommendationApiLimiter()))
+                .addPathPatterns("/recommendation/**");
+    }
+}
@@ -0,0 +1,45 @@
+package bank.recommendationservice.fintech.configuration;
+
+import bank.recommendationservice.fintech.exception.ConcurrencyLimitExceededException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+/**
+ * Пропускает HTTP-запросы через {@link AdaptiveConcurrencyLimiter}.
+ * <p>
+ * Если лимит исчерпан, запрос сразу завершается {@link ConcurrencyLimitExceededException} (503),
+ * не занимая поток Tomcat ожиданием базы данных. Ответы со статусом 5xx считаются признаком перегрузки
+ * и уменьшают лимит.
+ */
+public class ConcurrencyLimitInterceptor implements HandlerInterceptor {
+    private static final String PERMIT_ATTRIBUTE = ConcurrencyLimitInterceptor.class.getName() + ".permit";
+
+    private final AdaptiveConcurrencyLimiter limiter;
+
+    public ConcurrencyLimitInterceptor(AdaptiveConcurrencyLimiter limiter) {
+        this.limiter = limiter;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        AdaptiveConcurrencyLimiter.Permit permit = limiter.tryAcquire();
+        if (permit == null) {
+            throw new ConcurrencyLimitExceededException("Превышен лимит одновременных запросов " + limiter.getName()
+                    + ": " + limiter.getLimit());
+        }
+        request.setAttribute(PERMIT_ATTRIBUTE, permit);
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        if (request.getAttribute(PERMIT_ATTRIBUTE) instanceof AdaptiveConcurrencyLimiter.Permit permit) {
+            if (ex != null || response.getStatus() >= 500) {
+                permit.onDropped();
+            } else {
+                permit.onSuccess();
+            }
+        }
+    }
+}
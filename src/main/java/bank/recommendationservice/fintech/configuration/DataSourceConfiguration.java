@@ -1,14 +1,17 @@
 package bank.recommendationservice.fintech.configuration;
 
+import bank.recommendationservice.fintech.model.RequestTrace;
 import com.zaxxer.hikari.HikariDataSource;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
 import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Primary;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 
 import javax.sql.DataSource;
 
@@ -16,6 +19,7 @@ import javax.sql.DataSource;
 public class DataSourceConfiguration {
 
     // Бин для первой базы данных (H2)
+    // Имя пула - значение тега pool метрик hikaricp.*
     @Bean(name = "recommendationsServiceDataSource")
     public DataSource recommendationsServiceDataSource(
             @Value("${application.fintech_service-db.url}") String serviceRecommendationsUrl) {
@@ -23,22 +27,57 @@ public class DataSourceConfiguration {
         dataSource.setJdbcUrl(serviceRecommendationsUrl);
         dataSource.setDriverClassName("org.h2.Driver");
         dataSource.setReadOnly(true);
+        dataSource.setPoolName("recommendations-h2");
         return dataSource;
     }
 
     // Бин для второй базы данных (PostgreSQL)
+    // Имя пула - значение тега pool метрик hikaricp.*
     @Primary
     @Bean(name = "defaultDataSource")
     @ConfigurationProperties(prefix = "spring.datasource")
     public DataSource defaultDataSource(DataSourceProperties properties) {
-        return properties.initializeDataSourceBuilder().build();
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("rules-postgres");
+        return dataSource;
+    }
+
+    // Запросы JPA ко второй базе данных записываются в трассировку запроса (RequestTrace).
+    // Бин оборачивается после привязки свойств spring.datasource.*, поэтому настройки пула не меняются.
+    @Bean
+    public static BeanPostProcessor defaultDataSourceTracingPostProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if ("defaultDataSource".equals(beanName) && bean instanceof DataSource dataSource) {
+                    return new TracingDataSource(dataSource, RequestTrace.Database.POSTGRES);
+                }
+                return bean;
+            }
+        };
+    }
+
+    // Шаблон для чтения каталога правил и статистики SQL-проекциями (RuleCatalogRepository) из второй базы данных.
+    // Запросы, как и запросы JPA, записываются в трассировку запроса.
+    @Bean(name = "rulesJdbcTemplate")
+    public NamedParameterJdbcTemplate rulesJdbcTemplate(@Qualifier("defaultDataSource") DataSource dataSource) {
+        return new NamedParameterJdbcTemplate(dataSource);
     }
 
-    // JdbcTemplate для первой базы данных
+    // JdbcTemplate для первой базы данных.
+    // Число одновременных соединений ограничено семафором по размеру пула Hikari,
+    // чтобы параллельная оценка правил не исчерпывала пул.
+    // Запросы записываются в трассировку запроса (RequestTrace); время ожидания семафора в нее не входит.
+    // Тайм-аут каждого запроса ограничен оставшимся временем дедлайна оценки правил (QueryDeadline).
     @Bean(name = "recommendationsJdbcTemplate")
     public JdbcTemplate recommendationsJdbcTemplate(
-            @Qualifier("recommendationsServiceDataSource") DataSource dataSource) {
-        return new JdbcTemplate(dataSource);
+            @Qualifier("recommendationsServiceDataSource") DataSource dataSource,
+            @Value("${recommendation.execution.jdbc-permit-timeout-ms:30000}") long permitTimeoutMillis) {
+        int maxConnections = dataSource instanceof HikariDataSource hikariDataSource
+                ? hikariDataSource.getMaximumPoolSize()
+                : 10;
+        return new DeadlineJdbcTemplate(new PermitLimitedDataSource(
+                new TracingDataSource(dataSource, RequestTrace.Database.H2), maxConnections, permitTimeoutMillis));
     }
 }
 
@@ -0,0 +1,30 @@
+package bank.recommendationservice.fintech.configuration;
+
+import bank.recommendationservice.fintech.model.QueryDeadline;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * {@link JdbcTemplate}, задающий тайм-аут SQL-запроса по дедлайну запроса рекомендаций ({@link QueryDeadline}).
+ * <p>
+ * Без дедлайна в потоке запросы выполняются с обычными настройками шаблона. Если у шаблона задан
+ * собственный тайм-аут, используется меньший из двух.
+ */
+public class DeadlineJdbcTemplate extends JdbcTemplate {
+
+    public DeadlineJdbcTemplate(DataSource dataSource) {
+        super(dataSource);
+    }
+
+    @Override
+    protected void applyStatementSettings(Statement stmt) throws SQLException {
+        super.applyStatementSettings(stmt);
+        int timeout = QueryDeadline.remainingTimeoutSeconds();
+        if (timeout > 0 && (stmt.getQueryTimeout() == 0 || timeout < stmt.getQueryTimeout())) {
+            stmt.setQueryTimeout(timeout);
+        }
+    }
+}
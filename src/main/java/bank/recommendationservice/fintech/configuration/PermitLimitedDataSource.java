@@ -0,0 +1,106 @@
+package bank.recommendationservice.fintech.configuration;
+
+import bank.recommendationservice.fintech.model.QueryDeadline;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * {@link DataSource}, ограничивающий количество одновременно выданных соединений семафором.
+ * <p>
+ * Разрешение берется при получении соединения и возвращается при его закрытии. Количество разрешений
+ * равно размеру пула Hikari, поэтому при параллельной оценке правил (в том числе на виртуальных потоках)
+ * лишние задачи ждут в очереди семафора, а не исчерпывают пул и не падают по таймауту Hikari.
+ * <p>
+ * Если в потоке задан дедлайн запроса рекомендаций ({@link QueryDeadline}), разрешение ждут не дольше
+ * оставшегося до дедлайна времени. Не дождавшись разрешения до дедлайна, получение соединения завершается
+ * {@link QueryTimeoutException}, как и SQL-запрос, отмененный по дедлайну: правило считается пропущенным.
+ */
+public class PermitLimitedDataSource extends DelegatingDataSource {
+    private final Semaphore permits;
+    private final long acquireTimeoutMillis;
+
+    public PermitLimitedDataSource(DataSource targetDataSource, int maxConnections, long acquireTimeoutMillis) {
+        super(targetDataSource);
+        this.permits = new Semaphore(maxConnections, true);
+        this.acquireTimeoutMillis = acquireTimeoutMillis;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        acquire();
+        try {
+            return withPermit(super.getConnection());
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        acquire();
+        try {
+            return withPermit(super.getConnection(username, password));
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * @return количество свободных разрешений
+     */
+    public int getAvailablePermits() {
+        return permits.availablePermits();
+    }
+
+    private void acquire() throws SQLException {
+        long deadlineNanos = QueryDeadline.remainingNanos();
+        boolean byDeadline = deadlineNanos >= 0 && deadlineNanos < TimeUnit.MILLISECONDS.toNanos(acquireTimeoutMillis);
+        try {
+            if (byDeadline) {
+                if (!permits.tryAcquire(deadlineNanos, TimeUnit.NANOSECONDS)) {
+                    throw new QueryTimeoutException("Не удалось получить соединение до дедлайна запроса рекомендаций");
+                }
+            } else if (!permits.tryAcquire(acquireTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new SQLTransientConnectionException(
+                        "Не удалось получить соединение за " + acquireTimeoutMillis + " мс");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException("Ожидание соединения прервано", e);
+        }
+    }
+
+    private Connection withPermit(Connection connection) {
+        AtomicBoolean released = new AtomicBoolean();
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    if ("close".equals(method.getName()) && released.compareAndSet(false, true)) {
+                        try {
+                            connection.close();
+                        } finally {
+                            permits.release();
+                        }
+                        return null;
+                    }
+                    try {
+                        return method.invoke(connection, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getTargetException();
+                    }
+                });
+    }
+}
@@ -0,0 +1,90 @@
+package bank.recommendationservice.fintech.configuration;
+
+import bank.recommendationservice.fintech.model.RequestTrace;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * {@link DataSource}, записывающий SQL-запросы и их длительность в {@link RequestTrace} текущего потока.
+ * <p>
+ * Соединение оборачивается, только если при его получении запрос трассируется; в остальных случаях
+ * возвращается исходное соединение пула, и обертка стоит одного чтения {@link ThreadLocal}.
+ */
+public class TracingDataSource extends DelegatingDataSource {
+    private final RequestTrace.Database database;
+
+    public TracingDataSource(DataSource targetDataSource, RequestTrace.Database database) {
+        super(targetDataSource);
+        this.database = database;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return traced(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return traced(super.getConnection(username, password));
+    }
+
+    private Connection traced(Connection connection) {
+        RequestTrace trace = RequestTrace.current();
+        if (trace == null) {
+            return connection;
+        }
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    Object result = invoke(connection, method, args);
+                    return switch (method.getName()) {
+                        case "prepareStatement" -> statement(trace, PreparedStatement.class, result, (String) args[0]);
+                        case "prepareCall" -> statement(trace, CallableStatement.class, result, (String) args[0]);
+                        case "createStatement" -> statement(trace, Statement.class, result, null);
+                        default -> result;
+                    };
+                });
+    }
+
+    /**
+     * @param sql текст подготовленного запроса; {@code null} для {@link Statement}, текст которого
+     *            передается в {@code execute*}
+     */
+    private Object statement(RequestTrace trace, Class<? extends Statement> type, Object statement, String sql) {
+        return Proxy.newProxyInstance(
+                type.getClassLoader(),
+                new Class<?>[]{type},
+                (proxy, method, args) -> {
+                    if (!method.getName().startsWith("execute")) {
+                        return invoke(statement, method, args);
+                    }
+                    String executed = sql != null ? sql
+                            : args != null && args.length > 0 && args[0] instanceof String text ? text
+                            : "(batch)";
+                    long start = System.nanoTime();
+                    try {
+                        return invoke(statement, method, args);
+                    } finally {
+                        trace.recordStatement(database, executed, System.nanoTime() - start);
+                    }
+                });
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+}
@@ -3,6 +3,7 @@ package bank.recommendationservice.fintech.controller;
 import bank.recommendationservice.fintech.exception.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
@@ -37,6 +38,21 @@ public class GlobalExceptionHandler {
                 HttpStatus.SERVICE_UNAVAILABLE);
     }
 
+    @ExceptionHandler(RecommendationTimeoutException.class)
+    public ResponseEntity<String> handleRecommendationTimeoutException(RecommendationTimeoutException ex) {
+        logger.warn("Превышен дедлайн запроса рекомендаций: {}", ex.getMessage());
+        return new ResponseEntity<>("Превышено время подбора рекомендаций. Повторите запрос позже.",
+                HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
+    @ExceptionHandler(ConcurrencyLimitExceededException.class)
+    public ResponseEntity<String> handleConcurrencyLimitExceededException(ConcurrencyLimitExceededException ex) {
+        logger.debug(ex.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body("Сервис перегружен. Повторите запрос позже.");
+    }
+
     @ExceptionHandler(Exception.class)
     public ResponseEntity<String> handleGenericException(Exception ex) {
         logger.error("An unexpected error occurred: ", ex);
@@ -1,27 +1,42 @@
 package bank.recommendationservice.fintech.controller;
 
 
-import bank.recommendationservice.fintech.service.CacheService;
+import bank.recommendationservice.fintech.model.CacheInvalidation;
+import bank.recommendationservice.fintech.model.CacheInvalidationResponse;
+import bank.recommendationservice.fintech.model.JfrRecordingStatus;
+import bank.recommendationservice.fintech.other.ProductType;
+import bank.recommendationservice.fintech.service.CacheInvalidationBus;
+import bank.recommendationservice.fintech.service.JfrRecordingService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import org.springframework.boot.info.BuildProperties;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.util.UUID;
+
 @RestController
 @RequestMapping("/management")
-@Tag(name = "Management", description = "Эндпоинт для получение информации о системе и сброса кэша")
+@Tag(name = "Management", description = "Эндпоинт для получение информации о системе, сброса кэша и записи JFR")
 public class InfoController {
     private final BuildProperties buildProperties;
-    private final CacheService cacheService;
+    private final CacheInvalidationBus cacheInvalidationBus;
+    private final JfrRecordingService jfrRecordingService;
 
-    public InfoController(BuildProperties buildProperties, CacheService cacheService) {
+    public InfoController(BuildProperties buildProperties, CacheInvalidationBus cacheInvalidationBus,
+                          JfrRecordingService jfrRecordingService) {
         this.buildProperties = buildProperties;
-        this.cacheService = cacheService;
+        this.cacheInvalidationBus = cacheInvalidationBus;
+        this.jfrRecordingService = jfrRecordingService;
     }
 
     /**
@@ -34,12 +49,76 @@ public class InfoController {
     }
 
     /**
-     * Сбрасывает все кэши
+     * Сбрасывает кэши на всех экземплярах сервиса: все кэши, кэши одного пользователя
+     * или агрегаты по типу продукта
+     *
+     * @param userId      пользователь, кэши которого сбрасываются
+     * @param productType тип продукта, агрегаты по которому сбрасываются (вместе с {@code user_id} - только у пользователя)
+     * @return подтверждения сброса экземплярами сервиса
      */
     @PostMapping("/clear-caches")
-    @Operation(summary = "Сброс кеша всех запросов", description = "Сбрасывается кеш всех запросов в системе ")
-    public ResponseEntity<String> clearCaches() {
-        cacheService.clearCaches();
-        return new ResponseEntity<>("Кеш успешно очищен.", HttpStatus.OK);
+    @Operation(summary = "Сброс кеша на всех экземплярах сервиса",
+            description = "Без параметров сбрасываются все кеши, с user_id - кеши пользователя, с product_type - " +
+                    "агрегаты по типу продукта. Ответ содержит подтверждение каждого экземпляра сервиса")
+    public ResponseEntity<CacheInvalidationResponse> clearCaches(
+            @RequestParam(name = "user_id", required = false) UUID userId,
+            @RequestParam(name = "product_type", required = false) String productType) {
+        ProductType type = productType != null ? ProductType.fromString(productType) : null;
+        CacheInvalidation invalidation = userId != null ? CacheInvalidation.user(userId, type)
+                : type != null ? CacheInvalidation.product(type)
+                : CacheInvalidation.full();
+        return new ResponseEntity<>(cacheInvalidationBus.broadcast(invalidation), HttpStatus.OK);
+    }
+
+    /**
+     * Запускает запись Java Flight Recorder, ограниченную по длительности и размеру
+     *
+     * @param settings        набор настроек JFR: default или profile
+     * @param durationSeconds длительность записи в секундах
+     * @return состояние записи
+     */
+    @PostMapping("/jfr/start")
+    @Operation(summary = "Запуск записи JFR",
+            description = "Запускает запись Java Flight Recorder с событиями оценки правил и запросов к базе данных. " +
+                    "Запись останавливается сама по истечении длительности")
+    public JfrRecordingStatus startJfrRecording(@RequestParam(defaultValue = "default") String settings,
+                                                @RequestParam(name = "duration", required = false) Long durationSeconds) {
+        return jfrRecordingService.start(settings, durationSeconds);
+    }
+
+    /**
+     * Останавливает запись Java Flight Recorder
+     *
+     * @return состояние записи
+     */
+    @PostMapping("/jfr/stop")
+    @Operation(summary = "Остановка записи JFR", description = "Останавливает запись, данные остаются доступны для скачивания")
+    public JfrRecordingStatus stopJfrRecording() {
+        return jfrRecordingService.stop();
+    }
+
+    /**
+     * @return состояние последней записи Java Flight Recorder
+     */
+    @GetMapping("/jfr")
+    @Operation(summary = "Состояние записи JFR", description = "Возвращает состояние последней записи")
+    public JfrRecordingStatus getJfrRecordingStatus() {
+        return jfrRecordingService.status();
+    }
+
+    /**
+     * Скачивание последней записи Java Flight Recorder
+     *
+     * @return файл записи в формате .jfr
+     */
+    @GetMapping("/jfr/recording")
+    @Operation(summary = "Скачивание записи JFR",
+            description = "Возвращает файл последней записи (идущей или остановленной) для JDK Mission Control или jfr print")
+    public ResponseEntity<InputStreamResource> downloadJfrRecording() {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        ContentDisposition.attachment().filename("recommendation-service.jfr").build().toString())
+                .body(new InputStreamResource(jfrRecordingService.openDump()));
     }
-}
\ No newline at end of file
+}
@@ -1,7 +1,8 @@
 package bank.recommendationservice.fintech.controller;
 
-import bank.recommendationservice.fintech.dto.RecommendationDTO;
+import bank.recommendationservice.fintech.model.ProductCatalogResponse;
 import bank.recommendationservice.fintech.model.RecommendationResponse;
+import bank.recommendationservice.fintech.other.Feature;
 import bank.recommendationservice.fintech.service.RecommendationService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -9,11 +10,11 @@ import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
 import org.springframework.http.ResponseEntity;
-import org.springframework.web.bind.annotation.GetMapping;
-import org.springframework.web.bind.annotation.PathVariable;
-import org.springframework.web.bind.annotation.RequestMapping;
-import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.List;
 import java.util.UUID;
@@ -25,27 +26,123 @@ import java.util.UUID;
 @RequestMapping("/recommendation")
 @Tag(name = "Recommendation", description = "Эндпоинты для управления рекомендациями")
 public class RecommendationController {
+    /**
+     * Заголовок запроса, включающий трассировку выполнения в ответе {@code GET /recommendation/{user_id}}.
+     */
+    public static final String TRACE_HEADER = "X-Debug-Trace";
+
     private final RecommendationService recommendationService;
 
+    /**
+     * Разрешена ли трассировка по заголовку {@link #TRACE_HEADER}. Трассировка раскрывает текст SQL-запросов.
+     */
+    @Value("${recommendation.trace.enabled:false}")
+    private boolean traceEnabled;
+
     public RecommendationController(RecommendationService recommendationService) {
         this.recommendationService = recommendationService;
     }
 
     /**
      * Получает список рекомендаций для пользователя с заданным ID.
+     * <p>
+     * Формат ответа выбирается по заголовку {@code Accept}: JSON (по умолчанию) или CBOR
+     * ({@code application/cbor}). В CBOR рекомендации передаются только ID продуктов,
+     * названия и тексты берутся из каталога {@code GET /recommendation/products} версии {@code products_version}.
+     * <p>
+     * С заголовком {@code X-Debug-Trace: true} (если {@code recommendation.trace.enabled=true}) ответ дополнительно
+     * содержит трассировку: оцененные правила и время каждого, SQL-запросы и их длительность,
+     * попадания и промахи кэшей, время в H2 и PostgreSQL.
      *
      * @param userId ID пользователя
+     * @param trace  включить трассировку выполнения
      * @return ответ, содержащий список рекомендаций для пользователя
      */
     @GetMapping("/{user_id}")
     @Operation(summary = "Получение рекомендаций пользователя", description = "Возвращает список рекомендаций для пользователя")
     @ApiResponses(value = {
-            @ApiResponse(responseCode = "200", description = "Успешно получены рекомендации",
+            @ApiResponse(responseCode = "200", description = "Успешно получены рекомендации. "
+                    + "Если часть правил не уложилась в дедлайн запроса, ответ помечается partial=true",
                     content = @Content(schema = @Schema(implementation = RecommendationResponse.class)))
     })
-    public ResponseEntity<RecommendationResponse> getRecommendations(@PathVariable("user_id") UUID userId) {
-        List<RecommendationDTO> recommendations = recommendationService.getRecommendations(userId);
-        RecommendationResponse response = new RecommendationResponse(userId, recommendations);
+    public ResponseEntity<RecommendationResponse> getRecommendations(
+            @PathVariable("user_id") UUID userId,
+            @RequestHeader(value = TRACE_HEADER, defaultValue = "false") boolean trace) {
+        RecommendationResponse response = trace && traceEnabled
+                ? recommendationService.getTracedRecommendationResponse(userId)
+                : recommendationService.getRecommendationResponse(userId);
         return ResponseEntity.ok(response);
     }
-}
\ No newline at end of file
+
+    /**
+     * Получает рекомендации сразу для нескольких пользователей.
+     * <p>
+     * Как и {@code GET /recommendation/{user_id}}, поддерживает ответ в JSON и в CBOR ({@code Accept: application/cbor}).
+     *
+     * @param userIds ID пользователей
+     * @return ответы для каждого пользователя в порядке переданных ID
+     */
+    @PostMapping("/batch")
+    @Operation(summary = "Получение рекомендаций для нескольких пользователей",
+            description = "Возвращает рекомендации для каждого переданного ID пользователя")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Успешно получены рекомендации"),
+            @ApiResponse(responseCode = "400", description = "Превышен размер пакета")
+    })
+    public ResponseEntity<List<RecommendationResponse>> getRecommendationsBatch(@RequestBody List<UUID> userIds) {
+        return ResponseEntity.ok(recommendationService.getRecommendationResponses(userIds));
+    }
+
+    /**
+     * Получает каталог продуктов, на которые ссылаются рекомендации в CBOR.
+     * <p>
+     * Каталог отдается с ETag, равным его версии, и {@code Cache-Control: no-cache}: клиент и промежуточные кэши
+     * хранят каталог, но перед использованием проверяют его запросом с {@code If-None-Match}, который, пока набор
+     * правил не меняется, получает ответ 304 без тела. Версия каталога также приходит в каждом ответе
+     * с рекомендациями ({@code products_version}), поэтому клиент может запрашивать каталог только при ее смене.
+     *
+     * @param request запрос, используется для проверки {@code If-None-Match}
+     * @return каталог продуктов или 304, если у клиента актуальная версия
+     */
+    @GetMapping("/products")
+    @Operation(summary = "Каталог продуктов рекомендаций",
+            description = "Возвращает названия и тексты продуктов по их ID")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Каталог продуктов",
+                    content = @Content(schema = @Schema(implementation = ProductCatalogResponse.class))),
+            @ApiResponse(responseCode = "304", description = "Каталог не изменился")
+    })
+    public ResponseEntity<ProductCatalogResponse> getProductCatalog(WebRequest request) {
+        ProductCatalogResponse catalog = recommendationService.getProductCatalog();
+        String eTag = "\"" + catalog.getVersion() + "\"";
+        if (request.checkNotModified(eTag)) {
+            return null;
+        }
+        return ResponseEntity.ok()
+                .eTag(eTag)
+                .cacheControl(CacheControl.noCache())
+                .body(catalog);
+    }
+
+    /**
+     * Пересчитывает рекомендации пользователя после изменения его данных.
+     * <p>
+     * Принимает список измененных признаков (тип продукта и тип транзакции) и пересчитывает
+     * только те правила, которые от них зависят.
+     *
+     * @param userId   ID пользователя
+     * @param features измененные признаки
+     * @return ответ с пустым телом и статусом NO_CONTENT
+     */
+    @PostMapping("/{user_id}/changes")
+    @Operation(summary = "Пересчет рекомендаций после изменения данных пользователя",
+            description = "Пересчитывает только правила, зависящие от измененных признаков")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "204", description = "Рекомендации пересчитаны")
+    })
+    public ResponseEntity<Void> refreshRecommendations(@PathVariable("user_id") UUID userId,
+                                                       @RequestBody List<Feature> features) {
+        recommendationService.refreshRecommendations(userId, features);
+        return ResponseEntity.noContent().build();
+    }
+}
@@ -1,11 +1,16 @@
 package bank.recommendationservice.fintech.controller;
 
+import bank.recommendationservice.fintech.dto.RuleStatsDTO;
+import bank.recommendationservice.fintech.exception.IllegalPageRequestException;
 import bank.recommendationservice.fintech.exception.RulesNotFoundException;
 import bank.recommendationservice.fintech.model.DynamicRule;
 import bank.recommendationservice.fintech.model.RuleStatsResponse;
 import bank.recommendationservice.fintech.service.RecommendationDynamicRuleService;
 import bank.recommendationservice.fintech.service.RuleStatsService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
@@ -15,8 +20,11 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.util.Iterator;
 import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * Контроллер для управления динамическими правилами рекомендаций.
@@ -28,11 +36,14 @@ public class RecommendationDynamicRuleController {
 
     private final RecommendationDynamicRuleService recommendationDynamicRuleService;
     private final RuleStatsService ruleStatsService;
+    private final ObjectMapper objectMapper;
 
     public RecommendationDynamicRuleController(RecommendationDynamicRuleService recommendationDynamicRuleService,
-                                               RuleStatsService ruleStatsService) {
+                                               RuleStatsService ruleStatsService,
+                                               ObjectMapper objectMapper) {
         this.recommendationDynamicRuleService = recommendationDynamicRuleService;
         this.ruleStatsService = ruleStatsService;
+        this.objectMapper = objectMapper;
     }
 
     /**
@@ -63,6 +74,31 @@ public class RecommendationDynamicRuleController {
                 .body(savedRule);
     }
 
+    /**
+     * Создает несколько динамических правил за один запрос.
+     * <p>
+     * Все правила проверяются до сохранения: если хотя бы одно правило некорректно, не сохраняется ни одно.
+     * Правила сохраняются одной транзакцией с пакетной вставкой. В случае успеха возвращает
+     * ResponseEntity, содержащий сохраненные правила в порядке передачи и статус CREATED (201).
+     *
+     * @param rules правила, которые нужно создать
+     * @return ResponseEntity, содержащий созданные правила и статус CREATED
+     */
+    @PostMapping("/bulk")
+    @Operation(summary = "Пакетное создание динамических правил",
+            description = "Создает несколько динамических правил одной транзакцией")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "201", description = "Правила успешно созданы",
+                    content = @Content(array = @ArraySchema(schema = @Schema(implementation = DynamicRule.class)))),
+            @ApiResponse(responseCode = "400", description = "Некорректное правило или слишком много правил")
+    })
+    public ResponseEntity<List<DynamicRule>> createRules(@RequestBody List<DynamicRule> rules) {
+        List<DynamicRule> savedRules = recommendationDynamicRuleService.addRules(rules);
+        return ResponseEntity.status(HttpStatus.CREATED)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(savedRules);
+    }
+
     /**
      * Удаляет существующее динамическое правило.
      * <p>
@@ -89,35 +125,98 @@ public class RecommendationDynamicRuleController {
     }
 
     /**
-     * Получает все динамические правила.
+     * Получает все динамические правила или страницу правил.
      * <p>
-     * Этот метод обрабатывает HTTP GET запросы для получения всех динамических правил.
-     * Он использует RecommendationDynamicRuleService для извлечения всех правил
-     * из репозитория и возвращает их в виде списка. Возвращает ResponseEntity,
-     * содержащий список DynamicRule и статус OK (200).
+     * Этот метод обрабатывает HTTP GET запросы для получения динамических правил в порядке id.
+     * Если номер страницы не указан, возвращаются все правила: они читаются из базы данных порциями
+     * и записываются в ответ по мере чтения, не собираясь в памяти целиком. Возвращает ResponseEntity,
+     * содержащий JSON-массив DynamicRule и статус OK (200).
      *
-     * @return ResponseEntity, содержащий список всех DynamicRule и статус OK
+     * @param page номер страницы, начиная с 0; если не указан - все правила
+     * @param size размер страницы
+     * @return ResponseEntity, содержащий JSON-массив DynamicRule и статус OK
+     * @throws IllegalPageRequestException если номер или размер страницы недопустимы
      */
     @GetMapping
-    @Operation(summary = "Получение всех динамических правил", description = "Возвращает список всех динамических правил")
+    @Operation(summary = "Получение динамических правил",
+            description = "Возвращает все динамические правила или страницу правил, если указан номер страницы")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Успешно получены правила",
-                    content = @Content(schema = @Schema(implementation = DynamicRule.class)))
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE,
+                            array = @ArraySchema(schema = @Schema(implementation = DynamicRule.class)))),
+            @ApiResponse(responseCode = "400", description = "Недопустимый номер или размер страницы")
     })
-    public ResponseEntity<List<DynamicRule>> getAllRules() {
-        List<DynamicRule> rules = recommendationDynamicRuleService.getAllDynamicRules();
-        return ResponseEntity.ok(rules);
+    public ResponseEntity<StreamingResponseBody> getAllRules(@RequestParam(required = false) Integer page,
+                                                             @RequestParam(defaultValue = "100") int size) {
+        Stream<DynamicRule> rules = page != null
+                ? recommendationDynamicRuleService.getDynamicRulesPage(page, size).stream()
+                : recommendationDynamicRuleService.streamAllDynamicRules();
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(jsonArray(rules, null));
     }
 
+    /**
+     * Получает счетчики срабатывания всех динамических правил или страницы правил.
+     * <p>
+     * Как и {@link #getAllRules(Integer, int)}, без номера страницы записывает счетчики в ответ
+     * по мере чтения из базы данных.
+     *
+     * @param page номер страницы, начиная с 0; если не указан - все счетчики
+     * @param size размер страницы
+     * @return ResponseEntity, содержащий RuleStatsResponse и статус OK, или статус INTERNAL_SERVER_ERROR,
+     * если статистику не удалось прочитать
+     */
     @GetMapping("/stats")
     @Operation(summary = "Получение статистики срабатывания динамических правил", description = "Возвращает счетчик срабатывания динамических правил")
-    public ResponseEntity<RuleStatsResponse> getRuleStats() {
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Успешно получена статистика",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE,
+                            schema = @Schema(implementation = RuleStatsResponse.class))),
+            @ApiResponse(responseCode = "400", description = "Недопустимый номер или размер страницы")
+    })
+    public ResponseEntity<StreamingResponseBody> getRuleStats(@RequestParam(required = false) Integer page,
+                                                              @RequestParam(defaultValue = "100") int size) {
+        Stream<RuleStatsDTO> stats;
         try {
-            RuleStatsResponse response = ruleStatsService.getAllRuleStats();
-            return ResponseEntity.ok(response);
+            stats = page != null
+                    ? ruleStatsService.getRuleStatsPage(page, size).getStats().stream()
+                    : ruleStatsService.streamAllRuleStats();
+        } catch (IllegalPageRequestException e) {
+            throw e;
         } catch (RuntimeException e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(null);
         }
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(jsonArray(stats, "stats"));
+    }
+
+    /**
+     * Записывает элементы потока в ответ JSON-массивом по одному, после записи поток закрывается.
+     *
+     * @param items     элементы массива
+     * @param fieldName имя поля объекта, в которое записывается массив; {@code null} - массив без обертки
+     */
+    private StreamingResponseBody jsonArray(Stream<?> items, String fieldName) {
+        return outputStream -> {
+            try (items; JsonGenerator generator = objectMapper.createGenerator(outputStream)) {
+                generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                if (fieldName != null) {
+                    generator.writeStartObject();
+                    generator.writeFieldName(fieldName);
+                }
+                generator.writeStartArray();
+                Iterator<?> iterator = items.iterator();
+                while (iterator.hasNext()) {
+                    generator.writeObject(iterator.next());
+                }
+                generator.writeEndArray();
+                if (fieldName != null) {
+                    generator.writeEndObject();
+                }
+            }
+        };
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,64 @@
+package bank.recommendationservice.fintech.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * DTO продукта из каталога: ключ, по которому на продукт ссылаются рекомендации в CBOR,
+ * полное название и текст рекомендации.
+ */
+@Getter
+@Setter
+@Schema(description = "DTO продукта из каталога рекомендаций")
+public class ProductDTO {
+    @Schema(description = "Ключ продукта в каталоге: рекомендации в CBOR ссылаются на продукт по нему",
+            example = "9b1f0c2d4e6a8b3c")
+    private String key;
+    @Schema(description = "Уникальный идентификатор продукта", example = "59efc529-2fff-41af-baff-90ccd7402925")
+    private UUID id;
+    @Schema(description = "Название продукта", example = "Top Saving")
+    private String name;
+    @Schema(description = "Текст рекомендации продукта")
+    private String text;
+
+    public ProductDTO() {
+    }
+
+    public ProductDTO(UUID id, String name, String text) {
+        this.key = RecommendationDTO.keyOf(id, name, text);
+        this.id = id;
+        this.name = name;
+        this.text = text;
+    }
+
+    public ProductDTO(RecommendationDTO recommendation) {
+        this(recommendation.getId(), recommendation.getName(), recommendation.getText());
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        ProductDTO that = (ProductDTO) o;
+        return Objects.equals(key, that.key) && Objects.equals(id, that.id)
+                && Objects.equals(name, that.name) && Objects.equals(text, that.text);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(key, id, name, text);
+    }
+
+    @Override
+    public String toString() {
+        return "ProductDTO{" +
+                "key='" + key + '\'' +
+                ", id=" + id +
+                ", name='" + name + '\'' +
+                '}';
+    }
+}
@@ -1,37 +1,65 @@
 package bank.recommendationservice.fintech.dto;
 
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.core.json.JsonGeneratorImpl;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import com.fasterxml.jackson.dataformat.cbor.CBORGenerator;
 import io.swagger.v3.oas.annotations.media.Schema;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
+import lombok.AccessLevel;
 import lombok.Getter;
-import lombok.Setter;
-
+import org.springframework.util.DigestUtils;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.Objects;
 import java.util.UUID;
 
 /**
  • DTO для представления рекомендации.
+ * <p>
+ * JSON рекомендации кодируется в UTF-8 один раз и при сериализации вставляется в ответ как готовый фрагмент.
+ * Рулсеты и граф динамических правил переиспользуют одни и те же экземпляры DTO, поэтому длинные тексты
+ * продуктов не сериализуются заново на каждый запрос. Общие экземпляры видят все вызывающие, поэтому DTO
+ * неизменяемый, и закодированный фрагмент никогда не устаревает.
+ * <p>
+ * {@link #getKey()} - ключ рекомендации в каталоге продуктов: хэш id, названия и текста. Id продукта
+ * для этого не подходит - он не уникален, и разные правила могут рекомендовать продукт с одним id
+ * под разными названиями и текстами.
  */
 @Getter
-@Setter
+@JsonIgnoreProperties(ignoreUnknown = true)
+@JsonSerialize(using = RecommendationDTO.PreEncodedSerializer.class)
 @Schema(description = "DTO для представления рекомендации")
 public class RecommendationDTO {
 
     @NotNull(message = "ID cannot be null")
     @Schema(description = "Уникальный идентификатор рекомендации", example = "550e8400-e29b-41d4-a716-446655440000")
-    private UUID id;
+    private final UUID id;
     @NotBlank(message = "Name cannot be blank")
     @Schema(description = "Название рекомендации", example = "Специальное предложение по кредиту")
-    private String name;
+    private final String name;
     @NotBlank(message = "Text cannot be blank")
     @Schema(description = "Текст рекомендации", example = "Предложение для вас - выгодный кредит")
-    private String text;
-
-    public RecommendationDTO() {
-    }
+    private final String text;
+    @Getter(AccessLevel.NONE)
+    private volatile SerializableString json;
+    @Getter(AccessLevel.NONE)
+    private volatile String key;
 
-    public RecommendationDTO(UUID id, String name, String text) {
+    @JsonCreator
+    public RecommendationDTO(@JsonProperty("id") UUID id,
+                             @JsonProperty("name") String name,
+                             @JsonProperty("text") String text) {
         this.id = id;
         this.name = name;
         this.text = text;
@@ -43,6 +71,51 @@ public class RecommendationDTO {
         this.text = description1;
     }
 
+    /**
+     * Возвращает JSON рекомендации. Фрагмент кодируется при первом обращении и кэшируется вместе
+     * с UTF-8 представлением, которое генератор Jackson копирует в ответ без повторного кодирования.
+     *
+     * @return JSON-объект рекомендации с полями {@code id}, {@code name}, {@code text}
+     */
+    public SerializableString toJson() {
+        SerializableString current = json;
+        if (current == null) {
+            current = new SerializedString("{\"id\":" + quote(id == null ? null : id.toString())
+                    + ",\"name\":" + quote(name)
+                    + ",\"text\":" + quote(text) + "}");
+            current.asUnquotedUTF8();
+            json = current;
+        }
+        return current;
+    }
+
+    /**
+     * @return ключ рекомендации в каталоге продуктов; вычисляется при первом обращении
+     */
+    public String getKey() {
+        String current = key;
+        if (current == null) {
+            current = keyOf(id, name, text);
+            key = current;
+        }
+        return current;
+    }
+
+    /**
+     * @return ключ продукта в каталоге - первые 16 символов MD5 от id, названия и текста
+     */
+    public static String keyOf(UUID id, String name, String text) {
+        String content = id + "\n" + name + "\n" + text;
+        return DigestUtils.md5DigestAsHex(content.getBytes(StandardCharsets.UTF_8)).substring(0, 16);
+    }
+
+    private static String quote(String value) {
+        if (value == null) {
+            return "null";
+        }
+        return "\"" + new String(JsonStringEncoder.getInstance().quoteAsString(value)) + "\"";
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -60,4 +133,34 @@ public class RecommendationDTO {
     public String toString() {
         return name + " - " + text;
     }
-}
\ No newline at end of file
+
+    /**
+     * Записывает рекомендацию в ответ.
+     * <p>
+     * В JSON вставляется заранее закодированный фрагмент. В CBOR рекомендация передается только ключом
+     * в каталоге продуктов ({@code key}) - id, название и текст клиент берет из каталога
+     * {@code GET /recommendation/products}. Для остальных генераторов поля пишутся обычным образом.
+     */
+    static class PreEncodedSerializer extends StdSerializer<RecommendationDTO> {
+        PreEncodedSerializer() {
+            super(RecommendationDTO.class);
+        }
+
+        @Override
+        public void serialize(RecommendationDTO value, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            if (gen instanceof JsonGeneratorImpl) {
+                gen.writeRawValue(value.toJson());
+                return;
+            }
+            gen.writeStartObject(value);
+            if (gen instanceof CBORGenerator) {
+                gen.writeStringField("key", value.getKey());
+            } else {
+                provider.defaultSerializeField("id", value.id, gen);
+                gen.writeStringField("name", value.name);
+                gen.writeStringField("text", value.text);
+            }
+            gen.writeEndObject();
+        }
+    }
+}
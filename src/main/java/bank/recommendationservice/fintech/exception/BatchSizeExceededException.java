@@ -0,0 +1,7 @@
+package bank.recommendationservice.fintech.exception;
+
+public class BatchSizeExceededException extends BaseBadRequestException {
+    public BatchSizeExceededException(String message) {
+        super(message);
+    }
+}
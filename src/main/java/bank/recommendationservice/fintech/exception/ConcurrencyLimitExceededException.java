@@ -0,0 +1,7 @@
+package bank.recommendationservice.fintech.exception;
+
+public class ConcurrencyLimitExceededException extends RuntimeException {
+    public ConcurrencyLimitExceededException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package bank.recommendationservice.fintech.exception;
+
+public class IllegalPageRequestException extends BaseBadRequestException {
+    public IllegalPageRequestException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package bank.recommendationservice.fintech.exception;
+
+public class JfrRecordingException extends BaseBadRequestException {
+    public JfrRecordingException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package bank.recommendationservice.fintech.exception;
+
+public class JfrRecordingNotFoundException extends BaseNotFoundException {
+    public JfrRecordingNotFoundException(String message) {
+        super(message);
+    }
+}
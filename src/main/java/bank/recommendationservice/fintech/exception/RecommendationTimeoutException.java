@@ -0,0 +1,11 @@
+package bank.recommendationservice.fintech.exception;
+
+public class RecommendationTimeoutException extends RuntimeException {
+    public RecommendationTimeoutException(String message) {
+        super(message);
+    }
+
+    public RecommendationTimeoutException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
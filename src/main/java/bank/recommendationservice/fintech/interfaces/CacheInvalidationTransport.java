@@ -0,0 +1,32 @@
+package bank.recommendationservice.fintech.interfaces;
+
+import bank.recommendationservice.fintech.model.CacheInvalidationMessage;
+
+import java.util.function.Consumer;
+
+/**
+ * Транспорт шины сброса кэшей между экземплярами сервиса.
+ * <p>
+ * Сообщение, опубликованное одним экземпляром, доставляется подписчикам всех экземпляров, в том числе
+ * отправителя. Доставка не гарантируется: потерянный сброс виден отправителю как отсутствие подтверждения.
+ */
+public interface CacheInvalidationTransport {
+
+    /**
+     * Рассылает сообщение всем экземплярам сервиса.
+     *
+     * @param message сообщение
+     */
+    void publish(CacheInvalidationMessage message);
+
+    /**
+     * Подписывает обработчик на сообщения всех экземпляров сервиса.
+     * <p>
+     * {@code onSubscribed} вызывается, когда транспорт начал доставлять сообщения этому экземпляру,
+     * и повторно после каждого переподключения: сообщения, опубликованные до этого, экземпляр не получит.
+     *
+     * @param listener     обработчик; вызывается в потоке транспорта
+     * @param onSubscribed вызывается в потоке транспорта после (повторной) подписки
+     */
+    void subscribe(Consumer<CacheInvalidationMessage> listener, Runnable onSubscribed);
+}
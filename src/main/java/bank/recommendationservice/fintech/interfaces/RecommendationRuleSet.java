@@ -1,9 +1,28 @@
 package bank.recommendationservice.fintech.interfaces;
 
 import bank.recommendationservice.fintech.dto.RecommendationDTO;
+import bank.recommendationservice.fintech.other.Feature;
 
+import java.util.Set;
 import java.util.UUID;
 
 public interface RecommendationRuleSet {
     RecommendationDTO recommend(UUID userId);
-}
\ No newline at end of file
+
+    /**
+     * @return продукт, который рекомендует набор правил
+     */
+    RecommendationDTO getProduct();
+
+    /**
+     * @return признаки агрегатов пользователя, от которых зависит результат набора правил
+     */
+    Set<Feature> getFeatures();
+
+    /**
+     * @return имя набора правил, уникальное среди всех рулсетов
+     */
+    default String getName() {
+        return getClass().getSimpleName();
+    }
+}
@@ -1,7 +1,15 @@
 package bank.recommendationservice.fintech.interfaces;
 
+import bank.recommendationservice.fintech.other.Feature;
+
+import java.util.Set;
 import java.util.UUID;
 
 public interface Rule {
     boolean evaluate(UUID userId);
-}
\ No newline at end of file
+
+    /**
+     * @return признаки агрегатов пользователя, от которых зависит результат правила
+     */
+    Set<Feature> getFeatures();
+}
@@ -0,0 +1,33 @@
+package bank.recommendationservice.fintech.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Событие JFR: получение агрегата пользователя по типу продукта из кэша или базы данных транзакций.
+ * Длительность события - время вызова метода репозитория.
+ */
+@Name("bank.recommendation.AggregateLoaded")
+@Label("Aggregate Loaded")
+@Category({"Recommendation Service", "Repository"})
+@Description("Получение агрегата пользователя по типу продукта")
+@StackTrace(false)
+public class AggregateLoadedEvent extends Event {
+    @Label("Query")
+    @Description("Вид агрегата, например uses_product или deposits_total")
+    public String query;
+
+    @Label("User Id")
+    public String userId;
+
+    @Label("Product Type")
+    public String productType;
+
+    @Label("Cache Hit")
+    @Description("Значение взято из кэша без запроса к базе данных")
+    public boolean cacheHit;
+}
@@ -0,0 +1,37 @@
+package bank.recommendationservice.fintech.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Событие JFR: получение рекомендаций пользователя - из кэша рекомендаций или оценкой всех правил.
+ * Длительность события - время получения рекомендаций.
+ */
+@Name("bank.recommendation.RecommendationComputed")
+@Label("Recommendation Computed")
+@Category({"Recommendation Service", "Rules"})
+@Description("Получение рекомендаций пользователя")
+@StackTrace(false)
+public class RecommendationComputedEvent extends Event {
+    @Label("User Id")
+    public String userId;
+
+    @Label("Cache Hit")
+    @Description("Рекомендации взяты из кэша без оценки правил")
+    public boolean cacheHit;
+
+    @Label("Rules Evaluated")
+    public int rulesEvaluated;
+
+    @Label("Recommendations")
+    @Description("Количество сработавших правил")
+    public int recommendations;
+
+    @Label("Partial")
+    @Description("Часть правил пропущена по дедлайну запроса")
+    public boolean partial;
+}
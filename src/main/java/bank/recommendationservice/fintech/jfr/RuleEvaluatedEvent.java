@@ -0,0 +1,64 @@
+package bank.recommendationservice.fintech.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+import java.util.UUID;
+import java.util.concurrent.Callable;
+
+/**
+ * Событие JFR: оценка одного правила (статического рулсета или динамического правила) для пользователя.
+ * Длительность события - время оценки правила.
+ */
+@Name("bank.recommendation.RuleEvaluated")
+@Label("Rule Evaluated")
+@Category({"Recommendation Service", "Rules"})
+@Description("Оценка правила рекомендаций для пользователя")
+@StackTrace(false)
+public class RuleEvaluatedEvent extends Event {
+    @Label("Rule Id")
+    @Description("Имя рулсета или dynamic_rule_<id>")
+    public String ruleId;
+
+    @Label("Rule Type")
+    @Description("rule_set или dynamic_rule")
+    public String ruleType;
+
+    @Label("User Id")
+    public String userId;
+
+    @Label("Matched")
+    @Description("Правило сработало и вернуло рекомендацию")
+    public boolean matched;
+
+    /**
+     * Оборачивает задачу оценки правила так, чтобы она записывала событие. Если событие не включено
+     * в запись JFR, задача только проверяет это после выполнения.
+     *
+     * @param ruleId   имя правила
+     * @param ruleType тип правила
+     * @param userId   id пользователя
+     * @param task     задача оценки правила; правило сработало, если она вернула не {@code null}
+     * @return задача, записывающая событие
+     */
+    public static <T> Callable<T> wrap(String ruleId, String ruleType, UUID userId, Callable<T> task) {
+        return () -> {
+            RuleEvaluatedEvent event = new RuleEvaluatedEvent();
+            event.begin();
+            T result = task.call();
+            event.end();
+            if (event.shouldCommit()) {
+                event.ruleId = ruleId;
+                event.ruleType = ruleType;
+                event.userId = String.valueOf(userId);
+                event.matched = result != null;
+                event.commit();
+            }
+            return result;
+        };
+    }
+}
@@ -0,0 +1,59 @@
+package bank.recommendationservice.fintech.model;
+
+import bank.recommendationservice.fintech.other.ProductType;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.UUID;
+
+/**
+ * Сброс кэшей, который рассылается всем экземплярам сервиса.
+ *
+ * @param scope       что сбрасывается
+ * @param userId      пользователь для {@link Scope#USER}
+ * @param productType тип продукта для {@link Scope#PRODUCT}; для {@link Scope#USER} - ограничивает сброс
+ *                    агрегатами пользователя по этому типу продукта
+ */
+@Schema(description = "Сброс кэшей")
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record CacheInvalidation(
+        @Schema(description = "Что сбрасывается: FULL, USER или PRODUCT", example = "USER")
+        Scope scope,
+        @JsonProperty("user_id")
+        @Schema(description = "Пользователь", example = "f37ba8a8-3cd5-4976-9f74-2b21f105da67")
+        UUID userId,
+        @JsonProperty("product_type")
+        @Schema(description = "Тип продукта", example = "DEBIT")
+        ProductType productType) {
+
+    public enum Scope {
+        /**
+         * Все кэши сервиса, включая кэш второго уровня Hibernate.
+         */
+        FULL,
+        /**
+         * Агрегаты, рекомендации и данные одного пользователя.
+         */
+        USER,
+        /**
+         * Агрегаты всех пользователей по типу продукта и все закэшированные рекомендации.
+         */
+        PRODUCT
+    }
+
+    public static CacheInvalidation full() {
+        return new CacheInvalidation(Scope.FULL, null, null);
+    }
+
+    /**
+     * @param productType {@code null}, если сбрасываются агрегаты пользователя по всем типам продукта
+     */
+    public static CacheInvalidation user(UUID userId, ProductType productType) {
+        return new CacheInvalidation(Scope.USER, userId, productType);
+    }
+
+    public static CacheInvalidation product(ProductType productType) {
+        return new CacheInvalidation(Scope.PRODUCT, null, productType);
+    }
+}
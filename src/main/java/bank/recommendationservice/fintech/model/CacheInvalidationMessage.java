@@ -0,0 +1,36 @@
+package bank.recommendationservice.fintech.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.UUID;
+
+/**
+ * Сообщение шины сброса кэшей между экземплярами сервиса.
+ *
+ * @param type         тип сообщения
+ * @param id           id сброса; для {@link Type#ACK} - id подтверждаемого сообщения
+ * @param nodeId       экземпляр сервиса, отправивший сообщение
+ * @param invalidation сброс для {@link Type#INVALIDATE}
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record CacheInvalidationMessage(Type type, UUID id, String nodeId, CacheInvalidation invalidation) {
+
+    public enum Type {
+        /**
+         * Экземпляр запущен; остальные отвечают {@link #ACK}, и экземпляры узнают друг о друге.
+         */
+        JOIN,
+        /**
+         * Сброс кэшей.
+         */
+        INVALIDATE,
+        /**
+         * Подтверждение: сброс применен (или уже был применен раньше).
+         */
+        ACK,
+        /**
+         * Экземпляр останавливается и больше не подтверждает сбросы.
+         */
+        LEAVE
+    }
+}
@@ -0,0 +1,46 @@
+package bank.recommendationservice.fintech.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Результат сброса кэшей на всех экземплярах сервиса.
+ */
+@Schema(description = "Результат сброса кэшей на всех экземплярах сервиса")
+public record CacheInvalidationResponse(
+        @Schema(description = "Id сброса", example = "2b1c7f0e-6d1a-4a57-9c55-0f4b3f2d9a10")
+        UUID id,
+        @Schema(description = "Что сброшено")
+        CacheInvalidation invalidation,
+        @Schema(description = "true, если известны другие экземпляры и сброс подтвердили все они", example = "true")
+        boolean complete,
+        @JsonProperty("peers_known")
+        @Schema(description = "false, если этому экземпляру не известен ни один другой экземпляр "
+                + "или он еще не подключен к шине: тогда неизвестно, дошел ли сброс до остальных", example = "true")
+        boolean peersKnown,
+        @Schema(description = "Экземпляры сервиса: этот экземпляр первым, затем подтвердившие и не подтвердившие")
+        List<NodeAcknowledgement> nodes) {
+
+    /**
+     * @param nodeId       id экземпляра сервиса
+     * @param local        {@code true} для экземпляра, который принял запрос
+     * @param acknowledged {@code true}, если экземпляр применил сброс до истечения ожидания подтверждений
+     * @param latencyMs    время от начала сброса до подтверждения; {@code null}, если подтверждения нет
+     */
+    @Schema(description = "Подтверждение сброса экземпляром сервиса")
+    public record NodeAcknowledgement(
+            @JsonProperty("node_id")
+            @Schema(description = "Id экземпляра сервиса", example = "recommendation-1-5f3a9c2e")
+            String nodeId,
+            @Schema(description = "Экземпляр, который принял запрос", example = "false")
+            boolean local,
+            @Schema(description = "Сброс применен", example = "true")
+            boolean acknowledged,
+            @JsonProperty("latency_ms")
+            @Schema(description = "Время до подтверждения, мс", example = "12")
+            Long latencyMs) {
+    }
+}
@@ -1,12 +1,17 @@
 package bank.recommendationservice.fintech.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import io.swagger.v3.oas.annotations.media.Schema;
 import jakarta.persistence.*;
-import lombok.AllArgsConstructor;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
 
 import java.util.List;
 import java.util.Objects;
@@ -17,15 +22,16 @@ import java.util.UUID;
  */
 @Entity
 @Table(name = "dynamic_rule")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "dynamic_rule")
 @Getter
 @Setter
-@AllArgsConstructor
 @NoArgsConstructor
 @Schema(description = "Модель динамического правила")
 public class DynamicRule {
     @Id
     @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "dynamic_rule_seq_gen")
-    @SequenceGenerator(name = "dynamic_rule_seq_gen", sequenceName = "dynamic_rule_seq", allocationSize = 1)
+    @SequenceGenerator(name = "dynamic_rule_seq_gen", sequenceName = "dynamic_rule_seq", allocationSize = 50)
     @JsonProperty(access = JsonProperty.Access.READ_ONLY)
     @Schema(description = "Уникальный идентификатор динамического правила", example = "1")
     private Long id;
@@ -43,10 +49,31 @@ public class DynamicRule {
     private String productText;
 
     @OneToMany(cascade = CascadeType.ALL, mappedBy = "dynamicRule", orphanRemoval = true)
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "dynamic_rule_queries")
     @JsonProperty("rule")
     @Schema(description = "Список запросов для динамического правила")
     private List<DynamicRuleQuery> queries;
 
+    /**
+     * Копия запросов и аргументов правила одним документом JSON (jsonb в PostgreSQL). Заполняется
+     * при сохранении правила и позволяет прочитать весь каталог правил одним запросом к таблице
+     * {@code dynamic_rule}, без соединения с {@code dynamic_rule_query} и {@code query_arguments}.
+     */
+    @JsonIgnore
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(name = "queries_json", nullable = false)
+    private List<RuleQueryDocument> queriesJson;
+
+    public DynamicRule(Long id, String productName, UUID productId, String productText, List<DynamicRuleQuery> queries) {
+        this.id = id;
+        this.productName = productName;
+        this.productId = productId;
+        this.productText = productText;
+        this.queries = queries;
+    }
+
     public DynamicRule(String productName, UUID productId, String productText, List<DynamicRuleQuery> queries) {
         this.productName = productName;
         this.productId = productId;
@@ -54,6 +81,14 @@ public class DynamicRule {
         this.queries = queries;
     }
 
+    @PrePersist
+    @PreUpdate
+    void writeQueriesJson() {
+        queriesJson = queries != null
+                ? queries.stream().map(RuleQueryDocument::of).toList()
+                : List.of();
+    }
+
     @Override
     public boolean equals(Object object) {
         if (this == object) return true;
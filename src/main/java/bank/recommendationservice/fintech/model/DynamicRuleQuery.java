@@ -1,26 +1,39 @@
 package bank.recommendationservice.fintech.model;
 
+import bank.recommendationservice.fintech.other.ComparisonType;
+import bank.recommendationservice.fintech.other.ProductType;
+import bank.recommendationservice.fintech.other.QueryType;
+import bank.recommendationservice.fintech.other.TransactionType;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import io.swagger.v3.oas.annotations.media.Schema;
 import jakarta.persistence.*;
 import lombok.Getter;
 import lombok.Setter;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import java.util.List;
 import java.util.Objects;
 
 /**
  *  Модель запроса для динамического правила.
+ *  <p>
+ *  Кроме строковых аргументов запрос хранит их разобранные значения: тип запроса, тип продукта, тип транзакции,
+ *  тип сравнения и константу. Они заполняются при проверке правила перед сохранением
+ *  ({@code RecommendationDynamicRuleService}), поэтому при оценке правила аргументы не разбираются.
+ *  Значения, которые не используются типом запроса, равны {@code null}.
  */
 @Entity
 @Table(name = "dynamic_rule_query")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "dynamic_rule_query")
 @Getter
 @Setter
 @Schema(description = "Модель запроса для динамического правила")
 public class DynamicRuleQuery {
     @Id
     @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "dynamic_rule_query_seq_gen")
-    @SequenceGenerator(name = "dynamic_rule_query_seq_gen", sequenceName = "dynamic_rule_query_seq", allocationSize = 1)
+    @SequenceGenerator(name = "dynamic_rule_query_seq_gen", sequenceName = "dynamic_rule_query_seq", allocationSize = 50)
     @JsonIgnore
     @Schema(description = "Уникальный идентификатор запроса", example = "1")
     private Long id;
@@ -31,6 +44,7 @@ public class DynamicRuleQuery {
 
     @ElementCollection
     @CollectionTable(name = "query_arguments", joinColumns = @JoinColumn(name = "dynamic_rule_query_id"))
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "dynamic_rule_query_arguments")
 
     @Schema(description = "Список аргументов для запроса", example = "[\"CREDIT\"]")
 
@@ -40,6 +54,30 @@ public class DynamicRuleQuery {
     @Schema(description = "Флаг отрицания запроса", example = "false")
     private boolean negate;
 
+    @JsonIgnore
+    @Enumerated(EnumType.STRING)
+    @Column(name = "query_type")
+    private QueryType queryType;
+
+    @JsonIgnore
+    @Enumerated(EnumType.STRING)
+    @Column(name = "product_type")
+    private ProductType productType;
+
+    @JsonIgnore
+    @Enumerated(EnumType.STRING)
+    @Column(name = "transaction_type")
+    private TransactionType transactionType;
+
+    @JsonIgnore
+    @Enumerated(EnumType.STRING)
+    @Column(name = "comparison_type")
+    private ComparisonType comparisonType;
+
+    @JsonIgnore
+    @Column(name = "compare_constant")
+    private Integer constant;
+
     @JsonIgnore
     @ManyToOne
     @JoinColumn(name = "dynamic_rule_id", nullable = false)
@@ -0,0 +1,32 @@
+package bank.recommendationservice.fintech.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.time.Instant;
+
+/**
+ * Состояние записи Java Flight Recorder, запущенной через {@code /management/jfr}.
+ */
+@Schema(description = "Состояние записи JFR")
+public record JfrRecordingStatus(
+        @Schema(description = "Состояние записи: RUNNING, STOPPED или CLOSED", example = "RUNNING")
+        String state,
+        @Schema(description = "Набор настроек JFR: default или profile", example = "default")
+        String settings,
+        @JsonProperty("start_time")
+        @Schema(description = "Время запуска записи")
+        Instant startTime,
+        @JsonProperty("stop_time")
+        @Schema(description = "Время остановки записи; для идущей записи - плановое время остановки")
+        Instant stopTime,
+        @JsonProperty("duration_seconds")
+        @Schema(description = "Максимальная длительность записи, с", example = "300")
+        long durationSeconds,
+        @JsonProperty("max_size_bytes")
+        @Schema(description = "Максимальный размер записи, байт", example = "104857600")
+        long maxSizeBytes,
+        @JsonProperty("size_bytes")
+        @Schema(description = "Текущий размер записи, байт", example = "1048576")
+        long sizeBytes) {
+}
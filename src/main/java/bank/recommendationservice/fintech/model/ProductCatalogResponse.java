@@ -0,0 +1,32 @@
+package bank.recommendationservice.fintech.model;
+
+import bank.recommendationservice.fintech.dto.ProductDTO;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+
+/**
+ * Каталог продуктов, на которые ссылаются рекомендации в бинарном формате.
+ */
+@Getter
+@Setter
+@Schema(description = "Каталог продуктов рекомендаций")
+public class ProductCatalogResponse {
+    @JsonProperty("version")
+    @Schema(description = "Версия каталога, меняется при изменении продуктов", example = "3f2a9c0d1b7e4a55")
+    private String version;
+    @JsonProperty("products")
+    @Schema(description = "Продукты каталога")
+    private List<ProductDTO> products;
+
+    public ProductCatalogResponse() {
+    }
+
+    public ProductCatalogResponse(String version, List<ProductDTO> products) {
+        this.version = version;
+        this.products = products;
+    }
+}
@@ -0,0 +1,67 @@
+package bank.recommendationservice.fintech.model;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Дедлайн запроса рекомендаций для SQL-запросов правил.
+ * <p>
+ * Дедлайн привязывается к потоку, в котором выполняется задача оценки правила ({@link #bind(long, Callable)}),
+ * и превращается в тайм-аут каждого SQL-запроса ({@link #remainingTimeoutSeconds()}). Так дедлайн ограничивает
+ * и уже выполняющееся правило: запрос, не уложившийся в оставшееся время, отменяется базой данных.
+ */
+public final class QueryDeadline {
+    private static final ThreadLocal<Long> DEADLINE_NANOS = new ThreadLocal<>();
+
+    private QueryDeadline() {
+    }
+
+    /**
+     * Оборачивает задачу так, чтобы SQL-запросы, выполняемые ею, ограничивались дедлайном.
+     *
+     * @param deadlineNanos дедлайн по {@link System#nanoTime()}
+     * @param task          задача
+     * @return задача с дедлайном
+     */
+    public static <T> Callable<T> bind(long deadlineNanos, Callable<T> task) {
+        return () -> {
+            Long previous = DEADLINE_NANOS.get();
+            DEADLINE_NANOS.set(deadlineNanos);
+            try {
+                return task.call();
+            } finally {
+                if (previous == null) {
+                    DEADLINE_NANOS.remove();
+                } else {
+                    DEADLINE_NANOS.set(previous);
+                }
+            }
+        };
+    }
+
+    /**
+     * @return оставшееся до дедлайна время в наносекундах (не меньше 0) или -1, если дедлайн не задан
+     */
+    public static long remainingNanos() {
+        Long deadline = DEADLINE_NANOS.get();
+        if (deadline == null) {
+            return -1;
+        }
+        return Math.max(0, deadline - System.nanoTime());
+    }
+
+    /**
+     * Тайм-аут JDBC задается в целых секундах, поэтому оставшееся время округляется вверх:
+     * запрос отменяется не позже чем через секунду после дедлайна.
+     *
+     * @return тайм-аут SQL-запроса в секундах (не меньше 1) или 0, если дедлайн не задан
+     */
+    public static int remainingTimeoutSeconds() {
+        Long deadline = DEADLINE_NANOS.get();
+        if (deadline == null) {
+            return 0;
+        }
+        long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+        return (int) Math.max(1, (remainingMillis + 999) / 1000);
+    }
+}
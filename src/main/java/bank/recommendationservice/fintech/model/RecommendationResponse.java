@@ -1,6 +1,8 @@
 package bank.recommendationservice.fintech.model;
 
 import bank.recommendationservice.fintech.dto.RecommendationDTO;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import io.swagger.v3.oas.annotations.media.Schema;
 import lombok.Getter;
 import lombok.Setter;
@@ -20,6 +22,20 @@ public class RecommendationResponse {
     private UUID user_id;
     @Schema(description = "Список рекомендаций для пользователя")
     private List<RecommendationDTO> recommendations;
+    @Schema(description = "Признак частичного ответа: часть правил не успела выполниться до дедлайна запроса", example = "false")
+    private boolean partial;
+    @JsonProperty("timed_out_rules")
+    @JsonInclude(JsonInclude.Include.NON_EMPTY)
+    @Schema(description = "Правила, пропущенные из-за дедлайна запроса", example = "[\"TopSaving\"]")
+    private List<String> timedOutRules = List.of();
+    @JsonProperty("products_version")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    @Schema(description = "Версия каталога продуктов GET /recommendation/products, по которому построены рекомендации. "
+            + "Если она отличается от версии каталога у клиента, каталог нужно запросить заново", example = "5f2b1c0a")
+    private String productsVersion;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    @Schema(description = "Трассировка выполнения запроса; только при заголовке X-Debug-Trace: true")
+    private RequestTrace trace;
 
     public RecommendationResponse() {
     }
@@ -29,17 +45,28 @@ public class RecommendationResponse {
         this.recommendations = recommendations;
     }
 
+    public RecommendationResponse(UUID user_id, List<RecommendationDTO> recommendations, List<String> timedOutRules) {
+        this.user_id = user_id;
+        this.recommendations = recommendations;
+        this.timedOutRules = timedOutRules;
+        this.partial = !timedOutRules.isEmpty();
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         RecommendationResponse that = (RecommendationResponse) o;
-        return Objects.equals(user_id, that.user_id) && Objects.equals(recommendations, that.recommendations);
+        return partial == that.partial
+                && Objects.equals(user_id, that.user_id)
+                && Objects.equals(recommendations, that.recommendations)
+                && Objects.equals(timedOutRules, that.timedOutRules)
+                && Objects.equals(productsVersion, that.productsVersion);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(user_id, recommendations);
+        return Objects.hash(user_id, recommendations, partial, timedOutRules, productsVersion);
     }
 
     @Override
@@ -47,6 +74,9 @@ public class RecommendationResponse {
         return "RecommendationResponse{" +
                 "user_id=" + user_id +
                 ", recommendations=" + recommendations +
+                ", partial=" + partial +
+                ", timedOutRules=" + timedOutRules +
+                ", productsVersion=" + productsVersion +
                 '}';
     }
 }
\ No newline at end of file
@@ -0,0 +1,214 @@
+package bank.recommendationservice.fintech.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Трассировка одного запроса рекомендаций: оцененные правила и время каждого, выполненные SQL-запросы
+ * и их длительность, попадания и промахи кэшей, суммарное время в H2 и PostgreSQL.
+ * <p>
+ * Трассировка привязана к потоку запроса ({@link #current()}) и переносится в потоки оценки правил
+ * через {@link #propagate(Callable)}. Все точки сбора сначала проверяют {@link #current()}, поэтому
+ * без трассировки их стоимость - одно чтение {@link ThreadLocal}.
+ */
+@Schema(description = "Трассировка выполнения запроса рекомендаций")
+public class RequestTrace {
+    private static final ThreadLocal<RequestTrace> CURRENT = new ThreadLocal<>();
+
+    /**
+     * Максимальное количество SQL-запросов в трассировке; остальные учитываются только в суммах по базам данных.
+     */
+    private static final int MAX_STATEMENTS = 500;
+
+    private final long startNanos = System.nanoTime();
+    private volatile long durationNanos = -1;
+    private final Queue<RuleEntry> rules = new ConcurrentLinkedQueue<>();
+    private final Queue<StatementEntry> statements = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger statementCount = new AtomicInteger();
+    private final AtomicLongArray databaseStatements = new AtomicLongArray(Database.values().length);
+    private final AtomicLongArray databaseNanos = new AtomicLongArray(Database.values().length);
+    private final Map<String, AtomicLong[]> caches = new ConcurrentHashMap<>();
+
+    /**
+     * @return трассировка текущего потока или {@code null}, если запрос не трассируется
+     */
+    public static RequestTrace current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Начинает трассировку в текущем потоке.
+     *
+     * @return новая трассировка
+     */
+    public static RequestTrace start() {
+        RequestTrace trace = new RequestTrace();
+        CURRENT.set(trace);
+        return trace;
+    }
+
+    /**
+     * Завершает трассировку: отвязывает ее от текущего потока и фиксирует общее время.
+     *
+     * @return эта трассировка
+     */
+    public RequestTrace finish() {
+        CURRENT.remove();
+        durationNanos = System.nanoTime() - startNanos;
+        return this;
+    }
+
+    /**
+     * Оборачивает задачу так, чтобы в потоке, где она выполняется, текущей была эта трассировка.
+     *
+     * @param task задача
+     * @return задача с трассировкой
+     */
+    public <T> Callable<T> propagate(Callable<T> task) {
+        return () -> {
+            RequestTrace previous = CURRENT.get();
+            CURRENT.set(this);
+            try {
+                return task.call();
+            } finally {
+                if (previous == null) {
+                    CURRENT.remove();
+                } else {
+                    CURRENT.set(previous);
+                }
+            }
+        };
+    }
+
+    /**
+     * Оборачивает задачу оценки правила так, чтобы ее время и результат попали в трассировку.
+     * Правило считается сработавшим, если задача вернула не {@code null}.
+     *
+     * @param name имя правила
+     * @param type тип правила, например {@code rule_set} или {@code dynamic_rule}
+     * @param task задача оценки правила
+     * @return задача с замером времени
+     */
+    public <T> Callable<T> traceRule(String name, String type, Callable<T> task) {
+        return () -> {
+            long start = System.nanoTime();
+            boolean matched = false;
+            try {
+                T result = task.call();
+                matched = result != null;
+                return result;
+            } finally {
+                rules.add(new RuleEntry(name, type, millis(System.nanoTime() - start), matched));
+            }
+        };
+    }
+
+    public void recordStatement(Database database, String sql, long nanos) {
+        databaseStatements.incrementAndGet(database.ordinal());
+        databaseNanos.addAndGet(database.ordinal(), nanos);
+        if (statementCount.incrementAndGet() <= MAX_STATEMENTS) {
+            statements.add(new StatementEntry(database.label, sql, millis(nanos)));
+        }
+    }
+
+    public void recordCacheAccess(String cacheName, boolean hit) {
+        caches.computeIfAbsent(cacheName, name -> new AtomicLong[]{new AtomicLong(), new AtomicLong()})[hit ? 0 : 1]
+                .incrementAndGet();
+    }
+
+    @JsonProperty("total_ms")
+    @Schema(description = "Общее время запроса, мс", example = "12.5")
+    public double getTotalMillis() {
+        return millis(durationNanos >= 0 ? durationNanos : System.nanoTime() - startNanos);
+    }
+
+    @Schema(description = "Оцененные правила в порядке завершения")
+    public List<RuleEntry> getRules() {
+        return new ArrayList<>(rules);
+    }
+
+    @Schema(description = "Выполненные SQL-запросы")
+    public List<StatementEntry> getStatements() {
+        return new ArrayList<>(statements);
+    }
+
+    @JsonProperty("statements_dropped")
+    @JsonInclude(JsonInclude.Include.NON_DEFAULT)
+    @Schema(description = "Сколько SQL-запросов не попало в список из-за ограничения размера трассировки", example = "0")
+    public int getStatementsDropped() {
+        return Math.max(0, statementCount.get() - MAX_STATEMENTS);
+    }
+
+    @Schema(description = "Попадания и промахи кэшей по имени кэша")
+    public Map<String, CacheEntry> getCaches() {
+        Map<String, CacheEntry> result = new TreeMap<>();
+        caches.forEach((name, counters) -> result.put(name, new CacheEntry(counters[0].get(), counters[1].get())));
+        return result;
+    }
+
+    @Schema(description = "Количество запросов и суммарное время по базам данных")
+    public Map<String, DatabaseEntry> getDatabases() {
+        Map<String, DatabaseEntry> result = new LinkedHashMap<>();
+        for (Database database : Database.values()) {
+            result.put(database.label, new DatabaseEntry(databaseStatements.get(database.ordinal()),
+                    millis(databaseNanos.get(database.ordinal()))));
+        }
+        return result;
+    }
+
+    private static double millis(long nanos) {
+        return Math.round(nanos / 1_000.0) / 1_000.0;
+    }
+
+    /**
+     * База данных, к которой относится SQL-запрос.
+     */
+    public enum Database {
+        /**
+         * Транзакции пользователей.
+         */
+        H2("h2"),
+        /**
+         * Динамические правила и их статистика.
+         */
+        POSTGRES("postgres");
+
+        private final String label;
+
+        Database(String label) {
+            this.label = label;
+        }
+    }
+
+    public record RuleEntry(String name,
+                            String type,
+                            @JsonProperty("duration_ms") double durationMillis,
+                            boolean matched) {
+    }
+
+    public record StatementEntry(String database,
+                                 String sql,
+                                 @JsonProperty("duration_ms") double durationMillis) {
+    }
+
+    public record CacheEntry(long hits, long misses) {
+    }
+
+    public record DatabaseEntry(long statements,
+                                @JsonProperty("time_ms") double timeMillis) {
+    }
+}
@@ -0,0 +1,165 @@
+package bank.recommendationservice.fintech.model;
+
+import bank.recommendationservice.fintech.dto.ProductDTO;
+import bank.recommendationservice.fintech.dto.RecommendationDTO;
+import bank.recommendationservice.fintech.interfaces.RecommendationRuleSet;
+import bank.recommendationservice.fintech.other.Feature;
+import org.springframework.util.DigestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Граф зависимостей правил от признаков агрегатов пользователя.
+ * <p>
+ * Для каждого признака (тип продукта + тип транзакции) хранит динамические правила и статические рулсеты,
+ * результат которых от него зависит. Если признаки динамического правила определить не удалось
+ * (например, правило содержит неизвестный тип продукта), правило считается зависящим от всех признаков.
+ * <p>
+ * Также хранит готовые рекомендации динамических правил: их JSON кодируется один раз на граф,
+ * а не на каждый запрос. Экземпляр неизменяем и строится заново при изменении набора динамических правил.
+ */
+public class RuleDependencyGraph {
+    private final List<DynamicRule> dynamicRules;
+    private final List<RecommendationRuleSet> ruleSets;
+    private final Map<Feature, List<DynamicRule>> dynamicRulesByFeature = new HashMap<>();
+    private final Map<Feature, List<RecommendationRuleSet>> ruleSetsByFeature = new HashMap<>();
+    private final List<DynamicRule> unresolvedDynamicRules = new ArrayList<>();
+    private final Map<DynamicRule, RecommendationDTO> recommendations = new IdentityHashMap<>();
+    private final List<ProductDTO> products;
+    private final String productsVersion;
+
+    public RuleDependencyGraph(List<DynamicRule> dynamicRules, List<RecommendationRuleSet> ruleSets) {
+        this.dynamicRules = List.copyOf(dynamicRules);
+        this.ruleSets = List.copyOf(ruleSets);
+
+        for (DynamicRule rule : this.dynamicRules) {
+            recommendations.put(rule, new RecommendationDTO(rule.getProductId(), rule.getProductName(), rule.getProductText()));
+            Set<Feature> features = featuresOf(rule);
+            if (features == null) {
+                unresolvedDynamicRules.add(rule);
+            } else {
+                features.forEach(feature -> dynamicRulesByFeature.computeIfAbsent(feature, f -> new ArrayList<>()).add(rule));
+            }
+        }
+        for (RecommendationRuleSet ruleSet : this.ruleSets) {
+            ruleSet.getFeatures().forEach(feature -> ruleSetsByFeature.computeIfAbsent(feature, f -> new ArrayList<>()).add(ruleSet));
+        }
+
+        // id продукта не уникален: правила с одним id могут отличаться названием и текстом
+        Map<String, ProductDTO> productsByKey = new LinkedHashMap<>();
+        this.dynamicRules.stream()
+                .map(recommendations::get)
+                .forEach(recommendation -> productsByKey.putIfAbsent(recommendation.getKey(), new ProductDTO(recommendation)));
+        this.ruleSets.stream()
+                .map(RecommendationRuleSet::getProduct)
+                .filter(Objects::nonNull)
+                .forEach(product -> productsByKey.putIfAbsent(product.getKey(), new ProductDTO(product)));
+        this.products = List.copyOf(productsByKey.values());
+        StringBuilder digest = new StringBuilder();
+        products.forEach(product -> digest.append(product.getId()).append('\n')
+                .append(product.getName()).append('\n')
+                .append(product.getText()).append('\n'));
+        this.productsVersion = DigestUtils.md5DigestAsHex(digest.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return все динамические правила, из которых построен граф
+     */
+    public List<DynamicRule> getDynamicRules() {
+        return dynamicRules;
+    }
+
+    /**
+     * @return все статические рулсеты
+     */
+    public List<RecommendationRuleSet> getRuleSets() {
+        return ruleSets;
+    }
+
+    /**
+     * @return продукты всех динамических правил и рулсетов без повторов по ключу (id, название и текст)
+     */
+    public List<ProductDTO> getProducts() {
+        return products;
+    }
+
+    /**
+     * @return версия каталога продуктов - хэш id, названий и текстов всех продуктов
+     */
+    public String getProductsVersion() {
+        return productsVersion;
+    }
+
+    /**
+     * @param rule динамическое правило из {@link #getDynamicRules()}
+     * @return рекомендация продукта правила
+     */
+    public RecommendationDTO getRecommendation(DynamicRule rule) {
+        RecommendationDTO recommendation = recommendations.get(rule);
+        if (recommendation == null) {
+            return new RecommendationDTO(rule.getProductId(), rule.getProductName(), rule.getProductText());
+        }
+        return recommendation;
+    }
+
+    /**
+     * Возвращает динамические правила, результат которых может измениться при изменении признаков {@code features}.
+     *
+     * @param features измененные признаки
+     * @return затронутые динамические правила без повторов, в порядке из {@link #getDynamicRules()}
+     */
+    public List<DynamicRule> getAffectedDynamicRules(Collection<Feature> features) {
+        Set<DynamicRule> affected = Collections.newSetFromMap(new IdentityHashMap<>());
+        affected.addAll(unresolvedDynamicRules);
+        features.forEach(feature -> affected.addAll(dynamicRulesByFeature.getOrDefault(feature, List.of())));
+        return dynamicRules.stream().filter(affected::contains).toList();
+    }
+
+    /**
+     * Возвращает статические рулсеты, результат которых может измениться при изменении признаков {@code features}.
+     *
+     * @param features измененные признаки
+     * @return затронутые рулсеты без повторов, в порядке из {@link #getRuleSets()}
+     */
+    public List<RecommendationRuleSet> getAffectedRuleSets(Collection<Feature> features) {
+        Set<RecommendationRuleSet> affected = Collections.newSetFromMap(new IdentityHashMap<>());
+        features.forEach(feature -> affected.addAll(ruleSetsByFeature.getOrDefault(feature, List.of())));
+        return ruleSets.stream().filter(affected::contains).toList();
+    }
+
+    /**
+     * Определяет признаки, от которых зависит динамическое правило, по его запросам.
+     *
+     * @param rule динамическое правило
+     * @return множество признаков или {@code null}, если хотя бы у одного запроса правила нет разобранных аргументов
+     */
+    static Set<Feature> featuresOf(DynamicRule rule) {
+        Set<Feature> features = new LinkedHashSet<>();
+        if (rule.getQueries() == null) {
+            return features;
+        }
+        for (DynamicRuleQuery query : rule.getQueries()) {
+            if (query.getQueryType() == null || query.getProductType() == null) {
+                return null;
+            }
+            switch (query.getQueryType()) {
+                case USER_OF, ACTIVE_USER_OF, TRANSACTION_SUM_COMPARE_DEPOSIT_WITHDRAW ->
+                        features.addAll(Feature.allOf(query.getProductType()));
+                case TRANSACTION_SUM_COMPARE ->
+                        features.add(new Feature(query.getProductType(), query.getTransactionType()));
+            }
+        }
+        return features;
+    }
+}
@@ -0,0 +1,54 @@
+package bank.recommendationservice.fintech.model;
+
+import bank.recommendationservice.fintech.other.ComparisonType;
+import bank.recommendationservice.fintech.other.ProductType;
+import bank.recommendationservice.fintech.other.QueryType;
+import bank.recommendationservice.fintech.other.TransactionType;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Запрос динамического правила в документе JSON, который хранится в столбце {@code dynamic_rule.queries_json}
+ * вместе с остальными запросами правила.
+ *
+ * @param query           тип запроса
+ * @param arguments       аргументы запроса в порядке сохранения
+ * @param negate          флаг отрицания запроса
+ * @param queryType       разобранный тип запроса
+ * @param productType     разобранный тип продукта
+ * @param transactionType разобранный тип транзакции
+ * @param comparisonType  разобранный тип сравнения
+ * @param constant        разобранная константа сравнения
+ */
+public record RuleQueryDocument(String query, List<String> arguments, boolean negate,
+                                QueryType queryType, ProductType productType, TransactionType transactionType,
+                                ComparisonType comparisonType, Integer constant) {
+
+    public static RuleQueryDocument of(DynamicRuleQuery query) {
+        return new RuleQueryDocument(query.getQuery(),
+                query.getArguments() != null ? List.copyOf(query.getArguments()) : List.of(),
+                query.isNegate(),
+                query.getQueryType(),
+                query.getProductType(),
+                query.getTransactionType(),
+                query.getComparisonType(),
+                query.getConstant());
+    }
+
+    /**
+     * @param rule правило, которому принадлежит запрос
+     * @return запрос правила без идентификатора
+     */
+    public DynamicRuleQuery toQuery(DynamicRule rule) {
+        DynamicRuleQuery dynamicRuleQuery = new DynamicRuleQuery(query, new ArrayList<>(arguments));
+        dynamicRuleQuery.setNegate(negate);
+        dynamicRuleQuery.setQueryType(queryType);
+        dynamicRuleQuery.setProductType(productType);
+        dynamicRuleQuery.setTransactionType(transactionType);
+        dynamicRuleQuery.setComparisonType(comparisonType);
+        dynamicRuleQuery.setConstant(constant);
+        dynamicRuleQuery.setDynamicRule(rule);
+        return dynamicRuleQuery;
+    }
+}
@@ -16,7 +16,7 @@ import java.util.Objects;
 public class RuleStats {
     @Id
     @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "rule_stats_seq_gen")
-    @SequenceGenerator(name = "rule_stats_seq_gen", sequenceName = "rule_stats_seq", allocationSize = 1)
+    @SequenceGenerator(name = "rule_stats_seq_gen", sequenceName = "rule_stats_seq", allocationSize = 50)
     @JsonIgnore
     @Schema(description = "Уникальный идентификатор статистики", example = "1")
     private Long id;
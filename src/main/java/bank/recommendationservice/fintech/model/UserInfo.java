@@ -0,0 +1,20 @@
+package bank.recommendationservice.fintech.model;
+
+import java.util.UUID;
+
+/**
+ * Данные пользователя из таблицы {@code users}, нужные для подбора рекомендаций по имени пользователя.
+ *
+ * @param id        id пользователя
+ * @param firstName имя
+ * @param lastName  фамилия
+ */
+public record UserInfo(UUID id, String firstName, String lastName) {
+
+    /**
+     * @return имя и фамилия пользователя через пробел
+     */
+    public String getFullName() {
+        return firstName + " " + lastName;
+    }
+}
@@ -0,0 +1,134 @@
+package bank.recommendationservice.fintech.model;
+
+import bank.recommendationservice.fintech.dto.RecommendationDTO;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Результаты оценки всех правил для одного пользователя.
+ * <p>
+ * Хранит результат каждого правила отдельно (в том числе несработавшие правила со значением {@code null}),
+ * чтобы при изменении данных пользователя можно было пересчитать только затронутые правила,
+ * не трогая остальные. Экземпляр неизменяем - пересчет создает новый объект.
+ * <p>
+ * Если часть правил не успела выполниться до дедлайна запроса, результат считается частичным:
+ * такие правила перечислены в {@link #getTimedOutRules()}, а частичный результат не кэшируется.
+ * <p>
+ * {@link #getGeneration()} - поколение кэша рекомендаций пользователя, с которого начата оценка. Поколение
+ * меняется при каждом изменении правил и данных пользователя, поэтому результат, оцененный до изменения,
+ * не кэшируется и не читается из кэша, даже если был записан в кэш уже после изменения.
+ */
+public class UserRecommendations {
+    private final Map<Long, RecommendationDTO> dynamicRecommendations;
+    private final Map<String, RecommendationDTO> standardRecommendations;
+    private final List<String> timedOutRules;
+    private final long generation;
+
+    /**
+     * @param dynamicRecommendations  результаты динамических правил по id правила, в порядке оценки
+     * @param standardRecommendations результаты статических рулсетов по имени рулсета, в порядке оценки
+     */
+    public UserRecommendations(Map<Long, RecommendationDTO> dynamicRecommendations,
+                               Map<String, RecommendationDTO> standardRecommendations) {
+        this(dynamicRecommendations, standardRecommendations, List.of(), 0);
+    }
+
+    /**
+     * @param dynamicRecommendations  результаты динамических правил по id правила, в порядке оценки
+     * @param standardRecommendations результаты статических рулсетов по имени рулсета, в порядке оценки
+     * @param timedOutRules           имена правил, не успевших выполниться до дедлайна запроса
+     * @param generation              поколение кэша рекомендаций пользователя, с которого начата оценка
+     */
+    public UserRecommendations(Map<Long, RecommendationDTO> dynamicRecommendations,
+                               Map<String, RecommendationDTO> standardRecommendations,
+                               List<String> timedOutRules,
+                               long generation) {
+        this.dynamicRecommendations = Collections.unmodifiableMap(new LinkedHashMap<>(dynamicRecommendations));
+        this.standardRecommendations = Collections.unmodifiableMap(new LinkedHashMap<>(standardRecommendations));
+        this.timedOutRules = List.copyOf(timedOutRules);
+        this.generation = generation;
+    }
+
+    public Map<Long, RecommendationDTO> getDynamicRecommendations() {
+        return dynamicRecommendations;
+    }
+
+    public Map<String, RecommendationDTO> getStandardRecommendations() {
+        return standardRecommendations;
+    }
+
+    /**
+     * @return имена правил, не успевших выполниться до дедлайна запроса
+     */
+    public List<String> getTimedOutRules() {
+        return timedOutRules;
+    }
+
+    /**
+     * @return поколение кэша рекомендаций пользователя, с которого начата оценка
+     */
+    public long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * @return {@code true}, если часть правил не была оценена из-за дедлайна запроса
+     */
+    public boolean isPartial() {
+        return !timedOutRules.isEmpty();
+    }
+
+    /**
+     * @return id динамических правил, сработавших для пользователя
+     */
+    public List<Long> getMatchedDynamicRuleIds() {
+        List<Long> ids = new ArrayList<>();
+        dynamicRecommendations.forEach((ruleId, recommendation) -> {
+            if (recommendation != null) {
+                ids.add(ruleId);
+            }
+        });
+        return ids;
+    }
+
+    /**
+     * @return список рекомендаций: сначала по динамическим правилам, затем по статическим рулсетам
+     */
+    public List<RecommendationDTO> toList() {
+        List<RecommendationDTO> recommendations = new ArrayList<>();
+        dynamicRecommendations.values().stream().filter(Objects::nonNull).forEach(recommendations::add);
+        standardRecommendations.values().stream().filter(Objects::nonNull).forEach(recommendations::add);
+        return recommendations;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        UserRecommendations that = (UserRecommendations) o;
+        return Objects.equals(dynamicRecommendations, that.dynamicRecommendations)
+                && Objects.equals(standardRecommendations, that.standardRecommendations)
+                && Objects.equals(timedOutRules, that.timedOutRules)
+                && generation == that.generation;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(dynamicRecommendations, standardRecommendations, timedOutRules, generation);
+    }
+
+    @Override
+    public String toString() {
+        return "UserRecommendations{" +
+                "dynamicRecommendations=" + dynamicRecommendations +
+                ", standardRecommendations=" + standardRecommendations +
+                ", timedOutRules=" + timedOutRules +
+                ", generation=" + generation +
+                '}';
+    }
+}
@@ -0,0 +1,22 @@
+package bank.recommendationservice.fintech.other;
+
+/**
+ * Режим выполнения оценки правил рекомендаций.
+ */
+public enum ExecutionMode {
+    /**
+     * Правила оцениваются последовательно в потоке запроса.
+     */
+    SEQUENTIAL,
+
+    /**
+     * Правила оцениваются параллельно в пуле платформенных потоков фиксированного размера.
+     */
+    PLATFORM_THREADS,
+
+    /**
+     * Правила оцениваются параллельно, каждое в отдельном виртуальном потоке (Java 21+).
+     * На более старых версиях Java используется пул платформенных потоков.
+     */
+    VIRTUAL_THREADS
+}
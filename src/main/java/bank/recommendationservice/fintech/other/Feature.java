@@ -0,0 +1,57 @@
+package bank.recommendationservice.fintech.other;
+
+import bank.recommendationservice.fintech.interfaces.Rule;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Признак агрегатов пользователя: пара "тип продукта - тип транзакции".
+ * <p>
+ * Все правила считаются поверх сумм и количеств транзакций пользователя, сгруппированных по этой паре,
+ * поэтому изменение транзакций пользователя по признаку может изменить результат только тех правил,
+ * которые от этого признака зависят.
+ *
+ * @param productType     тип продукта
+ * @param transactionType тип транзакции
+ */
+@Schema(description = "Признак агрегатов пользователя (тип продукта и тип транзакции)")
+public record Feature(
+        @JsonProperty("product_type")
+        @Schema(description = "Тип продукта", example = "DEBIT")
+        ProductType productType,
+        @JsonProperty("transaction_type")
+        @Schema(description = "Тип транзакции", example = "DEPOSIT")
+        TransactionType transactionType) {
+
+    /**
+     * Возвращает все признаки продукта {@code productType} - по всем типам транзакций.
+     * Используется для правил, которые считают транзакции продукта без учета их типа
+     * (например, USER_OF и ACTIVE_USER_OF).
+     *
+     * @param productType тип продукта
+     * @return множество признаков продукта
+     */
+    public static Set<Feature> allOf(ProductType productType) {
+        return EnumSet.allOf(TransactionType.class).stream()
+                .map(transactionType -> new Feature(productType, transactionType))
+                .collect(Collectors.toUnmodifiableSet());
+    }
+
+    /**
+     * Объединяет признаки, от которых зависят переданные правила.
+     *
+     * @param rules правила
+     * @return множество признаков, от которых зависит хотя бы одно правило
+     */
+    public static Set<Feature> union(Rule... rules) {
+        return Arrays.stream(rules)
+                .flatMap(rule -> rule.getFeatures().stream())
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+    }
+}
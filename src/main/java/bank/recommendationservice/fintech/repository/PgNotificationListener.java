@@ -0,0 +1,101 @@
+package bank.recommendationservice.fintech.repository;
+
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.function.Consumer;
+
+/**
+ * Слушатель канала PostgreSQL LISTEN/NOTIFY.
+ * <p>
+ * Канал слушается в отдельном потоке-демоне на отдельном соединении пула, которое держится все время работы
+ * слушателя. При ошибке соединение закрывается, и через {@link #RECONNECT_DELAY_MILLIS} слушатель подключается
+ * заново. Уведомления, отправленные, пока слушателя нет, теряются, поэтому после каждого подключения
+ * вызывается {@code onListen}: в нем можно сверить состояние, которое могло измениться без уведомления.
+ */
+public class PgNotificationListener implements AutoCloseable {
+    private static final int LISTEN_TIMEOUT_MILLIS = 10_000;
+    private static final long RECONNECT_DELAY_MILLIS = 5_000;
+
+    private final DataSource dataSource;
+    private final String channel;
+    private final String threadName;
+    private final Runnable onListen;
+    private final Consumer<String> onNotification;
+
+    private Thread thread;
+
+    private static final Logger logger = LoggerFactory.getLogger(PgNotificationListener.class);
+
+    /**
+     * @param dataSource     источник соединений с PostgreSQL
+     * @param channel        канал уведомлений
+     * @param threadName     имя потока слушателя
+     * @param onListen       вызывается после каждой (повторной) подписки на канал
+     * @param onNotification вызывается с содержимым ({@code payload}) каждого уведомления
+     */
+    public PgNotificationListener(DataSource dataSource, String channel, String threadName,
+                                  Runnable onListen, Consumer<String> onNotification) {
+        this.dataSource = dataSource;
+        this.channel = channel;
+        this.threadName = threadName;
+        this.onListen = onListen;
+        this.onNotification = onNotification;
+    }
+
+    /**
+     * Запускает поток слушателя. Повторный вызов ничего не делает.
+     */
+    public synchronized void start() {
+        if (thread != null) {
+            return;
+        }
+        thread = new Thread(this::listen, threadName);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Останавливает поток слушателя; соединение возвращается в пул по окончании ожидания уведомлений.
+     */
+    @Override
+    public synchronized void close() {
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    private void listen() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try (Connection connection = dataSource.getConnection()) {
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + channel);
+                }
+                logger.info("Подписка на уведомления канала {}", channel);
+                onListen.run();
+                while (!Thread.currentThread().isInterrupted()) {
+                    PGNotification[] notifications = pgConnection.getNotifications(LISTEN_TIMEOUT_MILLIS);
+                    if (notifications != null) {
+                        for (PGNotification notification : notifications) {
+                            onNotification.accept(notification.getParameter());
+                        }
+                    }
+                }
+            } catch (SQLException | RuntimeException e) {
+                logger.warn("Прослушивание канала {} прервано: {}", channel, e.getMessage());
+                try {
+                    Thread.sleep(RECONNECT_DELAY_MILLIS);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+}
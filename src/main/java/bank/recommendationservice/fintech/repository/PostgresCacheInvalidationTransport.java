@@ -0,0 +1,93 @@
+package bank.recommendationservice.fintech.repository;
+
+import bank.recommendationservice.fintech.interfaces.CacheInvalidationTransport;
+import bank.recommendationservice.fintech.model.CacheInvalidationMessage;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Транспорт шины сброса кэшей через PostgreSQL LISTEN/NOTIFY (канал {@value #CHANNEL}).
+ * <p>
+ * Сообщение отправляется в формате JSON вызовом {@code pg_notify} вне транзакции и доставляется всем
+ * подключенным слушателям канала, в том числе отправителю. Канал слушается отдельным соединением пула
+ * с момента первой подписки; о том, что подписка действует, подписчик узнает только после выполнения
+ * {@code LISTEN} и после каждого переподключения.
+ */
+public class PostgresCacheInvalidationTransport implements CacheInvalidationTransport, DisposableBean {
+    /**
+     * Канал LISTEN/NOTIFY шины сброса кэшей.
+     */
+    public static final String CHANNEL = "cache_invalidation";
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PgNotificationListener listener;
+    private final List<Consumer<CacheInvalidationMessage>> listeners = new CopyOnWriteArrayList<>();
+    private final List<Runnable> subscriptions = new CopyOnWriteArrayList<>();
+
+    private volatile boolean listening;
+
+    private static final Logger logger = LoggerFactory.getLogger(PostgresCacheInvalidationTransport.class);
+
+    /**
+     * @param jdbcTemplate шаблон для отправки уведомлений
+     * @param dataSource   источник соединения слушателя канала
+     */
+    public PostgresCacheInvalidationTransport(JdbcTemplate jdbcTemplate, DataSource dataSource) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.listener = new PgNotificationListener(dataSource, CHANNEL, "cache-invalidation-listener",
+                this::onListen, this::deliver);
+    }
+
+    @Override
+    public void publish(CacheInvalidationMessage message) {
+        String payload;
+        try {
+            payload = OBJECT_MAPPER.writeValueAsString(message);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Не удалось сериализовать сообщение шины сброса кэшей", e);
+        }
+        jdbcTemplate.query("SELECT pg_notify(?, ?)", rs -> null, CHANNEL, payload);
+    }
+
+    @Override
+    public void subscribe(Consumer<CacheInvalidationMessage> listener, Runnable onSubscribed) {
+        listeners.add(listener);
+        subscriptions.add(onSubscribed);
+        if (listening) {
+            onSubscribed.run();
+        }
+        this.listener.start();
+    }
+
+    @Override
+    public void destroy() {
+        listener.close();
+    }
+
+    private void onListen() {
+        listening = true;
+        subscriptions.forEach(Runnable::run);
+    }
+
+    private void deliver(String payload) {
+        CacheInvalidationMessage message;
+        try {
+            message = OBJECT_MAPPER.readValue(payload, CacheInvalidationMessage.class);
+        } catch (JsonProcessingException e) {
+            logger.warn("Пропущено некорректное сообщение канала {}: {}", CHANNEL, e.getMessage());
+            return;
+        }
+        listeners.forEach(listener -> listener.accept(message));
+    }
+}
@@ -3,38 +3,77 @@ package bank.recommendationservice.fintech.repository;
 import bank.recommendationservice.fintech.exception.NullArgumentException;
 import bank.recommendationservice.fintech.exception.UnknownComparisonTypeException;
 import bank.recommendationservice.fintech.exception.UserNotFoundException;
+import bank.recommendationservice.fintech.jfr.AggregateLoadedEvent;
+import bank.recommendationservice.fintech.model.RequestTrace;
+import bank.recommendationservice.fintech.model.UserInfo;
 import bank.recommendationservice.fintech.other.ComparisonType;
 import bank.recommendationservice.fintech.other.ProductType;
 import bank.recommendationservice.fintech.other.TransactionType;
 import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Qualifier;
-import org.springframework.dao.EmptyResultDataAccessException;
-import org.springframework.dao.IncorrectResultSizeDataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
+/**
+ * Запросы к базе данных транзакций (H2) с кэшированием агрегатов пользователя.
+ * <p>
+ * Каждый метод замеряется таймером {@code recommendation.repository.query} с тегами {@code query} (вид запроса)
+ * и {@code product_type}. Время включает обращение к кэшу, поэтому долю запросов к базе данных
+ * показывают метрики кэшей ({@code cache.gets}).
+ * <p>
+ * Если запрос трассируется ({@link RequestTrace}), попадания и промахи кэшей записываются в трассировку.
+ * Получение агрегатов пользователя записывается событием JFR {@link AggregateLoadedEvent}.
+ */
 @Repository
-public class RecommendationsRepository {
+public class RecommendationsRepository implements MeterBinder {
     private static final Logger logger = LoggerFactory.getLogger(RecommendationsRepository.class);
+    private static final ProductType[] PRODUCT_TYPES = ProductType.values();
+    private static final int NO_PRODUCT_TYPE = PRODUCT_TYPES.length;
     private final JdbcTemplate jdbcTemplate;
     private final Cache<String, Boolean> productTypeCache;
     private final Cache<String, Integer> transactionSumCache;
     private final Cache<String, Integer> transactionCountCache;
+    private final Cache<String, Optional<UserInfo>> userCache;
+    /**
+     * Имена пользователей, найденных через {@link #userCache}, по id - чтобы сбросить запись пользователя
+     * в кэше по имени, зная только его id. Размер и срок хранения - как у записей найденных пользователей.
+     */
+    private final Cache<UUID, String> userNames = Caffeine.newBuilder()
+            .maximumSize(100_000)
+            .expireAfterWrite(1, TimeUnit.DAYS)
+            .build();
+
+    /**
+     * Таймеры по виду запроса и индексу типа продукта ({@link #NO_PRODUCT_TYPE} - без типа продукта);
+     * {@code null}, пока репозиторий не привязан к реестру метрик.
+     */
+    private volatile Timer[][] queryTimers;
 
     public RecommendationsRepository(
             @Qualifier("recommendationsJdbcTemplate") JdbcTemplate jdbcTemplate,
             Cache<String, Boolean> productTypeCache,
             Cache<String, Integer> transactionSumCache,
-            Cache<String, Integer> transactionCountCache
+            Cache<String, Integer> transactionCountCache,
+            Cache<String, Optional<UserInfo>> userCache
     ) {
         this.jdbcTemplate = jdbcTemplate;
         this.productTypeCache = productTypeCache;
         this.transactionSumCache = transactionSumCache;
         this.transactionCountCache = transactionCountCache;
+        this.userCache = userCache;
     }
 
     /**
@@ -54,7 +93,7 @@ public class RecommendationsRepository {
         }
 
         String cacheKey = "product_" + userId + "_" + productType;
-        return productTypeCache.get(cacheKey, key -> {
+        return query(QueryKind.USES_PRODUCT, userId, productTypeIndex(productType), productTypeCache, cacheKey, key -> {
             Integer count = jdbcTemplate.queryForObject(
                     "SELECT COUNT(t.amount) FROM transactions t JOIN products p ON t.PRODUCT_ID = p.ID WHERE t.USER_ID = ? AND p.TYPE = ?",
                     Integer.class,
@@ -82,7 +121,7 @@ public class RecommendationsRepository {
         }
 
         String cacheKey = "deposit_" + userId + "_" + productType;
-        return transactionSumCache.get(cacheKey, key -> {
+        return query(QueryKind.DEPOSITS_TOTAL, userId, productTypeIndex(productType), transactionSumCache, cacheKey, key -> {
             Integer total = jdbcTemplate.queryForObject("SELECT SUM(t.amount) " +
                             "FROM transactions t JOIN products p ON t.product_id = p.id " +
                             "WHERE t.user_id = ? AND p.type = ? AND t.type = 'DEPOSIT';",
@@ -109,12 +148,13 @@ public class RecommendationsRepository {
         if (productType == null) {
             throw new NullArgumentException("productType не должен быть пустым");
         }
-        Integer total = jdbcTemplate.queryForObject("SELECT SUM(t.amount) " +
-                        "FROM transactions t JOIN products p ON t.PRODUCT_ID = p.id " +
-                        "WHERE t.USER_ID = ? AND p.TYPE = ? AND t.TYPE = 'WITHDRAW'",
-                Integer.class,
-                userId,
-                productType);
+        Integer total = query(QueryKind.WITHDRAWS_TOTAL, userId, productTypeIndex(productType), () ->
+                jdbcTemplate.queryForObject("SELECT SUM(t.amount) " +
+                                "FROM transactions t JOIN products p ON t.PRODUCT_ID = p.id " +
+                                "WHERE t.USER_ID = ? AND p.TYPE = ? AND t.TYPE = 'WITHDRAW'",
+                        Integer.class,
+                        userId,
+                        productType));
 
         return total != null ? total : 0;
     }
@@ -140,7 +180,7 @@ public class RecommendationsRepository {
         Object[] params = new Object[]{productType.name(), userId};
 
         String cacheKey = "count_" + userId + "_" + productType.name();
-        Integer count = transactionCountCache.get(cacheKey, key ->
+        Integer count = query(QueryKind.ACTIVE_USER, userId, productType.ordinal(), transactionCountCache, cacheKey, key ->
                 jdbcTemplate.queryForObject(query, Integer.class, params)
         );
 
@@ -160,9 +200,7 @@ public class RecommendationsRepository {
      * @throws IllegalArgumentException если передан недопустимый тип сравнения
      */
     public boolean compareTransactionSum(ProductType productType, TransactionType transactionType, UUID userId, ComparisonType comparisonType, int constant) {
-        String query = "SELECT SUM(amount) FROM transactions t JOIN products p on t.PRODUCT_ID = p.ID WHERE p.TYPE = ? AND transaction_type = ? AND t.user_id = ?";
-        Object[] params = new Object[]{productType.name(), transactionType.name(), userId};
-        Integer sum = jdbcTemplate.queryForObject(query, Integer.class, params);
+        Integer sum = getTransactionSum(productType, transactionType, userId);
         if (sum == null) {
             return false;
         }
@@ -176,6 +214,21 @@ public class RecommendationsRepository {
         };
     }
 
+    /**
+     * Возвращает сумму транзакций типа {@code transactionType} по продукту типа {@code productType} у пользователя.
+     *
+     * @param productType     - тип продукта, по которому фильтруются транзакции
+     * @param transactionType - тип транзакции
+     * @param userId          - ID пользователя
+     * @return сумма транзакций или {@code null}, если транзакций нет
+     */
+    public Integer getTransactionSum(ProductType productType, TransactionType transactionType, UUID userId) {
+        String query = "SELECT SUM(amount) FROM transactions t JOIN products p on t.PRODUCT_ID = p.ID WHERE p.TYPE = ? AND transaction_type = ? AND t.user_id = ?";
+        Object[] params = new Object[]{productType.name(), transactionType.name(), userId};
+        return query(QueryKind.TRANSACTION_SUM_COMPARE, userId, productType.ordinal(), () ->
+                jdbcTemplate.queryForObject(query, Integer.class, params));
+    }
+
     /**
      * Сравнивает сумму всех транзакций типа DEPOSIT с суммой всех транзакций типа WITHDRAW по продукту X.
      *
@@ -185,11 +238,9 @@ public class RecommendationsRepository {
      */
 
     public boolean compareDepositWithdrawSum(ProductType productType, UUID userId, ComparisonType comparisonType) {
-        String depositQuery = "SELECT SUM(amount) FROM transactions t JOIN products p on t.PRODUCT_ID = p.ID WHERE p.TYPE = ? AND t.TYPE = 'DEPOSIT' AND t.user_id = ?";
-        String withdrawQuery = "SELECT SUM(amount) FROM transactions t JOIN products p on t.PRODUCT_ID = p.ID WHERE p.TYPE = ? AND t.TYPE = 'WITHDRAW' AND t.user_id = ?";
-        Object[] params = new Object[]{productType.name(), userId};
-        Integer depositSum = jdbcTemplate.queryForObject(depositQuery, Integer.class, params);
-        Integer withdrawSum = jdbcTemplate.queryForObject(withdrawQuery, Integer.class, params);
+        Integer[] sums = getDepositWithdrawSums(productType, userId);
+        Integer depositSum = sums[0];
+        Integer withdrawSum = sums[1];
         if (depositSum == null || withdrawSum == null) {
             return false;
         }
@@ -204,23 +255,105 @@ public class RecommendationsRepository {
     }
 
 
+    /**
+     * Возвращает суммы транзакций типа DEPOSIT и WITHDRAW по продукту типа {@code productType} у пользователя.
+     *
+     * @param productType тип продукта
+     * @param userId      ID пользователя
+     * @return массив из двух элементов: сумма DEPOSIT и сумма WITHDRAW; элемент равен {@code null}, если транзакций нет.
+     * Массив может храниться в кэше агрегатов, изменять его нельзя
+     */
+    public Integer[] getDepositWithdrawSums(ProductType productType, UUID userId) {
+        String depositQuery = "SELECT SUM(amount) FROM transactions t JOIN products p on t.PRODUCT_ID = p.ID WHERE p.TYPE = ? AND t.TYPE = 'DEPOSIT' AND t.user_id = ?";
+        String withdrawQuery = "SELECT SUM(amount) FROM transactions t JOIN products p on t.PRODUCT_ID = p.ID WHERE p.TYPE = ? AND t.TYPE = 'WITHDRAW' AND t.user_id = ?";
+        Object[] params = new Object[]{productType.name(), userId};
+        return query(QueryKind.DEPOSIT_WITHDRAW_COMPARE, userId, productType.ordinal(), () -> new Integer[]{
+                jdbcTemplate.queryForObject(depositQuery, Integer.class, params),
+                jdbcTemplate.queryForObject(withdrawQuery, Integer.class, params)});
+    }
+
+
+    /**
+     * Удаляет из кэшей все агрегаты пользователя {@code userId} по продукту типа {@code productType}.
+     * Вызывается при изменении транзакций пользователя по этому продукту.
+     *
+     * @param userId      id пользователя
+     * @param productType тип продукта
+     */
+    public void invalidateUserAggregates(UUID userId, ProductType productType) {
+        if (userId == null) {
+            throw new NullArgumentException("userId не должен быть пустым");
+        }
+        if (productType == null) {
+            throw new NullArgumentException("productType не должен быть пустым");
+        }
+        productTypeCache.invalidate("product_" + userId + "_" + productType.name());
+        transactionSumCache.invalidate("deposit_" + userId + "_" + productType.name());
+        transactionCountCache.invalidate("count_" + userId + "_" + productType.name());
+        logger.debug("Сброшены агрегаты пользователя {} по продукту {}", userId, productType);
+    }
+
+
+    /**
+     * Возвращает данные пользователя по имени пользователя.
+     * <p>
+     * Id, имя и фамилия читаются одним запросом. Результат кэшируется, в том числе отсутствие пользователя,
+     * поэтому повторные запросы по тому же имени не обращаются к базе данных.
+     *
+     * @param userName имя пользователя
+     * @return данные пользователя; пустой {@link Optional}, если пользователь не найден
+     * или найдено несколько пользователей с таким именем
+     */
+    public Optional<UserInfo> findUserByUserName(String userName) {
+        if (userName == null) {
+            return Optional.empty();
+        }
+        return query(QueryKind.FIND_USER, null, NO_PRODUCT_TYPE, userCache, userName, key -> {
+            List<UserInfo> users = jdbcTemplate.query(
+                    "SELECT id, first_name, last_name FROM users WHERE username = ?",
+                    (rs, rowNum) -> new UserInfo(rs.getObject("id", UUID.class),
+                            rs.getString("first_name"),
+                            rs.getString("last_name")),
+                    key);
+            if (users.size() > 1) {
+                logger.error("Найдено несколько пользователей с юзернеймом {}", key);
+                return Optional.empty();
+            }
+            if (users.isEmpty()) {
+                logger.error("Пользователь {} не найден", key);
+                return Optional.empty();
+            }
+            userNames.put(users.get(0).id(), key);
+            return Optional.of(users.get(0));
+        });
+    }
+
+
+    /**
+     * Удаляет пользователя {@code userId} из кэша пользователей по имени, если он был найден по имени
+     * и еще хранится в кэше.
+     *
+     * @param userId id пользователя
+     */
+    public void invalidateUserInfo(UUID userId) {
+        String userName = userNames.asMap().remove(userId);
+        if (userName != null) {
+            userCache.invalidate(userName);
+        }
+    }
+
+
     /**
      * Возвращает ID пользователя по имени пользователя.
      *
      * @param userName имя пользователя
      * @return ID пользователя
-     * @throws NullPointerException если {@code userName} - {@code null}
+     * @throws UserNotFoundException если пользователь не найден
      */
     public UUID getUserIdByUserName(String userName) {
-        String sql = "SELECT id FROM users WHERE username = ?";
-
-        UUID result = jdbcTemplate.queryForObject(sql, new Object[]{userName}, UUID.class);
-        if (result == null) {
-            logger.error("Пользователь {} не найден", userName);
-            throw new UserNotFoundException("Пользователь не найден");
-        } else {
-            return result;
-        }
+        return findUserByUserName(userName)
+                .map(UserInfo::id)
+                .orElseThrow(() -> new UserNotFoundException("Пользователь не найден"));
     }
 
 
@@ -228,22 +361,111 @@ public class RecommendationsRepository {
      * Возвращает полное имя пользователя по его имени пользователя.
      *
      * @param username имя пользователя
-     * @return полное имя пользователя
+     * @return полное имя пользователя или {@code null}, если пользователь не найден
      */
     public String getFullNameByUsername(String username) {
-        String sql = "SELECT first_name, last_name FROM users WHERE username = ?";
+        return findUserByUserName(username)
+                .map(UserInfo::getFullName)
+                .orElse(null);
+    }
+
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        QueryKind[] kinds = QueryKind.values();
+        Timer[][] timers = new Timer[kinds.length][PRODUCT_TYPES.length + 1];
+        for (QueryKind kind : kinds) {
+            for (int i = 0; i <= PRODUCT_TYPES.length; i++) {
+                timers[kind.ordinal()][i] = Timer.builder("recommendation.repository.query")
+                        .description("Время запроса к базе данных транзакций, включая обращение к кэшу")
+                        .tag("query", kind.tag)
+                        .tag("product_type", i == NO_PRODUCT_TYPE ? "none" : PRODUCT_TYPES[i].name())
+                        .register(registry);
+            }
+        }
+        queryTimers = timers;
+    }
+
+
+    private <T> T query(QueryKind kind, UUID userId, int productTypeIndex, Supplier<T> loader) {
+        return query(kind, userId, productTypeIndex, null, null, key -> loader.get());
+    }
+
+
+    /**
+     * Выполняет запрос с замером таймером, событием JFR {@link AggregateLoadedEvent} и, если задан кэш,
+     * записью попадания или промаха в трассировку запроса.
+     *
+     * @param userId id пользователя; {@code null} для запросов, не относящихся к агрегатам пользователя,
+     *               - по ним событие JFR не записывается
+     * @param cache  кэш значения или {@code null}, если значение не кэшируется
+     */
+    private <V> V query(QueryKind kind, UUID userId, int productTypeIndex,
+                        Cache<String, V> cache, String cacheKey, Function<String, V> loader) {
+        AggregateLoadedEvent event = new AggregateLoadedEvent();
+        event.begin();
+        boolean[] loaded = new boolean[]{cache == null};
+        Timer[][] timers = queryTimers;
+        long start = System.nanoTime();
+        V value;
         try {
-            return jdbcTemplate.queryForObject(sql, new Object[]{username}, (rs, rowNum) -> {
-                String firstName = rs.getString("first_name");
-                String lastName = rs.getString("last_name");
-                return firstName + " " + lastName;
+            value = cache == null ? loader.apply(cacheKey) : cache.get(cacheKey, key -> {
+                loaded[0] = true;
+                return loader.apply(key);
             });
-        } catch (EmptyResultDataAccessException e) {
-            logger.error("Пользователь {} не найден", username);
-            return null;
-        } catch (IncorrectResultSizeDataAccessException e) {
-            logger.error("Найдено несколько пользователей с юзернеймом {}", username);
-            return null;
+        } finally {
+            if (timers != null) {
+                timers[kind.ordinal()][productTypeIndex].record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        }
+        event.end();
+
+        RequestTrace trace = RequestTrace.current();
+        if (trace != null && cache != null) {
+            trace.recordCacheAccess(kind.cacheName, !loaded[0]);
+        }
+        if (userId != null && event.shouldCommit()) {
+            event.query = kind.tag;
+            event.userId = userId.toString();
+            event.productType = productTypeIndex == NO_PRODUCT_TYPE ? "none" : PRODUCT_TYPES[productTypeIndex].name();
+            event.cacheHit = !loaded[0];
+            event.commit();
+        }
+        return value;
+    }
+
+
+    /**
+     * @return индекс типа продукта для тегов метрик; {@link #NO_PRODUCT_TYPE}, если тип неизвестен
+     */
+    private static int productTypeIndex(String productType) {
+        for (ProductType type : PRODUCT_TYPES) {
+            if (type.getType().equals(productType)) {
+                return type.ordinal();
+            }
+        }
+        return NO_PRODUCT_TYPE;
+    }
+
+
+    /**
+     * Вид запроса - значение тега {@code query} и имя кэша, через который он выполняется.
+     */
+    private enum QueryKind {
+        USES_PRODUCT("uses_product", "productTypeCache"),
+        DEPOSITS_TOTAL("deposits_total", "transactionSumCache"),
+        WITHDRAWS_TOTAL("withdraws_total", null),
+        ACTIVE_USER("active_user", "transactionCountCache"),
+        TRANSACTION_SUM_COMPARE("transaction_sum_compare", null),
+        DEPOSIT_WITHDRAW_COMPARE("deposit_withdraw_compare", null),
+        FIND_USER("find_user", "userCache");
+
+        private final String tag;
+        private final String cacheName;
+
+        QueryKind(String tag, String cacheName) {
+            this.tag = tag;
+            this.cacheName = cacheName;
         }
     }
 }
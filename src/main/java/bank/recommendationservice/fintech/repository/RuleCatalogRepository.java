@@ -0,0 +1,132 @@
+package bank.recommendationservice.fintech.repository;
+
+import bank.recommendationservice.fintech.dto.RuleStatsDTO;
+import bank.recommendationservice.fintech.model.DynamicRule;
+import bank.recommendationservice.fintech.model.DynamicRuleQuery;
+import bank.recommendationservice.fintech.model.RuleQueryDocument;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.function.LongFunction;
+import java.util.stream.Stream;
+
+/**
+ * Чтение каталога динамических правил и статистики их срабатываний SQL-проекциями.
+ * <p>
+ * В отличие от {@link DynamicRuleRepository}, правила не загружаются как сущности JPA с ленивыми коллекциями
+ * запросов и аргументов: запросы правила читаются из документа JSON в столбце {@code queries_json}, поэтому
+ * страница правил и страница статистики читаются одним запросом, независимо от количества правил на странице.
+ * Возвращаемые правила не связаны с контекстом персистентности, запросы в них не имеют идентификаторов.
+ */
+@Repository
+public class RuleCatalogRepository {
+    private static final String RULE_COLUMNS =
+            "SELECT id, product_name, product_id, product_text, queries_json FROM dynamic_rule ";
+    private static final String STATS_COLUMNS = "SELECT s.dynamic_rule_id, s.count FROM rule_stats s ";
+    private static final ObjectReader QUERIES_READER = new ObjectMapper().readerForListOf(RuleQueryDocument.class);
+    private static final RowMapper<DynamicRule> RULE_MAPPER = (rs, rowNum) -> {
+        DynamicRule rule = new DynamicRule(rs.getLong("id"),
+                rs.getString("product_name"),
+                rs.getObject("product_id", UUID.class),
+                rs.getString("product_text"),
+                new ArrayList<>());
+        rule.getQueries().addAll(readQueries(rs.getString("queries_json"), rule));
+        return rule;
+    };
+    private static final RowMapper<RuleStatsDTO> STATS_MAPPER =
+            (rs, rowNum) -> new RuleStatsDTO(rs.getLong("dynamic_rule_id"), rs.getInt("count"));
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public RuleCatalogRepository(@Qualifier("rulesJdbcTemplate") NamedParameterJdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * @param page номер страницы, начиная с 0
+     * @param size размер страницы
+     * @return правила страницы в порядке id вместе с запросами и аргументами
+     */
+    public List<DynamicRule> findRulesPage(int page, int size) {
+        return jdbcTemplate.query(RULE_COLUMNS + "ORDER BY id LIMIT :limit OFFSET :offset",
+                pageParameters(page, size), RULE_MAPPER);
+    }
+
+    /**
+     * Возвращает все правила в порядке id. Правила читаются порциями по {@code chunkSize}
+     * по мере чтения потока (по ключу - id последнего прочитанного правила), поэтому в памяти
+     * одновременно находится не больше одной порции. Первая порция читается сразу.
+     *
+     * @param chunkSize размер порции
+     * @return поток правил вместе с запросами и аргументами
+     */
+    public Stream<DynamicRule> streamRules(int chunkSize) {
+        return chunked(afterId -> jdbcTemplate.query(RULE_COLUMNS + "WHERE id > :afterId ORDER BY id LIMIT :limit",
+                        new MapSqlParameterSource("afterId", afterId).addValue("limit", chunkSize), RULE_MAPPER),
+                DynamicRule::getId, chunkSize);
+    }
+
+    /**
+     * @param page номер страницы, начиная с 0
+     * @param size размер страницы
+     * @return счетчики срабатываний страницы в порядке id правила
+     */
+    public List<RuleStatsDTO> findRuleStatsPage(int page, int size) {
+        return jdbcTemplate.query(STATS_COLUMNS + "ORDER BY s.dynamic_rule_id LIMIT :limit OFFSET :offset",
+                pageParameters(page, size), STATS_MAPPER);
+    }
+
+    /**
+     * Возвращает счетчики срабатываний всех правил в порядке id правила порциями по {@code chunkSize},
+     * так же как {@link #streamRules(int)}.
+     *
+     * @param chunkSize размер порции
+     * @return поток счетчиков срабатываний
+     */
+    public Stream<RuleStatsDTO> streamRuleStats(int chunkSize) {
+        return chunked(afterId -> jdbcTemplate.query(
+                        STATS_COLUMNS + "WHERE s.dynamic_rule_id > :afterId ORDER BY s.dynamic_rule_id LIMIT :limit",
+                        new MapSqlParameterSource("afterId", afterId).addValue("limit", chunkSize), STATS_MAPPER),
+                RuleStatsDTO::getRuleId, chunkSize);
+    }
+
+
+    private static List<DynamicRuleQuery> readQueries(String queriesJson, DynamicRule rule) throws SQLException {
+        try {
+            List<RuleQueryDocument> documents = QUERIES_READER.readValue(queriesJson);
+            return documents.stream().map(document -> document.toQuery(rule)).toList();
+        } catch (JsonProcessingException e) {
+            throw new SQLException("Не удалось прочитать запросы правила " + rule.getId(), e);
+        }
+    }
+
+
+    private static MapSqlParameterSource pageParameters(int page, int size) {
+        return new MapSqlParameterSource("limit", size).addValue("offset", (long) page * size);
+    }
+
+
+    /**
+     * Поток элементов, читаемых порциями по ключу: следующая порция начинается после id последнего элемента
+     * предыдущей. Неполная порция - последняя.
+     */
+    private static <T> Stream<T> chunked(LongFunction<List<T>> loader, Function<T, Long> idOf, int chunkSize) {
+        return Stream.iterate(loader.apply(0L),
+                        chunk -> !chunk.isEmpty(),
+                        chunk -> chunk.size() < chunkSize
+                                ? List.of()
+                                : loader.apply(idOf.apply(chunk.get(chunk.size() - 1))))
+                .flatMap(List::stream);
+    }
+}
@@ -0,0 +1,73 @@
+package bank.recommendationservice.fintech.repository;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Версия набора динамических правил (таблица {@code rule_set_version}, одна строка).
+ * <p>
+ * Версия увеличивается в той же транзакции, что и изменение правил, поэтому другие узлы видят новую версию
+ * только вместе с изменениями. На PostgreSQL изменение дополнительно публикуется в канал
+ * {@value #CHANNEL}; уведомление доставляется слушателям при фиксации транзакции.
+ */
+@Repository
+public class RuleSetVersionRepository {
+    /**
+     * Канал LISTEN/NOTIFY, в который публикуется новая версия набора правил.
+     */
+    public static final String CHANNEL = "rule_set_changed";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private volatile Boolean postgres;
+
+    public RuleSetVersionRepository(@Qualifier("rulesJdbcTemplate") NamedParameterJdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate.getJdbcTemplate();
+    }
+
+    /**
+     * @return текущая версия набора правил
+     */
+    public long getVersion() {
+        return jdbcTemplate.queryForObject("SELECT version FROM rule_set_version WHERE id = 1", Long.class);
+    }
+
+    /**
+     * Увеличивает версию набора правил. Строка версии блокируется до конца транзакции,
+     * поэтому одновременные изменения правил получают разные версии.
+     *
+     * @return новая версия набора правил
+     */
+    public long increment() {
+        jdbcTemplate.update("UPDATE rule_set_version SET version = version + 1 WHERE id = 1");
+        return getVersion();
+    }
+
+    /**
+     * Публикует новую версию в канал {@value #CHANNEL}. На других базах данных ничего не делает:
+     * узлы узнают об изменении опросом версии.
+     *
+     * @param version новая версия набора правил
+     */
+    public void notifyChange(long version) {
+        if (isPostgres()) {
+            jdbcTemplate.query("SELECT pg_notify(?, ?)", rs -> null, CHANNEL, String.valueOf(version));
+        }
+    }
+
+    /**
+     * @return {@code true}, если правила хранятся в PostgreSQL
+     */
+    public boolean isPostgres() {
+        Boolean current = postgres;
+        if (current == null) {
+            current = "PostgreSQL".equals(jdbcTemplate.execute(
+                    (ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName()));
+            postgres = current;
+        }
+        return current;
+    }
+}
@@ -2,11 +2,27 @@ package bank.recommendationservice.fintech.repository;
 
 import bank.recommendationservice.fintech.model.RuleStats;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 @Repository
 public interface RuleStatsRepository extends JpaRepository<RuleStats, Long> {
     RuleStats findByDynamicRuleId(Long ruleId);
 
+    /**
+     * Увеличивает счетчик срабатываний правила одним запросом UPDATE, без чтения статистики,
+     * поэтому одновременные увеличения на разных экземплярах сервиса не теряются.
+     *
+     * @param ruleId id динамического правила
+     * @return количество обновленных строк; 0, если статистики правила нет
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE RuleStats s SET s.count = s.count + 1 WHERE s.dynamicRule.id = :ruleId")
+    int incrementCount(@Param("ruleId") Long ruleId);
+
     void deleteByDynamicRuleId(Long ruleId);
 }
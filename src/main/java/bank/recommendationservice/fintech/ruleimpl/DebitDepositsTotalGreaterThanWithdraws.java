@@ -3,12 +3,14 @@ package bank.recommendationservice.fintech.ruleimpl;
 import bank.recommendationservice.fintech.exception.NullArgumentException;
 import bank.recommendationservice.fintech.exception.RepositoryNotInitializedException;
 import bank.recommendationservice.fintech.interfaces.Rule;
+import bank.recommendationservice.fintech.other.Feature;
 import bank.recommendationservice.fintech.other.ProductType;
 import bank.recommendationservice.fintech.repository.RecommendationsRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
+import java.util.Set;
 import java.util.UUID;
 
 /**
@@ -48,4 +50,12 @@ public class DebitDepositsTotalGreaterThanWithdraws implements Rule {
 
         return debitDepositsTotal > debitWithdrawsTotal;
     }
+
+    /**
+     * Результат зависит от пополнений и трат по продуктам DEBIT.
+     */
+    @Override
+    public Set<Feature> getFeatures() {
+        return Feature.allOf(ProductType.DEBIT);
+    }
 }
\ No newline at end of file
@@ -2,12 +2,15 @@ package bank.recommendationservice.fintech.ruleimpl;
 
 import bank.recommendationservice.fintech.exception.RepositoryNotInitializedException;
 import bank.recommendationservice.fintech.interfaces.Rule;
+import bank.recommendationservice.fintech.other.Feature;
 import bank.recommendationservice.fintech.other.ProductType;
+import bank.recommendationservice.fintech.other.TransactionType;
 import bank.recommendationservice.fintech.repository.RecommendationsRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
+import java.util.Set;
 import java.util.UUID;
 
 @Component
@@ -47,4 +50,13 @@ public class DebitOrSavingDepositsTotalGreaterThanOrEqualsTo50_000 implements Ru
 
         return debitDepositsTotal >= threshold || savingDepositsTotal >= threshold;
     }
+
+    /**
+     * Результат зависит от пополнений продуктов DEBIT и SAVING.
+     */
+    @Override
+    public Set<Feature> getFeatures() {
+        return Set.of(new Feature(ProductType.DEBIT, TransactionType.DEPOSIT),
+                new Feature(ProductType.SAVING, TransactionType.DEPOSIT));
+    }
 }
\ No newline at end of file
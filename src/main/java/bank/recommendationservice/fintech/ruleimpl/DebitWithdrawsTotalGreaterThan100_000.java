@@ -3,12 +3,15 @@ package bank.recommendationservice.fintech.ruleimpl;
 import bank.recommendationservice.fintech.exception.NullArgumentException;
 import bank.recommendationservice.fintech.exception.RepositoryNotInitializedException;
 import bank.recommendationservice.fintech.interfaces.Rule;
+import bank.recommendationservice.fintech.other.Feature;
 import bank.recommendationservice.fintech.other.ProductType;
+import bank.recommendationservice.fintech.other.TransactionType;
 import bank.recommendationservice.fintech.repository.RecommendationsRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
+import java.util.Set;
 import java.util.UUID;
 
 /**
@@ -48,4 +51,12 @@ public class DebitWithdrawsTotalGreaterThan100_000 implements Rule {
 
         return debitWithdrawsTotal > threshold;
     }
+
+    /**
+     * Результат зависит только от трат по продуктам DEBIT.
+     */
+    @Override
+    public Set<Feature> getFeatures() {
+        return Set.of(new Feature(ProductType.DEBIT, TransactionType.WITHDRAW));
+    }
 }
\ No newline at end of file
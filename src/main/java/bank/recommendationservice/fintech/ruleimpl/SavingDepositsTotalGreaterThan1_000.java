@@ -3,12 +3,15 @@ package bank.recommendationservice.fintech.ruleimpl;
 import bank.recommendationservice.fintech.exception.NullArgumentException;
 import bank.recommendationservice.fintech.exception.RepositoryNotInitializedException;
 import bank.recommendationservice.fintech.interfaces.Rule;
+import bank.recommendationservice.fintech.other.Feature;
 import bank.recommendationservice.fintech.other.ProductType;
+import bank.recommendationservice.fintech.other.TransactionType;
 import bank.recommendationservice.fintech.repository.RecommendationsRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
+import java.util.Set;
 import java.util.UUID;
 
 /**
@@ -50,4 +53,12 @@ public class SavingDepositsTotalGreaterThan1_000 implements Rule {
 
         return total > threshold;
     }
+
+    /**
+     * Результат зависит только от пополнений продуктов SAVING.
+     */
+    @Override
+    public Set<Feature> getFeatures() {
+        return Set.of(new Feature(ProductType.SAVING, TransactionType.DEPOSIT));
+    }
 }
\ No newline at end of file
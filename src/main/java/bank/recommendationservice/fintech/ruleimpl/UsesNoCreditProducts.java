@@ -3,12 +3,14 @@ package bank.recommendationservice.fintech.ruleimpl;
 import bank.recommendationservice.fintech.exception.NullArgumentException;
 import bank.recommendationservice.fintech.exception.RepositoryNotInitializedException;
 import bank.recommendationservice.fintech.interfaces.Rule;
+import bank.recommendationservice.fintech.other.Feature;
 import bank.recommendationservice.fintech.other.ProductType;
 import bank.recommendationservice.fintech.repository.RecommendationsRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
+import java.util.Set;
 import java.util.UUID;
 
 /**
@@ -46,4 +48,12 @@ public class UsesNoCreditProducts implements Rule {
         }
         return !recommendationsRepository.usesProductOfType(userId, ProductType.CREDIT.name());
     }
+
+    /**
+     * Результат зависит от всех транзакций по продуктам CREDIT.
+     */
+    @Override
+    public Set<Feature> getFeatures() {
+        return Feature.allOf(ProductType.CREDIT);
+    }
 }
\ No newline at end of file
@@ -3,6 +3,7 @@ package bank.recommendationservice.fintech.rulesetimpl;
 import bank.recommendationservice.fintech.dto.RecommendationDTO;
 import bank.recommendationservice.fintech.exception.NullArgumentException;
 import bank.recommendationservice.fintech.interfaces.RecommendationRuleSet;
+import bank.recommendationservice.fintech.other.Feature;
 import bank.recommendationservice.fintech.other.text.RuleSetText;
 import bank.recommendationservice.fintech.ruleimpl.SavingDepositsTotalGreaterThan1_000;
 import bank.recommendationservice.fintech.ruleimpl.UsesAtLeastOneDebitProduct;
@@ -11,12 +12,17 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
+import java.util.Set;
 import java.util.UUID;
 
 @Service
 public class Invest500 implements RecommendationRuleSet {
     private static final Logger logger = LoggerFactory.getLogger(Invest500.class);
 
+    private static final RecommendationDTO RECOMMENDATION = new RecommendationDTO(
+            UUID.fromString("147f6a0f-3b91-413b-ab99-87f081d60d5a"),
+            "Invest 500", RuleSetText.INVEST_500_TEXT);
+
     private final UsesAtLeastOneDebitProduct usesAtLeastOneDebitProduct;
     private final UsesNoInvestProducts usesNoInvestProducts;
     private final SavingDepositsTotalGreaterThan1_000 savingDepositsTotalGreaterThan1_000;
@@ -65,11 +71,23 @@ public class Invest500 implements RecommendationRuleSet {
 
         if (hasDebitProduct && hasNoInvestProducts && hasSufficientSavings) {
             logger.info("Пользователь с ID {}: подходит под рекомендацию. Все условия выполнены", userId);
-            return new RecommendationDTO(UUID.fromString("147f6a0f-3b91-413b-ab99-87f081d60d5a"),
-                    "Invest 500", RuleSetText.INVEST_500_TEXT);
+            return RECOMMENDATION;
         } else {
             logger.info("Пользователь с ID: {} не подходит под рекомендацию. Не все условия выполнены", userId);
             return null;
         }
     }
+
+    @Override
+    public RecommendationDTO getProduct() {
+        return RECOMMENDATION;
+    }
+
+    /**
+     * @return объединение признаков всех правил, входящих в рулсет
+     */
+    @Override
+    public Set<Feature> getFeatures() {
+        return Feature.union(usesAtLeastOneDebitProduct, usesNoInvestProducts, savingDepositsTotalGreaterThan1_000);
+    }
 }
\ No newline at end of file
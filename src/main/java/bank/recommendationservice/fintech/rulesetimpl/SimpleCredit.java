@@ -3,6 +3,7 @@ package bank.recommendationservice.fintech.rulesetimpl;
 import bank.recommendationservice.fintech.dto.RecommendationDTO;
 import bank.recommendationservice.fintech.exception.NullArgumentException;
 import bank.recommendationservice.fintech.interfaces.RecommendationRuleSet;
+import bank.recommendationservice.fintech.other.Feature;
 import bank.recommendationservice.fintech.other.text.RuleSetText;
 import bank.recommendationservice.fintech.ruleimpl.DebitDepositsTotalGreaterThanWithdraws;
 import bank.recommendationservice.fintech.ruleimpl.DebitWithdrawsTotalGreaterThan100_000;
@@ -11,12 +12,17 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
+import java.util.Set;
 import java.util.UUID;
 
 @Service
 public class SimpleCredit implements RecommendationRuleSet {
     private static final Logger logger = LoggerFactory.getLogger(SimpleCredit.class);
 
+    private static final RecommendationDTO RECOMMENDATION = new RecommendationDTO(
+            UUID.fromString("ab138afb-f3ba-4a93-b74f-0fcee86d447f"),
+            "Простой кредит", RuleSetText.SIMPLE_CREDIT_TEXT);
+
     private final UsesNoCreditProducts usesNoCreditProducts;
     private final DebitDepositsTotalGreaterThanWithdraws debitDepositsTotalGreaterThanWithdraws;
     private final DebitWithdrawsTotalGreaterThan100_000 debitWithdrawsTotalGreaterThan100_000;
@@ -62,11 +68,24 @@ public class SimpleCredit implements RecommendationRuleSet {
 
         if (noCreditProducts && depositsGreaterThanWithdraws && withdrawalsGreaterThan100k) {
             logger.info("Пользователь с ID {}: подходит под рекомендацию. Все условия выполнены", userId);
-            return new RecommendationDTO(UUID.fromString("ab138afb-f3ba-4a93-b74f-0fcee86d447f"),
-                    "Простой кредит", RuleSetText.SIMPLE_CREDIT_TEXT);
+            return RECOMMENDATION;
         } else {
             logger.info("Пользователь с ID: {} не подходит под рекомендацию. Не все условия выполнены", userId);
             return null;
         }
     }
+
+    @Override
+    public RecommendationDTO getProduct() {
+        return RECOMMENDATION;
+    }
+
+    /**
+     * @return объединение признаков всех правил, входящих в рулсет
+     */
+    @Override
+    public Set<Feature> getFeatures() {
+        return Feature.union(usesNoCreditProducts, debitDepositsTotalGreaterThanWithdraws,
+                debitWithdrawsTotalGreaterThan100_000);
+    }
 }
\ No newline at end of file
@@ -3,6 +3,7 @@ package bank.recommendationservice.fintech.rulesetimpl;
 import bank.recommendationservice.fintech.dto.RecommendationDTO;
 import bank.recommendationservice.fintech.exception.NullArgumentException;
 import bank.recommendationservice.fintech.interfaces.RecommendationRuleSet;
+import bank.recommendationservice.fintech.other.Feature;
 import bank.recommendationservice.fintech.other.text.RuleSetText;
 import bank.recommendationservice.fintech.ruleimpl.DebitDepositsTotalGreaterThanWithdraws;
 import bank.recommendationservice.fintech.ruleimpl.DebitOrSavingDepositsTotalGreaterThanOrEqualsTo50_000;
@@ -11,12 +12,17 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
+import java.util.Set;
 import java.util.UUID;
 
 @Service
 public class TopSaving implements RecommendationRuleSet {
     private static final Logger logger = LoggerFactory.getLogger(TopSaving.class);
 
+    private static final RecommendationDTO RECOMMENDATION = new RecommendationDTO(
+            UUID.fromString("59efc529-2fff-41af-baff-90ccd7402925"),
+            "Top Saving", RuleSetText.TOP_SAVING_TEXT);
+
     private final UsesAtLeastOneDebitProduct usesAtLeastOneDebitProduct;
     private final DebitOrSavingDepositsTotalGreaterThanOrEqualsTo50_000 debitOrSavingDepositsTotalGreaterThanOrEqualsTo50_000;
     private final DebitDepositsTotalGreaterThanWithdraws debitDepositsTotalGreaterThanWithdraws;
@@ -68,11 +74,24 @@ public class TopSaving implements RecommendationRuleSet {
 
         if (hasDebitProduct && depositsGreaterThanOrEqualsTo50k && depositsGreaterThanWithdrawals) {
             logger.info("Пользователь с ID {}: подходит под рекомендацию. Все условия выполнены", userId);
-            return new RecommendationDTO(UUID.fromString("59efc529-2fff-41af-baff-90ccd7402925"),
-                    "Top Saving", RuleSetText.TOP_SAVING_TEXT);
+            return RECOMMENDATION;
         } else {
             logger.info("Пользователь с ID: {} не подходит под рекомендацию. Не все условия выполнены", userId);
             return null;
         }
     }
+
+    @Override
+    public RecommendationDTO getProduct() {
+        return RECOMMENDATION;
+    }
+
+    /**
+     * @return объединение признаков всех правил, входящих в рулсет
+     */
+    @Override
+    public Set<Feature> getFeatures() {
+        return Feature.union(usesAtLeastOneDebitProduct, debitOrSavingDepositsTotalGreaterThanOrEqualsTo50_000,
+                debitDepositsTotalGreaterThanWithdraws);
+    }
 }
\ No newline at end of file
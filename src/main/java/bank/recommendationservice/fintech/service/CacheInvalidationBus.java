@@ -0,0 +1,246 @@
+package bank.recommendationservice.fintech.service;
+
+import bank.recommendationservice.fintech.interfaces.CacheInvalidationTransport;
+import bank.recommendationservice.fintech.model.CacheInvalidation;
+import bank.recommendationservice.fintech.model.CacheInvalidationMessage;
+import bank.recommendationservice.fintech.model.CacheInvalidationResponse;
+import bank.recommendationservice.fintech.model.CacheInvalidationResponse.NodeAcknowledgement;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Шина сброса кэшей между экземплярами сервиса.
+ * <p>
+ * Сброс ({@link #broadcast(CacheInvalidation)}) применяется на этом экземпляре и рассылается остальным через
+ * {@link CacheInvalidationTransport}. Каждый экземпляр применяет сброс один раз (повторно доставленный
+ * сброс с тем же id только подтверждается) и отвечает подтверждением. Отправитель ждет подтверждений
+ * от всех известных ему экземпляров не дольше {@code recommendation.cache-bus.ack-timeout-ms}.
+ * <p>
+ * Экземпляры узнают друг о друге по сообщениям шины: когда транспорт начал доставлять сообщения экземпляру
+ * (и после каждого переподключения), экземпляр отправляет {@code JOIN}, и остальные отвечают подтверждением,
+ * при остановке - {@code LEAVE}. Экземпляр, который не подтвердил сброс, попадает в ответ как неподтвердивший
+ * и забывается до своего следующего сообщения, поэтому остановленный без {@code LEAVE} экземпляр
+ * не задерживает следующие сбросы. Если экземпляр еще не подключен к шине или не знает ни одного другого
+ * экземпляра, сброс не считается подтвержденным всеми: ответ содержит {@code peers_known: false}.
+ */
+@Service
+public class CacheInvalidationBus implements DisposableBean {
+    private final CacheService cacheService;
+    private final CacheInvalidationTransport transport;
+    private final String nodeId;
+    private final long ackTimeoutMillis;
+    private final Set<String> peers = ConcurrentHashMap.newKeySet();
+    private volatile boolean joined;
+    private final Map<UUID, PendingAcknowledgements> pending = new ConcurrentHashMap<>();
+    private final Cache<UUID, Boolean> applied = Caffeine.newBuilder()
+            .maximumSize(10_000)
+            .expireAfterWrite(1, TimeUnit.HOURS)
+            .build();
+
+    private static final Logger logger = LoggerFactory.getLogger(CacheInvalidationBus.class);
+
+    /**
+     * @param cacheService     кэши этого экземпляра
+     * @param transport        транспорт шины
+     * @param nodeId           id экземпляра; если не задан - имя хоста и случайный суффикс
+     * @param ackTimeoutMillis сколько ждать подтверждений остальных экземпляров
+     */
+    public CacheInvalidationBus(CacheService cacheService,
+                                CacheInvalidationTransport transport,
+                                @Value("${recommendation.cache-bus.node-id:}") String nodeId,
+                                @Value("${recommendation.cache-bus.ack-timeout-ms:2000}") long ackTimeoutMillis) {
+        this.cacheService = cacheService;
+        this.transport = transport;
+        this.nodeId = nodeId == null || nodeId.isBlank() ? defaultNodeId() : nodeId;
+        this.ackTimeoutMillis = ackTimeoutMillis;
+    }
+
+    /**
+     * Подписывается на сообщения шины; о запуске остальным экземплярам сообщается, когда подписка начнет
+     * действовать, иначе их подтверждения могут прийти раньше, чем экземпляр начнет получать сообщения.
+     */
+    @PostConstruct
+    public void start() {
+        transport.subscribe(this::onMessage, this::join);
+    }
+
+    /**
+     * Применяет сброс кэшей на этом экземпляре, рассылает его остальным и ждет их подтверждений.
+     *
+     * @param invalidation сброс кэшей
+     * @return подтверждения всех известных экземпляров; этот экземпляр - первый в списке
+     */
+    public CacheInvalidationResponse broadcast(CacheInvalidation invalidation) {
+        boolean connected = joined;
+        UUID id = UUID.randomUUID();
+        long start = System.nanoTime();
+        applyOnce(id, invalidation);
+        List<NodeAcknowledgement> nodes = new ArrayList<>();
+        nodes.add(new NodeAcknowledgement(nodeId, true, true, elapsedMillis(start)));
+
+        PendingAcknowledgements acknowledgements = new PendingAcknowledgements(Set.copyOf(peers), start);
+        pending.put(id, acknowledgements);
+        try {
+            send(CacheInvalidationMessage.Type.INVALIDATE, id, invalidation);
+            acknowledgements.await(ackTimeoutMillis);
+        } catch (RuntimeException e) {
+            logger.warn("Не удалось разослать сброс кешей {}: {}", id, e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            pending.remove(id);
+        }
+
+        Map<String, Long> acknowledged = new TreeMap<>(acknowledgements.latencies);
+        acknowledged.forEach((node, latency) -> nodes.add(new NodeAcknowledgement(node, false, true, latency)));
+        Set<String> missing = new TreeSet<>(acknowledgements.expected);
+        missing.removeAll(acknowledged.keySet());
+        missing.forEach(node -> nodes.add(new NodeAcknowledgement(node, false, false, null)));
+        peers.removeAll(missing);
+        if (!missing.isEmpty()) {
+            logger.warn("Сброс кешей {} не подтвердили экземпляры {}", id, missing);
+        }
+        boolean peersKnown = connected && nodes.size() > 1;
+        if (!peersKnown) {
+            logger.info("Сброс кешей {} применен только на экземпляре {}: другие экземпляры не известны", id, nodeId);
+        }
+        return new CacheInvalidationResponse(id, invalidation, peersKnown && missing.isEmpty(), peersKnown, nodes);
+    }
+
+    /**
+     * @return id этого экземпляра
+     */
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * @return экземпляры, о которых известно этому экземпляру (без него самого)
+     */
+    public Set<String> getPeers() {
+        return Set.copyOf(peers);
+    }
+
+    @Override
+    public void destroy() {
+        try {
+            send(CacheInvalidationMessage.Type.LEAVE, UUID.randomUUID(), null);
+        } catch (RuntimeException e) {
+            logger.warn("Не удалось сообщить об остановке экземпляра {}: {}", nodeId, e.getMessage());
+        }
+    }
+
+
+    private void join() {
+        try {
+            send(CacheInvalidationMessage.Type.JOIN, UUID.randomUUID(), null);
+            joined = true;
+            logger.info("Экземпляр {} подключен к шине сброса кешей", nodeId);
+        } catch (RuntimeException e) {
+            logger.warn("Не удалось сообщить о подключении экземпляра {}: {}", nodeId, e.getMessage());
+        }
+    }
+
+    private void onMessage(CacheInvalidationMessage message) {
+        if (nodeId.equals(message.nodeId())) {
+            return;
+        }
+        try {
+            switch (message.type()) {
+                case JOIN -> {
+                    peers.add(message.nodeId());
+                    send(CacheInvalidationMessage.Type.ACK, message.id(), null);
+                }
+                case INVALIDATE -> {
+                    peers.add(message.nodeId());
+                    applyOnce(message.id(), message.invalidation());
+                    send(CacheInvalidationMessage.Type.ACK, message.id(), null);
+                }
+                case ACK -> {
+                    peers.add(message.nodeId());
+                    PendingAcknowledgements acknowledgements = pending.get(message.id());
+                    if (acknowledgements != null) {
+                        acknowledgements.acknowledge(message.nodeId());
+                    }
+                }
+                case LEAVE -> peers.remove(message.nodeId());
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Не удалось обработать сообщение {} экземпляра {}: {}",
+                    message.type(), message.nodeId(), e.getMessage());
+        }
+    }
+
+    private void applyOnce(UUID id, CacheInvalidation invalidation) {
+        if (applied.asMap().putIfAbsent(id, Boolean.TRUE) == null) {
+            cacheService.apply(invalidation);
+        } else {
+            logger.debug("Сброс кешей {} уже применен", id);
+        }
+    }
+
+    private void send(CacheInvalidationMessage.Type type, UUID id, CacheInvalidation invalidation) {
+        transport.publish(new CacheInvalidationMessage(type, id, nodeId, invalidation));
+    }
+
+    private static long elapsedMillis(long startNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+
+    private static String defaultNodeId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            host = "node";
+        }
+        return host + "-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+
+
+    /**
+     * Подтверждения одного сброса: ожидание завершается, когда сброс подтвердили все экземпляры,
+     * известные на момент рассылки. Подтверждения остальных экземпляров тоже учитываются.
+     */
+    private static final class PendingAcknowledgements {
+        private final Set<String> expected;
+        private final long startNanos;
+        private final Map<String, Long> latencies = new ConcurrentHashMap<>();
+        private final CountDownLatch remaining;
+
+        private PendingAcknowledgements(Set<String> expected, long startNanos) {
+            this.expected = expected;
+            this.startNanos = startNanos;
+            this.remaining = new CountDownLatch(expected.size());
+        }
+
+        private void acknowledge(String node) {
+            if (latencies.putIfAbsent(node, elapsedMillis(startNanos)) == null && expected.contains(node)) {
+                remaining.countDown();
+            }
+        }
+
+        private void await(long timeoutMillis) throws InterruptedException {
+            remaining.await(timeoutMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+}
@@ -1,30 +1,127 @@
 package bank.recommendationservice.fintech.service;
 
+import bank.recommendationservice.fintech.model.CacheInvalidation;
+import bank.recommendationservice.fintech.model.UserInfo;
+import bank.recommendationservice.fintech.model.UserRecommendations;
+import bank.recommendationservice.fintech.other.ProductType;
+import bank.recommendationservice.fintech.repository.RecommendationsRepository;
 import com.github.benmanes.caffeine.cache.Cache;
+import jakarta.persistence.EntityManagerFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+
 @Service
 public class CacheService {
     private final Cache<String, Boolean> productTypeCache;
     private final Cache<String, Integer> transactionSumCache;
     private final Cache<String, Integer> transactionCountCache;
+    private final Cache<UUID, UserRecommendations> recommendationCache;
+    private final Cache<String, Optional<UserInfo>> userCache;
+    private final RecommendationsRepository recommendationsRepository;
+    private final RuleDependencyService ruleDependencyService;
+    private final EntityManagerFactory entityManagerFactory;
 
     private static final Logger logger = LoggerFactory.getLogger(CacheService.class);
 
     public CacheService(Cache<String, Boolean> productTypeCache,
                         Cache<String, Integer> transactionSumCache,
-                        Cache<String, Integer> transactionCountCache) {
+                        Cache<String, Integer> transactionCountCache,
+                        Cache<UUID, UserRecommendations> recommendationCache,
+                        Cache<String, Optional<UserInfo>> userCache,
+                        RecommendationsRepository recommendationsRepository,
+                        RuleDependencyService ruleDependencyService,
+                        EntityManagerFactory entityManagerFactory) {
         this.productTypeCache = productTypeCache;
         this.transactionSumCache = transactionSumCache;
         this.transactionCountCache = transactionCountCache;
+        this.recommendationCache = recommendationCache;
+        this.userCache = userCache;
+        this.recommendationsRepository = recommendationsRepository;
+        this.ruleDependencyService = ruleDependencyService;
+        this.entityManagerFactory = entityManagerFactory;
     }
 
+    /**
+     * Сбрасывает кэши агрегатов пользователей, рекомендаций и пользователей, а также все регионы
+     * кэша второго уровня Hibernate. Рекомендации, оценка которых уже начата, в кэш не попадут.
+     */
     public void clearCaches() {
         productTypeCache.invalidateAll();
         transactionSumCache.invalidateAll();
         transactionCountCache.invalidateAll();
+        ruleDependencyService.advanceGeneration();
+        recommendationCache.invalidateAll();
+        userCache.invalidateAll();
+        entityManagerFactory.getCache().unwrap(org.hibernate.Cache.class).evictAllRegions();
         logger.info("Все кеши были успешно очищены.");
     }
+
+    /**
+     * Сбрасывает агрегаты пользователя, его закэшированные рекомендации и его данные в кэше пользователей
+     * по имени. Сбрасываются только ключи этого пользователя, без перебора кэшей.
+     *
+     * @param userId      id пользователя
+     * @param productType тип продукта, агрегаты по которому сбрасываются; {@code null} - все типы продукта
+     */
+    public void invalidateUser(UUID userId, ProductType productType) {
+        if (productType != null) {
+            recommendationsRepository.invalidateUserAggregates(userId, productType);
+        } else {
+            for (ProductType type : ProductType.values()) {
+                recommendationsRepository.invalidateUserAggregates(userId, type);
+            }
+        }
+        ruleDependencyService.advanceGeneration(userId);
+        recommendationCache.invalidate(userId);
+        recommendationsRepository.invalidateUserInfo(userId);
+        logger.info("Кеши пользователя {} очищены", userId);
+    }
+
+    /**
+     * Сбрасывает агрегаты всех пользователей по типу продукта и закэшированные рекомендации пользователей,
+     * у которых были агрегаты по этому типу: рекомендации зависят от типа продукта только через эти агрегаты.
+     * Ключи агрегатов имеют вид {@code <вид>_<userId>_<тип продукта>}, поэтому кэши агрегатов перебираются,
+     * а агрегаты по остальным типам продукта и рекомендации остальных пользователей остаются в кэше.
+     *
+     * @param productType тип продукта
+     */
+    public void invalidateProductType(ProductType productType) {
+        String suffix = "_" + productType.name();
+        Set<UUID> userIds = new HashSet<>();
+        for (Cache<String, ?> cache : List.of(productTypeCache, transactionSumCache, transactionCountCache)) {
+            cache.asMap().keySet().removeIf(key -> {
+                if (!key.endsWith(suffix)) {
+                    return false;
+                }
+                userIds.add(UUID.fromString(key.substring(key.indexOf('_') + 1, key.length() - suffix.length())));
+                return true;
+            });
+        }
+        for (UUID userId : userIds) {
+            ruleDependencyService.advanceGeneration(userId);
+            recommendationCache.invalidate(userId);
+        }
+        logger.info("Кеши по типу продукта {} очищены, затронуто пользователей: {}", productType, userIds.size());
+    }
+
+    /**
+     * Применяет сброс кэшей. Повторное применение того же сброса безопасно.
+     *
+     * @param invalidation сброс кэшей
+     */
+    public void apply(CacheInvalidation invalidation) {
+        switch (invalidation.scope()) {
+            case FULL -> clearCaches();
+            case USER -> invalidateUser(invalidation.userId(), invalidation.productType());
+            case PRODUCT -> invalidateProductType(invalidation.productType());
+        }
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,30 @@
+package bank.recommendationservice.fintech.service;
+
+import bank.recommendationservice.fintech.interfaces.CacheInvalidationTransport;
+import bank.recommendationservice.fintech.model.CacheInvalidationMessage;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Транспорт шины сброса кэшей внутри одного процесса.
+ * <p>
+ * Сообщение доставляется всем подписчикам синхронно, в потоке отправителя. Используется, когда правила
+ * хранятся не в PostgreSQL (единственный экземпляр сервиса, тестовые профили на H2), а в тестах - чтобы
+ * связать несколько шин, каждая со своими кэшами, как несколько экземпляров сервиса.
+ */
+public class InProcessCacheInvalidationTransport implements CacheInvalidationTransport {
+    private final List<Consumer<CacheInvalidationMessage>> listeners = new CopyOnWriteArrayList<>();
+
+    @Override
+    public void publish(CacheInvalidationMessage message) {
+        listeners.forEach(listener -> listener.accept(message));
+    }
+
+    @Override
+    public void subscribe(Consumer<CacheInvalidationMessage> listener, Runnable onSubscribed) {
+        listeners.add(listener);
+        onSubscribed.run();
+    }
+}
@@ -8,28 +8,55 @@ import bank.recommendationservice.fintech.other.ProductType;
 import bank.recommendationservice.fintech.other.QueryType;
 import bank.recommendationservice.fintech.other.TransactionType;
 import bank.recommendationservice.fintech.repository.DynamicRuleRepository;
+import bank.recommendationservice.fintech.repository.RuleCatalogRepository;
 import lombok.extern.slf4j.Slf4j;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.List;
+import java.util.stream.Stream;
 
 @Service
 @Slf4j
 public class RecommendationDynamicRuleService {
     private final DynamicRuleRepository dynamicRuleRepository;
     private final RuleStatsService ruleStatsService;
+    private final RuleSetVersionService ruleSetVersionService;
+    private final RuleCatalogRepository ruleCatalogRepository;
 
     private static final Logger logger = LoggerFactory.getLogger(RecommendationDynamicRuleService.class);
 
+    /**
+     * Максимальный размер страницы правил.
+     */
+    @Value("${recommendation.rules.max-page-size:1000}")
+    private int maxPageSize = 1000;
+
+    /**
+     * Максимальное количество правил в одном пакетном импорте.
+     */
+    @Value("${recommendation.rules.bulk-max-size:1000}")
+    private int maxBulkSize = 1000;
+
+    /**
+     * Размер порции, которыми читается полный список правил.
+     */
+    @Value("${recommendation.rules.stream-chunk-size:500}")
+    private int streamChunkSize = 500;
+
     public RecommendationDynamicRuleService(DynamicRuleRepository dynamicRuleRepository,
-                                            RuleStatsService ruleStatsService) {
+                                            RuleStatsService ruleStatsService,
+                                            RuleSetVersionService ruleSetVersionService,
+                                            RuleCatalogRepository ruleCatalogRepository) {
         this.dynamicRuleRepository = dynamicRuleRepository;
         this.ruleStatsService = ruleStatsService;
+        this.ruleSetVersionService = ruleSetVersionService;
+        this.ruleCatalogRepository = ruleCatalogRepository;
     }
 
 
@@ -37,8 +64,9 @@ public class RecommendationDynamicRuleService {
      * Создает новое динамическое правило.
      * <p>
      * Данный метод добавляет новое динамическое правило в базу данных. Сначала он проверяет,
-     * корректны ли запросы правила, а затем сохраняет правило и добавляет новую запись
-     * в таблицу rule_stats.
+     * корректны ли запросы правила, а затем сохраняет правило, добавляет новую запись
+     * в таблицу rule_stats и публикует изменение набора правил: граф зависимостей правил вместе с кэшем
+     * рекомендаций сбрасывается на этом узле и перестраивается на остальных узлах.
      * <p>
      * Если какой-либо запрос имеет недопустимые аргументы, выбрасывается исключение
      * IllegalQueryArgumentsException.
@@ -64,16 +92,63 @@ public class RecommendationDynamicRuleService {
         }
         DynamicRule savedRule = dynamicRuleRepository.save(rule);
         ruleStatsService.addRuleStats(rule.getId());
+        ruleSetVersionService.publishChange();
         return savedRule;
     }
 
 
+    /**
+     * Создает несколько динамических правил одной транзакцией.
+     * <p>
+     * Сначала проверяются все правила, и только если все они корректны, правила вместе с запросами,
+     * аргументами и записями rule_stats сохраняются. Идентификаторы выделяются из последовательностей
+     * пулом, а вставки группируются в пакеты JDBC ({@code hibernate.jdbc.batch_size}), поэтому число
+     * запросов к базе данных почти не зависит от количества правил. Изменение набора правил
+     * публикуется один раз после сохранения всех правил.
+     *
+     * @param rules правила, которые нужно добавить
+     * @return сохраненные правила в порядке передачи
+     * @throws BatchSizeExceededException     если правил больше, чем {@code recommendation.rules.bulk-max-size}
+     * @throws NullArgumentException          если у какого-либо правила не указано название продукта
+     * @throws IllegalQueryArgumentsException если какой-либо запрос имеет неизвестный тип или недопустимые аргументы
+     */
+    @Transactional
+    public List<DynamicRule> addRules(List<DynamicRule> rules) {
+        if (rules.size() > maxBulkSize) {
+            throw new BatchSizeExceededException("За один импорт можно создать не более " + maxBulkSize
+                    + " правил, передано " + rules.size());
+        }
+        for (int i = 0; i < rules.size(); i++) {
+            DynamicRule rule = rules.get(i);
+            if (rule.getProductName() == null) {
+                throw new NullArgumentException("Правило " + i + ": не указано название продукта");
+            }
+            if (rule.getQueries() == null) {
+                rule.setQueries(new ArrayList<>());
+            }
+            try {
+                evaluateQueries(rule.getQueries());
+            } catch (BaseBadRequestException e) {
+                logger.error("Ошибка при проверке запросов правила {} импорта: {}", i, e.getMessage());
+                throw new IllegalQueryArgumentsException("Правило " + i + ": " + e.getMessage(), e);
+            }
+        }
+        logger.info("Импорт {} правил", rules.size());
+        rules.forEach(rule -> rule.getQueries().forEach(query -> query.setDynamicRule(rule)));
+        List<DynamicRule> savedRules = dynamicRuleRepository.saveAll(rules);
+        ruleStatsService.addAllRuleStats(savedRules);
+        ruleSetVersionService.publishChange();
+        return savedRules;
+    }
+
+
     /**
      * Удаляет динамическое правило из базы данных по идентификатору.
      * <p>
      * Метод сначала пытается найти правило по переданному идентификатору.
      * Если правило не найдено, выбрасывается исключение RulesNotFoundException.
-     * Все связанные с правилом запросы также удаляются из базы данных.
+     * Все связанные с правилом запросы также удаляются из базы данных,
+     * а изменение набора правил публикуется для всех узлов.
      * <p>
      *
      * @param id идентификатор правила, которое необходимо удалить
@@ -88,6 +163,7 @@ public class RecommendationDynamicRuleService {
         }
         ruleStatsService.deleteRuleStats(id);
         dynamicRuleRepository.deleteById(id);
+        ruleSetVersionService.publishChange();
     }
 
     /**
@@ -96,7 +172,47 @@ public class RecommendationDynamicRuleService {
      * @return список динамических правил
      */
     public List<DynamicRule> getAllDynamicRules() {
-        return Collections.unmodifiableList(dynamicRuleRepository.findAll());
+        try (Stream<DynamicRule> rules = streamAllDynamicRules()) {
+            return rules.toList();
+        }
+    }
+
+    /**
+     * Получает все динамические правила в порядке id. Правила читаются из базы данных порциями
+     * по мере чтения потока, поэтому список правил целиком в памяти не собирается.
+     *
+     * @return поток динамических правил вместе с запросами и аргументами
+     */
+    public Stream<DynamicRule> streamAllDynamicRules() {
+        return ruleCatalogRepository.streamRules(streamChunkSize);
+    }
+
+    /**
+     * Получает страницу динамических правил в порядке id.
+     *
+     * @param page номер страницы, начиная с 0
+     * @param size размер страницы
+     * @return динамические правила страницы
+     * @throws IllegalPageRequestException если номер или размер страницы недопустимы
+     */
+    public List<DynamicRule> getDynamicRulesPage(int page, int size) {
+        checkPageRequest(page, size, maxPageSize);
+        return ruleCatalogRepository.findRulesPage(page, size);
+    }
+
+    /**
+     * Проверяет номер и размер запрошенной страницы.
+     *
+     * @throws IllegalPageRequestException если номер страницы отрицательный
+     *                                     или размер страницы не от 1 до {@code maxPageSize}
+     */
+    static void checkPageRequest(int page, int size, int maxPageSize) {
+        if (page < 0) {
+            throw new IllegalPageRequestException("Номер страницы не может быть отрицательным: " + page);
+        }
+        if (size < 1 || size > maxPageSize) {
+            throw new IllegalPageRequestException("Размер страницы должен быть от 1 до " + maxPageSize + ": " + size);
+        }
     }
 
 
@@ -106,6 +222,8 @@ public class RecommendationDynamicRuleService {
      * Проверяет, все ли запросы имеют допустимый тип запроса и корректные аргументы в соответствии с типом запроса.
      * Если какой-либо запрос является недопустимым, выбрасывается исключение.
      * <p>
+     * Разобранные аргументы сохраняются в запросе (тип запроса, тип продукта, тип транзакции, тип сравнения
+     * и константа), чтобы при оценке правила аргументы не разбирались повторно.
      *
      * @param queries запросы для проверки
      * @throws UnknownQueryTypeException      если какой-либо запрос имеет неизвестный тип
@@ -119,31 +237,32 @@ public class RecommendationDynamicRuleService {
             }
 
             QueryType type = QueryType.fromString(query.getQuery());
+            query.setQueryType(type);
             switch (type) {
                 case USER_OF -> {
                     try {
-                        handleUserOfQuery(query.getArguments());
+                        handleUserOfQuery(query);
                     } catch (IllegalQueryArgumentsException e) {
                         throw new IllegalQueryArgumentsException("Некорректный набор аргументов в запросе USER_OF: " + e.getMessage(), e);
                     }
                 }
                 case ACTIVE_USER_OF -> {
                     try {
-                        handleActiveUserOfQuery(query.getArguments());
+                        handleActiveUserOfQuery(query);
                     } catch (IllegalQueryArgumentsException e) {
                         throw new IllegalQueryArgumentsException("Некорректный набор аргументов в запросе ACTIVE_USER_OF: " + e.getMessage(), e);
                     }
                 }
                 case TRANSACTION_SUM_COMPARE -> {
                     try {
-                        handleTransactionSumCompareQuery(query.getArguments());
+                        handleTransactionSumCompareQuery(query);
                     } catch (IllegalQueryArgumentsException e) {
                         throw new IllegalQueryArgumentsException("Некорректный набор аргументов в запросе TRANSACTION_SUM_COMPARE: " + e.getMessage(), e);
                     }
                 }
                 case TRANSACTION_SUM_COMPARE_DEPOSIT_WITHDRAW -> {
                     try {
-                        handleTransactionSumCompareDepositWithdrawQuery(query.getArguments());
+                        handleTransactionSumCompareDepositWithdrawQuery(query);
                     } catch (IllegalQueryArgumentsException e) {
                         throw new IllegalQueryArgumentsException("Некорректный набор аргументов в запросе TRANSACTION_SUM_COMPARE_DEPOSIT_WITHDRAW: " + e.getMessage(), e);
                     }
@@ -161,17 +280,18 @@ public class RecommendationDynamicRuleService {
      * Если запрос не корректен, бросается исключение.
      * <p>
      *
-     * @param arguments аргументы запроса, которые нужно проверить
+     * @param query запрос, аргументы которого нужно проверить и сохранить в разобранном виде
      * @throws IllegalQueryArgumentsException если запрос не корректен
      */
-    private void handleUserOfQuery(List<String> arguments) {
+    private void handleUserOfQuery(DynamicRuleQuery query) {
+        List<String> arguments = query.getArguments();
         if (arguments.size() != 1) {
             logger.error("USER_OF содержит некорректное количество аргументов: {}", arguments.size());
             throw new IllegalQueryArgumentsException("USER_OF содержит некорректное количество аргументов");
         }
 
         try {
-            ProductType.fromString(arguments.get(0));
+            query.setProductType(ProductType.fromString(arguments.get(0)));
         } catch (UnknownQueryTypeException e) {
             logger.error("Некорректный тип продукта в запросе USER_OF: {}", arguments.get(0));
             throw new IllegalQueryArgumentsException("Некорректный тип продукта в запросе USER_OF: " + arguments.get(0), e);
@@ -186,17 +306,18 @@ public class RecommendationDynamicRuleService {
      * Если запрос не корректен, бросается исключение.
      * <p>
      *
-     * @param arguments аргументы запроса, которые нужно проверить
+     * @param query запрос, аргументы которого нужно проверить и сохранить в разобранном виде
      * @throws IllegalQueryArgumentsException если запрос не корректен
      */
-    private void handleActiveUserOfQuery(List<String> arguments) {
+    private void handleActiveUserOfQuery(DynamicRuleQuery query) {
+        List<String> arguments = query.getArguments();
         if (arguments.size() != 1) {
             logger.error("ACTIVE_USER_OF содержит некорректное количество аргументов: {}", arguments.size());
             throw new IllegalQueryArgumentsException("ACTIVE_USER_OF содержит некорректное количество аргументов");
         }
 
         try {
-            ProductType.fromString(arguments.get(0));
+            query.setProductType(ProductType.fromString(arguments.get(0)));
         } catch (IllegalQueryArgumentsException e) {
             logger.error("Некорректный тип продукта в запросе ACTIVE_USER_OF: {}", arguments.get(0));
             throw new IllegalQueryArgumentsException("Некорректный тип продукта в запросе ACTIVE_USER_OF: " + arguments.get(0), e);
@@ -209,21 +330,22 @@ public class RecommendationDynamicRuleService {
      * и тип каждого аргумента. Ожидаемые аргументы: тип продукта, тип транзакции,
      * тип сравнения, целое число.
      *
-     * @param arguments список аргументов запроса, которые необходимо проверить
+     * @param query запрос, аргументы которого необходимо проверить и сохранить в разобранном виде
      * @throws IllegalQueryArgumentsException если количество аргументов неправильное
      *                                        или если какой-либо аргумент имеет неправильный тип
      */
-    private void handleTransactionSumCompareQuery(List<String> arguments) {
+    private void handleTransactionSumCompareQuery(DynamicRuleQuery query) {
+        List<String> arguments = query.getArguments();
         if (arguments.size() != 4) {
             logger.error("TRANSACTION_SUM_COMPARE содержит некорректное количество аргументов: {}", arguments.size());
             throw new IllegalQueryArgumentsException("TRANSACTION_SUM_COMPARE содержит некорректное количество аргументов");
         }
 
         try {
-            ProductType.fromString(arguments.get(0));
-            TransactionType.fromString(arguments.get(1));
-            ComparisonType.fromString(arguments.get(2));
-            Integer.parseInt(arguments.get(3));
+            query.setProductType(ProductType.fromString(arguments.get(0)));
+            query.setTransactionType(TransactionType.fromString(arguments.get(1)));
+            query.setComparisonType(ComparisonType.fromString(arguments.get(2)));
+            query.setConstant(Integer.parseInt(arguments.get(3)));
         } catch (UnknownProductTypeException | UnknownTransactionTypeException | UnknownComparisonTypeException e) {
             logger.error("Некорректный аргумент в запросе TRANSACTION_SUM_COMPARE: {}", e.getMessage());
             throw new IllegalQueryArgumentsException("Некоррекнтый аргумент в TRANSACTION_SUM_COMPARE: " + e.getMessage(), e);
@@ -238,19 +360,20 @@ public class RecommendationDynamicRuleService {
      * Проверяет корректность запроса TRANSACTION_SUM_COMPARE_DEPOSIT_WITHDRAW, проверяя количество аргументов
      * и тип каждого аргумента. Ожидаемые аргументы: тип продукта, тип сравнения.
      *
-     * @param arguments список аргументов запроса, которые необходимо проверить
+     * @param query запрос, аргументы которого необходимо проверить и сохранить в разобранном виде
      * @throws IllegalQueryArgumentsException если количество аргументов неправильное
      *                                        или если какой-либо аргумент имеет неправильный тип
      */
-    private void handleTransactionSumCompareDepositWithdrawQuery(List<String> arguments) {
+    private void handleTransactionSumCompareDepositWithdrawQuery(DynamicRuleQuery query) {
+        List<String> arguments = query.getArguments();
         if (arguments.size() != 2) {
             logger.error("TRANSACTION_SUM_COMPARE_DEPOSIT_WITHDRAW содержит некорректное количество аргументов: {}", arguments.size());
             throw new IllegalQueryArgumentsException("TRANSACTION_SUM_COMPARE_DEPOSIT_WITHDRAW содержит некорректное количество аргументов");
         }
 
         try {
-            ProductType.fromString(arguments.get(0));
-            ComparisonType.fromString(arguments.get(1));
+            query.setProductType(ProductType.fromString(arguments.get(0)));
+            query.setComparisonType(ComparisonType.fromString(arguments.get(1)));
         } catch (UnknownProductTypeException | UnknownComparisonTypeException e) {
             logger.error("Некорректный аргумент в запросе TRANSACTION_SUM_COMPARE_DEPOSIT_WITHDRAW: {}", e.getMessage());
             throw new IllegalQueryArgumentsException("Некорректный аргумент в запросе TRANSACTION_SUM_COMPARE_DEPOSIT_WITHDRAW: " + e.getMessage(), e);
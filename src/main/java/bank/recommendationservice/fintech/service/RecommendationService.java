@@ -4,44 +4,113 @@ package bank.recommendationservice.fintech.service;
 import bank.recommendationservice.fintech.dto.RecommendationDTO;
 import bank.recommendationservice.fintech.exception.*;
 import bank.recommendationservice.fintech.interfaces.RecommendationRuleSet;
+import bank.recommendationservice.fintech.jfr.RecommendationComputedEvent;
+import bank.recommendationservice.fintech.jfr.RuleEvaluatedEvent;
 import bank.recommendationservice.fintech.model.DynamicRule;
 import bank.recommendationservice.fintech.model.DynamicRuleQuery;
+import bank.recommendationservice.fintech.model.ProductCatalogResponse;
+import bank.recommendationservice.fintech.model.RecommendationResponse;
+import bank.recommendationservice.fintech.model.RequestTrace;
+import bank.recommendationservice.fintech.model.RuleDependencyGraph;
+import bank.recommendationservice.fintech.model.UserRecommendations;
 import bank.recommendationservice.fintech.other.ComparisonType;
+import bank.recommendationservice.fintech.other.Feature;
 import bank.recommendationservice.fintech.other.ProductType;
 import bank.recommendationservice.fintech.other.QueryType;
 import bank.recommendationservice.fintech.other.TransactionType;
-import bank.recommendationservice.fintech.repository.DynamicRuleRepository;
 import bank.recommendationservice.fintech.repository.RecommendationsRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Objects;
+import java.util.Map;
 import java.util.UUID;
-
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * Оценка правил и выдача рекомендаций пользователю.
+ * <p>
+ * Время оценки каждого рулсета и каждого динамического правила замеряется таймерами
+ * {@code recommendation.ruleset} (тег {@code rule_set}) и {@code recommendation.dynamic_rule} (тег {@code rule_id}).
+ * Оценка правил и получение рекомендаций также записываются событиями JFR {@link RuleEvaluatedEvent}
+ * и {@link RecommendationComputedEvent}.
+ */
 @Service
-public class RecommendationService {
-    private final List<RecommendationRuleSet> ruleSets;
-
-    private final DynamicRuleRepository dynamicRuleRepository;
+public class RecommendationService implements MeterBinder {
+    private final RuleDependencyService ruleDependencyService;
 
     private final RecommendationsRepository recommendationsRepository;
 
     private final RuleStatsService ruleStatsService;
 
+    private final Cache<UUID, UserRecommendations> recommendationCache;
+
+    private final RuleExecutor ruleExecutor;
+
+    private final RuleCompiler ruleCompiler;
+
+    /**
+     * Максимальное количество пользователей в одном пакетном запросе.
+     */
+    @Value("${recommendation.batch.max-size:100}")
+    private int maxBatchSize = 100;
+
+    /**
+     * Оценивать динамические правила скомпилированными предикатами ({@link RuleCompiler}),
+     * а не разбором запросов правила в {@link #evaluateDynamicRules(DynamicRule, UUID)}.
+     */
+    @Value("${recommendation.rules.compiled:true}")
+    private boolean compiledRules = true;
+
+    /**
+     * Начиная с этого количества динамических правил, полная оценка правил пользователя идет через
+     * {@link RuleIndex}, а не по каждому правилу. Индекс - тоже скомпилированная форма правил и строится,
+     * только если включен {@code recommendation.rules.compiled}. Метрики, события JFR и трассировка запроса
+     * в этом случае записываются для индекса целиком, а не для каждого правила.
+     */
+    @Value("${recommendation.rules.index-threshold:500}")
+    private int indexThreshold = 500;
+
+    /**
+     * Скомпилированные правила и индекс правил последнего графа; строятся заново при смене графа.
+     */
+    private volatile CompiledRules compiled;
+
+    private final Map<String, Timer> ruleSetTimers = new ConcurrentHashMap<>();
+
+    private final Map<Long, Timer> dynamicRuleTimers = new ConcurrentHashMap<>();
+
+    private volatile Timer ruleIndexTimer;
+
+    private volatile MeterRegistry meterRegistry;
+
     private static final Logger logger = LoggerFactory.getLogger(RecommendationService.class);
 
-    public RecommendationService(List<RecommendationRuleSet> ruleSets,
-                                 DynamicRuleRepository dynamicRuleRepository,
+    private static final String RULE_INDEX_NAME = "dynamic_rule_index";
+
+    public RecommendationService(RuleDependencyService ruleDependencyService,
                                  RecommendationsRepository recommendationsRepository,
-                                 RuleStatsService ruleStatsService) {
-        this.ruleSets = ruleSets;
-        this.dynamicRuleRepository = dynamicRuleRepository;
+                                 RuleStatsService ruleStatsService,
+                                 Cache<UUID, UserRecommendations> recommendationCache,
+                                 RuleExecutor ruleExecutor) {
+        this.ruleDependencyService = ruleDependencyService;
         this.recommendationsRepository = recommendationsRepository;
         this.ruleStatsService = ruleStatsService;
+        this.recommendationCache = recommendationCache;
+        this.ruleExecutor = ruleExecutor;
+        this.ruleCompiler = new RuleCompiler(recommendationsRepository);
     }
 
 
@@ -49,36 +118,103 @@ public class RecommendationService {
      * Извлекает список рекомендаций для заданного пользователя на основе динамических и стандартных правил.
      *
      * <p>Этот метод оценивает как динамические, так и стандартные правила рекомендаций для указанного пользователя.
-     * Сначала он извлекает все динамические правила из репозитория и оценивает их для пользователя.
+     * Сначала он оценивает для пользователя все динамические правила.
      * Если динамическое правило удовлетворено, создается соответствующий RecommendationDTO и добавляется в список.
      * Затем применяются предопределенные наборы правил для генерации стандартных рекомендаций.
      * Оба набора рекомендаций объединяются и возвращаются в качестве результата.
+     * <p>
+     * Результаты оценки кэшируются по пользователю и пересчитываются частично через
+     * {@link #refreshRecommendations(UUID, Collection)} при изменении данных пользователя.
      *
      * @param userId уникальный идентификатор пользователя, для которого извлекаются рекомендации
      * @return список объектов RecommendationDTO, содержащих рекомендации для пользователя
      * @throws NullArgumentException если динамическое правило или userId равно null
+     * @throws RecommendationTimeoutException если правила не были оценены до дедлайна запроса,
+     *                                        а частичные ответы отключены
      */
     public List<RecommendationDTO> getRecommendations(UUID userId) {
-        List<DynamicRule> dynamicRules = dynamicRuleRepository.findAll();
-        List<RecommendationDTO> dynamicRecommendations = new ArrayList<>();
+        return getUserRecommendations(userId).toList();
+    }
 
-        for (DynamicRule rule : dynamicRules) {
-            if (evaluateDynamicRules(rule, userId)) {
-                dynamicRecommendations.add(new RecommendationDTO(rule.getProductId(), rule.getProductName(), rule.getProductText()));
-                ruleStatsService.increaseCounter(rule.getId());
-            }
+
+    /**
+     * Извлекает рекомендации для заданного пользователя вместе с признаком частичного ответа.
+     *
+     * <p>Работает так же, как {@link #getRecommendations(UUID)}, но дополнительно сообщает,
+     * какие правила были пропущены из-за дедлайна запроса, и версию каталога продуктов
+     * ({@link #getProductCatalog()}), по которой клиент CBOR проверяет, что его каталог актуален.
+     *
+     * @param userId уникальный идентификатор пользователя, для которого извлекаются рекомендации
+     * @return ответ со списком рекомендаций и списком пропущенных по дедлайну правил
+     * @throws RecommendationTimeoutException если правила не были оценены до дедлайна запроса,
+     *                                        а частичные ответы отключены
+     */
+    public RecommendationResponse getRecommendationResponse(UUID userId) {
+        UserRecommendations recommendations = getUserRecommendations(userId);
+        RecommendationResponse response =
+                new RecommendationResponse(userId, recommendations.toList(), recommendations.getTimedOutRules());
+        response.setProductsVersion(ruleDependencyService.getGraph().getProductsVersion());
+        return response;
+    }
+
+
+    /**
+     * Извлекает рекомендации для заданного пользователя вместе с трассировкой выполнения:
+     * оцененными правилами и временем каждого, SQL-запросами, попаданиями и промахами кэшей,
+     * временем в H2 и PostgreSQL.
+     *
+     * @param userId уникальный идентификатор пользователя, для которого извлекаются рекомендации
+     * @return ответ, как у {@link #getRecommendationResponse(UUID)}, с заполненной трассировкой
+     */
+    public RecommendationResponse getTracedRecommendationResponse(UUID userId) {
+        RequestTrace trace = RequestTrace.start();
+        try {
+            RecommendationResponse response = getRecommendationResponse(userId);
+            response.setTrace(trace);
+            return response;
+        } finally {
+            trace.finish();
         }
+    }
 
-        List<RecommendationDTO> standardRecommendations = ruleSets.stream()
-                .map(p -> p.recommend(userId))
-                .filter(Objects::nonNull)
-                .toList();
 
-        List<RecommendationDTO> allRecommendations = new ArrayList<>();
-        allRecommendations.addAll(dynamicRecommendations);
-        allRecommendations.addAll(standardRecommendations);
+    /**
+     * Извлекает рекомендации для нескольких пользователей за один запрос.
+     *
+     * @param userIds уникальные идентификаторы пользователей
+     * @return ответы в порядке переданных идентификаторов
+     * @throws NullArgumentException       если userIds равен null
+     * @throws BatchSizeExceededException  если пользователей больше, чем {@code recommendation.batch.max-size}
+     */
+    public List<RecommendationResponse> getRecommendationResponses(List<UUID> userIds) {
+        if (userIds == null) {
+            throw new NullArgumentException("userIds не должны быть null");
+        }
+        if (userIds.size() > maxBatchSize) {
+            throw new BatchSizeExceededException("В одном запросе можно запросить не более " + maxBatchSize
+                    + " пользователей, передано " + userIds.size());
+        }
+        return userIds.stream().map(this::getRecommendationResponse).toList();
+    }
+
 
-        return allRecommendations;
+    /**
+     * Возвращает каталог продуктов, на которые ссылаются рекомендации.
+     * Каталог меняется только вместе с набором правил, поэтому клиенты могут кэшировать его по версии:
+     * каждый ответ с рекомендациями содержит версию каталога, по которому он построен.
+     *
+     * @return каталог продуктов с версией
+     */
+    public ProductCatalogResponse getProductCatalog() {
+        RuleDependencyGraph graph = ruleDependencyService.getGraph();
+        return new ProductCatalogResponse(graph.getProductsVersion(), graph.getProducts());
+    }
+
+
+    private UserRecommendations getUserRecommendations(UUID userId) {
+        UserRecommendations recommendations = loadRecommendations(userId);
+        recommendations.getMatchedDynamicRuleIds().forEach(ruleStatsService::increaseCounter);
+        return recommendations;
     }
 
 
@@ -87,8 +223,8 @@ public class RecommendationService {
      *
      * <p>Этот метод оценивает как динамические, так и стандартные правила рекомендаций для заданного
      * пользователя. Он извлекает уникальный идентификатор пользователя из репозитория, используя
-     * переданный userName. Затем он извлекает все динамические правила из репозитория и оценивает
-     * их для пользователя. Если динамическое правило удовлетворено, создается соответствующий
+     * переданный userName. Затем он оценивает для пользователя все динамические правила.
+     * Если динамическое правило удовлетворено, создается соответствующий
      * RecommendationDTO и добавляется в список. Затем применяются предопределенные наборы
      * правил для генерации стандартных рекомендаций. Оба набора рекомендаций объединяются
      * и возвращаются в качестве результата.
@@ -99,32 +235,332 @@ public class RecommendationService {
      * @throws UserNotFoundException если пользователь с переданным именем не найден
      */
     public List<RecommendationDTO> getRecommendations(String userName) {
-        try {
-            UUID userId = recommendationsRepository.getUserIdByUserName(userName);
-            List<DynamicRule> dynamicRules = dynamicRuleRepository.findAll();
-            List<RecommendationDTO> dynamicRecommendations = new ArrayList<>();
+        UUID userId = recommendationsRepository.getUserIdByUserName(userName);
+        return loadRecommendations(userId).toList();
+    }
+
 
+    /**
+     * Пересчитывает закэшированные рекомендации пользователя после изменения его данных.
+     *
+     * <p>Сбрасывает агрегаты пользователя по измененным признакам и оценивает заново только те
+     * динамические правила и статические рулсеты, которые от этих признаков зависят.
+     * Результаты остальных правил берутся из кэша. Если рекомендации пользователя еще не
+     * закэшированы или запись в кэше не учитывает предыдущее изменение данных пользователя, пересчет
+     * не выполняется - рекомендации будут полностью вычислены при следующем запросе.
+     *
+     * @param userId   уникальный идентификатор пользователя, данные которого изменились
+     * @param features измененные признаки (тип продукта и тип транзакции)
+     * @throws NullArgumentException если userId или features равны null
+     */
+    public void refreshRecommendations(UUID userId, Collection<Feature> features) {
+        if (userId == null) {
+            throw new NullArgumentException("userId не должен быть null");
+        }
+        if (features == null) {
+            throw new NullArgumentException("features не должны быть null");
+        }
+        features.stream()
+                .map(Feature::productType)
+                .distinct()
+                .forEach(productType -> recommendationsRepository.invalidateUserAggregates(userId, productType));
+        long generation = ruleDependencyService.advanceGeneration(userId);
+
+        UserRecommendations cached = recommendationCache.getIfPresent(userId);
+        if (cached == null) {
+            return;
+        }
+        if (cached.getGeneration() != generation - 1) {
+            // между записью и этим изменением было другое изменение, которое запись не учитывает
+            logger.debug("Рекомендации пользователя {} в кеше устарели, кеш сброшен", userId);
+            recommendationCache.asMap().remove(userId, cached);
+            return;
+        }
+        RuleDependencyGraph graph = ruleDependencyService.getGraph();
+        List<DynamicRule> affectedDynamicRules = graph.getAffectedDynamicRules(features);
+        List<RecommendationRuleSet> affectedRuleSets = graph.getAffectedRuleSets(features);
+        logger.debug("Пересчет рекомендаций пользователя {}: динамических правил - {}, рулсетов - {}",
+                userId, affectedDynamicRules.size(), affectedRuleSets.size());
+
+        // правила оцениваются вне операций над картой кэша, чтобы не держать блокировку ее сегмента
+        Map<Long, RecommendationDTO> dynamicRecommendations = new LinkedHashMap<>(cached.getDynamicRecommendations());
+        Map<String, RecommendationDTO> standardRecommendations = new LinkedHashMap<>(cached.getStandardRecommendations());
+        List<String> timedOutRules = evaluateRules(userId, graph, affectedDynamicRules, null, affectedRuleSets,
+                dynamicRecommendations, standardRecommendations);
+        if (!timedOutRules.isEmpty()) {
+            logger.warn("Пересчет рекомендаций пользователя {} не уложился в дедлайн, кеш сброшен", userId);
+            recommendationCache.asMap().remove(userId, cached);
+            return;
+        }
+        UserRecommendations updated = new UserRecommendations(dynamicRecommendations, standardRecommendations,
+                List.of(), generation);
+        if (!cacheIfCurrent(userId, cached, updated)) {
+            logger.debug("Рекомендации пользователя {} изменились во время пересчета, кеш сброшен", userId);
+        }
+    }
+
+
+    /**
+     * Возвращает закэшированные результаты правил пользователя или оценивает все правила заново.
+     * Частичный результат (часть правил пропущена по дедлайну) не кэшируется. Запись в кэше другого
+     * поколения считается отсутствующей: она оценена до изменения правил или данных пользователя.
+     *
+     * @param userId уникальный идентификатор пользователя
+     * @return результаты всех правил для пользователя
+     */
+    private UserRecommendations loadRecommendations(UUID userId) {
+        RecommendationComputedEvent event = new RecommendationComputedEvent();
+        event.begin();
+        long generation = ruleDependencyService.getGeneration(userId);
+        UserRecommendations cached = recommendationCache.getIfPresent(userId);
+        if (cached != null && cached.getGeneration() != generation) {
+            cached = null;
+        }
+        RequestTrace trace = RequestTrace.current();
+        if (trace != null) {
+            trace.recordCacheAccess("recommendationCache", cached != null);
+        }
+        UserRecommendations recommendations = cached;
+        if (recommendations == null) {
+            recommendations = evaluateAllRules(userId, generation);
+            if (!recommendations.isPartial()) {
+                cacheIfCurrent(userId, null, recommendations);
+            }
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.userId = userId.toString();
+            event.cacheHit = cached != null;
+            event.rulesEvaluated = cached != null ? 0
+                    : recommendations.getDynamicRecommendations().size() + recommendations.getStandardRecommendations().size();
+            event.recommendations = recommendations.toList().size();
+            event.partial = recommendations.isPartial();
+            event.commit();
+        }
+        return recommendations;
+    }
+
+
+    /**
+     * Оценивает для пользователя все динамические правила и статические рулсеты.
+     *
+     * @param userId     уникальный идентификатор пользователя
+     * @param generation поколение кэша рекомендаций пользователя, прочитанное до графа правил
+     * @return результаты всех правил для пользователя
+     */
+    private UserRecommendations evaluateAllRules(UUID userId, long generation) {
+        RuleDependencyGraph graph = ruleDependencyService.getGraph();
+        Map<Long, RecommendationDTO> dynamicRecommendations = new LinkedHashMap<>();
+        Map<String, RecommendationDTO> standardRecommendations = new LinkedHashMap<>();
+        List<String> timedOutRules = evaluateRules(userId, graph, graph.getDynamicRules(), compiledRules(graph).index(),
+                graph.getRuleSets(), dynamicRecommendations, standardRecommendations);
+        return new UserRecommendations(dynamicRecommendations, standardRecommendations, timedOutRules, generation);
+    }
+
+
+    /**
+     * Записывает результат в кэш, только если поколение кэша пользователя не изменилось с начала оценки,
+     * иначе результат мог быть оценен по прежним правилам или данным. Запись другого поколения из кэша
+     * удаляется по той же причине.
+     *
+     * @param previous        запись, на основе которой пересчитан результат; {@code null}, если все правила
+     *                        оценены заново
+     * @param recommendations результат оценки
+     * @return {@code true}, если результат записан в кэш
+     */
+    private boolean cacheIfCurrent(UUID userId, UserRecommendations previous, UserRecommendations recommendations) {
+        UserRecommendations stored = recommendationCache.asMap().compute(userId, (id, current) -> {
+            long generation = ruleDependencyService.getGeneration(id);
+            if (recommendations.getGeneration() == generation && (previous == null || current == previous)) {
+                return recommendations;
+            }
+            return current != null && current.getGeneration() == generation ? current : null;
+        });
+        return stored == recommendations;
+    }
+
+
+    /**
+     * Оценивает переданные правила для пользователя через {@link RuleExecutor} и записывает их результаты.
+     * Правила независимы друг от друга, поэтому в параллельном режиме оцениваются одновременно.
+     * Правила, не успевшие выполниться до дедлайна запроса, считаются несработавшими и возвращаются
+     * в списке пропущенных.
+     * <p>
+     * Если передан индекс правил, динамические правила оцениваются им одной задачей; если индекс
+     * не успел до дедлайна, пропущенными считаются все динамические правила.
+     *
+     * @param userId                  уникальный идентификатор пользователя
+     * @param graph                   граф правил, из которого взяты правила
+     * @param dynamicRules            динамические правила для оценки
+     * @param index                   индекс правил {@code dynamicRules} или {@code null} - оценивать каждое правило
+     * @param ruleSets                статические рулсеты для оценки
+     * @param dynamicRecommendations  результаты динамических правил по id правила
+     * @param standardRecommendations результаты рулсетов по имени рулсета
+     * @return имена правил, пропущенных из-за дедлайна запроса
+     * @throws RecommendationTimeoutException если часть правил пропущена, а частичные ответы отключены
+     */
+    private List<String> evaluateRules(UUID userId,
+                                       RuleDependencyGraph graph,
+                                       List<DynamicRule> dynamicRules,
+                                       RuleIndex index,
+                                       List<RecommendationRuleSet> ruleSets,
+                                       Map<Long, RecommendationDTO> dynamicRecommendations,
+                                       Map<String, RecommendationDTO> standardRecommendations) {
+        List<Callable<Object>> tasks = new ArrayList<>(dynamicRules.size() + ruleSets.size());
+        MeterRegistry registry = meterRegistry;
+        RequestTrace trace = RequestTrace.current();
+        if (index != null) {
+            Callable<Object> task = RuleEvaluatedEvent.wrap(RULE_INDEX_NAME, "rule_index", userId, () -> {
+                BitSet matched = index.match(userId);
+                return matched.isEmpty() ? null : matched;
+            });
+            if (registry != null) {
+                task = ruleIndexTimer(registry).wrap(task);
+            }
+            tasks.add(trace == null ? task : trace.traceRule(RULE_INDEX_NAME, "rule_index", task));
+        } else {
             for (DynamicRule rule : dynamicRules) {
-                if (evaluateDynamicRules(rule, userId)) {
-                    dynamicRecommendations.add(new RecommendationDTO(rule.getProductId(), rule.getProductName(), rule.getProductText()));
+                Callable<RecommendationDTO> task = RuleEvaluatedEvent.wrap(dynamicRuleName(rule), "dynamic_rule", userId,
+                        () -> recommendDynamicRule(graph, rule, userId));
+                if (registry != null && rule.getId() != null) {
+                    task = dynamicRuleTimer(registry, rule.getId()).wrap(task);
                 }
+                tasks.add((trace == null ? task : trace.traceRule(dynamicRuleName(rule), "dynamic_rule", task))::call);
+            }
+        }
+        int ruleSetOffset = tasks.size();
+        for (RecommendationRuleSet ruleSet : ruleSets) {
+            Callable<RecommendationDTO> task = RuleEvaluatedEvent.wrap(ruleSet.getName(), "rule_set", userId,
+                    () -> ruleSet.recommend(userId));
+            if (registry != null) {
+                task = ruleSetTimer(registry, ruleSet.getName()).wrap(task);
+            }
+            tasks.add((trace == null ? task : trace.traceRule(ruleSet.getName(), "rule_set", task))::call);
+        }
 
+        List<RuleExecutor.Result<Object>> results = ruleExecutor.invokeAll(tasks);
+        List<String> timedOutRules = new ArrayList<>();
+        for (int i = 0; i < dynamicRules.size(); i++) {
+            DynamicRule rule = dynamicRules.get(i);
+            RuleExecutor.Result<Object> result = results.get(index != null ? 0 : i);
+            if (result.timedOut()) {
+                timedOutRules.add(dynamicRuleName(rule));
             }
+            if (index == null) {
+                dynamicRecommendations.put(rule.getId(), (RecommendationDTO) result.value());
+            } else {
+                BitSet matched = (BitSet) result.value();
+                dynamicRecommendations.put(rule.getId(),
+                        matched != null && matched.get(i) ? graph.getRecommendation(rule) : null);
+            }
+        }
+        for (int i = 0; i < ruleSets.size(); i++) {
+            RecommendationRuleSet ruleSet = ruleSets.get(i);
+            RuleExecutor.Result<Object> result = results.get(ruleSetOffset + i);
+            if (result.timedOut()) {
+                timedOutRules.add(ruleSet.getName());
+            }
+            standardRecommendations.put(ruleSet.getName(), (RecommendationDTO) result.value());
+        }
 
-            List<RecommendationDTO> standardRecommendations = ruleSets.stream()
-                    .map(p -> p.recommend(userId))
-                    .filter(Objects::nonNull)
-                    .toList();
+        if (!timedOutRules.isEmpty()) {
+            logger.warn("Правила {} для пользователя {} не уложились в дедлайн {} мс",
+                    timedOutRules, userId, ruleExecutor.getDeadlineMillis());
+            if (!ruleExecutor.isPartialResultsAllowed()) {
+                throw new RecommendationTimeoutException("Правила " + timedOutRules + " не уложились в дедлайн "
+                        + ruleExecutor.getDeadlineMillis() + " мс");
+            }
+        }
+        return timedOutRules;
+    }
 
-            List<RecommendationDTO> allRecommendations = new ArrayList<>();
-            allRecommendations.addAll(dynamicRecommendations);
-            allRecommendations.addAll(standardRecommendations);
 
-            return allRecommendations;
-        } catch (EmptyResultDataAccessException e) {
-            logger.error("Пользователь {} не найден", userName);
-            throw new UserNotFoundException("Пользователь не найден");
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        meterRegistry = registry;
+    }
+
+
+    private Timer ruleSetTimer(MeterRegistry registry, String ruleSetName) {
+        return ruleSetTimers.computeIfAbsent(ruleSetName, name -> Timer.builder("recommendation.ruleset")
+                .description("Время оценки статического рулсета для пользователя")
+                .tag("rule_set", name)
+                .register(registry));
+    }
+
+
+    private Timer ruleIndexTimer(MeterRegistry registry) {
+        Timer timer = ruleIndexTimer;
+        if (timer == null) {
+            timer = Timer.builder("recommendation.rule_index")
+                    .description("Время оценки всех динамических правил пользователя через индекс правил")
+                    .register(registry);
+            ruleIndexTimer = timer;
+        }
+        return timer;
+    }
+
+
+    private Timer dynamicRuleTimer(MeterRegistry registry, Long ruleId) {
+        return dynamicRuleTimers.computeIfAbsent(ruleId, id -> Timer.builder("recommendation.dynamic_rule")
+                .description("Время оценки динамического правила для пользователя")
+                .tag("rule_id", String.valueOf(id))
+                .register(registry));
+    }
+
+
+    private static String dynamicRuleName(DynamicRule rule) {
+        return "dynamic_rule_" + rule.getId();
+    }
+
+
+    /**
+     * @return рекомендация динамического правила из графа, если оно выполнено для пользователя, иначе null
+     */
+    private RecommendationDTO recommendDynamicRule(RuleDependencyGraph graph, DynamicRule rule, UUID userId) {
+        boolean matched = compiledRules
+                ? compiledRule(graph, rule).test(userId)
+                : evaluateDynamicRules(rule, userId);
+        if (matched) {
+            return graph.getRecommendation(rule);
+        }
+        return null;
+    }
+
+
+    /**
+     * @return скомпилированное правило графа
+     */
+    private Predicate<UUID> compiledRule(RuleDependencyGraph graph, DynamicRule rule) {
+        Predicate<UUID> evaluator = compiledRules(graph).evaluators().get(rule);
+        return evaluator != null ? evaluator : ruleCompiler.compile(rule);
+    }
+
+
+    /**
+     * @return скомпилированные правила и индекс правил графа; строятся при первом обращении к графу
+     */
+    private CompiledRules compiledRules(RuleDependencyGraph graph) {
+        CompiledRules current = compiled;
+        if (current == null || current.graph() != graph) {
+            List<DynamicRule> rules = graph.getDynamicRules();
+            RuleIndex index = compiledRules && rules.size() >= indexThreshold
+                    ? new RuleIndex(recommendationsRepository, rules)
+                    : null;
+            if (index != null) {
+                logger.info("Построен индекс динамических правил: правил - {}, условий - {}",
+                        index.size(), index.getConditionCount());
+            }
+            current = new CompiledRules(graph, compiledRules ? ruleCompiler.compileAll(rules) : Map.of(), index);
+            compiled = current;
         }
+        return current;
+    }
+
+
+    private record CompiledRules(RuleDependencyGraph graph,
+                                 Map<DynamicRule, Predicate<UUID>> evaluators,
+                                 RuleIndex index) {
     }
 
 
@@ -132,9 +568,9 @@ public class RecommendationService {
      * Оценивает предоставленное динамическое правило для указанного пользователя.
      *
      * <p>Этот метод проверяет, является ли данное динамическое правило null или имеет пустые запросы,
-     * записывая соответствующие предупреждения и возвращая false в таких случаях. Для каждого запроса в
-     * динамическом правиле определяется тип запроса и обрабатывается соответствующим образом.
-     * Если в процессе обработки запроса происходит исключение, оно регистрируется, и возвращается false.
+     * записывая соответствующие предупреждения и возвращая false в таких случаях. Запрос выполняется
+     * по аргументам, разобранным при сохранении правила, поэтому строковые аргументы не разбираются.
+     * Запрос без разобранных аргументов (например, с неизвестным типом) не выполняется, и возвращается false.
      *
      * @param rule   динамическое правило для оценки
      * @param userId уникальный идентификатор пользователя, для которого оценивается правило
@@ -152,42 +588,20 @@ public class RecommendationService {
             return false;
         }
         for (DynamicRuleQuery query : queries) {
-            try {
-                QueryType queryType = QueryType.fromString(query.getQuery());
-                if (!QueryType.isValidQuery(queryType.getQueryType())) {
-                    logger.warn("Неизвестный тип запроса query: {}", query.getQuery());
-                    throw new UnknownQueryTypeException("Неизвестный тип запроса query: " + queryType);
-                }
-                List<String> queryArguments = query.getArguments();
-                return switch (queryType) {
-                    case USER_OF -> processUserOfQuery(userId, queryArguments.get(0));
-                    case ACTIVE_USER_OF ->
-                            processActiveUserOfQuery(ProductType.fromString(queryArguments.get(0)), userId);
-                    case TRANSACTION_SUM_COMPARE ->
-                            processTransactionSumCompare(ProductType.fromString(queryArguments.get(0)),
-                                    TransactionType.fromString(queryArguments.get(1)), userId, ComparisonType.fromString(queryArguments.get(2)), Integer.parseInt(queryArguments.get(3)));
-
-                    case TRANSACTION_SUM_COMPARE_DEPOSIT_WITHDRAW ->
-                            processTransactionSumCompareDepositWithdraw(ProductType.fromString(queryArguments.get(0)),
-                                    userId, ComparisonType.fromString(queryArguments.get(1)));
-                };
-
-            } catch (UnknownQueryTypeException e) {
-                logger.error("Не удалось обработать запрос: {}", e.getMessage(), e);
-                return false;
-            } catch (UnknownComparisonTypeException e) {
-                logger.error("Не удалось обработать сравнение: {}", e.getMessage(), e);
-                return false;
-            } catch (UnknownProductTypeException e) {
-                logger.error("Не удалось обработать тип продукта: {}", e.getMessage(), e);
-                return false;
-            } catch (UnknownTransactionTypeException e) {
-                logger.error("Не удалось обработать тип транзакции: {}", e.getMessage(), e);
-                return false;
-            } catch (NumberFormatException e) {
-                logger.error("Не удалось обработать число для сравнения: {}", e.getMessage(), e);
+            QueryType queryType = query.getQueryType();
+            if (queryType == null) {
+                logger.warn("Запрос {} правила {} не содержит разобранных аргументов", query.getQuery(), rule.getId());
                 return false;
             }
+            return switch (queryType) {
+                case USER_OF -> processUserOfQuery(userId, query.getProductType().getType());
+                case ACTIVE_USER_OF -> processActiveUserOfQuery(query.getProductType(), userId);
+                case TRANSACTION_SUM_COMPARE -> processTransactionSumCompare(query.getProductType(),
+                        query.getTransactionType(), userId, query.getComparisonType(), query.getConstant());
+                case TRANSACTION_SUM_COMPARE_DEPOSIT_WITHDRAW ->
+                        processTransactionSumCompareDepositWithdraw(query.getProductType(), userId,
+                                query.getComparisonType());
+            };
         }
         return false;
     }
@@ -0,0 +1,117 @@
+package bank.recommendationservice.fintech.service;
+
+import bank.recommendationservice.fintech.exception.NullArgumentException;
+import bank.recommendationservice.fintech.model.DynamicRule;
+import bank.recommendationservice.fintech.model.DynamicRuleQuery;
+import bank.recommendationservice.fintech.other.ComparisonType;
+import bank.recommendationservice.fintech.other.ProductType;
+import bank.recommendationservice.fintech.other.TransactionType;
+import bank.recommendationservice.fintech.repository.RecommendationsRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Predicate;
+
+/**
+ * Компилирует динамические правила в предикаты по id пользователя.
+ * <p>
+ * Правило компилируется один раз при загрузке набора правил. Тип запроса, тип продукта, тип транзакции,
+ * оператор сравнения и константа разрешаются при компиляции и захватываются замыканием, поэтому при оценке
+ * нет ни выбора по типу запроса, ни выбора по оператору сравнения: предикат только читает агрегаты
+ * пользователя из {@link RecommendationsRepository} и сравнивает их.
+ * <p>
+ * Результат скомпилированного правила совпадает с {@link RecommendationService#evaluateDynamicRules}:
+ * правило без запросов или с запросом без разобранных аргументов не выполняется, а результат правила
+ * определяется его первым запросом.
+ */
+public class RuleCompiler {
+    private static final Logger logger = LoggerFactory.getLogger(RuleCompiler.class);
+
+    private static final Predicate<UUID> NEVER = userId -> false;
+
+    private final RecommendationsRepository recommendationsRepository;
+
+    public RuleCompiler(RecommendationsRepository recommendationsRepository) {
+        this.recommendationsRepository = recommendationsRepository;
+    }
+
+    /**
+     * @param rules динамические правила
+     * @return скомпилированные правила по экземпляру правила
+     */
+    public Map<DynamicRule, Predicate<UUID>> compileAll(Collection<DynamicRule> rules) {
+        Map<DynamicRule, Predicate<UUID>> compiled = new IdentityHashMap<>(rules.size());
+        rules.forEach(rule -> compiled.put(rule, compile(rule)));
+        return compiled;
+    }
+
+    /**
+     * @param rule динамическое правило
+     * @return предикат, возвращающий результат правила для id пользователя
+     * @throws NullArgumentException если правило null
+     */
+    public Predicate<UUID> compile(DynamicRule rule) {
+        if (rule == null) {
+            throw new NullArgumentException("Динамическое правило не может быть null");
+        }
+        if (rule.getQueries() == null || rule.getQueries().isEmpty()) {
+            return NEVER;
+        }
+        DynamicRuleQuery query = rule.getQueries().get(0);
+        if (query.getQueryType() == null || query.getProductType() == null) {
+            logger.warn("Запрос {} правила {} не содержит разобранных аргументов", query.getQuery(), rule.getId());
+            return NEVER;
+        }
+        ProductType productType = query.getProductType();
+        return switch (query.getQueryType()) {
+            case USER_OF -> usesProduct(productType.getType());
+            case ACTIVE_USER_OF -> activeUserOf(productType);
+            case TRANSACTION_SUM_COMPARE -> transactionSumCompare(productType, query.getTransactionType(),
+                    comparison(query.getComparisonType()), query.getConstant());
+            case TRANSACTION_SUM_COMPARE_DEPOSIT_WITHDRAW ->
+                    depositWithdrawCompare(productType, comparison(query.getComparisonType()));
+        };
+    }
+
+    private Predicate<UUID> usesProduct(String productType) {
+        return userId -> recommendationsRepository.usesProductOfType(userId, productType);
+    }
+
+    private Predicate<UUID> activeUserOf(ProductType productType) {
+        return userId -> recommendationsRepository.isActiveUserOfProduct(productType, userId);
+    }
+
+    private Predicate<UUID> transactionSumCompare(ProductType productType, TransactionType transactionType,
+                                                  IntComparison comparison, int constant) {
+        return userId -> {
+            Integer sum = recommendationsRepository.getTransactionSum(productType, transactionType, userId);
+            return sum != null && comparison.test(sum, constant);
+        };
+    }
+
+    private Predicate<UUID> depositWithdrawCompare(ProductType productType, IntComparison comparison) {
+        return userId -> {
+            Integer[] sums = recommendationsRepository.getDepositWithdrawSums(productType, userId);
+            return sums[0] != null && sums[1] != null && comparison.test(sums[0], sums[1]);
+        };
+    }
+
+    private static IntComparison comparison(ComparisonType comparisonType) {
+        return switch (comparisonType) {
+            case GREATER_THAN -> (left, right) -> left > right;
+            case LESS_THAN -> (left, right) -> left < right;
+            case EQUALS -> (left, right) -> left == right;
+            case GREATER_THAN_OR_EQUALS -> (left, right) -> left >= right;
+            case LESS_THAN_OR_EQUALS -> (left, right) -> left <= right;
+        };
+    }
+
+    @FunctionalInterface
+    private interface IntComparison {
+        boolean test(int left, int right);
+    }
+}
@@ -0,0 +1,145 @@
+package bank.recommendationservice.fintech.service;
+
+import bank.recommendationservice.fintech.interfaces.RecommendationRuleSet;
+import bank.recommendationservice.fintech.model.DynamicRule;
+import bank.recommendationservice.fintech.model.RuleDependencyGraph;
+import bank.recommendationservice.fintech.model.UserRecommendations;
+import bank.recommendationservice.fintech.repository.RuleCatalogRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.Stream;
+
+@Service
+public class RuleDependencyService {
+    private final RuleCatalogRepository ruleCatalogRepository;
+    private final List<RecommendationRuleSet> ruleSets;
+    private final Cache<UUID, UserRecommendations> recommendationCache;
+
+    private static final int USER_GENERATION_STRIPES = 4096;
+
+    private volatile RuleDependencyGraph graph;
+
+    /**
+     * Поколение кэша рекомендаций всех пользователей и поколения по пользователям (по группам пользователей
+     * с одинаковым остатком хэша id). Поколение пользователя - их сумма: оба счетчика только растут,
+     * поэтому сумма меняется при каждом изменении любого из них.
+     */
+    private final AtomicLong generation = new AtomicLong();
+    private final AtomicLongArray userGenerations = new AtomicLongArray(USER_GENERATION_STRIPES);
+
+    private static final Logger logger = LoggerFactory.getLogger(RuleDependencyService.class);
+
+    @Value("${recommendation.rules.stream-chunk-size:500}")
+    private int streamChunkSize = 500;
+
+    public RuleDependencyService(RuleCatalogRepository ruleCatalogRepository,
+                                 List<RecommendationRuleSet> ruleSets,
+                                 Cache<UUID, UserRecommendations> recommendationCache) {
+        this.ruleCatalogRepository = ruleCatalogRepository;
+        this.ruleSets = ruleSets;
+        this.recommendationCache = recommendationCache;
+    }
+
+    /**
+     * Возвращает текущий граф зависимостей правил. При первом обращении (или после {@link #invalidate()})
+     * граф строится заново по всем динамическим правилам из базы данных.
+     * <p>
+     * Правила читаются из каталога правил вместе с запросами (столбец {@code queries_json}), поэтому
+     * построение графа - одно последовательное чтение таблицы {@code dynamic_rule} порциями.
+     *
+     * @return граф зависимостей правил
+     */
+    public RuleDependencyGraph getGraph() {
+        RuleDependencyGraph current = graph;
+        if (current != null) {
+            return current;
+        }
+        synchronized (this) {
+            if (graph == null) {
+                graph = buildGraph();
+            }
+            return graph;
+        }
+    }
+
+    /**
+     * Сбрасывает граф зависимостей и закэшированные рекомендации пользователей.
+     * Вызывается при каждом изменении набора динамических правил.
+     */
+    public void invalidate() {
+        synchronized (this) {
+            graph = null;
+        }
+        advanceGeneration();
+        recommendationCache.invalidateAll();
+        logger.info("Граф зависимостей правил и кеш рекомендаций сброшены");
+    }
+
+    /**
+     * Перечитывает динамические правила и заменяет граф зависимостей новым, после чего сбрасывает
+     * закэшированные рекомендации пользователей. В отличие от {@link #invalidate()}, граф не пропадает
+     * на время чтения правил: до замены запросы оцениваются по прежнему графу, после - по новому.
+     */
+    public void reload() {
+        synchronized (this) {
+            graph = buildGraph();
+        }
+        advanceGeneration();
+        recommendationCache.invalidateAll();
+        logger.info("Граф зависимостей правил перестроен, кеш рекомендаций сброшен");
+    }
+
+
+    /**
+     * Возвращает поколение кэша рекомендаций пользователя. Читается до графа правил и данных пользователя:
+     * если до записи результата в кэш поколение изменилось, результат мог быть оценен по устаревшим правилам
+     * или данным и в кэш не попадает.
+     *
+     * @param userId id пользователя
+     * @return поколение кэша рекомендаций пользователя
+     */
+    public long getGeneration(UUID userId) {
+        return generation.get() + userGenerations.get(stripe(userId));
+    }
+
+    /**
+     * Меняет поколение кэша рекомендаций всех пользователей: уже начатые оценки не попадут в кэш.
+     */
+    public void advanceGeneration() {
+        generation.incrementAndGet();
+    }
+
+    /**
+     * Меняет поколение кэша рекомендаций пользователя (и пользователей с тем же остатком хэша id).
+     * Вызывается при изменении данных пользователя после сброса его агрегатов: оценка, начатая
+     * в новом поколении, уже не прочитает прежние агрегаты.
+     *
+     * @param userId id пользователя
+     * @return новое поколение кэша рекомендаций пользователя
+     */
+    public long advanceGeneration(UUID userId) {
+        return generation.get() + userGenerations.incrementAndGet(stripe(userId));
+    }
+
+
+    private static int stripe(UUID userId) {
+        return Math.floorMod(userId.hashCode(), USER_GENERATION_STRIPES);
+    }
+
+    private RuleDependencyGraph buildGraph() {
+        List<DynamicRule> dynamicRules;
+        try (Stream<DynamicRule> rules = ruleCatalogRepository.streamRules(streamChunkSize)) {
+            dynamicRules = rules.toList();
+        }
+        logger.debug("Построен граф зависимостей для {} динамических правил", dynamicRules.size());
+        return new RuleDependencyGraph(dynamicRules, ruleSets);
+    }
+}
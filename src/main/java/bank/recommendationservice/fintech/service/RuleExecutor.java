@@ -0,0 +1,201 @@
+package bank.recommendationservice.fintech.service;
+
+import bank.recommendationservice.fintech.exception.RecommendationTimeoutException;
+import bank.recommendationservice.fintech.model.QueryDeadline;
+import bank.recommendationservice.fintech.model.RequestTrace;
+import bank.recommendationservice.fintech.other.ExecutionMode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Исполнитель независимых задач оценки правил.
+ * <p>
+ * В режиме {@link ExecutionMode#SEQUENTIAL} задачи выполняются последовательно в потоке запроса.
+ * В параллельных режимах все задачи запроса запускаются одновременно и ожидаются как одна группа.
+ * <p>
+ * У каждого запроса есть бюджет времени (дедлайн): задачи, не завершившиеся до дедлайна, отменяются
+ * и возвращаются как {@link Result#skipped()}. Дедлайн переносится в задачи как тайм-аут их SQL-запросов
+ * ({@link QueryDeadline}), поэтому и в последовательном режиме выполняющаяся задача не продолжается дольше
+ * дедлайна (с точностью тайм-аута JDBC - до секунды): ее запрос отменяется базой данных, и задача считается
+ * пропущенной. Еще не начатые после дедлайна задачи пропускаются.
+ * <p>
+ * Трассировка запроса ({@link RequestTrace}) переносится в потоки пула вместе с задачами.
+ */
+@Service
+public class RuleExecutor implements DisposableBean {
+    private final ExecutionMode mode;
+    private final long deadlineMillis;
+    private final boolean partialResults;
+    private final ExecutorService executorService;
+
+    private static final Logger logger = LoggerFactory.getLogger(RuleExecutor.class);
+
+    public RuleExecutor(@Value("${recommendation.execution.mode:SEQUENTIAL}") ExecutionMode mode,
+                        @Value("${recommendation.execution.deadline-ms:2000}") long deadlineMillis,
+                        @Value("${recommendation.execution.pool-size:16}") int poolSize,
+                        @Value("${recommendation.execution.partial-results:true}") boolean partialResults) {
+        this.mode = mode;
+        this.deadlineMillis = deadlineMillis;
+        this.partialResults = partialResults;
+        this.executorService = switch (mode) {
+            case SEQUENTIAL -> null;
+            case PLATFORM_THREADS -> newPlatformThreadPool(poolSize);
+            case VIRTUAL_THREADS -> {
+                ExecutorService virtual = newVirtualThreadPerTaskExecutor();
+                if (virtual == null) {
+                    logger.warn("Виртуальные потоки недоступны в Java {}, используется пул платформенных потоков",
+                            Runtime.version().feature());
+                    yield newPlatformThreadPool(poolSize);
+                }
+                yield virtual;
+            }
+        };
+        logger.info("Режим выполнения правил: {}, дедлайн запроса: {} мс", mode, deadlineMillis);
+    }
+
+    public ExecutionMode getMode() {
+        return mode;
+    }
+
+    /**
+     * Выполняет задачи в пределах дедлайна запроса и возвращает их результаты в порядке задач.
+     *
+     * @param tasks независимые задачи оценки правил
+     * @return результаты задач; для задач, не успевших выполниться до дедлайна, - {@link Result#skipped()}
+     * @throws RecommendationTimeoutException если ожидание результатов было прервано
+     */
+    public <T> List<Result<T>> invokeAll(List<? extends Callable<T>> tasks) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(deadlineMillis);
+        if (executorService == null || tasks.size() <= 1) {
+            List<Result<T>> results = new ArrayList<>(tasks.size());
+            for (Callable<T> task : tasks) {
+                results.add(System.nanoTime() - deadline < 0 ? call(QueryDeadline.bind(deadline, task)) : Result.skipped());
+            }
+            return results;
+        }
+
+        RequestTrace trace = RequestTrace.current();
+        List<Callable<T>> submitted = tasks.stream()
+                .map(task -> QueryDeadline.bind(deadline, trace == null ? task : trace.propagate(task)))
+                .toList();
+        List<Future<T>> futures;
+        try {
+            futures = executorService.invokeAll(submitted, deadlineMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RecommendationTimeoutException("Оценка правил прервана", e);
+        }
+
+        List<Result<T>> results = new ArrayList<>(futures.size());
+        for (Future<T> future : futures) {
+            if (future.isCancelled()) {
+                results.add(Result.skipped());
+                continue;
+            }
+            try {
+                results.add(Result.completed(future.get()));
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof QueryTimeoutException) {
+                    results.add(Result.skipped());
+                    continue;
+                }
+                throw rethrow(e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RecommendationTimeoutException("Оценка правил прервана", e);
+            }
+        }
+        return results;
+    }
+
+    public long getDeadlineMillis() {
+        return deadlineMillis;
+    }
+
+    /**
+     * @return {@code true}, если при превышении дедлайна допускается частичный ответ без пропущенных правил;
+     * {@code false}, если запрос должен завершаться {@link RecommendationTimeoutException}
+     */
+    public boolean isPartialResultsAllowed() {
+        return partialResults;
+    }
+
+    @Override
+    public void destroy() {
+        if (executorService != null) {
+            executorService.shutdownNow();
+        }
+    }
+
+    /**
+     * Выполняет задачу в потоке запроса; задача, SQL-запрос которой отменен по дедлайну, считается пропущенной.
+     */
+    private static <T> Result<T> call(Callable<T> task) {
+        try {
+            return Result.completed(task.call());
+        } catch (QueryTimeoutException e) {
+            logger.debug("SQL-запрос правила отменен по дедлайну: {}", e.getMessage());
+            return Result.skipped();
+        } catch (Exception e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static RuntimeException rethrow(Throwable cause) {
+        if (cause instanceof RuntimeException runtimeException) {
+            return runtimeException;
+        }
+        if (cause instanceof Error error) {
+            throw error;
+        }
+        return new IllegalStateException(cause);
+    }
+
+    private static ExecutorService newPlatformThreadPool(int poolSize) {
+        AtomicInteger counter = new AtomicInteger();
+        return Executors.newFixedThreadPool(poolSize, runnable -> {
+            Thread thread = new Thread(runnable, "rule-executor-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Создает {@code Executors.newVirtualThreadPerTaskExecutor()} через рефлексию,
+     * чтобы сборка оставалась совместимой с Java 17.
+     *
+     * @return исполнитель на виртуальных потоках или {@code null}, если они недоступны
+     */
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Результат задачи оценки правила.
+     *
+     * @param value    результат задачи; {@code null}, если задача не успела выполниться
+     * @param timedOut {@code true}, если задача была отменена или пропущена по дедлайну запроса
+     */
+    public record Result<T>(T value, boolean timedOut) {
+        static <T> Result<T> completed(T value) {
+            return new Result<>(value, false);
+        }
+
+        static <T> Result<T> skipped() {
+            return new Result<>(null, true);
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package bank.recommendationservice.fintech.service;
+
+import bank.recommendationservice.fintech.model.DynamicRule;
+import bank.recommendationservice.fintech.model.DynamicRuleQuery;
+import bank.recommendationservice.fintech.other.ComparisonType;
+import bank.recommendationservice.fintech.other.Feature;
+import bank.recommendationservice.fintech.other.ProductType;
+import bank.recommendationservice.fintech.repository.RecommendationsRepository;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Индекс динамических правил по условиям (дискриминационная сеть).
+ * <p>
+ * Правила с одинаковым условием делят один узел индекса: все правила {@code USER_OF DEBIT} - один узел,
+ * все правила {@code TRANSACTION_SUM_COMPARE DEBIT DEPOSIT} - один узел суммы, в котором константы правил
+ * хранятся отсортированными по оператору сравнения. При оценке каждое различное условие проверяется
+ * один раз: агрегат пользователя читается один раз на узел, а сработавшие правила узла суммы находятся
+ * одним бинарным поиском на оператор, поэтому стоимость оценки зависит от количества различных условий
+ * и сработавших правил, а не от общего количества правил.
+ * <p>
+ * Результат совпадает с {@link RuleCompiler} и {@link RecommendationService#evaluateDynamicRules}:
+ * результат правила определяется его первым запросом, правило без запросов или с запросом
+ * без разобранных аргументов не срабатывает. Экземпляр неизменяем и строится заново вместе с графом правил.
+ */
+public class RuleIndex {
+    private final RecommendationsRepository recommendationsRepository;
+    private final int size;
+    private final Map<ProductType, int[]> usesProduct = new EnumMap<>(ProductType.class);
+    private final Map<ProductType, int[]> activeUserOf = new EnumMap<>(ProductType.class);
+    private final Map<Feature, SumNode> transactionSums = new LinkedHashMap<>();
+    private final Map<ProductType, Map<ComparisonType, int[]>> depositWithdraw = new EnumMap<>(ProductType.class);
+
+    /**
+     * @param recommendationsRepository репозиторий агрегатов пользователя
+     * @param rules                     правила; номер правила в индексе - его позиция в списке
+     */
+    public RuleIndex(RecommendationsRepository recommendationsRepository, List<DynamicRule> rules) {
+        this.recommendationsRepository = recommendationsRepository;
+        this.size = rules.size();
+
+        Map<ProductType, List<Integer>> usesProductRules = new EnumMap<>(ProductType.class);
+        Map<ProductType, List<Integer>> activeUserOfRules = new EnumMap<>(ProductType.class);
+        Map<Feature, Map<ComparisonType, List<int[]>>> sumRules = new LinkedHashMap<>();
+        Map<ProductType, Map<ComparisonType, List<Integer>>> depositWithdrawRules = new EnumMap<>(ProductType.class);
+        for (int i = 0; i < rules.size(); i++) {
+            DynamicRule rule = rules.get(i);
+            if (rule.getQueries() == null || rule.getQueries().isEmpty()) {
+                continue;
+            }
+            DynamicRuleQuery query = rule.getQueries().get(0);
+            if (query.getQueryType() == null || query.getProductType() == null) {
+                continue;
+            }
+            ProductType productType = query.getProductType();
+            switch (query.getQueryType()) {
+                case USER_OF -> usesProductRules.computeIfAbsent(productType, type -> new ArrayList<>()).add(i);
+                case ACTIVE_USER_OF -> activeUserOfRules.computeIfAbsent(productType, type -> new ArrayList<>()).add(i);
+                case TRANSACTION_SUM_COMPARE -> sumRules
+                        .computeIfAbsent(new Feature(productType, query.getTransactionType()), feature -> new EnumMap<>(ComparisonType.class))
+                        .computeIfAbsent(query.getComparisonType(), type -> new ArrayList<>())
+                        .add(new int[]{query.getConstant(), i});
+                case TRANSACTION_SUM_COMPARE_DEPOSIT_WITHDRAW -> depositWithdrawRules
+                        .computeIfAbsent(productType, type -> new EnumMap<>(ComparisonType.class))
+                        .computeIfAbsent(query.getComparisonType(), type -> new ArrayList<>())
+                        .add(i);
+            }
+        }
+        usesProductRules.forEach((productType, indexes) -> usesProduct.put(productType, toArray(indexes)));
+        activeUserOfRules.forEach((productType, indexes) -> activeUserOf.put(productType, toArray(indexes)));
+        sumRules.forEach((feature, byComparison) -> transactionSums.put(feature, new SumNode(byComparison)));
+        depositWithdrawRules.forEach((productType, byComparison) -> {
+            Map<ComparisonType, int[]> node = new EnumMap<>(ComparisonType.class);
+            byComparison.forEach((comparisonType, indexes) -> node.put(comparisonType, toArray(indexes)));
+            depositWithdraw.put(productType, node);
+        });
+    }
+
+    /**
+     * @return количество правил в индексе
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return количество различных условий (узлов) индекса; каждое проверяется не больше одного раза на пользователя
+     */
+    public int getConditionCount() {
+        return usesProduct.size() + activeUserOf.size() + transactionSums.size() + depositWithdraw.size();
+    }
+
+    /**
+     * Оценивает все правила индекса для пользователя.
+     *
+     * @param userId уникальный идентификатор пользователя
+     * @return номера сработавших правил
+     */
+    public BitSet match(UUID userId) {
+        BitSet matched = new BitSet(size);
+        usesProduct.forEach((productType, rules) -> {
+            if (recommendationsRepository.usesProductOfType(userId, productType.getType())) {
+                set(matched, rules);
+            }
+        });
+        activeUserOf.forEach((productType, rules) -> {
+            if (recommendationsRepository.isActiveUserOfProduct(productType, userId)) {
+                set(matched, rules);
+            }
+        });
+        transactionSums.forEach((feature, node) -> {
+            Integer sum = recommendationsRepository.getTransactionSum(feature.productType(), feature.transactionType(), userId);
+            if (sum != null) {
+                node.match(sum, matched);
+            }
+        });
+        depositWithdraw.forEach((productType, node) -> {
+            Integer[] sums = recommendationsRepository.getDepositWithdrawSums(productType, userId);
+            if (sums[0] != null && sums[1] != null) {
+                int deposit = sums[0];
+                int withdraw = sums[1];
+                node.forEach((comparisonType, rules) -> {
+                    if (compare(comparisonType, deposit, withdraw)) {
+                        set(matched, rules);
+                    }
+                });
+            }
+        });
+        return matched;
+    }
+
+
+    private static boolean compare(ComparisonType comparisonType, int left, int right) {
+        return switch (comparisonType) {
+            case GREATER_THAN -> left > right;
+            case LESS_THAN -> left < right;
+            case EQUALS -> left == right;
+            case GREATER_THAN_OR_EQUALS -> left >= right;
+            case LESS_THAN_OR_EQUALS -> left <= right;
+        };
+    }
+
+
+    private static void set(BitSet matched, int[] rules) {
+        for (int rule : rules) {
+            matched.set(rule);
+        }
+    }
+
+
+    private static int[] toArray(List<Integer> indexes) {
+        return indexes.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+
+    /**
+     * Узел суммы транзакций по признаку: для каждого оператора сравнения константы правил по возрастанию
+     * и номера правил в том же порядке. Правила, которые срабатывают при сумме {@code sum}, занимают
+     * непрерывный диапазон массива, границы которого находятся бинарным поиском.
+     */
+    private static final class SumNode {
+        private final Map<ComparisonType, int[]> constants = new EnumMap<>(ComparisonType.class);
+        private final Map<ComparisonType, int[]> rules = new EnumMap<>(ComparisonType.class);
+
+        private SumNode(Map<ComparisonType, List<int[]>> byComparison) {
+            byComparison.forEach((comparisonType, entries) -> {
+                int[][] sorted = entries.toArray(int[][]::new);
+                Arrays.sort(sorted, Comparator.comparingInt(entry -> entry[0]));
+                constants.put(comparisonType, Arrays.stream(sorted).mapToInt(entry -> entry[0]).toArray());
+                rules.put(comparisonType, Arrays.stream(sorted).mapToInt(entry -> entry[1]).toArray());
+            });
+        }
+
+        private void match(int sum, BitSet matched) {
+            constants.forEach((comparisonType, sortedConstants) -> {
+                int[] sortedRules = rules.get(comparisonType);
+                int n = sortedConstants.length;
+                switch (comparisonType) {
+                    // sum > constant: константы меньше суммы
+                    case GREATER_THAN -> set(matched, sortedRules, 0, lowerBound(sortedConstants, sum));
+                    case GREATER_THAN_OR_EQUALS -> set(matched, sortedRules, 0, upperBound(sortedConstants, sum));
+                    // sum < constant: константы больше суммы
+                    case LESS_THAN -> set(matched, sortedRules, upperBound(sortedConstants, sum), n);
+                    case LESS_THAN_OR_EQUALS -> set(matched, sortedRules, lowerBound(sortedConstants, sum), n);
+                    case EQUALS -> set(matched, sortedRules, lowerBound(sortedConstants, sum),
+                            upperBound(sortedConstants, sum));
+                }
+            });
+        }
+
+        private static void set(BitSet matched, int[] sortedRules, int from, int to) {
+            for (int i = from; i < to; i++) {
+                matched.set(sortedRules[i]);
+            }
+        }
+
+        /**
+         * @return индекс первой константы, не меньшей {@code value}
+         */
+        private static int lowerBound(int[] sortedConstants, int value) {
+            int low = 0;
+            int high = sortedConstants.length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (sortedConstants[middle] < value) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * @return индекс первой константы, большей {@code value}
+         */
+        private static int upperBound(int[] sortedConstants, int value) {
+            int low = 0;
+            int high = sortedConstants.length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (sortedConstants[middle] <= value) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package bank.recommendationservice.fintech.service;
+
+import bank.recommendationservice.fintech.repository.PgNotificationListener;
+import bank.recommendationservice.fintech.repository.RuleSetVersionRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Согласование набора динамических правил между узлами сервиса.
+ * <p>
+ * Каждое изменение правил увеличивает версию набора правил в базе данных ({@link #publishChange()}).
+ * Узел хранит версию, по которой построен его граф правил, и при расхождении с версией в базе данных
+ * сбрасывает кэш второго уровня Hibernate и перестраивает граф правил ({@link #checkVersion()}),
+ * после чего скомпилированные правила и индекс правил строятся заново по новому графу.
+ * <p>
+ * Об изменении узел узнает двумя способами:
+ * <ul>
+ *     <li>на PostgreSQL - уведомлением LISTEN/NOTIFY по каналу {@value RuleSetVersionRepository#CHANNEL},
+ *     для которого держится отдельное соединение пула;</li>
+ *     <li>опросом версии раз в {@code recommendation.rules.version-poll-ms} - один запрос по первичному ключу.
+ *     Опрос работает и при включенных уведомлениях и ограничивает задержку, если уведомление потеряно
+ *     (например, при переподключении).</li>
+ * </ul>
+ */
+@Service
+public class RuleSetVersionService implements DisposableBean {
+    private final RuleSetVersionRepository ruleSetVersionRepository;
+    private final RuleDependencyService ruleDependencyService;
+    private final EntityManagerFactory entityManagerFactory;
+    private final ScheduledExecutorService scheduler;
+    private final PgNotificationListener listener;
+
+    private long knownVersion = -1;
+
+    private static final Logger logger = LoggerFactory.getLogger(RuleSetVersionService.class);
+
+    @Value("${recommendation.rules.version-poll-ms:5000}")
+    private long pollMillis = 5000;
+
+    @Value("${recommendation.rules.version-listen:true}")
+    private boolean listen = true;
+
+    public RuleSetVersionService(RuleSetVersionRepository ruleSetVersionRepository,
+                                 RuleDependencyService ruleDependencyService,
+                                 EntityManagerFactory entityManagerFactory,
+                                 @Qualifier("defaultDataSource") DataSource dataSource) {
+        this.ruleSetVersionRepository = ruleSetVersionRepository;
+        this.ruleDependencyService = ruleDependencyService;
+        this.entityManagerFactory = entityManagerFactory;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "rule-set-version-poller");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // уведомление - только сигнал проверить версию; после переподключения версия проверяется всегда
+        this.listener = new PgNotificationListener(dataSource, RuleSetVersionRepository.CHANNEL,
+                "rule-set-version-listener", this::checkVersion, payload -> checkVersion());
+    }
+
+    /**
+     * Запоминает текущую версию набора правил и запускает опрос версии и прослушивание уведомлений.
+     */
+    @PostConstruct
+    public void start() {
+        long version = ruleSetVersionRepository.getVersion();
+        synchronized (this) {
+            knownVersion = version;
+        }
+        logger.info("Версия набора правил: {}", version);
+        if (pollMillis > 0) {
+            scheduler.scheduleWithFixedDelay(this::poll, pollMillis, pollMillis, TimeUnit.MILLISECONDS);
+        }
+        if (listen && ruleSetVersionRepository.isPostgres()) {
+            listener.start();
+        }
+    }
+
+    /**
+     * Публикует изменение набора правил: увеличивает версию и отправляет уведомление другим узлам.
+     * Вызывается в транзакции, изменяющей правила; граф правил этого узла сбрасывается после фиксации
+     * транзакции, поэтому он не может быть построен заново по еще не зафиксированным правилам.
+     * Вне транзакции граф сбрасывается сразу.
+     */
+    public void publishChange() {
+        long version = ruleSetVersionRepository.increment();
+        ruleSetVersionRepository.notifyChange(version);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    applyLocalChange(version);
+                }
+            });
+        } else {
+            applyLocalChange(version);
+        }
+    }
+
+    /**
+     * Сравнивает версию набора правил в базе данных с версией, по которой построен граф правил узла,
+     * и при расхождении сбрасывает кэш второго уровня Hibernate и перестраивает граф правил.
+     * Повторный вызов без новых изменений ничего не делает.
+     *
+     * @return {@code true}, если граф правил перестроен
+     */
+    public synchronized boolean checkVersion() {
+        long version = ruleSetVersionRepository.getVersion();
+        if (version == knownVersion) {
+            return false;
+        }
+        logger.info("Версия набора правил изменилась: {} -> {}, правила перечитываются", knownVersion, version);
+        entityManagerFactory.getCache().unwrap(org.hibernate.Cache.class).evictAllRegions();
+        ruleDependencyService.reload();
+        knownVersion = version;
+        return true;
+    }
+
+    /**
+     * @return версия набора правил, по которой построен граф правил узла
+     */
+    public synchronized long getKnownVersion() {
+        return knownVersion;
+    }
+
+    @Override
+    public void destroy() {
+        scheduler.shutdownNow();
+        listener.close();
+    }
+
+    /**
+     * Сбрасывает граф правил после собственного изменения. Версия принимается как известная, только если
+     * она следует сразу за известной: иначе между ними есть изменение другого узла, и его применит
+     * {@link #checkVersion()} вместе со сбросом кэша второго уровня.
+     */
+    private synchronized void applyLocalChange(long version) {
+        ruleDependencyService.invalidate();
+        if (version == knownVersion + 1) {
+            knownVersion = version;
+        }
+    }
+
+    private void poll() {
+        try {
+            checkVersion();
+        } catch (RuntimeException e) {
+            logger.warn("Не удалось проверить версию набора правил: {}", e.getMessage());
+        }
+    }
+}
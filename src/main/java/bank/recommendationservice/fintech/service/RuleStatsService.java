@@ -1,29 +1,44 @@
 package bank.recommendationservice.fintech.service;
 
 import bank.recommendationservice.fintech.dto.RuleStatsDTO;
+import bank.recommendationservice.fintech.exception.IllegalPageRequestException;
 import bank.recommendationservice.fintech.exception.NullArgumentException;
 import bank.recommendationservice.fintech.exception.RulesNotFoundException;
+import bank.recommendationservice.fintech.model.DynamicRule;
 import bank.recommendationservice.fintech.model.RuleStats;
 import bank.recommendationservice.fintech.model.RuleStatsResponse;
 import bank.recommendationservice.fintech.repository.DynamicRuleRepository;
+import bank.recommendationservice.fintech.repository.RuleCatalogRepository;
 import bank.recommendationservice.fintech.repository.RuleStatsRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 @Service
 public class RuleStatsService {
     private final RuleStatsRepository ruleStatsRepository;
     private final DynamicRuleRepository dynamicRuleRepository;
+    private final RuleCatalogRepository ruleCatalogRepository;
 
     private static final Logger logger = LoggerFactory.getLogger(RuleStatsService.class);
 
+    @Value("${recommendation.rules.max-page-size:1000}")
+    private int maxPageSize = 1000;
+
+    @Value("${recommendation.rules.stream-chunk-size:500}")
+    private int streamChunkSize = 500;
+
     RuleStatsService(RuleStatsRepository ruleStatsRepository,
-                     DynamicRuleRepository dynamicRuleRepository) {
+                     DynamicRuleRepository dynamicRuleRepository,
+                     RuleCatalogRepository ruleCatalogRepository) {
         this.ruleStatsRepository = ruleStatsRepository;
         this.dynamicRuleRepository = dynamicRuleRepository;
+        this.ruleCatalogRepository = ruleCatalogRepository;
     }
 
     /**
@@ -48,15 +63,61 @@ public class RuleStatsService {
         ruleStatsRepository.save(ruleStats);
     }
 
+    /**
+     * Добавляет объекты {@code RuleStats} со счетчиком {@code counter} = 0 для нескольких новых правил.
+     * Вызывается при пакетном импорте правил, правила уже сохранены в текущей транзакции.
+     *
+     * @param dynamicRules сохраненные динамические правила
+     */
+    public void addAllRuleStats(Collection<DynamicRule> dynamicRules) {
+        logger.debug("Вызван метод addAllRuleStats() для {} правил", dynamicRules.size());
+        List<RuleStats> ruleStats = dynamicRules.stream()
+                .map(dynamicRule -> {
+                    RuleStats stats = new RuleStats();
+                    stats.setCount(0);
+                    stats.setDynamicRule(dynamicRule);
+                    return stats;
+                })
+                .toList();
+        ruleStatsRepository.saveAll(ruleStats);
+    }
+
     /**
      * @return {@code List} из DTO всех объектов RuleStats
      */
     public RuleStatsResponse getAllRuleStats() {
+        try (Stream<RuleStatsDTO> ruleStats = streamAllRuleStats()) {
+            return new RuleStatsResponse(ruleStats.toList());
+        }
+    }
+
+    /**
+     * Счетчики читаются из базы данных порциями по мере чтения потока. Первая порция читается сразу,
+     * поэтому ошибка обращения к базе данных выбрасывается из этого метода.
+     *
+     * @return поток DTO всех объектов RuleStats в порядке id правила
+     * @throws RuntimeException если не удалось прочитать статистику
+     */
+    public Stream<RuleStatsDTO> streamAllRuleStats() {
         try {
-            List<RuleStatsDTO> ruleStatsList = ruleStatsRepository.findAll().stream()
-                    .map(ruleStats -> new RuleStatsDTO(ruleStats.getDynamicRule().getId(), ruleStats.getCount()))
-                    .toList();
-            return new RuleStatsResponse(ruleStatsList);
+            return ruleCatalogRepository.streamRuleStats(streamChunkSize);
+        } catch (Exception e) {
+            logger.error("Ошибка при получении статистики правил: {}", e.getMessage());
+            throw new RuntimeException("Ошибка при получении статистики правил", e);
+        }
+    }
+
+    /**
+     * @param page номер страницы, начиная с 0
+     * @param size размер страницы
+     * @return страница DTO объектов RuleStats в порядке id правила
+     * @throws IllegalPageRequestException если номер или размер страницы недопустимы
+     * @throws RuntimeException            если не удалось прочитать статистику
+     */
+    public RuleStatsResponse getRuleStatsPage(int page, int size) {
+        RecommendationDynamicRuleService.checkPageRequest(page, size, maxPageSize);
+        try {
+            return new RuleStatsResponse(ruleCatalogRepository.findRuleStatsPage(page, size));
         } catch (Exception e) {
             logger.error("Ошибка при получении статистики правил: {}", e.getMessage());
             throw new RuntimeException("Ошибка при получении статистики правил", e);
@@ -77,12 +138,8 @@ public class RuleStatsService {
             logger.error("В метод increaseCounter() передант аргумент null");
             throw new NullArgumentException("Параметр dynamicRuleId не может быть null");
         }
-        RuleStats ruleStats = ruleStatsRepository.findByDynamicRuleId(dynamicRuleId);
-
-        if (ruleStats != null) {
-            ruleStats.setCount(ruleStats.getCount() + 1);
+        if (ruleStatsRepository.incrementCount(dynamicRuleId) > 0) {
             logger.debug("Увеличен счетчик срабатываний для правила с id: {}", dynamicRuleId);
-            ruleStatsRepository.save(ruleStats);
         } else {
             logger.error("Статистика срабатываний по правилу с id: {} не найдена ", dynamicRuleId);
             throw new RulesNotFoundException("Статистика срабатываний по правилу не найдена ", dynamicRuleId);
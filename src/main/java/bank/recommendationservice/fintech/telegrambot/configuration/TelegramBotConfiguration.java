@@ -35,6 +35,13 @@ public class TelegramBotConfiguration {
     @Value("${bot.token}")
     private String botToken;
 
+    /**
+     * Адрес Bot API. Если не задан, используется сервер Telegram.
+     * Нагрузочный тест подменяет его локальной заглушкой Bot API.
+     */
+    @Value("${telegram.bot.api-url:}")
+    private String apiUrl;
+
     private static final Logger logger = LoggerFactory.getLogger(TelegramBotConfiguration.class);
 
     /**
@@ -51,6 +58,10 @@ public class TelegramBotConfiguration {
             logger.error("Токен бота не установлен. Проверьте файл конфигурации tg_token.properties");
             throw new IllegalArgumentException("Токен бота не установлен.");
         }
+        if (apiUrl != null && !apiUrl.isEmpty()) {
+            logger.warn("Telegram-бот использует Bot API по адресу {}", apiUrl);
+            return new TelegramBot.Builder(botToken).apiUrl(apiUrl).build();
+        }
         return new TelegramBot(botToken);
     }
 }
\ No newline at end of file
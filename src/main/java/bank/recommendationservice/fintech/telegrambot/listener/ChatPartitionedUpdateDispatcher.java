@@ -0,0 +1,178 @@
+package bank.recommendationservice.fintech.telegrambot.listener;
+
+import com.pengrad.telegrambot.UpdatesListener;
+import com.pengrad.telegrambot.model.Update;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.Consumer;
+
+/**
+ * Распределяет обновления Telegram по рабочим потокам по id чата.
+ * <p>
+ * Все обновления одного чата попадают в одну и ту же очередь и обрабатываются строго по порядку,
+ * а разные чаты обрабатываются параллельно, поэтому медленный запрос одного пользователя не задерживает
+ * остальных.
+ * <p>
+ * Обновление подтверждается Telegram, как только поставлено в очередь: если подтверждать только обработанные,
+ * getUpdates сразу возвращает еще обрабатываемые обновления, и цикл опроса крутится вхолостую. Обрабатываемые
+ * обновления отслеживаются самим диспетчером ({@link #getPendingCount()}, {@link #getProcessedUpdateId()}),
+ * а при переполнении очереди прием новых обновлений ждет, поэтому следующий getUpdates не отправляется,
+ * пока для обновлений нет места. Обновления, принятые, но не обработанные к остановке сервиса, теряются.
+ */
+@Component
+public class ChatPartitionedUpdateDispatcher implements MeterBinder, DisposableBean {
+    private final List<BlockingQueue<Runnable>> partitions;
+    private final List<Thread> workers;
+    private final ConcurrentSkipListSet<Integer> pendingUpdateIds = new ConcurrentSkipListSet<>();
+
+    private volatile int lastDispatchedUpdateId = -1;
+
+    private static final Logger logger = LoggerFactory.getLogger(ChatPartitionedUpdateDispatcher.class);
+
+    /**
+     * @param workerCount   количество рабочих потоков (партиций)
+     * @param queueCapacity емкость очереди одной партиции; при переполнении прием новых обновлений ждет
+     */
+    public ChatPartitionedUpdateDispatcher(@Value("${telegram.updates.workers:8}") int workerCount,
+                                           @Value("${telegram.updates.queue-capacity:1000}") int queueCapacity) {
+        this.partitions = new ArrayList<>(workerCount);
+        this.workers = new ArrayList<>(workerCount);
+        for (int i = 0; i < workerCount; i++) {
+            BlockingQueue<Runnable> queue = new ArrayBlockingQueue<>(queueCapacity);
+            Thread worker = new Thread(() -> drain(queue), "telegram-updates-" + i);
+            worker.setDaemon(true);
+            worker.start();
+            partitions.add(queue);
+            workers.add(worker);
+        }
+    }
+
+    /**
+     * Ставит обновления в очереди обработки и возвращает id последнего обновления, которое можно подтвердить.
+     *
+     * @param updates обновления из getUpdates
+     * @param handler обработчик одного обновления
+     * @return id последнего обновления, до которого включительно все обновления поставлены в очередь,
+     * или {@link UpdatesListener#CONFIRMED_UPDATES_NONE}, если подтверждать пока нечего
+     */
+    public int dispatch(List<Update> updates, Consumer<Update> handler) {
+        for (Update update : updates) {
+            int updateId = update.updateId();
+            if (updateId <= lastDispatchedUpdateId) {
+                continue;
+            }
+            pendingUpdateIds.add(updateId);
+            lastDispatchedUpdateId = updateId;
+
+            Long chatId = chatIdOf(update);
+            if (chatId == null) {
+                // Обновления без чата не обрабатываются, но должны быть подтверждены
+                pendingUpdateIds.remove(updateId);
+                continue;
+            }
+            try {
+                partitionOf(chatId).put(() -> handle(update, handler));
+            } catch (InterruptedException e) {
+                pendingUpdateIds.remove(updateId);
+                lastDispatchedUpdateId = updateId - 1;
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        int lastDispatched = lastDispatchedUpdateId;
+        return lastDispatched < 0 ? UpdatesListener.CONFIRMED_UPDATES_NONE : lastDispatched;
+    }
+
+    /**
+     * @return id последнего обновления, до которого включительно все обновления обработаны,
+     * или {@link UpdatesListener#CONFIRMED_UPDATES_NONE}
+     */
+    public int getProcessedUpdateId() {
+        int lastDispatched = lastDispatchedUpdateId;
+        Integer firstPending = pendingUpdateIds.isEmpty() ? null : pendingUpdateIds.first();
+        int confirmed = firstPending == null ? lastDispatched : firstPending - 1;
+        return confirmed < 0 ? UpdatesListener.CONFIRMED_UPDATES_NONE : confirmed;
+    }
+
+    /**
+     * @return количество обновлений, ожидающих обработки во всех очередях
+     */
+    public int getQueueDepth() {
+        return partitions.stream().mapToInt(BlockingQueue::size).sum();
+    }
+
+    /**
+     * @return количество принятых, но еще не обработанных обновлений (в очереди и в обработке)
+     */
+    public int getPendingCount() {
+        return pendingUpdateIds.size();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("telegram.updates.queue.depth", this, ChatPartitionedUpdateDispatcher::getQueueDepth)
+                .description("Количество обновлений Telegram в очередях обработки")
+                .register(registry);
+        Gauge.builder("telegram.updates.pending", this, ChatPartitionedUpdateDispatcher::getPendingCount)
+                .description("Количество неподтвержденных обновлений Telegram")
+                .register(registry);
+        for (int i = 0; i < partitions.size(); i++) {
+            Gauge.builder("telegram.updates.partition.depth", partitions.get(i), BlockingQueue::size)
+                    .tag("partition", String.valueOf(i))
+                    .description("Количество обновлений Telegram в очереди партиции")
+                    .register(registry);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        int pending = getPendingCount();
+        if (pending > 0) {
+            logger.warn("Остановка с {} необработанными обновлениями Telegram", pending);
+        }
+        workers.forEach(Thread::interrupt);
+    }
+
+    private BlockingQueue<Runnable> partitionOf(long chatId) {
+        return partitions.get(Math.floorMod(Long.hashCode(chatId), partitions.size()));
+    }
+
+    private void handle(Update update, Consumer<Update> handler) {
+        try {
+            handler.accept(update);
+        } catch (RuntimeException e) {
+            logger.error("Ошибка при обработке обновления {}: {}", update.updateId(), e.getMessage(), e);
+        } finally {
+            pendingUpdateIds.remove(update.updateId());
+        }
+    }
+
+    private static void drain(BlockingQueue<Runnable> queue) {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                queue.take().run();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static Long chatIdOf(Update update) {
+        if (update.message() == null || update.message().chat() == null) {
+            return null;
+        }
+        return update.message().chat().id();
+    }
+}
@@ -1,20 +1,27 @@
 package bank.recommendationservice.fintech.telegrambot.listener;
 
+import bank.recommendationservice.fintech.configuration.AdaptiveConcurrencyLimiter;
 import bank.recommendationservice.fintech.dto.RecommendationDTO;
 import bank.recommendationservice.fintech.exception.UserNotFoundException;
+import bank.recommendationservice.fintech.model.UserInfo;
 import bank.recommendationservice.fintech.repository.RecommendationsRepository;
 import bank.recommendationservice.fintech.service.RecommendationService;
+import bank.recommendationservice.fintech.telegrambot.sender.TelegramMessageSender;
 import com.pengrad.telegrambot.TelegramBot;
 import com.pengrad.telegrambot.UpdatesListener;
 import com.pengrad.telegrambot.model.Message;
 import com.pengrad.telegrambot.model.Update;
+import com.pengrad.telegrambot.request.GetUpdates;
 import com.pengrad.telegrambot.request.SendMessage;
 import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import java.util.List;
+import java.util.Optional;
 
 @Component
 public class TelegramBotUpdatesListener implements UpdatesListener {
@@ -23,73 +30,97 @@ public class TelegramBotUpdatesListener implements UpdatesListener {
     private final TelegramBot telegramBot;
     private final RecommendationService recommendationService;
     private final RecommendationsRepository recommendationsRepository;
+    private final AdaptiveConcurrencyLimiter telegramLimiter;
+    private final ChatPartitionedUpdateDispatcher updateDispatcher;
+    private final TelegramMessageSender messageSender;
+
+    @Value("${telegram.updates.long-poll-seconds:25}")
+    private int longPollSeconds = 25;
 
     public TelegramBotUpdatesListener(TelegramBot telegramBot,
                                       RecommendationService recommendationService,
-                                      RecommendationsRepository recommendationsRepository) {
+                                      RecommendationsRepository recommendationsRepository,
+                                      @Qualifier("telegramLimiter") AdaptiveConcurrencyLimiter telegramLimiter,
+                                      ChatPartitionedUpdateDispatcher updateDispatcher,
+                                      TelegramMessageSender messageSender) {
         this.telegramBot = telegramBot;
         this.recommendationService = recommendationService;
         this.recommendationsRepository = recommendationsRepository;
+        this.telegramLimiter = telegramLimiter;
+        this.updateDispatcher = updateDispatcher;
+        this.messageSender = messageSender;
     }
 
+    /**
+     * Подписывается на обновления длинным опросом: пока новых обновлений нет, Telegram держит запрос getUpdates
+     * до {@code telegram.updates.long-poll-seconds} секунд.
+     */
     @PostConstruct
     public void init() {
-        telegramBot.setUpdatesListener(this);
+        telegramBot.setUpdatesListener(this, new GetUpdates().timeout(longPollSeconds));
     }
 
 
     /**
-     * Обрабатывает список обновлений от Telegram. Если обновление содержит сообщение,
-     * бот проверяет, является ли сообщение командой. Если это так, бот обрабатывает команду.
-     * Если сообщение не является командой, бот игнорирует его.
+     * Передает список обновлений от Telegram в {@link ChatPartitionedUpdateDispatcher}.
+     * Обновления разных чатов обрабатываются параллельно, обновления одного чата - по порядку.
      *
      * @param updates список обновлений для обработки
-     * @return {@link UpdatesListener#CONFIRMED_UPDATES_ALL} для подтверждения обработки всех обновлений
+     * @return id последнего обновления, до которого включительно все обновления приняты в обработку,
+     * или {@link UpdatesListener#CONFIRMED_UPDATES_NONE}
      */
     @Override
     public int process(List<Update> updates) {
-        updates.forEach(update -> {
-            logger.info("Processing update: {}", update);
-
-            if (update.message() != null) {
-                Message message = update.message();
-                String text = message.text();
-                long chatId = message.chat().id();
-
-                if (text == null) {
-                    SendMessage sendMessage = new SendMessage(chatId, "Ошибка: текст команды не может быть пустым.");
-                    telegramBot.execute(sendMessage);
-                    return;
-                }
+        return updateDispatcher.dispatch(updates, this::handleUpdate);
+    }
+
+    /**
+     * Обрабатывает одно обновление от Telegram. Если обновление содержит сообщение,
+     * бот проверяет, является ли сообщение командой. Если это так, бот обрабатывает команду.
+     * Если сообщение не является командой, бот игнорирует его.
+     *
+     * @param update обновление для обработки
+     */
+    void handleUpdate(Update update) {
+        logger.info("Processing update: {}", update);
+
+        if (update.message() != null) {
+            Message message = update.message();
+            String text = message.text();
+            long chatId = message.chat().id();
+
+            if (text == null) {
+                SendMessage sendMessage = new SendMessage(chatId, "Ошибка: текст команды не может быть пустым.");
+                messageSender.send(sendMessage);
+                return;
+            }
 
-                if ("/start".equals(text)) {
+            if ("/start".equals(text)) {
 
-                    String welcomeMessage = "Привет! Я Star Bank Assistant. " +
-                            "Используйте команду /recommend <имя_пользователя> для получения рекомендаций.";
+                String welcomeMessage = "Привет! Я Star Bank Assistant. " +
+                        "Используйте команду /recommend <имя_пользователя> для получения рекомендаций.";
 
-                    SendMessage sendMessage = new SendMessage(chatId, welcomeMessage);
-                    telegramBot.execute(sendMessage);
-                } else if (text.startsWith("/recommend")) {
-                    String[] commandParts = text.split(" ");
+                SendMessage sendMessage = new SendMessage(chatId, welcomeMessage);
+                messageSender.send(sendMessage);
+            } else if (text.startsWith("/recommend")) {
+                String[] commandParts = text.split(" ");
 
 
-                    if (commandParts.length <= 1) {
-                        SendMessage sendMessage = new SendMessage(chatId, "Пожалуйста, " +
-                                "укажите имя пользователя, через пробел, после команды /recommend.");
-                        telegramBot.execute(sendMessage);
-                    } else {
-                        String userName = commandParts[1];
-                        if (userName != null && !userName.isEmpty()) {
-                            handleRecommendationRequest(chatId, userName);
-                        }
-                    }
+                if (commandParts.length <= 1) {
+                    SendMessage sendMessage = new SendMessage(chatId, "Пожалуйста, " +
+                            "укажите имя пользователя, через пробел, после команды /recommend.");
+                    messageSender.send(sendMessage);
                 } else {
-                    SendMessage sendMessage = new SendMessage(chatId, "Неизвестная команда");
-                    telegramBot.execute(sendMessage);
+                    String userName = commandParts[1];
+                    if (userName != null && !userName.isEmpty()) {
+                        handleRecommendationRequest(chatId, userName);
+                    }
                 }
+            } else {
+                SendMessage sendMessage = new SendMessage(chatId, "Неизвестная команда");
+                messageSender.send(sendMessage);
             }
-        });
-        return UpdatesListener.CONFIRMED_UPDATES_ALL;
+        }
     }
 
 /**
@@ -98,34 +129,48 @@ public class TelegramBotUpdatesListener implements UpdatesListener {
          * Метод проверяет, существует ли пользователь с указанным именем.
          * Если пользователь не существует, бот отправляет сообщение об ошибке.
          * Если пользователь существует, бот отправляет список рекомендаций для него.
+         * Если лимит одновременных запросов бота исчерпан, запрос сразу отклоняется.
          *
          * @param chatId  ID чата, в котором был отправлен запрос
          * @param username имя пользователя, для которого нужно получить рекомендации
          */
 
     private void handleRecommendationRequest(long chatId, String username) {
+        AdaptiveConcurrencyLimiter.Permit permit = telegramLimiter.tryAcquire();
+        if (permit == null) {
+            logger.warn("Запрос рекомендаций для {} отклонен: превышен лимит {}", username, telegramLimiter.getLimit());
+            messageSender.send(new SendMessage(chatId, "Сервис перегружен. Повторите запрос позже."));
+            return;
+        }
         try {
-            List<RecommendationDTO> response = recommendationService.getRecommendations(username);
-            String fullUserName = recommendationsRepository.getFullNameByUsername(username);
-            if (fullUserName == null) {
+            Optional<UserInfo> user = recommendationsRepository.findUserByUserName(username);
+            if (user.isEmpty()) {
                 SendMessage sendMessage = new SendMessage(chatId, "Пользователь не найден");
-                telegramBot.execute(sendMessage);
+                messageSender.send(sendMessage);
+                return;
             }
-            String result = "Рекомендации для " + fullUserName + ":\n";
+            List<RecommendationDTO> response = recommendationService.getRecommendations(username);
+            String result = "Рекомендации для " + user.get().getFullName() + ":\n";
             if (response.isEmpty()) {
                 result += "Не удалось подобрать рекомендации для этого пользователя";
             } else {
                 for (RecommendationDTO recommendation : response) {
                     result += recommendation.toString() + "\n";
                 }
-                SendMessage sendMessage = new SendMessage(chatId, result);
-                telegramBot.execute(sendMessage);
             }
+            SendMessage sendMessage = new SendMessage(chatId, result);
+            messageSender.send(sendMessage);
         } catch (UserNotFoundException e) {
             logger.error("Ошибка при обработке рекомендаций для пользователя {}: {}", username, e.getMessage(), e);
             SendMessage sendMessage = new SendMessage(chatId, "Пользователь не найден");
-            telegramBot.execute(sendMessage);
-
+            messageSender.send(sendMessage);
+
+        } catch (RuntimeException e) {
+            // кроме ненайденного пользователя, любая ошибка - таймаут или недоступность базы данных - признак перегрузки
+            permit.onDropped();
+            throw e;
+        } finally {
+            permit.onSuccess();
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,279 @@
+package bank.recommendationservice.fintech.telegrambot.sender;
+
+import com.pengrad.telegrambot.Callback;
+import com.pengrad.telegrambot.TelegramBot;
+import com.pengrad.telegrambot.request.SendMessage;
+import com.pengrad.telegrambot.response.SendResponse;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Неблокирующая очередь исходящих сообщений Telegram-бота.
+ * <p>
+ * Сообщения отправляются асинхронным {@link TelegramBot#execute(com.pengrad.telegrambot.request.BaseRequest, Callback)}
+ * с соблюдением лимитов Telegram: общего на бота и отдельного на каждый чат (ведра токенов).
+ * Сообщения одного чата отправляются строго по порядку - следующее уходит только после ответа на предыдущее.
+ * Чаты обслуживаются по кругу: чат, в который только что ушло сообщение, переносится в конец очереди чатов,
+ * поэтому при исчерпанном общем лимите один активный чат не задерживает остальные.
+ * <p>
+ * Ответ 429 откладывает отправку в чат на {@code retry_after} секунд, сетевые ошибки повторяются
+ * с экспоненциальной задержкой. Все состояние очереди меняется только в одном потоке планировщика,
+ * поэтому вызывающие потоки никогда не ждут.
+ */
+@Component
+public class TelegramMessageSender implements MeterBinder, DisposableBean {
+    private static final int TOO_MANY_REQUESTS = 429;
+    private static final long RETRY_BACKOFF_MILLIS = 500;
+
+    private final TelegramBot telegramBot;
+    private final double chatRate;
+    private final double chatBurst;
+    private final int maxAttempts;
+    private final TokenBucket globalBucket;
+    private final ScheduledExecutorService scheduler;
+    private final Map<Object, ChatQueue> chats = new LinkedHashMap<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    private ScheduledFuture<?> scheduledDrain;
+    private long scheduledDrainAtNanos;
+    private volatile Timer queueLatency;
+
+    private static final Logger logger = LoggerFactory.getLogger(TelegramMessageSender.class);
+
+    /**
+     * @param telegramBot  бот, через который отправляются сообщения
+     * @param globalRate   сообщений в секунду на бота
+     * @param chatRate     сообщений в секунду в один чат
+     * @param chatBurst    сколько сообщений подряд можно отправить в один чат без ожидания
+     * @param maxAttempts  количество попыток отправки при сетевых ошибках
+     */
+    public TelegramMessageSender(TelegramBot telegramBot,
+                                 @Value("${telegram.outbound.global-rate:30}") double globalRate,
+                                 @Value("${telegram.outbound.chat-rate:1}") double chatRate,
+                                 @Value("${telegram.outbound.chat-burst:3}") double chatBurst,
+                                 @Value("${telegram.outbound.max-attempts:5}") int maxAttempts) {
+        this.telegramBot = telegramBot;
+        this.chatRate = chatRate;
+        this.chatBurst = chatBurst;
+        this.maxAttempts = maxAttempts;
+        this.globalBucket = new TokenBucket(globalRate, globalRate, System.nanoTime());
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "telegram-sender");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Ставит сообщение в очередь отправки и сразу возвращает управление.
+     *
+     * @param request сообщение
+     * @return ответ Telegram; завершается исключением, если сообщение не удалось отправить за все попытки
+     */
+    public CompletableFuture<SendResponse> send(SendMessage request) {
+        OutboundMessage message = new OutboundMessage(request);
+        queued.incrementAndGet();
+        scheduler.execute(() -> {
+            chats.computeIfAbsent(message.chatId, chatId -> new ChatQueue(chatId, System.nanoTime())).messages.addLast(message);
+            drain();
+        });
+        return message.result;
+    }
+
+    /**
+     * @return количество сообщений, ожидающих отправки или ответа Telegram
+     */
+    public int getQueueSize() {
+        return queued.get();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        queueLatency = Timer.builder("telegram.outbound.queue.latency")
+                .description("Время от постановки сообщения в очередь до успешной отправки")
+                .publishPercentiles(0.5, 0.99)
+                .register(registry);
+        Gauge.builder("telegram.outbound.queue.size", queued, AtomicInteger::get)
+                .description("Количество сообщений в очереди отправки")
+                .register(registry);
+        FunctionCounter.builder("telegram.outbound.retries", retries, AtomicLong::get)
+                .description("Количество повторных отправок (429 и сетевые ошибки)")
+                .register(registry);
+        FunctionCounter.builder("telegram.outbound.failures", failures, AtomicLong::get)
+                .description("Количество сообщений, которые не удалось отправить")
+                .register(registry);
+    }
+
+    @Override
+    public void destroy() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Отправляет все сообщения, для которых есть токены, и планирует следующий проход
+     * на момент, когда освободится ближайший токен или закончится блокировка чата.
+     * Чаты, в которые ушло сообщение, переносятся в конец порядка обхода.
+     */
+    private void drain() {
+        long now = System.nanoTime();
+        long nextWakeUp = Long.MAX_VALUE;
+        List<ChatQueue> served = new ArrayList<>();
+        Iterator<ChatQueue> iterator = chats.values().iterator();
+        while (iterator.hasNext()) {
+            ChatQueue chat = iterator.next();
+            if (chat.messages.isEmpty()) {
+                if (!chat.inFlight && chat.bucket.isFull(now)) {
+                    iterator.remove();
+                }
+                continue;
+            }
+            if (chat.inFlight) {
+                continue;
+            }
+            if (chat.blockedUntilNanos - now > 0) {
+                nextWakeUp = Math.min(nextWakeUp, chat.blockedUntilNanos - now);
+                continue;
+            }
+            long chatWait = chat.bucket.nanosUntilAvailable(now);
+            if (chatWait > 0) {
+                nextWakeUp = Math.min(nextWakeUp, chatWait);
+                continue;
+            }
+            if (!globalBucket.tryAcquire(now)) {
+                nextWakeUp = Math.min(nextWakeUp, globalBucket.nanosUntilAvailable(now));
+                break;
+            }
+            chat.bucket.tryAcquire(now);
+            execute(chat, chat.messages.pollFirst());
+            served.add(chat);
+        }
+        for (ChatQueue chat : served) {
+            chats.remove(chat.chatId);
+            chats.put(chat.chatId, chat);
+        }
+        if (nextWakeUp != Long.MAX_VALUE) {
+            scheduleDrain(now, nextWakeUp);
+        }
+    }
+
+    private void scheduleDrain(long now, long delayNanos) {
+        long at = now + delayNanos;
+        if (scheduledDrain != null && !scheduledDrain.isDone() && scheduledDrainAtNanos - at <= 0) {
+            return;
+        }
+        if (scheduledDrain != null) {
+            scheduledDrain.cancel(false);
+        }
+        scheduledDrainAtNanos = at;
+        scheduledDrain = scheduler.schedule(this::drain, delayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private void execute(ChatQueue chat, OutboundMessage message) {
+        chat.inFlight = true;
+        message.attempts++;
+        telegramBot.execute(message.request, new Callback<SendMessage, SendResponse>() {
+            @Override
+            public void onResponse(SendMessage request, SendResponse response) {
+                scheduler.execute(() -> onSendResponse(chat, message, response));
+            }
+
+            @Override
+            public void onFailure(SendMessage request, IOException e) {
+                scheduler.execute(() -> onSendFailure(chat, message, e));
+            }
+        });
+    }
+
+    private void onSendResponse(ChatQueue chat, OutboundMessage message, SendResponse response) {
+        chat.inFlight = false;
+        if (!response.isOk() && response.errorCode() == TOO_MANY_REQUESTS) {
+            Integer retryAfter = response.parameters() != null ? response.parameters().retryAfter() : null;
+            long delaySeconds = retryAfter != null ? retryAfter : 1;
+            logger.warn("Telegram ограничил отправку в чат {}, повтор через {} с", message.chatId, delaySeconds);
+            retries.incrementAndGet();
+            chat.blockedUntilNanos = System.nanoTime() + TimeUnit.SECONDS.toNanos(delaySeconds);
+            chat.messages.addFirst(message);
+        } else {
+            if (!response.isOk()) {
+                failures.incrementAndGet();
+                logger.error("Telegram отклонил сообщение в чат {}: {} {}",
+                        message.chatId, response.errorCode(), response.description());
+            } else if (queueLatency != null) {
+                queueLatency.record(System.nanoTime() - message.enqueuedNanos, TimeUnit.NANOSECONDS);
+            }
+            queued.decrementAndGet();
+            message.result.complete(response);
+        }
+        drain();
+    }
+
+    private void onSendFailure(ChatQueue chat, OutboundMessage message, IOException e) {
+        chat.inFlight = false;
+        if (message.attempts < maxAttempts) {
+            long backoffMillis = RETRY_BACKOFF_MILLIS << (message.attempts - 1);
+            logger.warn("Ошибка отправки сообщения в чат {} (попытка {}), повтор через {} мс: {}",
+                    message.chatId, message.attempts, backoffMillis, e.getMessage());
+            retries.incrementAndGet();
+            chat.blockedUntilNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(backoffMillis);
+            chat.messages.addFirst(message);
+        } else {
+            logger.error("Не удалось отправить сообщение в чат {} за {} попыток", message.chatId, message.attempts, e);
+            failures.incrementAndGet();
+            queued.decrementAndGet();
+            message.result.completeExceptionally(e);
+        }
+        drain();
+    }
+
+    private final class ChatQueue {
+        private final Object chatId;
+        private final ArrayDeque<OutboundMessage> messages = new ArrayDeque<>();
+        private final TokenBucket bucket;
+        private boolean inFlight;
+        private long blockedUntilNanos;
+
+        private ChatQueue(Object chatId, long nowNanos) {
+            this.chatId = chatId;
+            this.bucket = new TokenBucket(chatBurst, chatRate, nowNanos);
+            this.blockedUntilNanos = nowNanos;
+        }
+    }
+
+    private static final class OutboundMessage {
+        private final SendMessage request;
+        private final Object chatId;
+        private final long enqueuedNanos = System.nanoTime();
+        private final CompletableFuture<SendResponse> result = new CompletableFuture<>();
+        private int attempts;
+
+        private OutboundMessage(SendMessage request) {
+            this.request = request;
+            this.chatId = request.getParameters().get("chat_id");
+        }
+    }
+}
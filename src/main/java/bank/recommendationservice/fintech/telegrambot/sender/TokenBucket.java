@@ -0,0 +1,58 @@
+package bank.recommendationservice.fintech.telegrambot.sender;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ведро токенов для ограничения частоты отправки сообщений.
+ * <p>
+ * Класс не потокобезопасен - используется только из потока {@link TelegramMessageSender}.
+ */
+class TokenBucket {
+    private final double capacity;
+    private final double tokensPerNano;
+
+    private double tokens;
+    private long lastRefillNanos;
+
+    /**
+     * @param capacity        максимальное количество токенов (размер всплеска)
+     * @param tokensPerSecond скорость пополнения
+     * @param nowNanos        текущее время, {@link System#nanoTime()}
+     */
+    TokenBucket(double capacity, double tokensPerSecond, long nowNanos) {
+        this.capacity = capacity;
+        this.tokensPerNano = tokensPerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.tokens = capacity;
+        this.lastRefillNanos = nowNanos;
+    }
+
+    boolean tryAcquire(long nowNanos) {
+        refill(nowNanos);
+        if (tokens >= 1) {
+            tokens -= 1;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return сколько наносекунд ждать до появления токена; 0, если токен уже есть
+     */
+    long nanosUntilAvailable(long nowNanos) {
+        refill(nowNanos);
+        return tokens >= 1 ? 0 : (long) Math.ceil((1 - tokens) / tokensPerNano);
+    }
+
+    boolean isFull(long nowNanos) {
+        refill(nowNanos);
+        return tokens >= capacity;
+    }
+
+    private void refill(long nowNanos) {
+        long elapsed = nowNanos - lastRefillNanos;
+        if (elapsed > 0) {
+            tokens = Math.min(capacity, tokens + elapsed * tokensPerNano);
+            lastRefillNanos = nowNanos;
+        }
+    }
+}
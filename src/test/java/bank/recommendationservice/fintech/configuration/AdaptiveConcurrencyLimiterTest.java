@@ -0,0 +1,101 @@
+package bank.recommendationservice.fintech.configuration;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdaptiveConcurrencyLimiterTest {
+
+    @Test
+    void testTryAcquire_RejectsOverLimit() {
+        // data
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("test", 2, 1, 10);
+
+        // test
+        AdaptiveConcurrencyLimiter.Permit first = limiter.tryAcquire();
+        AdaptiveConcurrencyLimiter.Permit second = limiter.tryAcquire();
+        AdaptiveConcurrencyLimiter.Permit third = limiter.tryAcquire();
+
+        // check
+        assertNotNull(first);
+        assertNotNull(second);
+        assertNull(third);
+        assertEquals(2, limiter.getInFlight());
+        assertEquals(1, limiter.getRejected());
+    }
+
+    @Test
+    void testPermit_ReleaseIsIdempotent() {
+        // data
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("test", 1, 1, 10);
+        AdaptiveConcurrencyLimiter.Permit permit = limiter.tryAcquire();
+
+        // test
+        permit.onSuccess();
+        permit.onSuccess();
+
+        // check
+        assertEquals(0, limiter.getInFlight());
+        assertNotNull(limiter.tryAcquire());
+    }
+
+    @Test
+    void testOnDropped_DecreasesLimit() {
+        // data
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("test", 100, 4, 200);
+
+        // test
+        for (int i = 0; i < 20; i++) {
+            limiter.tryAcquire().onDropped();
+        }
+
+        // check
+        assertTrue(limiter.getLimit() < 100);
+        assertTrue(limiter.getLimit() >= 4);
+    }
+
+    @Test
+    void testOnSuccess_GrowsLimitWhenSaturatedAndLatencyStable() {
+        // data
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("test", 4, 4, 50);
+
+        // test
+        for (int i = 0; i < 50; i++) {
+            AdaptiveConcurrencyLimiter.Permit[] permits = new AdaptiveConcurrencyLimiter.Permit[limiter.getLimit()];
+            for (int j = 0; j < permits.length; j++) {
+                permits[j] = limiter.tryAcquire();
+            }
+            for (AdaptiveConcurrencyLimiter.Permit permit : permits) {
+                permit.onSuccess();
+            }
+        }
+
+        // check
+        assertTrue(limiter.getLimit() > 4);
+    }
+
+    @Test
+    void testBindTo_RegistersMetrics() {
+        // data
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("test", 1, 1, 10);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        limiter.bindTo(registry);
+
+        // test
+        limiter.tryAcquire();
+        limiter.tryAcquire();
+
+        // check
+        assertEquals(1.0, registry.get("concurrency.limit").tag("limiter", "test").gauge().value());
+        assertEquals(1.0, registry.get("concurrency.in_flight").tag("limiter", "test").gauge().value());
+        assertEquals(1.0, registry.get("concurrency.rejected").tag("limiter", "test").functionCounter().count());
+    }
+
+    @Test
+    void testConstructor_InvalidBounds() {
+        // test & check
+        assertThrows(IllegalArgumentException.class, () -> new AdaptiveConcurrencyLimiter("test", 0, 1, 10));
+        assertThrows(IllegalArgumentException.class, () -> new AdaptiveConcurrencyLimiter("test", 5, 6, 10));
+    }
+}
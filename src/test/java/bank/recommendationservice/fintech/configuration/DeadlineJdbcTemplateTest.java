@@ -0,0 +1,47 @@
+package bank.recommendationservice.fintech.configuration;
+
+import bank.recommendationservice.fintech.model.QueryDeadline;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.QueryTimeoutException;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DeadlineJdbcTemplateTest {
+    private static final String ENDLESS_QUERY =
+            "SELECT COUNT(*) FROM SYSTEM_RANGE(1, 1000000) a, SYSTEM_RANGE(1, 1000000) b";
+
+    private DeadlineJdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:deadline");
+        jdbcTemplate = new DeadlineJdbcTemplate(dataSource);
+    }
+
+    @Test
+    void testQuery_CanceledAfterDeadline() {
+        // data
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(50);
+        long start = System.nanoTime();
+
+        // test & check
+        assertThrows(QueryTimeoutException.class, () -> QueryDeadline.bind(deadline,
+                () -> jdbcTemplate.queryForObject(ENDLESS_QUERY, Long.class)).call());
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 5000);
+    }
+
+    @Test
+    void testQuery_WithoutDeadline() {
+        // test
+        Integer result = jdbcTemplate.queryForObject("SELECT 1", Integer.class);
+
+        // check
+        assertEquals(1, result);
+        assertEquals(0, QueryDeadline.remainingTimeoutSeconds());
+    }
+}
@@ -0,0 +1,54 @@
+package bank.recommendationservice.fintech.configuration;
+
+import bank.recommendationservice.fintech.model.QueryDeadline;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.QueryTimeoutException;
+
+import java.sql.Connection;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PermitLimitedDataSourceTest {
+    private PermitLimitedDataSource dataSource;
+    private DeadlineJdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        JdbcDataSource target = new JdbcDataSource();
+        target.setURL("jdbc:h2:mem:permits");
+        dataSource = new PermitLimitedDataSource(target, 1, 30_000);
+        jdbcTemplate = new DeadlineJdbcTemplate(dataSource);
+    }
+
+    @Test
+    void testGetConnection_PermitWaitLimitedByDeadline() throws Exception {
+        // data
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(50);
+
+        try (Connection ignored = dataSource.getConnection()) {
+            // test & check
+            assertThrows(QueryTimeoutException.class, () -> QueryDeadline.bind(deadline,
+                    () -> jdbcTemplate.queryForObject("SELECT 1", Integer.class)).call());
+            assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 5000);
+        }
+        assertEquals(1, dataSource.getAvailablePermits());
+    }
+
+    @Test
+    void testGetConnection_PermitReleasedOnClose() throws Exception {
+        // data
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+
+        // test
+        Integer result = QueryDeadline.bind(deadline, () -> jdbcTemplate.queryForObject("SELECT 1", Integer.class)).call();
+
+        // check
+        assertEquals(1, result);
+        assertEquals(1, dataSource.getAvailablePermits());
+        assertEquals(-1, QueryDeadline.remainingNanos());
+    }
+}
@@ -0,0 +1,60 @@
+package bank.recommendationservice.fintech.configuration;
+
+import bank.recommendationservice.fintech.model.RequestTrace;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Connection;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TracingDataSourceTest {
+    private JdbcDataSource target;
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        target = new JdbcDataSource();
+        target.setURL("jdbc:h2:mem:tracing;DB_CLOSE_DELAY=-1");
+        jdbcTemplate = new JdbcTemplate(new TracingDataSource(target, RequestTrace.Database.H2));
+        jdbcTemplate.execute("CREATE TABLE items (id INT PRIMARY KEY)");
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.execute("DROP ALL OBJECTS");
+    }
+
+    @Test
+    void testGetConnection_RecordsStatementsWhenTraced() {
+        // data
+        RequestTrace trace = RequestTrace.start();
+
+        // test
+        try {
+            jdbcTemplate.update("INSERT INTO items (id) VALUES (?)", 1);
+            jdbcTemplate.queryForObject("SELECT COUNT(*) FROM items", Integer.class);
+        } finally {
+            trace.finish();
+        }
+
+        // check
+        assertEquals(2, trace.getDatabases().get("h2").statements());
+        assertEquals(0, trace.getDatabases().get("postgres").statements());
+        assertEquals("INSERT INTO items (id) VALUES (?)", trace.getStatements().get(0).sql());
+        assertEquals("SELECT COUNT(*) FROM items", trace.getStatements().get(1).sql());
+    }
+
+    @Test
+    void testGetConnection_ReturnsTargetConnectionWhenNotTraced() throws Exception {
+        // test
+        try (Connection connection = new TracingDataSource(target, RequestTrace.Database.H2).getConnection()) {
+
+            // check
+            assertEquals("org.h2.jdbc.JdbcConnection", connection.getClass().getName());
+        }
+    }
+}
@@ -1,6 +1,12 @@
 package bank.recommendationservice.fintech.controller;
 
-import bank.recommendationservice.fintech.service.CacheService;
+import bank.recommendationservice.fintech.exception.JfrRecordingNotFoundException;
+import bank.recommendationservice.fintech.model.CacheInvalidation;
+import bank.recommendationservice.fintech.model.CacheInvalidationResponse;
+import bank.recommendationservice.fintech.model.JfrRecordingStatus;
+import bank.recommendationservice.fintech.other.ProductType;
+import bank.recommendationservice.fintech.service.CacheInvalidationBus;
+import bank.recommendationservice.fintech.service.JfrRecordingService;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -10,10 +16,17 @@ import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 
+import java.io.ByteArrayInputStream;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @WebMvcTest(InfoController.class)
@@ -23,11 +36,14 @@ public class InfoControllerTest {
     private MockMvc mockMvc;
 
     @MockBean
-    private CacheService cacheService;
+    private CacheInvalidationBus cacheInvalidationBus;
 
     @MockBean
     private BuildProperties buildProperties;
 
+    @MockBean
+    private JfrRecordingService jfrRecordingService;
+
     @Test
     void testInfo() throws Exception {
         // Настройка мок-объекта для buildProperties
@@ -43,13 +59,93 @@ public class InfoControllerTest {
 
     @Test
     void testClearCaches() throws Exception {
-        // Выполнение POST-запроса и проверка ответа
+        // data
+        UUID id = UUID.randomUUID();
+        when(cacheInvalidationBus.broadcast(CacheInvalidation.full())).thenReturn(new CacheInvalidationResponse(id,
+                CacheInvalidation.full(), false, true, List.of(
+                new CacheInvalidationResponse.NodeAcknowledgement("node-a", true, true, 1L),
+                new CacheInvalidationResponse.NodeAcknowledgement("node-b", false, true, 12L),
+                new CacheInvalidationResponse.NodeAcknowledgement("node-c", false, false, null))));
+
+        // test & check
         mockMvc.perform(post("/management/clear-caches")
                         .contentType(MediaType.APPLICATION_JSON))
                 .andExpect(status().isOk())
-                .andExpect(content().string("Кеш успешно очищен."));
+                .andExpect(jsonPath("$.id").value(id.toString()))
+                .andExpect(jsonPath("$.invalidation.scope").value("FULL"))
+                .andExpect(jsonPath("$.complete").value(false))
+                .andExpect(jsonPath("$.peers_known").value(true))
+                .andExpect(jsonPath("$.nodes[0].node_id").value("node-a"))
+                .andExpect(jsonPath("$.nodes[0].local").value(true))
+                .andExpect(jsonPath("$.nodes[1].latency_ms").value(12))
+                .andExpect(jsonPath("$.nodes[2].acknowledged").value(false));
+        Mockito.verify(cacheInvalidationBus).broadcast(CacheInvalidation.full());
+    }
+
+    @Test
+    void testClearCaches_UserAndProduct() throws Exception {
+        // data
+        UUID userId = UUID.randomUUID();
+
+        // test
+        mockMvc.perform(post("/management/clear-caches")
+                        .param("user_id", userId.toString())
+                        .param("product_type", "DEBIT"))
+                .andExpect(status().isOk());
+        mockMvc.perform(post("/management/clear-caches")
+                        .param("product_type", "SAVING"))
+                .andExpect(status().isOk());
+
+        // check
+        Mockito.verify(cacheInvalidationBus).broadcast(CacheInvalidation.user(userId, ProductType.DEBIT));
+        Mockito.verify(cacheInvalidationBus).broadcast(CacheInvalidation.product(ProductType.SAVING));
+    }
+
+    @Test
+    void testClearCaches_UnknownProductType() throws Exception {
+        // test & check
+        mockMvc.perform(post("/management/clear-caches")
+                        .param("product_type", "MORTGAGE"))
+                .andExpect(status().isBadRequest());
+        Mockito.verifyNoInteractions(cacheInvalidationBus);
+    }
+
+    @Test
+    void testStartJfrRecording() throws Exception {
+        // data
+        Instant start = Instant.parse("2025-01-01T10:00:00Z");
+        when(jfrRecordingService.start("profile", 120L)).thenReturn(new JfrRecordingStatus("RUNNING", "profile",
+                start, start.plusSeconds(120), 120, 104857600, 0));
+
+        // test & check
+        mockMvc.perform(post("/management/jfr/start")
+                        .param("settings", "profile")
+                        .param("duration", "120"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.state").value("RUNNING"))
+                .andExpect(jsonPath("$.duration_seconds").value(120))
+                .andExpect(jsonPath("$.max_size_bytes").value(104857600));
+    }
+
+    @Test
+    void testDownloadJfrRecording() throws Exception {
+        // data
+        when(jfrRecordingService.openDump()).thenReturn(new ByteArrayInputStream(new byte[]{'F', 'L', 'R', 0}));
+
+        // test & check
+        mockMvc.perform(get("/management/jfr/recording"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Disposition", "attachment; filename=\"recommendation-service.jfr\""))
+                .andExpect(content().bytes(new byte[]{'F', 'L', 'R', 0}));
+    }
+
+    @Test
+    void testJfrRecordingStatus_NotStarted() throws Exception {
+        // data
+        when(jfrRecordingService.status()).thenThrow(new JfrRecordingNotFoundException("Запись JFR не запускалась"));
 
-        // Проверка, что метод clearCaches был вызван
-        Mockito.verify(cacheService).clearCaches();
+        // test & check
+        mockMvc.perform(get("/management/jfr"))
+                .andExpect(status().isNotFound());
     }
 }
@@ -1,36 +1,63 @@
 package bank.recommendationservice.fintech.controller;
 
+import bank.recommendationservice.fintech.configuration.AdaptiveConcurrencyLimiter;
+import bank.recommendationservice.fintech.dto.ProductDTO;
 import bank.recommendationservice.fintech.dto.RecommendationDTO;
+import bank.recommendationservice.fintech.exception.BatchSizeExceededException;
+import bank.recommendationservice.fintech.model.ProductCatalogResponse;
 import bank.recommendationservice.fintech.model.RecommendationResponse;
+import bank.recommendationservice.fintech.model.RequestTrace;
+import bank.recommendationservice.fintech.other.Feature;
+import bank.recommendationservice.fintech.other.ProductType;
+import bank.recommendationservice.fintech.other.TransactionType;
 import bank.recommendationservice.fintech.service.RecommendationService;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @WebMvcTest(controllers = RecommendationController.class)
 class RecommendationControllerTest {
 
+    private static final MediaType CBOR = MediaType.parseMediaType("application/cbor");
+
     @Autowired
     private MockMvc mockMvc;
 
     @MockBean
     private RecommendationService recommendationService;
 
+    @Autowired
+    @Qualifier("recommendationApiLimiter")
+    private AdaptiveConcurrencyLimiter recommendationApiLimiter;
+
+    @Autowired
+    private RecommendationController recommendationController;
+
 
     /**
      * Тестирует, что GET-запрос к /recommendation/{user_id} с userId, у которого есть рекомендации,
@@ -50,7 +77,8 @@ class RecommendationControllerTest {
                 new RecommendationDTO("product1", "description1"),
                 new RecommendationDTO("product2", "description2")
         );
-        when(recommendationService.getRecommendations(userId)).thenReturn(expectedRecommendations);
+        when(recommendationService.getRecommendationResponse(userId))
+                .thenReturn(new RecommendationResponse(userId, expectedRecommendations, List.of()));
 
         // test
         MvcResult result = mockMvc.perform(get("/recommendation/{user_id}", userId))
@@ -72,7 +100,8 @@ class RecommendationControllerTest {
     public void testGetRecommendationsNotFound() throws Exception {
         // data
         UUID userId = UUID.randomUUID();
-        when(recommendationService.getRecommendations(userId)).thenReturn(Collections.emptyList());
+        when(recommendationService.getRecommendationResponse(userId))
+                .thenReturn(new RecommendationResponse(userId, Collections.emptyList(), List.of()));
 
         // test & check
         mockMvc.perform(get("/recommendation/{user_id}", userId))
@@ -80,6 +109,222 @@ class RecommendationControllerTest {
                 .andExpect(content().contentType(MediaType.APPLICATION_JSON))
                 .andExpect(jsonPath("$.recommendations").isArray())
                 .andExpect(jsonPath("$.recommendations").isEmpty())
+                .andExpect(jsonPath("$.partial").value(false))
+                .andExpect(jsonPath("$.timed_out_rules").doesNotExist())
+                .andReturn();
+    }
+
+    /**
+     * Тестирует, что GET-запрос к /recommendation/{user_id} помечает ответ как частичный,
+     * если часть правил не уложилась в дедлайн запроса.
+     */
+    @Test
+    public void testGetRecommendationsPartial() throws Exception {
+        // data
+        UUID userId = UUID.randomUUID();
+        when(recommendationService.getRecommendationResponse(userId))
+                .thenReturn(new RecommendationResponse(userId, Collections.emptyList(), List.of("TopSaving")));
+
+        // test & check
+        mockMvc.perform(get("/recommendation/{user_id}", userId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.partial").value(true))
+                .andExpect(jsonPath("$.timed_out_rules[0]").value("TopSaving"));
+    }
+
+    /**
+     * Тестирует, что GET-запрос к /recommendation/{user_id} с заголовком X-Debug-Trace: true
+     * при включенной трассировке возвращает трассировку выполнения, а без заголовка - нет.
+     */
+    @Test
+    public void testGetRecommendationsTraced() throws Exception {
+        // data
+        UUID userId = UUID.randomUUID();
+        RequestTrace trace = new RequestTrace();
+        trace.recordStatement(RequestTrace.Database.H2, "SELECT 1", 2_000_000);
+        trace.recordCacheAccess("productTypeCache", false);
+        RecommendationResponse traced = new RecommendationResponse(userId, Collections.emptyList(), List.of());
+        traced.setTrace(trace);
+        when(recommendationService.getTracedRecommendationResponse(userId)).thenReturn(traced);
+        when(recommendationService.getRecommendationResponse(userId))
+                .thenReturn(new RecommendationResponse(userId, Collections.emptyList(), List.of()));
+
+        ReflectionTestUtils.setField(recommendationController, "traceEnabled", true);
+
+        // test & check
+        try {
+            mockMvc.perform(get("/recommendation/{user_id}", userId).header(RecommendationController.TRACE_HEADER, "true"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.trace.statements[0].sql").value("SELECT 1"))
+                    .andExpect(jsonPath("$.trace.statements[0].duration_ms").value(2.0))
+                    .andExpect(jsonPath("$.trace.databases.h2.statements").value(1))
+                    .andExpect(jsonPath("$.trace.databases.postgres.statements").value(0))
+                    .andExpect(jsonPath("$.trace.caches.productTypeCache.misses").value(1));
+            mockMvc.perform(get("/recommendation/{user_id}", userId))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.trace").doesNotExist());
+        } finally {
+            ReflectionTestUtils.setField(recommendationController, "traceEnabled", false);
+        }
+    }
+
+    /**
+     * Тестирует, что по умолчанию трассировка выключена и заголовок X-Debug-Trace: true игнорируется.
+     */
+    @Test
+    public void testGetRecommendationsTraceDisabledByDefault() throws Exception {
+        // data
+        UUID userId = UUID.randomUUID();
+        when(recommendationService.getRecommendationResponse(userId))
+                .thenReturn(new RecommendationResponse(userId, Collections.emptyList(), List.of()));
+
+        // test & check
+        mockMvc.perform(get("/recommendation/{user_id}", userId).header(RecommendationController.TRACE_HEADER, "true"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.trace").doesNotExist());
+        verify(recommendationService, never()).getTracedRecommendationResponse(userId);
+    }
+
+    /**
+     * Тестирует, что GET-запрос к /recommendation/{user_id} с заголовком Accept: application/cbor
+     * возвращает ответ в CBOR, где рекомендации содержат только ключи продуктов в каталоге.
+     */
+    @Test
+    public void testGetRecommendationsCbor() throws Exception {
+        // data
+        UUID userId = UUID.randomUUID();
+        UUID productId = UUID.randomUUID();
+        RecommendationDTO recommendation = new RecommendationDTO(productId, "product1", "description1");
+        when(recommendationService.getRecommendationResponse(userId))
+                .thenReturn(new RecommendationResponse(userId, List.of(recommendation), List.of()));
+
+        // test
+        MvcResult result = mockMvc.perform(get("/recommendation/{user_id}", userId)
+                        .accept(CBOR))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(CBOR))
                 .andReturn();
+
+        // check
+        JsonNode response = new CBORMapper().readTree(result.getResponse().getContentAsByteArray());
+        assertEquals(1, response.get("recommendations").size());
+        JsonNode reference = response.get("recommendations").get(0);
+        assertEquals(1, reference.size());
+        assertEquals(recommendation.getKey(), reference.get("key").asText());
+        assertEquals(new ProductDTO(productId, "product1", "description1").getKey(), reference.get("key").asText());
+    }
+
+    /**
+     * Тестирует, что POST-запрос к /recommendation/batch возвращает ответы для всех переданных пользователей.
+     */
+    @Test
+    public void testGetRecommendationsBatch() throws Exception {
+        // data
+        UUID firstUserId = UUID.randomUUID();
+        UUID secondUserId = UUID.randomUUID();
+        List<UUID> userIds = List.of(firstUserId, secondUserId);
+        when(recommendationService.getRecommendationResponses(userIds)).thenReturn(List.of(
+                new RecommendationResponse(firstUserId, List.of(new RecommendationDTO("product1", "description1")), List.of()),
+                new RecommendationResponse(secondUserId, Collections.emptyList(), List.of())));
+
+        // test & check
+        mockMvc.perform(post("/recommendation/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(new ObjectMapper().writeValueAsString(userIds)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].user_id").value(firstUserId.toString()))
+                .andExpect(jsonPath("$[0].recommendations[0].name").value("product1"))
+                .andExpect(jsonPath("$[1].user_id").value(secondUserId.toString()))
+                .andExpect(jsonPath("$[1].recommendations").isEmpty());
+    }
+
+    /**
+     * Тестирует, что POST-запрос к /recommendation/batch со слишком большим пакетом возвращает статус 400.
+     */
+    @Test
+    public void testGetRecommendationsBatchTooLarge() throws Exception {
+        // data
+        List<UUID> userIds = List.of(UUID.randomUUID());
+        when(recommendationService.getRecommendationResponses(userIds))
+                .thenThrow(new BatchSizeExceededException("Превышен размер пакета"));
+
+        // test & check
+        mockMvc.perform(post("/recommendation/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(new ObjectMapper().writeValueAsString(userIds)))
+                .andExpect(status().isBadRequest());
+    }
+
+    /**
+     * Тестирует, что GET-запрос к /recommendation/products возвращает каталог с ETag,
+     * а повторный запрос с If-None-Match - статус 304 без тела.
+     */
+    @Test
+    public void testGetProductCatalog() throws Exception {
+        // data
+        UUID productId = UUID.randomUUID();
+        when(recommendationService.getProductCatalog()).thenReturn(new ProductCatalogResponse("v1",
+                List.of(new ProductDTO(productId, "product1", "description1"))));
+
+        // test & check
+        mockMvc.perform(get("/recommendation/products"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"v1\""))
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "no-cache"))
+                .andExpect(jsonPath("$.version").value("v1"))
+                .andExpect(jsonPath("$.products[0].id").value(productId.toString()))
+                .andExpect(jsonPath("$.products[0].text").value("description1"));
+
+        mockMvc.perform(get("/recommendation/products")
+                        .header(HttpHeaders.IF_NONE_MATCH, "\"v1\""))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+    }
+
+    /**
+     * Тестирует, что POST-запрос к /recommendation/{user_id}/changes передает измененные признаки
+     * в RecommendationService и возвращает статус 204.
+     */
+    @Test
+    public void testRefreshRecommendations() throws Exception {
+        // data
+        UUID userId = UUID.randomUUID();
+        String body = "[{\"product_type\":\"DEBIT\",\"transaction_type\":\"DEPOSIT\"}]";
+
+        // test
+        mockMvc.perform(post("/recommendation/{user_id}/changes", userId)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(body))
+                .andExpect(status().isNoContent());
+
+        // check
+        verify(recommendationService).refreshRecommendations(userId,
+                List.of(new Feature(ProductType.DEBIT, TransactionType.DEPOSIT)));
+    }
+
+    /**
+     * Тестирует, что при исчерпанном лимите одновременных запросов GET-запрос к /recommendation/{user_id}
+     * сразу отклоняется со статусом 503 и заголовком Retry-After, не доходя до RecommendationService.
+     */
+    @Test
+    public void testGetRecommendationsConcurrencyLimitExceeded() throws Exception {
+        // data
+        UUID userId = UUID.randomUUID();
+        List<AdaptiveConcurrencyLimiter.Permit> permits = new ArrayList<>();
+        AdaptiveConcurrencyLimiter.Permit permit;
+        while ((permit = recommendationApiLimiter.tryAcquire()) != null) {
+            permits.add(permit);
+        }
+
+        try {
+            // test & check
+            mockMvc.perform(get("/recommendation/{user_id}", userId))
+                    .andExpect(status().isServiceUnavailable())
+                    .andExpect(header().string(HttpHeaders.RETRY_AFTER, "1"));
+            verifyNoInteractions(recommendationService);
+        } finally {
+            permits.forEach(AdaptiveConcurrencyLimiter.Permit::onSuccess);
+        }
     }
-}
\ No newline at end of file
+}
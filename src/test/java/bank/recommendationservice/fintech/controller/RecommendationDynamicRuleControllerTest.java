@@ -1,5 +1,8 @@
 package bank.recommendationservice.fintech.controller;
 
+import bank.recommendationservice.fintech.dto.RuleStatsDTO;
+import bank.recommendationservice.fintech.exception.IllegalPageRequestException;
+import bank.recommendationservice.fintech.exception.NullArgumentException;
 import bank.recommendationservice.fintech.exception.RulesNotFoundException;
 import bank.recommendationservice.fintech.model.DynamicRule;
 import bank.recommendationservice.fintech.model.RuleStatsResponse;
@@ -13,12 +16,13 @@ import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
-import java.util.Arrays;
-import java.util.Collections;
 import java.util.List;
+import java.util.stream.Stream;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
@@ -92,6 +96,44 @@ public class RecommendationDynamicRuleControllerTest {
                 .andExpect(status().isBadRequest());
     }
 
+    @Test
+    public void testCreateRulesBulk() throws Exception {
+        // data
+        DynamicRule first = new DynamicRule();
+        first.setProductName("First");
+        DynamicRule second = new DynamicRule();
+        second.setProductName("Second");
+        when(recommendationDynamicRuleService.addRules(anyList())).thenAnswer(invocation -> {
+            List<DynamicRule> rules = invocation.getArgument(0);
+            for (int i = 0; i < rules.size(); i++) {
+                rules.get(i).setId(i + 1L);
+            }
+            return rules;
+        });
+
+        // test & check
+        mockMvc.perform(post("/rule/bulk")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(asJsonString(List.of(first, second))))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[1].id").value(2))
+                .andExpect(jsonPath("$[1].productName").value("Second"));
+    }
+
+    @Test
+    public void testCreateRulesBulkInvalid() throws Exception {
+        // data
+        when(recommendationDynamicRuleService.addRules(anyList()))
+                .thenThrow(new NullArgumentException("Правило 0: не указано название продукта"));
+
+        // test & check
+        mockMvc.perform(post("/rule/bulk")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(asJsonString(List.of(new DynamicRule()))))
+                .andExpect(status().isBadRequest());
+    }
+
     @Test
     public void testDeleteRule() throws Exception {
         // data
@@ -119,52 +161,102 @@ public class RecommendationDynamicRuleControllerTest {
     @Test
     public void testGetAllRules() throws Exception {
         // data
-        List<DynamicRule> rules = Arrays.asList(
-                new DynamicRule(),
-                new DynamicRule()
-        );
+        DynamicRule first = new DynamicRule();
+        first.setId(1L);
+        DynamicRule second = new DynamicRule();
+        second.setId(2L);
 
         // test & check
-        when(recommendationDynamicRuleService.getAllDynamicRules()).thenReturn(rules);
+        when(recommendationDynamicRuleService.streamAllDynamicRules()).thenReturn(Stream.of(first, second));
 
-        mockMvc.perform(get("/rule"))
+        MvcResult result = mockMvc.perform(get("/rule"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
                 .andExpect(status().isOk())
-                .andExpect(content().contentType(MediaType.APPLICATION_JSON));
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[1].id").value(2));
     }
 
     @Test
     public void testGetAllRulesEmpty() throws Exception {
+        // test & check
+        when(recommendationDynamicRuleService.streamAllDynamicRules()).thenReturn(Stream.empty());
+
+        MvcResult result = mockMvc.perform(get("/rule"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(content().json("[]"));
+    }
+
+    @Test
+    public void testGetRulesPage() throws Exception {
         // data
-        List<DynamicRule> rules = Collections.emptyList();
+        DynamicRule rule = new DynamicRule();
+        rule.setId(3L);
 
         // test & check
-        when(recommendationDynamicRuleService.getAllDynamicRules()).thenReturn(rules);
+        when(recommendationDynamicRuleService.getDynamicRulesPage(1, 2)).thenReturn(List.of(rule));
 
-        mockMvc.perform(get("/rule"))
+        MvcResult result = mockMvc.perform(get("/rule").param("page", "1").param("size", "2"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
                 .andExpect(status().isOk())
-                .andExpect(content().contentType(MediaType.APPLICATION_JSON));
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].id").value(3));
+    }
+
+    @Test
+    public void testGetRulesPageInvalid() throws Exception {
+        // test & check
+        when(recommendationDynamicRuleService.getDynamicRulesPage(-1, 100))
+                .thenThrow(new IllegalPageRequestException("Номер страницы не может быть отрицательным: -1"));
+
+        mockMvc.perform(get("/rule").param("page", "-1"))
+                .andExpect(status().isBadRequest());
     }
 
     @Test
     public void testGetRuleStats() throws Exception {
+        // test & check
+        when(ruleStatsService.streamAllRuleStats()).thenReturn(Stream.of(new RuleStatsDTO(1L, 5)));
+
+        MvcResult result = mockMvc.perform(get("/rule/stats"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.stats[0].rule_id").value(1))
+                .andExpect(jsonPath("$.stats[0].count").value(5));
+    }
+
+    @Test
+    public void testGetRuleStatsPage() throws Exception {
         // data
-        RuleStatsResponse response = new RuleStatsResponse();
+        RuleStatsResponse response = new RuleStatsResponse(List.of(new RuleStatsDTO(2L, 1)));
 
         // test & check
-        when(ruleStatsService.getAllRuleStats()).thenReturn(response);
+        when(ruleStatsService.getRuleStatsPage(0, 1)).thenReturn(response);
 
-        mockMvc.perform(get("/rule/stats"))
+        MvcResult result = mockMvc.perform(get("/rule/stats").param("page", "0").param("size", "1"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
                 .andExpect(status().isOk())
-                .andExpect(content().contentType(MediaType.APPLICATION_JSON));
+                .andExpect(jsonPath("$.stats.length()").value(1))
+                .andExpect(jsonPath("$.stats[0].rule_id").value(2));
     }
 
     @Test
     public void testGetRuleStatsError() throws Exception {
-        // data
-        RuleStatsResponse response = new RuleStatsResponse();
-
         // test & check
-        when(ruleStatsService.getAllRuleStats()).thenThrow(new RuntimeException("Error"));
+        when(ruleStatsService.streamAllRuleStats()).thenThrow(new RuntimeException("Error"));
 
         mockMvc.perform(get("/rule/stats"))
                 .andExpect(status().isInternalServerError());
@@ -0,0 +1,74 @@
+package bank.recommendationservice.fintech.dto;
+
+import bank.recommendationservice.fintech.model.RecommendationResponse;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RecommendationDTOTest {
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void testSerialize_WritesAllFieldsWithEscaping() throws Exception {
+        // data
+        UUID id = UUID.randomUUID();
+        RecommendationDTO recommendation = new RecommendationDTO(id, "Копилка \"Plus\"", "Строка 1\nСтрока 2\\");
+
+        // test
+        JsonNode json = objectMapper.readTree(objectMapper.writeValueAsBytes(recommendation));
+
+        // check
+        assertEquals(3, json.size());
+        assertEquals(id.toString(), json.get("id").asText());
+        assertEquals("Копилка \"Plus\"", json.get("name").asText());
+        assertEquals("Строка 1\nСтрока 2\\", json.get("text").asText());
+    }
+
+    @Test
+    void testSerialize_NullFields() throws Exception {
+        // data
+        RecommendationDTO recommendation = new RecommendationDTO(null, null, null);
+
+        // test
+        String json = objectMapper.writeValueAsString(recommendation);
+
+        // check
+        assertEquals("{\"id\":null,\"name\":null,\"text\":null}", json);
+    }
+
+    @Test
+    void testToJson_EncodedOnce() {
+        // data
+        RecommendationDTO recommendation = new RecommendationDTO(UUID.randomUUID(), "name", "text");
+
+        // test
+        var first = recommendation.toJson();
+        var second = recommendation.toJson();
+
+        // check
+        assertSame(first, second);
+        assertTrue(first.getValue().contains("\"text\":\"text\""));
+    }
+
+    @Test
+    void testSerialize_InsideResponseRoundTrip() throws Exception {
+        // data
+        UUID userId = UUID.randomUUID();
+        List<RecommendationDTO> recommendations = List.of(
+                new RecommendationDTO(UUID.randomUUID(), "first", "text 1"),
+                new RecommendationDTO(UUID.randomUUID(), "second", "text 2"));
+
+        // test
+        String json = objectMapper.writeValueAsString(new RecommendationResponse(userId, recommendations));
+        RecommendationResponse response = objectMapper.readValue(json, RecommendationResponse.class);
+
+        // check
+        assertEquals(recommendations, response.getRecommendations());
+        assertEquals(userId, response.getUser_id());
+    }
+}
@@ -0,0 +1,131 @@
+package bank.recommendationservice.fintech.integration;
+
+import bank.recommendationservice.fintech.model.DynamicRule;
+import bank.recommendationservice.fintech.model.DynamicRuleQuery;
+import bank.recommendationservice.fintech.model.RequestTrace;
+import bank.recommendationservice.fintech.other.ProductType;
+import bank.recommendationservice.fintech.other.QueryType;
+import bank.recommendationservice.fintech.repository.DynamicRuleRepository;
+import bank.recommendationservice.fintech.repository.RuleSetVersionRepository;
+import bank.recommendationservice.fintech.service.RuleDependencyService;
+import bank.recommendationservice.fintech.service.RuleSetVersionService;
+import bank.recommendationservice.fintech.service.RuleStatsService;
+import com.pengrad.telegrambot.TelegramBot;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.not;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Согласование набора правил между узлами на H2 в режиме PostgreSQL вместо базы правил.
+ * <p>
+ * Изменение правил другим узлом моделируется записью правила и увеличением версии набора правил
+ * мимо сервиса правил этого узла. H2 не поддерживает LISTEN/NOTIFY, поэтому проверяется опрос версии
+ * ({@link RuleSetVersionService#checkVersion()}); фоновый опрос в профиле {@code statement-budget} выключен.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("statement-budget")
+@Import(SqlStatementCounter.class)
+class RuleSetVersionIntegrationTest {
+    private static final String USER_ID = "f37ba8a8-3cd5-4976-9f74-2b21f105da67";
+    private static final String PRODUCT_NAME = "Other node";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private SqlStatementCounter sqlStatementCounter;
+
+    @Autowired
+    private RuleSetVersionService ruleSetVersionService;
+
+    @Autowired
+    private RuleSetVersionRepository ruleSetVersionRepository;
+
+    @Autowired
+    private RuleDependencyService ruleDependencyService;
+
+    @Autowired
+    private DynamicRuleRepository dynamicRuleRepository;
+
+    @Autowired
+    private RuleStatsService ruleStatsService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @MockBean
+    private TelegramBot telegramBot;
+
+    @Test
+    void testCheckVersion_ReloadsRulesChangedByOtherNode() throws Exception {
+        // data
+        ruleSetVersionService.checkVersion();
+        mockMvc.perform(get("/recommendation/{user_id}", USER_ID)).andExpect(status().isOk());
+        DynamicRuleQuery query = new DynamicRuleQuery("USER_OF", List.of("DEBIT"));
+        query.setQueryType(QueryType.USER_OF);
+        query.setProductType(ProductType.DEBIT);
+        DynamicRule rule = new DynamicRule(PRODUCT_NAME, UUID.randomUUID(), "Правило другого узла",
+                new ArrayList<>(List.of(query)));
+        query.setDynamicRule(rule);
+        Long id = transactionTemplate.execute(status -> {
+            DynamicRule saved = dynamicRuleRepository.save(rule);
+            ruleStatsService.addRuleStats(saved.getId());
+            ruleSetVersionRepository.notifyChange(ruleSetVersionRepository.increment());
+            return saved.getId();
+        });
+        long version = ruleSetVersionRepository.getVersion();
+
+        try {
+            assertFalse(containsRule(id));
+            mockMvc.perform(get("/recommendation/{user_id}", USER_ID))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.recommendations[*].name", not(hasItem(PRODUCT_NAME))));
+
+            // test
+            boolean reloaded = ruleSetVersionService.checkVersion();
+            sqlStatementCounter.reset();
+            boolean reloadedAgain = ruleSetVersionService.checkVersion();
+
+            // check
+            assertTrue(reloaded);
+            assertFalse(reloadedAgain);
+            assertEquals(1, sqlStatementCounter.getStatements(RequestTrace.Database.POSTGRES).size());
+            assertEquals(version, ruleSetVersionService.getKnownVersion());
+            assertTrue(containsRule(id));
+            mockMvc.perform(get("/recommendation/{user_id}", USER_ID))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.recommendations[*].name", hasItem(PRODUCT_NAME)));
+        } finally {
+            mockMvc.perform(delete("/rule/{id}", id)).andExpect(status().isNoContent());
+        }
+        assertEquals(version + 1, ruleSetVersionRepository.getVersion());
+        assertEquals(version + 1, ruleSetVersionService.getKnownVersion());
+        assertFalse(containsRule(id));
+    }
+
+
+    private boolean containsRule(Long id) {
+        return ruleDependencyService.getGraph().getDynamicRules().stream().anyMatch(rule -> rule.getId().equals(id));
+    }
+}
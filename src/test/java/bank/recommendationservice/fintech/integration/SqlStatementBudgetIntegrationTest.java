@@ -0,0 +1,315 @@
+package bank.recommendationservice.fintech.integration;
+
+import bank.recommendationservice.fintech.model.RequestTrace;
+import bank.recommendationservice.fintech.repository.DynamicRuleRepository;
+import bank.recommendationservice.fintech.repository.RuleStatsRepository;
+import bank.recommendationservice.fintech.service.CacheService;
+import bank.recommendationservice.fintech.telegrambot.listener.TelegramBotUpdatesListener;
+import com.pengrad.telegrambot.TelegramBot;
+import com.pengrad.telegrambot.request.SendMessage;
+import com.jayway.jsonpath.JsonPath;
+import com.pengrad.telegrambot.utility.BotUtils;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Бюджеты SQL-запросов основных сценариев. Тест падает, если сценарий начинает выполнять больше запросов,
+ * чем указано в бюджете, - например, из-за ленивой загрузки связей в цикле (N+1).
+ * <p>
+ * Обе базы данных - H2 в памяти: база правил создается миграциями Liquibase, база транзакций -
+ * скриптом {@code statement-budget/transactions.sql}. Бюджеты рассчитаны на {@link #RULE_COUNT} динамических правил.
+ * Если изменение сокращает число запросов, бюджет стоит уменьшить.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("statement-budget")
+@Import(SqlStatementCounter.class)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class SqlStatementBudgetIntegrationTest {
+    private static final String USER_ID = "f37ba8a8-3cd5-4976-9f74-2b21f105da67";
+    private static final String USER_NAME = "budget_user";
+    private static final int RULE_COUNT = 3;
+
+    /**
+     * Увеличение счетчика срабатываний: один UPDATE без чтения статистики на каждое из двух сработавших правил,
+     * независимо от кэшей.
+     */
+    private static final int RULE_STATS_UPDATE_BUDGET = 2;
+    /**
+     * Агрегаты пользователя по всем рулсетам и динамическим правилам.
+     */
+    private static final int RECOMMENDATION_H2_BUDGET = 8;
+    /**
+     * Правила вместе с запросами и аргументами (столбец queries_json) - один запрос на порцию или страницу правил.
+     */
+    private static final int RULES_POSTGRES_BUDGET = 1;
+    /**
+     * Статистика - один запрос на порцию или страницу.
+     */
+    private static final int RULE_STATS_POSTGRES_BUDGET = 1;
+    /**
+     * Пакетный импорт правил: по одному пакету вставок в dynamic_rule, dynamic_rule_query, query_arguments
+     * и rule_stats, не больше одного выделения пула идентификаторов на каждую из трех последовательностей
+     * и увеличение версии набора правил (обновление и чтение) - независимо от количества правил
+     * (до размера пакета и пула, 50).
+     */
+    private static final int BULK_IMPORT_POSTGRES_BUDGET = 9;
+    /**
+     * Поиск пользователя по имени и агрегаты пользователя. Бот не увеличивает счетчики срабатываний правил.
+     */
+    private static final int BOT_H2_BUDGET = 9;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private SqlStatementCounter sqlStatementCounter;
+
+    @Autowired
+    private CacheService cacheService;
+
+    @Autowired
+    private TelegramBotUpdatesListener telegramBotUpdatesListener;
+
+    @Autowired
+    private DynamicRuleRepository dynamicRuleRepository;
+
+    @Autowired
+    private RuleStatsRepository ruleStatsRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @MockBean
+    private TelegramBot telegramBot;
+
+    @BeforeAll
+    void createRules() throws Exception {
+        String[] rules = {
+                "{\"productName\": \"Top Saving\", \"productId\": \"59efc529-2fff-41af-baff-90ccd7402925\", "
+                        + "\"productText\": \"Копилка\", \"rule\": ["
+                        + "{\"query\": \"USER_OF\", \"arguments\": [\"DEBIT\"], \"negate\": false}, "
+                        + "{\"query\": \"ACTIVE_USER_OF\", \"arguments\": [\"SAVING\"], \"negate\": true}]}",
+                "{\"productName\": \"Простой кредит\", \"productId\": \"ab138afb-f3ba-4a93-b74f-0fcee86d447f\", "
+                        + "\"productText\": \"Кредит\", \"rule\": ["
+                        + "{\"query\": \"USER_OF\", \"arguments\": [\"CREDIT\"], \"negate\": true}, "
+                        + "{\"query\": \"TRANSACTION_SUM_COMPARE_DEPOSIT_WITHDRAW\", \"arguments\": [\"DEBIT\", \">\"], \"negate\": false}]}",
+                "{\"productName\": \"Invest 500\", \"productId\": \"147f6a0f-3b91-413b-ab99-87f081d60d5a\", "
+                        + "\"productText\": \"ИИС\", \"rule\": ["
+                        + "{\"query\": \"USER_OF\", \"arguments\": [\"INVEST\"], \"negate\": true}]}"
+        };
+        for (String rule : rules) {
+            mockMvc.perform(post("/rule").contentType(MediaType.APPLICATION_JSON).content(rule))
+                    .andExpect(status().isCreated());
+        }
+        // граф правил загружается один раз после изменения правил, в бюджет запроса он не входит
+        mockMvc.perform(get("/recommendation/{user_id}", USER_ID)).andExpect(status().isOk());
+    }
+
+    @BeforeEach
+    void setUp() {
+        cacheService.clearCaches();
+        sqlStatementCounter.reset();
+    }
+
+    @Test
+    void testGetRecommendations_ColdCaches() throws Exception {
+        // test
+        mockMvc.perform(get("/recommendation/{user_id}", USER_ID)).andExpect(status().isOk());
+
+        // check
+        sqlStatementCounter.assertBudget(RequestTrace.Database.H2, RECOMMENDATION_H2_BUDGET);
+        sqlStatementCounter.assertBudget(RequestTrace.Database.POSTGRES, RULE_STATS_UPDATE_BUDGET);
+    }
+
+    @Test
+    void testGetRecommendations_WarmCaches() throws Exception {
+        // data
+        mockMvc.perform(get("/recommendation/{user_id}", USER_ID)).andExpect(status().isOk());
+        sqlStatementCounter.reset();
+
+        // test
+        mockMvc.perform(get("/recommendation/{user_id}", USER_ID)).andExpect(status().isOk());
+
+        // check
+        sqlStatementCounter.assertBudget(RequestTrace.Database.H2, 0);
+        sqlStatementCounter.assertBudget(RequestTrace.Database.POSTGRES, RULE_STATS_UPDATE_BUDGET);
+    }
+
+    @Test
+    void testGetRules() throws Exception {
+        // test
+        performStreamed(get("/rule")).andExpect(jsonPath("$.length()").value(RULE_COUNT));
+
+        // check
+        sqlStatementCounter.assertBudget(RequestTrace.Database.POSTGRES, RULES_POSTGRES_BUDGET);
+        sqlStatementCounter.assertBudget(RequestTrace.Database.H2, 0);
+    }
+
+    @Test
+    void testGetRulesPage() throws Exception {
+        // test
+        performStreamed(get("/rule").param("page", "0").param("size", "2"))
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].rule.length()").value(2));
+
+        // check
+        sqlStatementCounter.assertBudget(RequestTrace.Database.POSTGRES, RULES_POSTGRES_BUDGET);
+        sqlStatementCounter.assertBudget(RequestTrace.Database.H2, 0);
+    }
+
+    @Test
+    void testGetRuleStats() throws Exception {
+        // test
+        performStreamed(get("/rule/stats")).andExpect(jsonPath("$.stats.length()").value(RULE_COUNT));
+
+        // check
+        sqlStatementCounter.assertBudget(RequestTrace.Database.POSTGRES, RULE_STATS_POSTGRES_BUDGET);
+        sqlStatementCounter.assertBudget(RequestTrace.Database.H2, 0);
+    }
+
+    @Test
+    void testBulkImport() throws Exception {
+        // data
+        StringBuilder rules = new StringBuilder("[");
+        for (int i = 0; i < 20; i++) {
+            rules.append(i > 0 ? ", " : "")
+                    .append("{\"productName\": \"Bulk ").append(i).append("\", ")
+                    .append("\"productId\": \"59efc529-2fff-41af-baff-90ccd7402925\", \"productText\": \"Импорт\", ")
+                    .append("\"rule\": [{\"query\": \"USER_OF\", \"arguments\": [\"DEBIT\"], \"negate\": false}, ")
+                    .append("{\"query\": \"ACTIVE_USER_OF\", \"arguments\": [\"SAVING\"], \"negate\": true}]}");
+        }
+        rules.append("]");
+
+        // test
+        String response = mockMvc.perform(post("/rule/bulk").contentType(MediaType.APPLICATION_JSON).content(rules.toString()))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.length()").value(20))
+                .andReturn().getResponse().getContentAsString();
+
+        // check
+        try {
+            sqlStatementCounter.assertBudget(RequestTrace.Database.POSTGRES, BULK_IMPORT_POSTGRES_BUDGET);
+            sqlStatementCounter.assertBudget(RequestTrace.Database.H2, 0);
+        } finally {
+            // импортированные правила удаляются, чтобы не менять бюджеты остальных сценариев
+            for (Object id : JsonPath.<List<Object>>read(response, "$[*].id")) {
+                mockMvc.perform(delete("/rule/{id}", id)).andExpect(status().isNoContent());
+            }
+            mockMvc.perform(get("/recommendation/{user_id}", USER_ID)).andExpect(status().isOk());
+        }
+    }
+
+    @Test
+    void testRuleSecondLevelCache() throws Exception {
+        // data
+        String rule = "{\"productName\": \"Cached\", \"productId\": \"59efc529-2fff-41af-baff-90ccd7402925\", "
+                + "\"productText\": \"Кэш\", \"rule\": [{\"query\": \"USER_OF\", \"arguments\": [\"DEBIT\"], \"negate\": false}]}";
+        String response = mockMvc.perform(post("/rule").contentType(MediaType.APPLICATION_JSON).content(rule))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        Long id = JsonPath.parse(response).read("$.id", Long.class);
+        transactionTemplate.executeWithoutResult(status -> dynamicRuleRepository.findById(id).orElseThrow()
+                .getQueries().get(0).getArguments().size());
+        sqlStatementCounter.reset();
+
+        try {
+            // test
+            transactionTemplate.executeWithoutResult(status ->
+                    assertEquals(List.of("DEBIT"), dynamicRuleRepository.findById(id).orElseThrow()
+                            .getQueries().get(0).getArguments()));
+
+            // check
+            sqlStatementCounter.assertBudget(RequestTrace.Database.POSTGRES, 0);
+            assertTrue(meterRegistry.get("hibernate.second.level.cache.requests")
+                    .tags("region", "dynamic_rule", "result", "hit").functionCounter().count() > 0);
+        } finally {
+            mockMvc.perform(delete("/rule/{id}", id)).andExpect(status().isNoContent());
+            mockMvc.perform(get("/recommendation/{user_id}", USER_ID)).andExpect(status().isOk());
+        }
+        assertTrue(dynamicRuleRepository.findById(id).isEmpty());
+        assertNull(ruleStatsRepository.findByDynamicRuleId(id));
+    }
+
+    @Test
+    void testBotRecommendCommand() {
+        // data
+        clearInvocations(telegramBot);
+        String update = "{\"update_id\": 1, \"message\": {\"message_id\": 1, \"date\": 0, "
+                + "\"chat\": {\"id\": 42, \"type\": \"private\"}, \"text\": \"/recommend " + USER_NAME + "\"}}";
+
+        // test
+        telegramBotUpdatesListener.process(List.of(BotUtils.parseUpdate(update)));
+        verify(telegramBot, timeout(5_000)).execute(any(SendMessage.class), any());
+
+        // check
+        sqlStatementCounter.assertBudget(RequestTrace.Database.H2, BOT_H2_BUDGET);
+        sqlStatementCounter.assertBudget(RequestTrace.Database.POSTGRES, 0);
+    }
+
+    @Test
+    void testClearUserCaches() throws Exception {
+        // data
+        mockMvc.perform(get("/recommendation/{user_id}", USER_ID)).andExpect(status().isOk());
+        sqlStatementCounter.reset();
+
+        // test
+        mockMvc.perform(post("/management/clear-caches").param("user_id", USER_ID))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.invalidation.scope").value("USER"))
+                .andExpect(jsonPath("$.complete").value(false))
+                .andExpect(jsonPath("$.peers_known").value(false))
+                .andExpect(jsonPath("$.nodes[0].local").value(true));
+
+        // check
+        sqlStatementCounter.assertBudget(RequestTrace.Database.POSTGRES, 0);
+        sqlStatementCounter.assertBudget(RequestTrace.Database.H2, 0);
+        mockMvc.perform(get("/recommendation/{user_id}", USER_ID)).andExpect(status().isOk());
+        // агрегаты пользователя сброшены и читаются заново
+        assertFalse(sqlStatementCounter.getStatements(RequestTrace.Database.H2).isEmpty());
+        sqlStatementCounter.assertBudget(RequestTrace.Database.H2, RECOMMENDATION_H2_BUDGET);
+    }
+
+    /**
+     * Выполняет запрос с потоковым ответом и дожидается окончания записи ответа.
+     */
+    private ResultActions performStreamed(RequestBuilder request) throws Exception {
+        MvcResult result = mockMvc.perform(request).andReturn();
+        return mockMvc.perform(asyncDispatch(result)).andExpect(status().isOk());
+    }
+}
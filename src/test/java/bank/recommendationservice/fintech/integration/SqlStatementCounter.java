@@ -0,0 +1,141 @@
+package bank.recommendationservice.fintech.integration;
+
+import bank.recommendationservice.fintech.model.RequestTrace;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Тестовый счетчик SQL-запросов к базе транзакций (H2) и базе правил (PostgreSQL).
+ * <p>
+ * Подключается к контексту через {@code @Import(SqlStatementCounter.class)} и оборачивает бины
+ * {@code recommendationsServiceDataSource} (через него работает {@code recommendationsJdbcTemplate})
+ * и {@code defaultDataSource} (JPA). Считается каждый вызов {@code execute*} из любого потока,
+ * поэтому учитываются и запросы правил, оцененных в пуле, и запросы обработчика Telegram-бота.
+ * <p>
+ * В отличие от {@link RequestTrace}, счетчик не зависит от потока запроса и включен всегда.
+ */
+public class SqlStatementCounter implements BeanPostProcessor {
+    private final Map<RequestTrace.Database, Queue<String>> statements = new EnumMap<>(RequestTrace.Database.class);
+
+    public SqlStatementCounter() {
+        for (RequestTrace.Database database : RequestTrace.Database.values()) {
+            statements.put(database, new ConcurrentLinkedQueue<>());
+        }
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof DataSource dataSource) {
+            if ("recommendationsServiceDataSource".equals(beanName)) {
+                return new CountingDataSource(dataSource, statements.get(RequestTrace.Database.H2));
+            }
+            if ("defaultDataSource".equals(beanName)) {
+                return new CountingDataSource(dataSource, statements.get(RequestTrace.Database.POSTGRES));
+            }
+        }
+        return bean;
+    }
+
+    /**
+     * Сбрасывает счетчики всех баз данных.
+     */
+    public void reset() {
+        statements.values().forEach(Queue::clear);
+    }
+
+    /**
+     * @return выполненные с последнего {@link #reset()} SQL-запросы к базе данных в порядке выполнения
+     */
+    public List<String> getStatements(RequestTrace.Database database) {
+        return new ArrayList<>(statements.get(database));
+    }
+
+    /**
+     * Проверяет, что с последнего {@link #reset()} к базе данных выполнено не больше {@code budget} запросов.
+     * Сообщение об ошибке содержит все выполненные запросы.
+     *
+     * @param database база данных
+     * @param budget   допустимое количество запросов
+     */
+    public void assertBudget(RequestTrace.Database database, int budget) {
+        List<String> executed = getStatements(database);
+        if (executed.size() > budget) {
+            fail(String.format("Превышен бюджет SQL-запросов к %s: выполнено %d, допустимо %d%n%s",
+                    database, executed.size(), budget, String.join(System.lineSeparator(), executed)));
+        }
+    }
+
+    private static final class CountingDataSource extends DelegatingDataSource {
+        private final Queue<String> statements;
+
+        private CountingDataSource(DataSource targetDataSource, Queue<String> statements) {
+            super(targetDataSource);
+            this.statements = statements;
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            return counting(super.getConnection());
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            return counting(super.getConnection(username, password));
+        }
+
+        private Connection counting(Connection connection) {
+            return (Connection) Proxy.newProxyInstance(
+                    Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class},
+                    (proxy, method, args) -> {
+                        Object result = invoke(connection, method, args);
+                        return switch (method.getName()) {
+                            case "prepareStatement" -> statement(PreparedStatement.class, result, (String) args[0]);
+                            case "prepareCall" -> statement(CallableStatement.class, result, (String) args[0]);
+                            case "createStatement" -> statement(Statement.class, result, null);
+                            default -> result;
+                        };
+                    });
+        }
+
+        private Object statement(Class<? extends Statement> type, Object statement, String sql) {
+            return Proxy.newProxyInstance(
+                    type.getClassLoader(),
+                    new Class<?>[]{type},
+                    (proxy, method, args) -> {
+                        if (method.getName().startsWith("execute")) {
+                            statements.add(sql != null ? sql
+                                    : args != null && args.length > 0 && args[0] instanceof String text ? text
+                                    : "(batch)");
+                        }
+                        return invoke(statement, method, args);
+                    });
+        }
+
+        private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getTargetException();
+            }
+        }
+    }
+}
@@ -6,25 +6,32 @@ import bank.recommendationservice.fintech.exception.UserNotFoundException;
 import bank.recommendationservice.fintech.other.ComparisonType;
 import bank.recommendationservice.fintech.other.ProductType;
 import bank.recommendationservice.fintech.other.TransactionType;
+import bank.recommendationservice.fintech.model.UserInfo;
 import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
-import org.springframework.dao.EmptyResultDataAccessException;
-import org.springframework.dao.IncorrectResultSizeDataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
 
+import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 class RecommendationsRepositoryTest {
+    private static final String USER_SQL = "SELECT id, first_name, last_name FROM users WHERE username = ?";
+
     @Mock
     private JdbcTemplate jdbcTemplate;
 
@@ -293,8 +300,15 @@ class RecommendationsRepositoryTest {
         assertTrue(result);
     }
 
+    private RecommendationsRepository repositoryWithUserCache() {
+        return new RecommendationsRepository(jdbcTemplate, productTypeCache, null, null, Caffeine.newBuilder().build());
+    }
+
     @Test
     void testGetUserIdByUserName_UserNameNull() {
+        // data
+        RecommendationsRepository recommendationsRepository = repositoryWithUserCache();
+
         // test & check
         assertThrows(UserNotFoundException.class, () -> {
             recommendationsRepository.getUserIdByUserName(null);
@@ -304,8 +318,8 @@ class RecommendationsRepositoryTest {
     @Test
     void testGetUserIdByUserName_UserNotFound() {
         // data
-        String sql = "SELECT id FROM users WHERE username = ?";
-        when(jdbcTemplate.queryForObject(sql, new Object[]{userId}, UUID.class)).thenThrow(new EmptyResultDataAccessException(1));
+        RecommendationsRepository recommendationsRepository = repositoryWithUserCache();
+        when(jdbcTemplate.query(eq(USER_SQL), any(RowMapper.class), eq("nonexistentUser"))).thenReturn(List.of());
 
         // test & check
         assertThrows(UserNotFoundException.class, () -> {
@@ -317,10 +331,10 @@ class RecommendationsRepositoryTest {
     @Test
     void testGetFullNameByUsername_MultipleUsersFound() {
         // data
-        String sql = "SELECT first_name, last_name FROM users WHERE username = ?";
-        when(jdbcTemplate.queryForObject(sql, new Object[]{"duplicateUser"}, (rs, rowNum) -> {
-            throw new IncorrectResultSizeDataAccessException(1);
-        })).thenThrow(new IncorrectResultSizeDataAccessException(1));
+        RecommendationsRepository recommendationsRepository = repositoryWithUserCache();
+        when(jdbcTemplate.query(eq(USER_SQL), any(RowMapper.class), eq("duplicateUser")))
+                .thenReturn(List.of(new UserInfo(UUID.randomUUID(), "Иван", "Иванов"),
+                        new UserInfo(UUID.randomUUID(), "Иван", "Петров")));
 
         // test
         String fullName = recommendationsRepository.getFullNameByUsername("duplicateUser");
@@ -328,4 +342,78 @@ class RecommendationsRepositoryTest {
         // check
         assertNull(fullName);
     }
-}
\ No newline at end of file
+
+    @Test
+    void testFindUserByUserName_SingleQueryAndCached() {
+        // data
+        RecommendationsRepository recommendationsRepository = repositoryWithUserCache();
+        UserInfo user = new UserInfo(userId, "Иван", "Иванов");
+        when(jdbcTemplate.query(eq(USER_SQL), any(RowMapper.class), eq("ivan"))).thenReturn(List.of(user));
+
+        // test
+        UUID id = recommendationsRepository.getUserIdByUserName("ivan");
+        String fullName = recommendationsRepository.getFullNameByUsername("ivan");
+
+        // check
+        assertEquals(userId, id);
+        assertEquals("Иван Иванов", fullName);
+        verify(jdbcTemplate, times(1)).query(eq(USER_SQL), any(RowMapper.class), eq("ivan"));
+    }
+
+    @Test
+    void testFindUserByUserName_NotFoundIsCached() {
+        // data
+        RecommendationsRepository recommendationsRepository = repositoryWithUserCache();
+        when(jdbcTemplate.query(eq(USER_SQL), any(RowMapper.class), eq("unknown"))).thenReturn(List.of());
+
+        // test
+        Optional<UserInfo> first = recommendationsRepository.findUserByUserName("unknown");
+        Optional<UserInfo> second = recommendationsRepository.findUserByUserName("unknown");
+
+        // check
+        assertTrue(first.isEmpty());
+        assertTrue(second.isEmpty());
+        verify(jdbcTemplate, times(1)).query(eq(USER_SQL), any(RowMapper.class), eq("unknown"));
+    }
+
+    @Test
+    void testInvalidateUserInfo_EvictsUserByName() {
+        // data
+        RecommendationsRepository recommendationsRepository = repositoryWithUserCache();
+        UserInfo user = new UserInfo(userId, "Иван", "Иванов");
+        when(jdbcTemplate.query(eq(USER_SQL), any(RowMapper.class), eq("ivan"))).thenReturn(List.of(user));
+        when(jdbcTemplate.query(eq(USER_SQL), any(RowMapper.class), eq("petr")))
+                .thenReturn(List.of(new UserInfo(UUID.randomUUID(), "Петр", "Петров")));
+        recommendationsRepository.findUserByUserName("ivan");
+        recommendationsRepository.findUserByUserName("petr");
+
+        // test
+        recommendationsRepository.invalidateUserInfo(userId);
+        recommendationsRepository.findUserByUserName("ivan");
+        recommendationsRepository.findUserByUserName("petr");
+
+        // check
+        verify(jdbcTemplate, times(2)).query(eq(USER_SQL), any(RowMapper.class), eq("ivan"));
+        verify(jdbcTemplate, times(1)).query(eq(USER_SQL), any(RowMapper.class), eq("petr"));
+    }
+
+    @Test   // Тестирование таймеров запросов после привязки к реестру метрик
+    public void testBindTo_RecordsQueryTimers() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        recommendationsRepository.bindTo(registry);
+        when(jdbcTemplate.queryForObject(any(String.class), eq(Integer.class), any(UUID.class), any(String.class)))
+                .thenReturn(100);
+
+        recommendationsRepository.getWithdrawsOfTypeTotal(userId, productType);
+        recommendationsRepository.getWithdrawsOfTypeTotal(userId, productType);
+
+        assertEquals(2, registry.get("recommendation.repository.query")
+                .tag("query", "withdraws_total")
+                .tag("product_type", "DEBIT")
+                .timer().count());
+        assertEquals(0, registry.get("recommendation.repository.query")
+                .tag("query", "withdraws_total")
+                .tag("product_type", "CREDIT")
+                .timer().count());
+    }
+}
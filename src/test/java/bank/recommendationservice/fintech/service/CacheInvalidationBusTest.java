@@ -0,0 +1,209 @@
+package bank.recommendationservice.fintech.service;
+
+import bank.recommendationservice.fintech.interfaces.CacheInvalidationTransport;
+import bank.recommendationservice.fintech.model.CacheInvalidation;
+import bank.recommendationservice.fintech.model.CacheInvalidationMessage;
+import bank.recommendationservice.fintech.model.CacheInvalidationResponse;
+import bank.recommendationservice.fintech.model.CacheInvalidationResponse.NodeAcknowledgement;
+import bank.recommendationservice.fintech.other.ProductType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+/**
+ * Несколько экземпляров сервиса моделируются несколькими шинами на одном транспорте внутри процесса,
+ * каждая со своим {@link CacheService}.
+ */
+class CacheInvalidationBusTest {
+    private final InProcessCacheInvalidationTransport transport = new InProcessCacheInvalidationTransport();
+    private final List<CacheInvalidationMessage> messages = new CopyOnWriteArrayList<>();
+    private final CacheService cacheServiceA = mock(CacheService.class);
+    private final CacheService cacheServiceB = mock(CacheService.class);
+    private final CacheService cacheServiceC = mock(CacheService.class);
+
+    private CacheInvalidationBus busA;
+    private CacheInvalidationBus busB;
+    private CacheInvalidationBus busC;
+
+    @BeforeEach
+    void setUp() {
+        transport.subscribe(messages::add, () -> { });
+        busA = start(cacheServiceA, "node-a");
+        busB = start(cacheServiceB, "node-b");
+        busC = start(cacheServiceC, "node-c");
+    }
+
+    @Test
+    void testStart_NodesDiscoverEachOther() {
+        // check
+        assertEquals(Set.of("node-b", "node-c"), busA.getPeers());
+        assertEquals(Set.of("node-a", "node-c"), busB.getPeers());
+        assertEquals(Set.of("node-a", "node-b"), busC.getPeers());
+    }
+
+    @Test
+    void testBroadcast_AppliedAndAcknowledgedByAllNodes() {
+        // data
+        CacheInvalidation invalidation = CacheInvalidation.user(UUID.randomUUID(), null);
+
+        // test
+        CacheInvalidationResponse response = busA.broadcast(invalidation);
+
+        // check
+        verify(cacheServiceA).apply(invalidation);
+        verify(cacheServiceB).apply(invalidation);
+        verify(cacheServiceC).apply(invalidation);
+        assertTrue(response.complete());
+        assertTrue(response.peersKnown());
+        assertEquals(invalidation, response.invalidation());
+        assertEquals(List.of("node-a", "node-b", "node-c"),
+                response.nodes().stream().map(NodeAcknowledgement::nodeId).toList());
+        assertTrue(response.nodes().get(0).local());
+        assertTrue(response.nodes().stream().allMatch(NodeAcknowledgement::acknowledged));
+    }
+
+    @Test
+    void testRedelivery_AppliedOnceAcknowledgedTwice() {
+        // data
+        CacheInvalidation invalidation = CacheInvalidation.product(ProductType.DEBIT);
+        CacheInvalidationMessage message = new CacheInvalidationMessage(
+                CacheInvalidationMessage.Type.INVALIDATE, UUID.randomUUID(), "node-x", invalidation);
+
+        // test
+        transport.publish(message);
+        transport.publish(message);
+
+        // check
+        verify(cacheServiceB, times(1)).apply(invalidation);
+        assertEquals(2, messages.stream()
+                .filter(sent -> sent.type() == CacheInvalidationMessage.Type.ACK)
+                .filter(sent -> sent.id().equals(message.id()) && sent.nodeId().equals("node-b"))
+                .count());
+    }
+
+    @Test
+    void testBroadcast_SilentNodeReportedAndForgotten() {
+        // data
+        transport.publish(new CacheInvalidationMessage(CacheInvalidationMessage.Type.JOIN, UUID.randomUUID(), "node-z", null));
+        assertTrue(busA.getPeers().contains("node-z"));
+
+        // test
+        CacheInvalidationResponse response = busA.broadcast(CacheInvalidation.full());
+
+        // check
+        assertFalse(response.complete());
+        NodeAcknowledgement silent = response.nodes().get(response.nodes().size() - 1);
+        assertEquals("node-z", silent.nodeId());
+        assertFalse(silent.acknowledged());
+        assertNull(silent.latencyMs());
+        assertEquals(Set.of("node-b", "node-c"), busA.getPeers());
+        assertTrue(busA.broadcast(CacheInvalidation.full()).complete());
+    }
+
+    @Test
+    void testDestroy_NodeLeaves() {
+        // test
+        busC.destroy();
+
+        // check
+        assertEquals(Set.of("node-b"), busA.getPeers());
+        assertEquals(Set.of("node-a"), busB.getPeers());
+    }
+
+    @Test
+    void testBroadcast_TransportFailure() {
+        // data
+        CacheService cacheService = mock(CacheService.class);
+        CacheInvalidationBus bus = new CacheInvalidationBus(cacheService, new CacheInvalidationTransport() {
+            @Override
+            public void publish(CacheInvalidationMessage message) {
+                throw new IllegalStateException("Нет соединения");
+            }
+
+            @Override
+            public void subscribe(Consumer<CacheInvalidationMessage> listener, Runnable onSubscribed) {
+                onSubscribed.run();
+            }
+        }, "node-d", 50);
+        bus.start();
+
+        // test
+        CacheInvalidationResponse response = bus.broadcast(CacheInvalidation.full());
+
+        // check
+        verify(cacheService).apply(CacheInvalidation.full());
+        assertFalse(response.complete());
+        assertFalse(response.peersKnown());
+        assertEquals(1, response.nodes().size());
+        verifyNoInteractions(cacheServiceA);
+    }
+
+    @Test
+    void testBroadcast_NoPeersKnown() {
+        // data
+        CacheService cacheService = mock(CacheService.class);
+        CacheInvalidationBus bus = new CacheInvalidationBus(cacheService, new InProcessCacheInvalidationTransport(),
+                "node-d", 50);
+        bus.start();
+
+        // test
+        CacheInvalidationResponse response = bus.broadcast(CacheInvalidation.full());
+
+        // check
+        verify(cacheService).apply(CacheInvalidation.full());
+        assertFalse(response.complete());
+        assertFalse(response.peersKnown());
+        assertEquals(1, response.nodes().size());
+    }
+
+    @Test
+    void testStart_JoinSentOnceSubscribed() {
+        // data
+        List<Runnable> subscriptions = new CopyOnWriteArrayList<>();
+        CacheInvalidationBus bus = new CacheInvalidationBus(mock(CacheService.class), new CacheInvalidationTransport() {
+            @Override
+            public void publish(CacheInvalidationMessage message) {
+                transport.publish(message);
+            }
+
+            @Override
+            public void subscribe(Consumer<CacheInvalidationMessage> listener, Runnable onSubscribed) {
+                transport.subscribe(listener, () -> { });
+                subscriptions.add(onSubscribed);
+            }
+        }, "node-d", 50);
+
+        // test
+        bus.start();
+        boolean joinedBeforeSubscribed = messages.stream().anyMatch(message -> message.nodeId().equals("node-d"));
+        subscriptions.forEach(Runnable::run);
+
+        // check
+        assertFalse(joinedBeforeSubscribed);
+        assertTrue(messages.stream().anyMatch(message -> message.nodeId().equals("node-d")
+                && message.type() == CacheInvalidationMessage.Type.JOIN));
+        assertEquals(Set.of("node-a", "node-b", "node-c"), bus.getPeers());
+        assertTrue(busA.getPeers().contains("node-d"));
+    }
+
+
+    private CacheInvalidationBus start(CacheService cacheService, String nodeId) {
+        CacheInvalidationBus bus = new CacheInvalidationBus(cacheService, transport, nodeId, 50);
+        bus.start();
+        return bus;
+    }
+}
@@ -1,12 +1,23 @@
 package bank.recommendationservice.fintech.service;
 
+import bank.recommendationservice.fintech.model.UserInfo;
+import bank.recommendationservice.fintech.model.UserRecommendations;
+import bank.recommendationservice.fintech.other.ProductType;
+import bank.recommendationservice.fintech.repository.RecommendationsRepository;
 import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.persistence.EntityManagerFactory;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.Mockito.*;
 
 class CacheServiceTest {
@@ -19,12 +30,33 @@ class CacheServiceTest {
     @Mock
     private Cache<String, Integer> transactionCountCache;
 
+    @Mock
+    private Cache<UUID, UserRecommendations> recommendationCache;
+
+    @Mock
+    private Cache<String, Optional<UserInfo>> userCache;
+
+    @Mock
+    private RecommendationsRepository recommendationsRepository;
+
+    @Mock
+    private RuleDependencyService ruleDependencyService;
+
+    @Mock
+    private EntityManagerFactory entityManagerFactory;
+
+    @Mock
+    private org.hibernate.Cache hibernateCache;
+
     private CacheService cacheService;
 
     @BeforeEach
     public void setUp() {
         MockitoAnnotations.openMocks(this);
-        cacheService = new CacheService(productTypeCache, transactionSumCache, transactionCountCache);
+        when(entityManagerFactory.getCache()).thenReturn(hibernateCache);
+        when(hibernateCache.unwrap(org.hibernate.Cache.class)).thenReturn(hibernateCache);
+        cacheService = new CacheService(productTypeCache, transactionSumCache, transactionCountCache, recommendationCache, userCache,
+                recommendationsRepository, ruleDependencyService, entityManagerFactory);
     }
 
     @Test
@@ -34,6 +66,10 @@ class CacheServiceTest {
         verify(productTypeCache, times(1)).invalidateAll();
         verify(transactionSumCache, times(1)).invalidateAll();
         verify(transactionCountCache, times(1)).invalidateAll();
+        verify(ruleDependencyService, times(1)).advanceGeneration();
+        verify(recommendationCache, times(1)).invalidateAll();
+        verify(userCache, times(1)).invalidateAll();
+        verify(hibernateCache, times(1)).evictAllRegions();
     }
 
     @Test
@@ -45,5 +81,69 @@ class CacheServiceTest {
         assertDoesNotThrow(() -> cacheService.clearCaches());
     }
 
+    @Test
+    public void testInvalidateUser_OnlyUserEntries() {
+        // data
+        UUID userId = UUID.randomUUID();
+
+        // test
+        cacheService.invalidateUser(userId, ProductType.DEBIT);
+
+        // check
+        verify(recommendationsRepository).invalidateUserAggregates(userId, ProductType.DEBIT);
+        verify(recommendationsRepository).invalidateUserInfo(userId);
+        verify(ruleDependencyService).advanceGeneration(userId);
+        verify(recommendationCache).invalidate(userId);
+        verifyNoMoreInteractions(recommendationsRepository);
+        verifyNoInteractions(productTypeCache, transactionSumCache, transactionCountCache, userCache);
+    }
+
+    @Test
+    public void testInvalidateUser_AllProductTypes() {
+        // data
+        UUID userId = UUID.randomUUID();
+
+        // test
+        cacheService.invalidateUser(userId, null);
 
-}
\ No newline at end of file
+        // check
+        for (ProductType productType : ProductType.values()) {
+            verify(recommendationsRepository).invalidateUserAggregates(userId, productType);
+        }
+        verify(recommendationsRepository).invalidateUserInfo(userId);
+        verify(recommendationCache).invalidate(userId);
+    }
+
+    @Test
+    public void testInvalidateProductType_OnlyProductTypeKeysAndAffectedUsers() {
+        // data
+        UUID userId = UUID.randomUUID();
+        UUID otherUserId = UUID.randomUUID();
+        Cache<String, Boolean> products = Caffeine.newBuilder().build();
+        Cache<String, Integer> sums = Caffeine.newBuilder().build();
+        Cache<String, Integer> counts = Caffeine.newBuilder().build();
+        Cache<UUID, UserRecommendations> recommendations = Caffeine.newBuilder().build();
+        products.put("product_" + userId + "_DEBIT", true);
+        products.put("product_" + userId + "_CREDIT", false);
+        sums.put("deposit_" + userId + "_DEBIT", 100);
+        counts.put("count_" + userId + "_DEBIT", 5);
+        products.put("product_" + otherUserId + "_CREDIT", true);
+        recommendations.put(userId, mock(UserRecommendations.class));
+        recommendations.put(otherUserId, mock(UserRecommendations.class));
+        CacheService service = new CacheService(products, sums, counts, recommendations, userCache,
+                recommendationsRepository, ruleDependencyService, entityManagerFactory);
+
+        // test
+        service.invalidateProductType(ProductType.DEBIT);
+
+        // check
+        assertEquals(Set.of("product_" + userId + "_CREDIT", "product_" + otherUserId + "_CREDIT"),
+                products.asMap().keySet());
+        assertEquals(0, sums.estimatedSize());
+        assertEquals(0, counts.estimatedSize());
+        assertEquals(Set.of(otherUserId), recommendations.asMap().keySet());
+        verify(ruleDependencyService).advanceGeneration(userId);
+        verifyNoMoreInteractions(ruleDependencyService);
+        verifyNoInteractions(userCache, recommendationsRepository);
+    }
+}
@@ -0,0 +1,82 @@
+package bank.recommendationservice.fintech.service;
+
+import bank.recommendationservice.fintech.exception.JfrRecordingException;
+import bank.recommendationservice.fintech.exception.JfrRecordingNotFoundException;
+import bank.recommendationservice.fintech.jfr.RuleEvaluatedEvent;
+import bank.recommendationservice.fintech.model.JfrRecordingStatus;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JfrRecordingServiceTest {
+    private final JfrRecordingService jfrRecordingService = new JfrRecordingService();
+
+    @AfterEach
+    void tearDown() {
+        jfrRecordingService.closeRecording();
+    }
+
+    @Test
+    void testStartStopAndDump_ContainsRuleEvaluatedEvent() throws Exception {
+        // data
+        UUID userId = UUID.randomUUID();
+        jfrRecordingService.start("default", 60L);
+        RuleEvaluatedEvent.wrap("Invest500", "rule_set", userId, () -> "recommendation").call();
+
+        // test
+        JfrRecordingStatus status = jfrRecordingService.stop();
+        Path file = Files.createTempFile("jfr-recording-test-", ".jfr");
+        try {
+            try (InputStream dump = jfrRecordingService.openDump()) {
+                Files.copy(dump, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+            List<RecordedEvent> events = RecordingFile.readAllEvents(file).stream()
+                    .filter(event -> event.getEventType().getName().equals("bank.recommendation.RuleEvaluated"))
+                    .toList();
+
+            // check
+            assertEquals("STOPPED", status.state());
+            assertEquals(60, status.durationSeconds());
+            assertEquals(1, events.size());
+            assertEquals("Invest500", events.get(0).getString("ruleId"));
+            assertEquals(userId.toString(), events.get(0).getString("userId"));
+            assertTrue(events.get(0).getBoolean("matched"));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    void testStart_AlreadyRunning() {
+        // data
+        jfrRecordingService.start("default", 60L);
+
+        // test & check
+        assertThrows(JfrRecordingException.class, () -> jfrRecordingService.start("default", 60L));
+    }
+
+    @Test
+    void testStart_InvalidParameters() {
+        // test & check
+        assertThrows(JfrRecordingException.class, () -> jfrRecordingService.start("unknown", 60L));
+        assertThrows(JfrRecordingException.class, () -> jfrRecordingService.start("default", 0L));
+        assertThrows(JfrRecordingException.class, () -> jfrRecordingService.start("default", 3601L));
+    }
+
+    @Test
+    void testStatus_NotStarted() {
+        // test & check
+        assertThrows(JfrRecordingNotFoundException.class, jfrRecordingService::status);
+        assertThrows(JfrRecordingNotFoundException.class, jfrRecordingService::openDump);
+    }
+}
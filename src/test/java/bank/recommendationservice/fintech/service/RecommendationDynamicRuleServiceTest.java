@@ -1,9 +1,16 @@
 package bank.recommendationservice.fintech.service;
 
+import bank.recommendationservice.fintech.exception.IllegalPageRequestException;
+import bank.recommendationservice.fintech.exception.IllegalQueryArgumentsException;
 import bank.recommendationservice.fintech.exception.RulesNotFoundException;
 import bank.recommendationservice.fintech.model.DynamicRule;
 import bank.recommendationservice.fintech.model.DynamicRuleQuery;
+import bank.recommendationservice.fintech.other.ComparisonType;
+import bank.recommendationservice.fintech.other.ProductType;
+import bank.recommendationservice.fintech.other.QueryType;
+import bank.recommendationservice.fintech.other.TransactionType;
 import bank.recommendationservice.fintech.repository.DynamicRuleRepository;
+import bank.recommendationservice.fintech.repository.RuleCatalogRepository;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -12,10 +19,11 @@ import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
+import java.util.stream.Stream;
 
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertThrows;
 import static org.junit.Assert.assertTrue;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
@@ -28,6 +36,10 @@ public class RecommendationDynamicRuleServiceTest {
     private DynamicRuleRepository dynamicRuleRepository;
     @Mock
     private RuleStatsService ruleStatsService;
+    @Mock
+    private RuleSetVersionService ruleSetVersionService;
+    @Mock
+    private RuleCatalogRepository ruleCatalogRepository;
     @InjectMocks
     private RecommendationDynamicRuleService recommendationDynamicRuleService;
     private DynamicRule dynamicRule;
@@ -90,6 +102,30 @@ public class RecommendationDynamicRuleServiceTest {
     }
 
 
+    /**
+     * Тест на сохранение разобранных аргументов запроса при добавлении правила.
+     * <p>
+     * 1. Добавляем правило с запросом TRANSACTION_SUM_COMPARE.
+     * 2. Проверяем, что тип запроса, тип продукта, тип транзакции, тип сравнения и константа заполнены.
+     */
+    @Test
+    public void testAddRule_StoresParsedArguments() {
+        // data
+        DynamicRuleQuery query = new DynamicRuleQuery("TRANSACTION_SUM_COMPARE",
+                new ArrayList<>(List.of("DEBIT", "DEPOSIT", ">=", "1000")));
+        dynamicRule.setQueries(new ArrayList<>(List.of(query)));
+        when(dynamicRuleRepository.save(any(DynamicRule.class))).thenReturn(dynamicRule);
+        // test
+        recommendationDynamicRuleService.addRule(dynamicRule);
+        // check
+        assertEquals(QueryType.TRANSACTION_SUM_COMPARE, query.getQueryType());
+        assertEquals(ProductType.DEBIT, query.getProductType());
+        assertEquals(TransactionType.DEPOSIT, query.getTransactionType());
+        assertEquals(ComparisonType.GREATER_THAN_OR_EQUALS, query.getComparisonType());
+        assertEquals(Integer.valueOf(1000), query.getConstant());
+    }
+
+
     /**
      * Тест на добавление правила, у которого есть запросы, и у запросов есть аргументы.
      * <p>
@@ -209,6 +245,7 @@ public class RecommendationDynamicRuleServiceTest {
 
         // check
         verify(dynamicRuleRepository, times(1)).deleteById(id);
+        verify(ruleSetVersionService, times(1)).publishChange();
     }
 
     /**
@@ -270,7 +307,7 @@ public class RecommendationDynamicRuleServiceTest {
         List<DynamicRule> rules = new ArrayList<>();
         rules.add(new DynamicRule());
         rules.add(new DynamicRule());
-        when(dynamicRuleRepository.findAll()).thenReturn(rules);
+        when(ruleCatalogRepository.streamRules(anyInt())).thenReturn(rules.stream());
 
         // test
         List<DynamicRule> result = recommendationDynamicRuleService.getAllDynamicRules();
@@ -293,7 +330,7 @@ public class RecommendationDynamicRuleServiceTest {
     public void testGetAllDynamicRules_EmptyList() {
         // data
         List<DynamicRule> rules = new ArrayList<>();
-        when(dynamicRuleRepository.findAll()).thenReturn(rules);
+        when(ruleCatalogRepository.streamRules(anyInt())).thenReturn(rules.stream());
 
         // test
         List<DynamicRule> result = recommendationDynamicRuleService.getAllDynamicRules();
@@ -314,7 +351,7 @@ public class RecommendationDynamicRuleServiceTest {
     @Test
     public void testGetAllDynamicRules_NullList() {
         // data
-        when(dynamicRuleRepository.findAll()).thenReturn(Collections.emptyList());
+        when(ruleCatalogRepository.streamRules(anyInt())).thenReturn(Stream.empty());
 
         // test
         List<DynamicRule> result = recommendationDynamicRuleService.getAllDynamicRules();
@@ -322,5 +359,82 @@ public class RecommendationDynamicRuleServiceTest {
         // check
         assertTrue(result.isEmpty());
     }
-}
 
+
+    /**
+     * Тест на получение страницы динамических правил.
+     * <p>
+     * 1. Настраиваем репозиторий каталога правил для возврата страницы.
+     * 2. Вызываем метод сервиса с номером и размером страницы.
+     * 3. Проверяем, что возвращена страница из репозитория.
+     */
+    @Test
+    public void testGetDynamicRulesPage_Success() {
+        // data
+        List<DynamicRule> rules = List.of(new DynamicRule(), new DynamicRule());
+        when(ruleCatalogRepository.findRulesPage(1, 2)).thenReturn(rules);
+
+        // test
+        List<DynamicRule> result = recommendationDynamicRuleService.getDynamicRulesPage(1, 2);
+
+        // check
+        assertEquals(rules, result);
+    }
+
+    /**
+     * Тест на получение страницы с недопустимым номером или размером.
+     */
+    @Test
+    public void testGetDynamicRulesPage_IllegalPageRequest() {
+        // test & check
+        assertThrows(IllegalPageRequestException.class, () -> recommendationDynamicRuleService.getDynamicRulesPage(-1, 10));
+        assertThrows(IllegalPageRequestException.class, () -> recommendationDynamicRuleService.getDynamicRulesPage(0, 0));
+        assertThrows(IllegalPageRequestException.class, () -> recommendationDynamicRuleService.getDynamicRulesPage(0, 1001));
+        verifyNoInteractions(ruleCatalogRepository);
+    }
+
+    /**
+     * Тест на пакетное создание правил.
+     * <p>
+     * 1. Подготавливаем два правила с корректными запросами.
+     * 2. Вызываем пакетное создание.
+     * 3. Проверяем, что правила сохранены одним вызовом, счетчики созданы для всех правил,
+     * а граф зависимостей сброшен один раз.
+     */
+    @Test
+    public void testAddRules_Success() {
+        // data
+        DynamicRule first = new DynamicRule("First", null, "First text",
+                new ArrayList<>(List.of(new DynamicRuleQuery("USER_OF", List.of("DEBIT")))));
+        DynamicRule second = new DynamicRule("Second", null, "Second text", null);
+        List<DynamicRule> rules = List.of(first, second);
+        when(dynamicRuleRepository.saveAll(rules)).thenReturn(rules);
+
+        // test
+        List<DynamicRule> result = recommendationDynamicRuleService.addRules(rules);
+
+        // check
+        assertEquals(rules, result);
+        assertEquals(first, first.getQueries().get(0).getDynamicRule());
+        assertTrue(second.getQueries().isEmpty());
+        verify(ruleStatsService, times(1)).addAllRuleStats(rules);
+        verify(ruleSetVersionService, times(1)).publishChange();
+    }
+
+    /**
+     * Тест на пакетное создание, когда одно из правил некорректно: не сохраняется ни одно правило.
+     */
+    @Test
+    public void testAddRules_InvalidRule() {
+        // data
+        DynamicRule valid = new DynamicRule("Valid", null, "Valid text",
+                List.of(new DynamicRuleQuery("USER_OF", List.of("DEBIT"))));
+        DynamicRule invalid = new DynamicRule("Invalid", null, "Invalid text",
+                List.of(new DynamicRuleQuery("USER_OF", List.of("UNKNOWN"))));
+
+        // test & check
+        assertThrows(IllegalQueryArgumentsException.class,
+                () -> recommendationDynamicRuleService.addRules(List.of(valid, invalid)));
+        verifyNoInteractions(dynamicRuleRepository, ruleStatsService, ruleSetVersionService);
+    }
+}
@@ -1,42 +1,58 @@
 package bank.recommendationservice.fintech.service;
 
+import bank.recommendationservice.fintech.dto.ProductDTO;
 import bank.recommendationservice.fintech.dto.RecommendationDTO;
+import bank.recommendationservice.fintech.exception.BatchSizeExceededException;
 import bank.recommendationservice.fintech.exception.NullArgumentException;
+import bank.recommendationservice.fintech.exception.RecommendationTimeoutException;
 import bank.recommendationservice.fintech.exception.UserNotFoundException;
 import bank.recommendationservice.fintech.interfaces.RecommendationRuleSet;
 import bank.recommendationservice.fintech.model.DynamicRule;
 import bank.recommendationservice.fintech.model.DynamicRuleQuery;
+import bank.recommendationservice.fintech.model.ProductCatalogResponse;
+import bank.recommendationservice.fintech.model.RecommendationResponse;
+import bank.recommendationservice.fintech.model.RequestTrace;
+import bank.recommendationservice.fintech.model.UserRecommendations;
 import bank.recommendationservice.fintech.other.ComparisonType;
+import bank.recommendationservice.fintech.other.ExecutionMode;
+import bank.recommendationservice.fintech.other.Feature;
 import bank.recommendationservice.fintech.other.ProductType;
+import bank.recommendationservice.fintech.other.QueryType;
 import bank.recommendationservice.fintech.other.TransactionType;
-import bank.recommendationservice.fintech.repository.DynamicRuleRepository;
 import bank.recommendationservice.fintech.repository.RecommendationsRepository;
+import bank.recommendationservice.fintech.repository.RuleCatalogRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
-import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
-import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.when;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
 
 class RecommendationServiceTest {
 
-    @InjectMocks
     private RecommendationService recommendationService;
 
-    @Mock
-    private List<RecommendationRuleSet> ruleSets;
+    private final List<RecommendationRuleSet> ruleSets = new ArrayList<>();
+
+    private Cache<UUID, UserRecommendations> recommendationCache;
+
+    private RuleDependencyService ruleDependencyService;
 
     @Mock
-    private DynamicRuleRepository dynamicRuleRepository;
+    private RuleCatalogRepository ruleCatalogRepository;
 
     @Mock
     private RecommendationsRepository recommendationsRepository;
@@ -51,11 +67,19 @@ class RecommendationServiceTest {
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
+        recommendationService = createService(new RuleExecutor(ExecutionMode.SEQUENTIAL, 2000, 1, true));
         userId = UUID.randomUUID();
         userName = "testUser";
         productId = UUID.randomUUID();
     }
 
+    private RecommendationService createService(RuleExecutor ruleExecutor) {
+        recommendationCache = Caffeine.newBuilder().build();
+        ruleDependencyService = new RuleDependencyService(ruleCatalogRepository, ruleSets, recommendationCache);
+        return new RecommendationService(ruleDependencyService, recommendationsRepository,
+                ruleStatsService, recommendationCache, ruleExecutor);
+    }
+
     @Test
     void testGetRecommendationsByUserId_Positive() {
         // data
@@ -65,13 +89,13 @@ class RecommendationServiceTest {
         dynamicRule.setProductText("Recommendation for Product 1");
         dynamicRule.setQueries(List.of(new DynamicRuleQuery("USER_OF", List.of("product1"))));
 
-        when(dynamicRuleRepository.findAll()).thenReturn(List.of(dynamicRule));
+        when(ruleCatalogRepository.streamRules(anyInt())).thenReturn(Stream.of(dynamicRule));
         when(recommendationsRepository.usesProductOfType(userId, productId.toString())).thenReturn(true);
 
         // Настраиваем mock для ruleSets
         RecommendationRuleSet mockRuleSet = mock(RecommendationRuleSet.class);
         when(mockRuleSet.recommend(userId)).thenReturn(new RecommendationDTO(productId, "Product 1", "Recommendation for Product 1"));
-        when(ruleSets.stream()).thenReturn(Stream.of(mockRuleSet));
+        ruleSets.add(mockRuleSet);
 
         // test
         List<RecommendationDTO> recommendations = recommendationService.getRecommendations(userId);
@@ -85,7 +109,7 @@ class RecommendationServiceTest {
     @Test
     void testGetRecommendationsByUserId_Negative() {
         // data
-        when(dynamicRuleRepository.findAll()).thenReturn(new ArrayList<>());
+        when(ruleCatalogRepository.streamRules(anyInt())).thenReturn(Stream.empty());
 
         // test
         List<RecommendationDTO> recommendations = recommendationService.getRecommendations(userId);
@@ -102,14 +126,14 @@ class RecommendationServiceTest {
         dynamicRule.setProductId(productId);
         dynamicRule.setProductName("Product 1");
         dynamicRule.setProductText("Recommendation for Product 1");
-        dynamicRule.setQueries(List.of(new DynamicRuleQuery("USER_OF", List.of("product1"))));
+        dynamicRule.setQueries(List.of(query(QueryType.USER_OF, ProductType.DEBIT, null, null, null)));
 
-        when(dynamicRuleRepository.findAll()).thenReturn(List.of(dynamicRule));
-        when(recommendationsRepository.usesProductOfType(userId, "product1")).thenReturn(true);
+        when(ruleCatalogRepository.streamRules(anyInt())).thenReturn(Stream.of(dynamicRule));
+        when(recommendationsRepository.usesProductOfType(userId, "DEBIT")).thenReturn(true);
         // Настраиваем mock для ruleSets
         RecommendationRuleSet mockRuleSet = mock(RecommendationRuleSet.class);
         when(mockRuleSet.recommend(userId)).thenReturn(new RecommendationDTO(productId, "Product 1", "Recommendation for Product 1"));
-        when(ruleSets.stream()).thenReturn(Stream.of(mockRuleSet));
+        ruleSets.add(mockRuleSet);
 
         // test
         List<RecommendationDTO> recommendations = recommendationService.getRecommendations(userName);
@@ -122,7 +146,7 @@ class RecommendationServiceTest {
     @Test
     void testGetRecommendationsByUserName_UserNotFound() {
         // dat
-        when(recommendationsRepository.getUserIdByUserName(userName)).thenThrow(new EmptyResultDataAccessException(1));
+        when(recommendationsRepository.getUserIdByUserName(userName)).thenThrow(new UserNotFoundException("Пользователь не найден"));
 
         // test & check
         UserNotFoundException exception = assertThrows(UserNotFoundException.class, () -> {
@@ -157,9 +181,9 @@ class RecommendationServiceTest {
     void testEvaluateDynamicRules_ValidUserOfQuery() {
         // data
         DynamicRule rule = new DynamicRule();
-        rule.setQueries(List.of(new DynamicRuleQuery("USER_OF", List.of("product1"))));
+        rule.setQueries(List.of(query(QueryType.USER_OF, ProductType.DEBIT, null, null, null)));
 
-        when(recommendationsRepository.usesProductOfType(userId, "product1")).thenReturn(true);
+        when(recommendationsRepository.usesProductOfType(userId, "DEBIT")).thenReturn(true);
 
         // test
         boolean result = recommendationService.evaluateDynamicRules(rule, userId);
@@ -185,7 +209,7 @@ class RecommendationServiceTest {
     void testEvaluateDynamicRules_ActiveUserOfQuery() {
         // data
         DynamicRule rule = new DynamicRule();
-        rule.setQueries(List.of(new DynamicRuleQuery("ACTIVE_USER_OF", List.of("DEBIT"))));
+        rule.setQueries(List.of(query(QueryType.ACTIVE_USER_OF, ProductType.DEBIT, null, null, null)));
 
         when(recommendationsRepository.isActiveUserOfProduct(ProductType.DEBIT, userId)).thenReturn(true);
 
@@ -200,7 +224,8 @@ class RecommendationServiceTest {
     void testEvaluateDynamicRules_TransactionSumCompare() {
         // data
         DynamicRule rule = new DynamicRule();
-        rule.setQueries(List.of(new DynamicRuleQuery("TRANSACTION_SUM_COMPARE", List.of("DEBIT", "DEPOSIT", "GREATER_THAN", "1000"))));
+        rule.setQueries(List.of(query(QueryType.TRANSACTION_SUM_COMPARE,
+                ProductType.DEBIT, TransactionType.DEPOSIT, ComparisonType.GREATER_THAN, 1000)));
 
         when(recommendationsRepository.compareTransactionSum(ProductType.DEBIT, TransactionType.DEPOSIT, userId, ComparisonType.GREATER_THAN, 1000)).thenReturn(true);
 
@@ -208,14 +233,15 @@ class RecommendationServiceTest {
         boolean result = recommendationService.evaluateDynamicRules(rule, userId);
 
         // check
-        assertFalse(result);
+        assertTrue(result);
     }
 
     @Test
     void testEvaluateDynamicRules_TransactionSumCompareDepositWithdraw() {
         // data
         DynamicRule rule = new DynamicRule();
-        rule.setQueries(List.of(new DynamicRuleQuery("TRANSACTION_SUM_COMPARE_DEPOSIT_WITHDRAW", List.of("DEBIT", "GREATER_THAN"))));
+        rule.setQueries(List.of(query(QueryType.TRANSACTION_SUM_COMPARE_DEPOSIT_WITHDRAW,
+                ProductType.DEBIT, null, ComparisonType.GREATER_THAN, null)));
 
         when(recommendationsRepository.compareDepositWithdrawSum(ProductType.DEBIT, userId, ComparisonType.GREATER_THAN)).thenReturn(true);
 
@@ -223,6 +249,420 @@ class RecommendationServiceTest {
         boolean result = recommendationService.evaluateDynamicRules(rule, userId);
 
         // check
-        assertFalse(result);
+        assertTrue(result);
+    }
+
+    @Test
+    void testEvaluateDynamicRules_UsesParsedArgumentsOnly() {
+        // data
+        DynamicRuleQuery query = query(QueryType.USER_OF, ProductType.SAVING, null, null, null);
+        query.setQuery("не разбирается при оценке");
+        query.setArguments(List.of());
+        DynamicRule rule = new DynamicRule();
+        rule.setQueries(List.of(query));
+
+        when(recommendationsRepository.usesProductOfType(userId, "SAVING")).thenReturn(true);
+
+        // test
+        boolean result = recommendationService.evaluateDynamicRules(rule, userId);
+
+        // check
+        assertTrue(result);
+    }
+
+    @Test
+    void testRefreshRecommendations_ReevaluatesOnlyAffectedRuleSets() {
+        // data
+        when(ruleCatalogRepository.streamRules(anyInt())).thenReturn(Stream.empty());
+        RecommendationRuleSet debitRuleSet = mock(RecommendationRuleSet.class);
+        when(debitRuleSet.getName()).thenReturn("debit");
+        when(debitRuleSet.getFeatures()).thenReturn(Set.of(new Feature(ProductType.DEBIT, TransactionType.DEPOSIT)));
+        RecommendationRuleSet creditRuleSet = mock(RecommendationRuleSet.class);
+        when(creditRuleSet.getName()).thenReturn("credit");
+        when(creditRuleSet.getFeatures()).thenReturn(Feature.allOf(ProductType.CREDIT));
+        when(creditRuleSet.recommend(userId)).thenReturn(new RecommendationDTO(productId, "Credit", "Credit text"));
+        ruleSets.add(debitRuleSet);
+        ruleSets.add(creditRuleSet);
+        recommendationService.getRecommendations(userId);
+
+        UUID debitProductId = UUID.randomUUID();
+        when(debitRuleSet.recommend(userId)).thenReturn(new RecommendationDTO(debitProductId, "Debit", "Debit text"));
+
+        // test
+        recommendationService.refreshRecommendations(userId, List.of(new Feature(ProductType.DEBIT, TransactionType.DEPOSIT)));
+        List<RecommendationDTO> recommendations = recommendationService.getRecommendations(userId);
+
+        // check
+        assertEquals(2, recommendations.size());
+        assertEquals(debitProductId, recommendations.get(0).getId());
+        assertEquals(productId, recommendations.get(1).getId());
+        verify(debitRuleSet, times(2)).recommend(userId);
+        verify(creditRuleSet, times(1)).recommend(userId);
+        verify(recommendationsRepository).invalidateUserAggregates(userId, ProductType.DEBIT);
+        verify(ruleCatalogRepository, times(1)).streamRules(anyInt());
+    }
+
+    @Test
+    void testRefreshRecommendations_ReevaluatesAffectedDynamicRule() {
+        // data
+        DynamicRule dynamicRule = new DynamicRule();
+        dynamicRule.setId(1L);
+        dynamicRule.setProductId(productId);
+        dynamicRule.setProductName("Product 1");
+        dynamicRule.setProductText("Recommendation for Product 1");
+        dynamicRule.setQueries(List.of(query(QueryType.USER_OF, ProductType.DEBIT, null, null, null)));
+        when(ruleCatalogRepository.streamRules(anyInt())).thenReturn(Stream.of(dynamicRule));
+        when(recommendationsRepository.usesProductOfType(userId, "DEBIT")).thenReturn(false);
+        assertTrue(recommendationService.getRecommendations(userId).isEmpty());
+
+        when(recommendationsRepository.usesProductOfType(userId, "DEBIT")).thenReturn(true);
+
+        // test
+        recommendationService.refreshRecommendations(userId, List.of(new Feature(ProductType.CREDIT, TransactionType.DEPOSIT)));
+        List<RecommendationDTO> unaffected = recommendationService.getRecommendations(userId);
+        recommendationService.refreshRecommendations(userId, List.of(new Feature(ProductType.DEBIT, TransactionType.WITHDRAW)));
+        List<RecommendationDTO> affected = recommendationService.getRecommendations(userId);
+
+        // check
+        assertTrue(unaffected.isEmpty());
+        assertEquals(1, affected.size());
+        assertEquals(productId, affected.get(0).getId());
+        verify(recommendationsRepository, times(2)).usesProductOfType(userId, "DEBIT");
+        verify(ruleStatsService, times(1)).increaseCounter(1L);
+    }
+
+    @Test
+    void testRefreshRecommendations_CacheChangedDuringEvaluation() {
+        // data
+        when(ruleCatalogRepository.streamRules(anyInt())).thenReturn(Stream.empty());
+        RecommendationRuleSet ruleSet = mock(RecommendationRuleSet.class);
+        when(ruleSet.getName()).thenReturn("debit");
+        when(ruleSet.getFeatures()).thenReturn(Feature.allOf(ProductType.DEBIT));
+        ruleSets.add(ruleSet);
+        recommendationService.getRecommendations(userId);
+        UserRecommendations concurrent = new UserRecommendations(Map.of(), Map.of());
+        when(ruleSet.recommend(userId)).thenAnswer(invocation -> {
+            recommendationCache.put(userId, concurrent);
+            return new RecommendationDTO(productId, "Debit", "Debit text");
+        });
+
+        // test
+        recommendationService.refreshRecommendations(userId, List.of(new Feature(ProductType.DEBIT, TransactionType.DEPOSIT)));
+
+        // check
+        assertNull(recommendationCache.getIfPresent(userId));
+    }
+
+    @Test
+    void testGetRecommendations_NotCachedWhenRulesChangeDuringEvaluation() {
+        // data
+        when(ruleCatalogRepository.streamRules(anyInt())).thenReturn(Stream.empty());
+        RecommendationRuleSet ruleSet = mock(RecommendationRuleSet.class);
+        when(ruleSet.getName()).thenReturn("debit");
+        ruleSets.add(ruleSet);
+        when(ruleSet.recommend(userId)).thenAnswer(invocation -> {
+            ruleDependencyService.invalidate();
+            return new RecommendationDTO(productId, "Debit", "Debit text");
+        });
+
+        // test
+        List<RecommendationDTO> recommendations = recommendationService.getRecommendations(userId);
+
+        // check
+        assertEquals(1, recommendations.size());
+        assertNull(recommendationCache.getIfPresent(userId));
+    }
+
+    @Test
+    void testRefreshRecommendations_LoadStartedBeforeChangeNotCached() {
+        // data
+        when(ruleCatalogRepository.streamRules(anyInt())).thenReturn(Stream.empty());
+        RecommendationRuleSet ruleSet = mock(RecommendationRuleSet.class);
+        when(ruleSet.getName()).thenReturn("debit");
+        ruleSets.add(ruleSet);
+        when(ruleSet.recommend(userId)).thenAnswer(invocation -> {
+            recommendationService.refreshRecommendations(userId,
+                    List.of(new Feature(ProductType.DEBIT, TransactionType.DEPOSIT)));
+            return null;
+        });
+
+        // test
+        recommendationService.getRecommendations(userId);
+
+        // check
+        assertNull(recommendationCache.getIfPresent(userId));
+        verify(recommendationsRepository).invalidateUserAggregates(userId, ProductType.DEBIT);
+    }
+
+    @Test
+    void testRefreshRecommendations_NotCached() {
+        // data
+        RecommendationRuleSet ruleSet = mock(RecommendationRuleSet.class);
+        when(ruleSet.getFeatures()).thenReturn(Feature.allOf(ProductType.DEBIT));
+        ruleSets.add(ruleSet);
+
+        // test
+        recommendationService.refreshRecommendations(userId, List.of(new Feature(ProductType.DEBIT, TransactionType.DEPOSIT)));
+
+        // check
+        verify(ruleSet, never()).recommend(userId);
+        verify(ruleCatalogRepository, never()).streamRules(anyInt());
+        verify(recommendationsRepository).invalidateUserAggregates(userId, ProductType.DEBIT);
+    }
+
+    @Test
+    void testGetRecommendationResponse_PartialOnDeadline() {
+        // data
+        recommendationService = createService(new RuleExecutor(ExecutionMode.SEQUENTIAL, 50, 1, true));
+        when(ruleCatalogRepository.streamRules(anyInt())).thenReturn(Stream.empty());
+        RecommendationRuleSet slowRuleSet = mock(RecommendationRuleSet.class);
+        when(slowRuleSet.getName()).thenReturn("slow");
+        when(slowRuleSet.recommend(userId)).thenAnswer(invocation -> {
+            Thread.sleep(100);
+            return new RecommendationDTO(productId, "Slow", "Slow text");
+        });
+        RecommendationRuleSet skippedRuleSet = mock(RecommendationRuleSet.class);
+        when(skippedRuleSet.getName()).thenReturn("skipped");
+        ruleSets.add(slowRuleSet);
+        ruleSets.add(skippedRuleSet);
+
+        // test
+        RecommendationResponse first = recommendationService.getRecommendationResponse(userId);
+        RecommendationResponse second = recommendationService.getRecommendationResponse(userId);
+
+        // check
+        assertTrue(first.isPartial());
+        assertEquals(List.of("skipped"), first.getTimedOutRules());
+        assertEquals(1, first.getRecommendations().size());
+        assertEquals(productId, first.getRecommendations().get(0).getId());
+        assertTrue(second.isPartial());
+        verify(slowRuleSet, times(2)).recommend(userId);
+        verify(skippedRuleSet, never()).recommend(userId);
+    }
+
+    @Test
+    void testGetRecommendationResponse_DeadlineWithoutPartialResults() {
+        // data
+        recommendationService = createService(new RuleExecutor(ExecutionMode.SEQUENTIAL, 50, 1, false));
+        when(ruleCatalogRepository.streamRules(anyInt())).thenReturn(Stream.empty());
+        RecommendationRuleSet slowRuleSet = mock(RecommendationRuleSet.class);
+        when(slowRuleSet.getName()).thenReturn("slow");
+        when(slowRuleSet.recommend(userId)).thenAnswer(invocation -> {
+            Thread.sleep(100);
+            return null;
+        });
+        RecommendationRuleSet skippedRuleSet = mock(RecommendationRuleSet.class);
+        when(skippedRuleSet.getName()).thenReturn("skipped");
+        ruleSets.add(slowRuleSet);
+        ruleSets.add(skippedRuleSet);
+
+        // test & check
+        assertThrows(RecommendationTimeoutException.class, () -> recommendationService.getRecommendationResponse(userId));
+    }
+
+    @Test
+    void testGetRecommendationResponses_BatchSizeExceeded() {
+        // data
+        List<UUID> userIds = new ArrayList<>();
+        for (int i = 0; i <= 100; i++) {
+            userIds.add(UUID.randomUUID());
+        }
+
+        // test & check
+        assertThrows(BatchSizeExceededException.class, () -> recommendationService.getRecommendationResponses(userIds));
+        verifyNoInteractions(recommendationsRepository);
+    }
+
+    @Test
+    void testGetProductCatalog_SameProductIdDifferentTexts() {
+        // data
+        DynamicRule first = new DynamicRule();
+        first.setId(1L);
+        first.setProductId(productId);
+        first.setProductName("Top Saving");
+        first.setProductText("Копилка");
+        first.setQueries(List.of(query(QueryType.USER_OF, ProductType.DEBIT, null, null, null)));
+        DynamicRule second = new DynamicRule();
+        second.setId(2L);
+        second.setProductId(productId);
+        second.setProductName("Top Saving");
+        second.setProductText("Копилка для вкладов");
+        second.setQueries(List.of(query(QueryType.USER_OF, ProductType.SAVING, null, null, null)));
+        when(ruleCatalogRepository.streamRules(anyInt())).thenReturn(Stream.of(first, second));
+
+        // test
+        ProductCatalogResponse catalog = recommendationService.getProductCatalog();
+
+        // check
+        assertEquals(2, catalog.getProducts().size());
+        assertEquals(List.of("Копилка", "Копилка для вкладов"),
+                catalog.getProducts().stream().map(ProductDTO::getText).toList());
+        assertNotEquals(catalog.getProducts().get(0).getKey(), catalog.getProducts().get(1).getKey());
+    }
+
+    @Test
+    void testGetProductCatalog() {
+        // data
+        RecommendationDTO product = new RecommendationDTO(productId, "Product", "Text");
+        RecommendationRuleSet ruleSet = mock(RecommendationRuleSet.class);
+        when(ruleSet.getName()).thenReturn("ruleSet");
+        when(ruleSet.getProduct()).thenReturn(product);
+        ruleSets.add(ruleSet);
+        when(ruleCatalogRepository.streamRules(anyInt())).thenReturn(Stream.empty());
+
+        // test
+        ProductCatalogResponse catalog = recommendationService.getProductCatalog();
+
+        // check
+        assertEquals(1, catalog.getProducts().size());
+        assertEquals(new ProductDTO(productId, "Product", "Text"), catalog.getProducts().get(0));
+        assertNotNull(catalog.getVersion());
+        assertEquals(catalog.getVersion(), recommendationService.getProductCatalog().getVersion());
+    }
+
+    @Test
+    void testGetRecommendationResponse_CarriesProductsVersion() {
+        // data
+        RecommendationRuleSet ruleSet = mock(RecommendationRuleSet.class);
+        when(ruleSet.getName()).thenReturn("ruleSet");
+        when(ruleSet.getProduct()).thenReturn(new RecommendationDTO(productId, "Product", "Text"));
+        when(ruleSet.recommend(userId)).thenReturn(new RecommendationDTO(productId, "Product", "Text"));
+        ruleSets.add(ruleSet);
+        when(ruleCatalogRepository.streamRules(anyInt())).thenReturn(Stream.empty());
+
+        // test
+        RecommendationResponse response = recommendationService.getRecommendationResponse(userId);
+
+        // check
+        assertNotNull(response.getProductsVersion());
+        assertEquals(recommendationService.getProductCatalog().getVersion(), response.getProductsVersion());
+    }
+
+    @Test
+    void testGetRecommendations_RecordsRuleTimers() {
+        // data
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        recommendationService.bindTo(registry);
+        DynamicRule dynamicRule = new DynamicRule();
+        dynamicRule.setId(7L);
+        dynamicRule.setProductId(productId);
+        dynamicRule.setQueries(List.of(query(QueryType.USER_OF, ProductType.DEBIT, null, null, null)));
+        when(ruleCatalogRepository.streamRules(anyInt())).thenReturn(Stream.of(dynamicRule));
+        RecommendationRuleSet ruleSet = mock(RecommendationRuleSet.class);
+        when(ruleSet.getName()).thenReturn("ruleSet");
+        ruleSets.add(ruleSet);
+
+        // test
+        recommendationService.getRecommendations(userId);
+
+        // check
+        assertEquals(1, registry.get("recommendation.dynamic_rule").tag("rule_id", "7").timer().count());
+        assertEquals(1, registry.get("recommendation.ruleset").tag("rule_set", "ruleSet").timer().count());
+    }
+
+    @Test
+    void testGetRecommendations_RuleIndex() {
+        // data
+        ReflectionTestUtils.setField(recommendationService, "indexThreshold", 1);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        recommendationService.bindTo(registry);
+        DynamicRule matched = new DynamicRule();
+        matched.setId(1L);
+        matched.setProductId(productId);
+        matched.setQueries(List.of(query(QueryType.USER_OF, ProductType.DEBIT, null, null, null)));
+        DynamicRule notMatched = new DynamicRule();
+        notMatched.setId(2L);
+        notMatched.setProductId(UUID.randomUUID());
+        notMatched.setQueries(List.of(query(QueryType.USER_OF, ProductType.CREDIT, null, null, null)));
+        when(ruleCatalogRepository.streamRules(anyInt())).thenReturn(Stream.of(matched, notMatched));
+        when(recommendationsRepository.usesProductOfType(userId, "DEBIT")).thenReturn(true);
+
+        // test
+        List<RecommendationDTO> recommendations = recommendationService.getRecommendations(userId);
+
+        // check
+        assertEquals(1, recommendations.size());
+        assertEquals(productId, recommendations.get(0).getId());
+        verify(ruleStatsService).increaseCounter(1L);
+        verify(ruleStatsService, never()).increaseCounter(2L);
+        assertEquals(1, registry.get("recommendation.rule_index").timer().count());
+        assertNull(registry.find("recommendation.dynamic_rule").timer());
+    }
+
+    @Test
+    void testGetRecommendations_RuleIndexNotUsedWithoutCompiledRules() {
+        // data
+        ReflectionTestUtils.setField(recommendationService, "indexThreshold", 1);
+        ReflectionTestUtils.setField(recommendationService, "compiledRules", false);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        recommendationService.bindTo(registry);
+        DynamicRule dynamicRule = new DynamicRule();
+        dynamicRule.setId(1L);
+        dynamicRule.setProductId(productId);
+        dynamicRule.setQueries(List.of(query(QueryType.USER_OF, ProductType.DEBIT, null, null, null)));
+        when(ruleCatalogRepository.streamRules(anyInt())).thenReturn(Stream.of(dynamicRule));
+        when(recommendationsRepository.usesProductOfType(userId, "DEBIT")).thenReturn(true);
+
+        // test
+        List<RecommendationDTO> recommendations = recommendationService.getRecommendations(userId);
+
+        // check
+        assertEquals(1, recommendations.size());
+        assertEquals(1, registry.get("recommendation.dynamic_rule").tag("rule_id", "1").timer().count());
+        assertNull(registry.find("recommendation.rule_index").timer());
+    }
+
+    @Test
+    void testGetTracedRecommendationResponse_RecordsRulesAndCache() {
+        // data
+        DynamicRule dynamicRule = new DynamicRule();
+        dynamicRule.setId(3L);
+        dynamicRule.setProductId(productId);
+        dynamicRule.setQueries(List.of(query(QueryType.USER_OF, ProductType.DEBIT, null, null, null)));
+        when(ruleCatalogRepository.streamRules(anyInt())).thenReturn(Stream.of(dynamicRule));
+        when(recommendationsRepository.usesProductOfType(userId, "DEBIT")).thenReturn(true);
+        RecommendationRuleSet ruleSet = mock(RecommendationRuleSet.class);
+        when(ruleSet.getName()).thenReturn("ruleSet");
+        ruleSets.add(ruleSet);
+
+        // test
+        RecommendationResponse first = recommendationService.getTracedRecommendationResponse(userId);
+        RecommendationResponse second = recommendationService.getTracedRecommendationResponse(userId);
+
+        // check
+        RequestTrace trace = first.getTrace();
+        assertEquals(2, trace.getRules().size());
+        assertTrue(trace.getRules().stream().anyMatch(rule -> rule.name().equals("dynamic_rule_3")
+                && rule.type().equals("dynamic_rule") && rule.matched()));
+        assertTrue(trace.getRules().stream().anyMatch(rule -> rule.name().equals("ruleSet")
+                && rule.type().equals("rule_set") && !rule.matched()));
+        assertEquals(new RequestTrace.CacheEntry(0, 1), trace.getCaches().get("recommendationCache"));
+        assertTrue(second.getTrace().getRules().isEmpty());
+        assertEquals(new RequestTrace.CacheEntry(1, 0), second.getTrace().getCaches().get("recommendationCache"));
+        assertNull(RequestTrace.current());
+    }
+
+    /**
+     * @return запрос с аргументами, разобранными так же, как при сохранении правила
+     */
+    private static DynamicRuleQuery query(QueryType queryType, ProductType productType, TransactionType transactionType,
+                                          ComparisonType comparisonType, Integer constant) {
+        List<String> arguments = new ArrayList<>(List.of(productType.getType()));
+        if (transactionType != null) {
+            arguments.add(transactionType.getTransactionType());
+        }
+        if (comparisonType != null) {
+            arguments.add(comparisonType.getComparisonType());
+        }
+        if (constant != null) {
+            arguments.add(constant.toString());
+        }
+        DynamicRuleQuery query = new DynamicRuleQuery(queryType.getQueryType(), arguments);
+        query.setQueryType(queryType);
+        query.setProductType(productType);
+        query.setTransactionType(transactionType);
+        query.setComparisonType(comparisonType);
+        query.setConstant(constant);
+        return query;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,163 @@
+package bank.recommendationservice.fintech.service;
+
+import bank.recommendationservice.fintech.exception.NullArgumentException;
+import bank.recommendationservice.fintech.model.DynamicRule;
+import bank.recommendationservice.fintech.model.DynamicRuleQuery;
+import bank.recommendationservice.fintech.other.ComparisonType;
+import bank.recommendationservice.fintech.other.ProductType;
+import bank.recommendationservice.fintech.other.QueryType;
+import bank.recommendationservice.fintech.other.TransactionType;
+import bank.recommendationservice.fintech.repository.RecommendationsRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class RuleCompilerTest {
+    private final UUID userId = UUID.randomUUID();
+
+    @Mock
+    private RecommendationsRepository recommendationsRepository;
+
+    private RuleCompiler ruleCompiler;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        ruleCompiler = new RuleCompiler(recommendationsRepository);
+    }
+
+    @Test
+    void testCompile_UserOf() {
+        // data
+        DynamicRule rule = rule(query(QueryType.USER_OF, ProductType.DEBIT, null, null, null));
+        when(recommendationsRepository.usesProductOfType(userId, "DEBIT")).thenReturn(true);
+
+        // test
+        Predicate<UUID> compiled = ruleCompiler.compile(rule);
+
+        // check
+        assertTrue(compiled.test(userId));
+        assertFalse(compiled.test(UUID.randomUUID()));
+    }
+
+    @Test
+    void testCompile_ActiveUserOf() {
+        // data
+        DynamicRule rule = rule(query(QueryType.ACTIVE_USER_OF, ProductType.CREDIT, null, null, null));
+        when(recommendationsRepository.isActiveUserOfProduct(ProductType.CREDIT, userId)).thenReturn(true);
+
+        // test & check
+        assertTrue(ruleCompiler.compile(rule).test(userId));
+    }
+
+    @ParameterizedTest
+    @EnumSource(ComparisonType.class)
+    void testCompile_TransactionSumCompare_MatchesRepositoryComparison(ComparisonType comparisonType) {
+        // data
+        RecommendationsRepository repository = new RecommendationsRepository(null, null, null, null, null) {
+            @Override
+            public Integer getTransactionSum(ProductType productType, TransactionType transactionType, UUID userId) {
+                return 1000;
+            }
+        };
+        RuleCompiler compiler = new RuleCompiler(repository);
+
+        for (int constant : new int[]{999, 1000, 1001}) {
+            DynamicRule rule = rule(query(QueryType.TRANSACTION_SUM_COMPARE,
+                    ProductType.DEBIT, TransactionType.DEPOSIT, comparisonType, constant));
+
+            // test & check
+            assertEquals(repository.compareTransactionSum(ProductType.DEBIT, TransactionType.DEPOSIT, userId,
+                    comparisonType, constant), compiler.compile(rule).test(userId), comparisonType + " " + constant);
+        }
+    }
+
+    @Test
+    void testCompile_TransactionSumCompare_NoTransactions() {
+        // data
+        DynamicRule rule = rule(query(QueryType.TRANSACTION_SUM_COMPARE,
+                ProductType.DEBIT, TransactionType.DEPOSIT, ComparisonType.LESS_THAN, 1000));
+        when(recommendationsRepository.getTransactionSum(ProductType.DEBIT, TransactionType.DEPOSIT, userId))
+                .thenReturn(null);
+
+        // test & check
+        assertFalse(ruleCompiler.compile(rule).test(userId));
+    }
+
+    @Test
+    void testCompile_DepositWithdrawCompare() {
+        // data
+        DynamicRule rule = rule(query(QueryType.TRANSACTION_SUM_COMPARE_DEPOSIT_WITHDRAW,
+                ProductType.SAVING, null, ComparisonType.GREATER_THAN_OR_EQUALS, null));
+        UUID otherUserId = UUID.randomUUID();
+        when(recommendationsRepository.getDepositWithdrawSums(ProductType.SAVING, userId))
+                .thenReturn(new Integer[]{500, 500});
+        when(recommendationsRepository.getDepositWithdrawSums(ProductType.SAVING, otherUserId))
+                .thenReturn(new Integer[]{500, null});
+
+        // test
+        Predicate<UUID> compiled = ruleCompiler.compile(rule);
+
+        // check
+        assertTrue(compiled.test(userId));
+        assertFalse(compiled.test(otherUserId));
+    }
+
+    @Test
+    void testCompile_UnresolvedOrEmptyRule() {
+        // data
+        DynamicRule unresolved = rule(new DynamicRuleQuery("UNKNOWN", List.of("DEBIT")));
+        DynamicRule empty = rule();
+
+        // test & check
+        assertFalse(ruleCompiler.compile(unresolved).test(userId));
+        assertFalse(ruleCompiler.compile(empty).test(userId));
+        verifyNoInteractions(recommendationsRepository);
+        assertThrows(NullArgumentException.class, () -> ruleCompiler.compile(null));
+    }
+
+    @Test
+    void testCompileAll_ByRuleInstance() {
+        // data
+        DynamicRule first = rule(query(QueryType.USER_OF, ProductType.DEBIT, null, null, null));
+        DynamicRule second = rule(query(QueryType.USER_OF, ProductType.INVEST, null, null, null));
+        when(recommendationsRepository.usesProductOfType(userId, "INVEST")).thenReturn(true);
+
+        // test
+        Map<DynamicRule, Predicate<UUID>> compiled = ruleCompiler.compileAll(List.of(first, second));
+
+        // check
+        assertEquals(2, compiled.size());
+        assertFalse(compiled.get(first).test(userId));
+        assertTrue(compiled.get(second).test(userId));
+    }
+
+    private static DynamicRule rule(DynamicRuleQuery... queries) {
+        DynamicRule rule = new DynamicRule();
+        rule.setQueries(new ArrayList<>(List.of(queries)));
+        return rule;
+    }
+
+    private static DynamicRuleQuery query(QueryType queryType, ProductType productType, TransactionType transactionType,
+                                          ComparisonType comparisonType, Integer constant) {
+        DynamicRuleQuery query = new DynamicRuleQuery(queryType.getQueryType(), List.of());
+        query.setQueryType(queryType);
+        query.setProductType(productType);
+        query.setTransactionType(transactionType);
+        query.setComparisonType(comparisonType);
+        query.setConstant(constant);
+        return query;
+    }
+}
@@ -0,0 +1,144 @@
+package bank.recommendationservice.fintech.service;
+
+import bank.recommendationservice.fintech.exception.NullArgumentException;
+import bank.recommendationservice.fintech.model.QueryDeadline;
+import bank.recommendationservice.fintech.other.ExecutionMode;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.QueryTimeoutException;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RuleExecutorTest {
+    private RuleExecutor ruleExecutor;
+
+    @AfterEach
+    void tearDown() {
+        ruleExecutor.destroy();
+    }
+
+    @Test
+    void testInvokeAll_Sequential() {
+        // data
+        ruleExecutor = new RuleExecutor(ExecutionMode.SEQUENTIAL, 100, 1, true);
+        Thread caller = Thread.currentThread();
+        List<Callable<Boolean>> tasks = List.of(() -> Thread.currentThread() == caller, () -> Thread.currentThread() == caller);
+
+        // test
+        List<RuleExecutor.Result<Boolean>> results = ruleExecutor.invokeAll(tasks);
+
+        // check
+        assertEquals(List.of(RuleExecutor.Result.completed(true), RuleExecutor.Result.completed(true)), results);
+    }
+
+    @Test
+    void testInvokeAll_ConcurrentPreservesOrder() {
+        // data
+        ruleExecutor = new RuleExecutor(ExecutionMode.PLATFORM_THREADS, 5000, 2, true);
+        CountDownLatch bothStarted = new CountDownLatch(2);
+        Callable<String> first = () -> {
+            bothStarted.countDown();
+            assertTrue(bothStarted.await(1, TimeUnit.SECONDS));
+            return "first";
+        };
+        Callable<String> second = () -> {
+            bothStarted.countDown();
+            assertTrue(bothStarted.await(1, TimeUnit.SECONDS));
+            return "second";
+        };
+
+        // test
+        List<RuleExecutor.Result<String>> results = ruleExecutor.invokeAll(List.of(first, second));
+
+        // check
+        assertEquals(List.of("first", "second"), results.stream().map(RuleExecutor.Result::value).toList());
+    }
+
+    @Test
+    void testInvokeAll_VirtualThreadsFallback() {
+        // data
+        ruleExecutor = new RuleExecutor(ExecutionMode.VIRTUAL_THREADS, 5000, 2, true);
+
+        // test
+        List<RuleExecutor.Result<Integer>> results = ruleExecutor.invokeAll(List.of(() -> 1, () -> 2, () -> 3));
+
+        // check
+        assertEquals(List.of(1, 2, 3), results.stream().map(RuleExecutor.Result::value).toList());
+    }
+
+    @Test
+    void testInvokeAll_DeadlineExceeded() {
+        // data
+        ruleExecutor = new RuleExecutor(ExecutionMode.PLATFORM_THREADS, 50, 2, true);
+        Callable<Integer> fast = () -> 1;
+        Callable<Integer> slow = () -> {
+            Thread.sleep(5000);
+            return 2;
+        };
+
+        // test
+        List<RuleExecutor.Result<Integer>> results = ruleExecutor.invokeAll(List.of(fast, slow));
+
+        // check
+        assertEquals(List.of(RuleExecutor.Result.completed(1), RuleExecutor.Result.skipped()), results);
+    }
+
+    @Test
+    void testInvokeAll_SequentialSkipsTasksAfterDeadline() {
+        // data
+        ruleExecutor = new RuleExecutor(ExecutionMode.SEQUENTIAL, 50, 1, true);
+        AtomicBoolean lastStarted = new AtomicBoolean();
+        Callable<Integer> slow = () -> {
+            Thread.sleep(100);
+            return 1;
+        };
+        Callable<Integer> last = () -> {
+            lastStarted.set(true);
+            return 2;
+        };
+
+        // test
+        List<RuleExecutor.Result<Integer>> results = ruleExecutor.invokeAll(List.of(slow, last));
+
+        // check
+        assertEquals(List.of(RuleExecutor.Result.completed(1), RuleExecutor.Result.skipped()), results);
+        assertFalse(lastStarted.get());
+    }
+
+    @Test
+    void testInvokeAll_SequentialSkipsTaskCanceledByDeadline() {
+        // data
+        ruleExecutor = new RuleExecutor(ExecutionMode.SEQUENTIAL, 2000, 1, true);
+        Callable<Integer> canceled = () -> {
+            assertEquals(2, QueryDeadline.remainingTimeoutSeconds());
+            throw new QueryTimeoutException("Statement was canceled or the session timed out");
+        };
+
+        // test
+        List<RuleExecutor.Result<Integer>> results = ruleExecutor.invokeAll(List.of(() -> 1, canceled));
+
+        // check
+        assertEquals(List.of(RuleExecutor.Result.completed(1), RuleExecutor.Result.skipped()), results);
+        assertEquals(0, QueryDeadline.remainingTimeoutSeconds());
+    }
+
+    @Test
+    void testInvokeAll_RethrowsTaskException() {
+        // data
+        ruleExecutor = new RuleExecutor(ExecutionMode.PLATFORM_THREADS, 5000, 2, true);
+        Callable<Integer> failing = () -> {
+            throw new NullArgumentException("userId не должен быть null");
+        };
+
+        // test & check
+        NullArgumentException exception = assertThrows(NullArgumentException.class,
+                () -> ruleExecutor.invokeAll(List.of(() -> 1, failing)));
+        assertEquals("userId не должен быть null", exception.getMessage());
+    }
+}
@@ -0,0 +1,161 @@
+package bank.recommendationservice.fintech.service;
+
+import bank.recommendationservice.fintech.model.DynamicRule;
+import bank.recommendationservice.fintech.model.DynamicRuleQuery;
+import bank.recommendationservice.fintech.other.ComparisonType;
+import bank.recommendationservice.fintech.other.ProductType;
+import bank.recommendationservice.fintech.other.QueryType;
+import bank.recommendationservice.fintech.other.TransactionType;
+import bank.recommendationservice.fintech.repository.RecommendationsRepository;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RuleIndexTest {
+    private final AtomicInteger repositoryCalls = new AtomicInteger();
+
+    /**
+     * Агрегаты пользователя вычисляются из его id, чтобы результаты были воспроизводимы.
+     * Суммы берутся из небольшого набора значений, чтобы совпадать с константами правил.
+     */
+    private final RecommendationsRepository repository = new RecommendationsRepository(null, null, null, null, null) {
+        @Override
+        public boolean usesProductOfType(UUID userId, String productType) {
+            repositoryCalls.incrementAndGet();
+            return (userId.hashCode() + productType.hashCode()) % 2 == 0;
+        }
+
+        @Override
+        public boolean isActiveUserOfProduct(ProductType productType, UUID userId) {
+            repositoryCalls.incrementAndGet();
+            return (userId.hashCode() + productType.ordinal()) % 3 == 0;
+        }
+
+        @Override
+        public Integer getTransactionSum(ProductType productType, TransactionType transactionType, UUID userId) {
+            repositoryCalls.incrementAndGet();
+            int value = Math.floorMod(userId.hashCode() + productType.ordinal() * 7 + transactionType.ordinal(), 6);
+            return value == 5 ? null : value * 100;
+        }
+
+        @Override
+        public Integer[] getDepositWithdrawSums(ProductType productType, UUID userId) {
+            repositoryCalls.incrementAndGet();
+            int value = Math.floorMod(userId.hashCode() + productType.ordinal(), 4);
+            return new Integer[]{value * 100, value == 3 ? null : 100};
+        }
+    };
+
+    @Test
+    void testMatch_SameAsCompiledRules() {
+        // data
+        List<DynamicRule> rules = generateRules(500);
+        RuleIndex index = new RuleIndex(repository, rules);
+        RuleCompiler compiler = new RuleCompiler(repository);
+        Random random = new Random(11);
+
+        for (int user = 0; user < 100; user++) {
+            UUID userId = new UUID(random.nextLong(), random.nextLong());
+
+            // test
+            BitSet matched = index.match(userId);
+
+            // check
+            for (int i = 0; i < rules.size(); i++) {
+                assertEquals(compiler.compile(rules.get(i)).test(userId), matched.get(i), "правило " + i);
+            }
+        }
+    }
+
+    @Test
+    void testMatch_EachConditionReadOnce() {
+        // data
+        List<DynamicRule> rules = generateRules(500);
+        RuleIndex index = new RuleIndex(repository, rules);
+        repositoryCalls.set(0);
+
+        // test
+        index.match(UUID.randomUUID());
+
+        // check
+        assertEquals(500, index.size());
+        assertTrue(index.getConditionCount() < 50);
+        assertEquals(index.getConditionCount(), repositoryCalls.get());
+    }
+
+    @Test
+    void testMatch_TransactionSumThresholds() {
+        // data
+        UUID userId = UUID.randomUUID();
+        Integer userSum = repository.getTransactionSum(ProductType.DEBIT, TransactionType.DEPOSIT, userId);
+        int sum = userSum != null ? userSum : 0;
+        List<DynamicRule> rules = new ArrayList<>();
+        for (ComparisonType comparisonType : ComparisonType.values()) {
+            for (int constant : new int[]{sum + 1, sum, sum - 1}) {
+                rules.add(rule(query(QueryType.TRANSACTION_SUM_COMPARE,
+                        ProductType.DEBIT, TransactionType.DEPOSIT, comparisonType, constant)));
+            }
+        }
+        RuleIndex index = new RuleIndex(repository, rules);
+        RuleCompiler compiler = new RuleCompiler(repository);
+
+        // test
+        BitSet matched = index.match(userId);
+
+        // check
+        assertEquals(1, index.getConditionCount());
+        for (int i = 0; i < rules.size(); i++) {
+            assertEquals(compiler.compile(rules.get(i)).test(userId), matched.get(i), "правило " + i);
+        }
+    }
+
+    private static List<DynamicRule> generateRules(int count) {
+        Random random = new Random(7);
+        QueryType[] queryTypes = QueryType.values();
+        ProductType[] productTypes = ProductType.values();
+        TransactionType[] transactionTypes = TransactionType.values();
+        ComparisonType[] comparisonTypes = ComparisonType.values();
+        List<DynamicRule> rules = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            if (i % 50 == 0) {
+                rules.add(rule(new DynamicRuleQuery("UNKNOWN", List.of())));
+                continue;
+            }
+            QueryType queryType = queryTypes[random.nextInt(queryTypes.length)];
+            ProductType productType = productTypes[random.nextInt(productTypes.length)];
+            rules.add(rule(switch (queryType) {
+                case USER_OF, ACTIVE_USER_OF -> query(queryType, productType, null, null, null);
+                case TRANSACTION_SUM_COMPARE -> query(queryType, productType,
+                        transactionTypes[random.nextInt(transactionTypes.length)],
+                        comparisonTypes[random.nextInt(comparisonTypes.length)], random.nextInt(6) * 100);
+                case TRANSACTION_SUM_COMPARE_DEPOSIT_WITHDRAW -> query(queryType, productType, null,
+                        comparisonTypes[random.nextInt(comparisonTypes.length)], null);
+            }));
+        }
+        return rules;
+    }
+
+    private static DynamicRule rule(DynamicRuleQuery query) {
+        DynamicRule rule = new DynamicRule();
+        rule.setQueries(new ArrayList<>(List.of(query)));
+        return rule;
+    }
+
+    private static DynamicRuleQuery query(QueryType queryType, ProductType productType, TransactionType transactionType,
+                                          ComparisonType comparisonType, Integer constant) {
+        DynamicRuleQuery query = new DynamicRuleQuery(queryType.getQueryType(), List.of());
+        query.setQueryType(queryType);
+        query.setProductType(productType);
+        query.setTransactionType(transactionType);
+        query.setComparisonType(comparisonType);
+        query.setConstant(constant);
+        return query;
+    }
+}
@@ -0,0 +1,134 @@
+package bank.recommendationservice.fintech.service;
+
+import bank.recommendationservice.fintech.repository.RuleSetVersionRepository;
+import jakarta.persistence.Cache;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class RuleSetVersionServiceTest {
+    @Mock
+    private RuleSetVersionRepository ruleSetVersionRepository;
+
+    @Mock
+    private RuleDependencyService ruleDependencyService;
+
+    @Mock
+    private EntityManagerFactory entityManagerFactory;
+
+    @Mock
+    private DataSource dataSource;
+
+    @Mock
+    private Cache cache;
+
+    @Mock
+    private org.hibernate.Cache hibernateCache;
+
+    private RuleSetVersionService ruleSetVersionService;
+
+    @BeforeEach
+    void setUp() {
+        ruleSetVersionService = new RuleSetVersionService(ruleSetVersionRepository, ruleDependencyService,
+                entityManagerFactory, dataSource);
+        ReflectionTestUtils.setField(ruleSetVersionService, "pollMillis", 0L);
+        when(ruleSetVersionRepository.getVersion()).thenReturn(5L);
+        ruleSetVersionService.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        ruleSetVersionService.destroy();
+    }
+
+    @Test
+    void testCheckVersion_Unchanged() {
+        // test
+        boolean reloaded = ruleSetVersionService.checkVersion();
+
+        // check
+        assertFalse(reloaded);
+        verifyNoInteractions(ruleDependencyService, entityManagerFactory);
+    }
+
+    @Test
+    void testCheckVersion_ChangedByOtherNode() {
+        // data
+        when(ruleSetVersionRepository.getVersion()).thenReturn(7L);
+        when(entityManagerFactory.getCache()).thenReturn(cache);
+        when(cache.unwrap(org.hibernate.Cache.class)).thenReturn(hibernateCache);
+
+        // test
+        boolean reloaded = ruleSetVersionService.checkVersion();
+
+        // check
+        assertTrue(reloaded);
+        assertEquals(7L, ruleSetVersionService.getKnownVersion());
+        verify(hibernateCache).evictAllRegions();
+        verify(ruleDependencyService).reload();
+    }
+
+    @Test
+    void testPublishChange_WithoutTransaction() {
+        // data
+        when(ruleSetVersionRepository.increment()).thenReturn(6L);
+
+        // test
+        ruleSetVersionService.publishChange();
+
+        // check
+        verify(ruleSetVersionRepository).notifyChange(6L);
+        verify(ruleDependencyService).invalidate();
+        assertEquals(6L, ruleSetVersionService.getKnownVersion());
+    }
+
+    @Test
+    void testPublishChange_AfterChangeByOtherNode() {
+        // data
+        when(ruleSetVersionRepository.increment()).thenReturn(7L);
+
+        // test
+        ruleSetVersionService.publishChange();
+
+        // check
+        verify(ruleDependencyService).invalidate();
+        assertEquals(5L, ruleSetVersionService.getKnownVersion());
+    }
+
+    @Test
+    void testPublishChange_AppliedAfterCommit() {
+        // data
+        when(ruleSetVersionRepository.increment()).thenReturn(6L);
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            // test
+            ruleSetVersionService.publishChange();
+
+            // check
+            verify(ruleDependencyService, never()).invalidate();
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+            verify(ruleDependencyService).invalidate();
+            assertEquals(6L, ruleSetVersionService.getKnownVersion());
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+}
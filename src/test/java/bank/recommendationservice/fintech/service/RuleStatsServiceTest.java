@@ -8,6 +8,7 @@ import bank.recommendationservice.fintech.model.DynamicRuleQuery;
 import bank.recommendationservice.fintech.model.RuleStats;
 import bank.recommendationservice.fintech.model.RuleStatsResponse;
 import bank.recommendationservice.fintech.repository.DynamicRuleRepository;
+import bank.recommendationservice.fintech.repository.RuleCatalogRepository;
 import bank.recommendationservice.fintech.repository.RuleStatsRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -19,8 +20,10 @@ import org.mockito.MockitoAnnotations;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.Mockito.*;
 
@@ -31,6 +34,9 @@ class RuleStatsServiceTest {
     @Mock
     private RuleStatsRepository ruleStatsRepository;
 
+    @Mock
+    private RuleCatalogRepository ruleCatalogRepository;
+
     @InjectMocks
     private RuleStatsService ruleStatsService;
 
@@ -83,19 +89,32 @@ class RuleStatsServiceTest {
         assertEquals(rule, savedStats.getDynamicRule());
     }
 
+    @Test
+    @DisplayName("Позитивный тест на добавление счетчиков для нескольких правил")
+    void addAllRuleStats_positive() {
+        DynamicRule first = new DynamicRule();
+        first.setId(1L);
+        DynamicRule second = new DynamicRule();
+        second.setId(2L);
+
+        //test
+        ruleStatsService.addAllRuleStats(List.of(first, second));
+
+        //check
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<RuleStats>> captor = ArgumentCaptor.forClass(List.class);
+        verify(ruleStatsRepository, times(1)).saveAll(captor.capture());
+        List<RuleStats> savedStats = captor.getValue();
+        assertEquals(2, savedStats.size());
+        assertEquals(second, savedStats.get(1).getDynamicRule());
+        assertEquals(0, savedStats.get(1).getCount());
+        verifyNoInteractions(dynamicRuleRepository);
+    }
+
     @Test
     @DisplayName("Позитивный тест на получение всех счетчиков")
     void getAllRuleStats_positive() {
-        DynamicRule rule = new DynamicRule();
-        rule.setId(ruleId);
-        rule.setProductName(productName);
-        rule.setProductText(productText);
-        rule.setQueries(List.of(new DynamicRuleQuery("ACTIVE_USER_OF", List.of("CREDIT"))));
-
-        RuleStats ruleStats = new RuleStats();
-        ruleStats.setCount(3);
-        ruleStats.setDynamicRule(rule);
-        when(ruleStatsRepository.findAll()).thenReturn(List.of(ruleStats));
+        when(ruleCatalogRepository.streamRuleStats(anyInt())).thenReturn(Stream.of(new RuleStatsDTO(ruleId, 3)));
 
         //test
         RuleStatsResponse response = ruleStatsService.getAllRuleStats();
@@ -112,10 +131,11 @@ class RuleStatsServiceTest {
     @Test
     @DisplayName("Выбрасывает исключение, если происходит ошибка чтения из репозитория")
     void getAllRuleStats_negative() {
-        when(ruleStatsRepository.findAll()).thenThrow(new RuntimeException("Ошибка обработки статистики правил"));
+        when(ruleCatalogRepository.streamRuleStats(anyInt()))
+                .thenThrow(new RuntimeException("Ошибка обработки статистики правил"));
 
         assertThrows(RuntimeException.class, () -> ruleStatsService.getAllRuleStats());
-        verify(ruleStatsRepository).findAll();
+        verify(ruleCatalogRepository).streamRuleStats(anyInt());
     }
 
     @Test
@@ -134,25 +154,14 @@ class RuleStatsServiceTest {
     @Test
     @DisplayName("Увеличивает счетчик у существующего правила")
     void increaseCounter_positive() {
-        RuleStats ruleStats = new RuleStats();
-        ruleStats.setCount(10);
-
-        DynamicRule rule = new DynamicRule();
-        rule.setId(ruleId);
-        rule.setProductText(productText);
-        rule.setProductName(productName);
-        ruleStats.setDynamicRule(rule);
-
         //test
-        when(ruleStatsRepository.findByDynamicRuleId(ruleId)).thenReturn(ruleStats);
+        when(ruleStatsRepository.incrementCount(ruleId)).thenReturn(1);
         ruleStatsService.increaseCounter(ruleId);
 
         //check
-        ArgumentCaptor<RuleStats> captor = ArgumentCaptor.forClass(RuleStats.class);
-        verify(ruleStatsRepository, times(1)).save(captor.capture());
-        RuleStats updatedStats = captor.getValue();
-        assertEquals(11, updatedStats.getCount());
-        assertEquals(rule, updatedStats.getDynamicRule());
+        verify(ruleStatsRepository, times(1)).incrementCount(ruleId);
+        verify(ruleStatsRepository, never()).findByDynamicRuleId(anyLong());
+        verify(ruleStatsRepository, never()).save(any(RuleStats.class));
     }
 
     @Test
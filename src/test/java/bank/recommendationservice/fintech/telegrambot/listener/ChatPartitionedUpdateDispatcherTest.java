@@ -0,0 +1,176 @@
+package bank.recommendationservice.fintech.telegrambot.listener;
+
+import com.pengrad.telegrambot.Callback;
+import com.pengrad.telegrambot.TelegramBot;
+import com.pengrad.telegrambot.UpdatesListener;
+import com.pengrad.telegrambot.impl.UpdatesHandler;
+import com.pengrad.telegrambot.model.Update;
+import com.pengrad.telegrambot.request.GetUpdates;
+import com.pengrad.telegrambot.response.GetUpdatesResponse;
+import com.pengrad.telegrambot.utility.BotUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ChatPartitionedUpdateDispatcherTest {
+    private ChatPartitionedUpdateDispatcher dispatcher;
+
+    @AfterEach
+    void tearDown() {
+        dispatcher.destroy();
+    }
+
+    private static final String UPDATE_1 = "{\"update_id\":1,\"message\":{\"message_id\":1,\"text\":\"1\",\"chat\":{\"id\":7}}}";
+
+    private static Update update(int updateId, long chatId) {
+        return BotUtils.parseUpdate("{\"update_id\":" + updateId + ",\"message\":{\"message_id\":" + updateId
+                + ",\"text\":\"" + updateId + "\",\"chat\":{\"id\":" + chatId + "}}}");
+    }
+
+    @Test
+    void testDispatch_PreservesOrderWithinChat() throws InterruptedException {
+        // data
+        dispatcher = new ChatPartitionedUpdateDispatcher(4, 100);
+        List<Integer> processed = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(5);
+        Consumer<Update> handler = update -> {
+            processed.add(update.updateId());
+            done.countDown();
+        };
+
+        // test
+        dispatcher.dispatch(List.of(update(1, 7), update(2, 7), update(3, 7), update(4, 7), update(5, 7)), handler);
+
+        // check
+        assertTrue(done.await(1, TimeUnit.SECONDS));
+        assertEquals(List.of(1, 2, 3, 4, 5), processed);
+    }
+
+    @Test
+    void testDispatch_SlowChatDoesNotBlockOthersAndLimitsProcessedOffset() throws InterruptedException {
+        // data
+        dispatcher = new ChatPartitionedUpdateDispatcher(2, 100);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch fastDone = new CountDownLatch(1);
+        Consumer<Update> handler = update -> {
+            if (update.message().chat().id() == 0) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            } else {
+                fastDone.countDown();
+            }
+        };
+
+        // test
+        int confirmed = dispatcher.dispatch(List.of(update(10, 0), update(11, 1)), handler);
+
+        // check
+        assertEquals(11, confirmed);
+        assertTrue(fastDone.await(1, TimeUnit.SECONDS));
+        assertEquals(9, dispatcher.getProcessedUpdateId());
+
+        release.countDown();
+        awaitProcessed(11);
+        assertEquals(0, dispatcher.getPendingCount());
+    }
+
+    @Test
+    void testDispatch_SkipsAlreadyDispatchedUpdates() throws InterruptedException {
+        // data
+        dispatcher = new ChatPartitionedUpdateDispatcher(2, 100);
+        List<Integer> processed = new CopyOnWriteArrayList<>();
+
+        // test
+        dispatcher.dispatch(List.of(update(1, 1), update(2, 2)), update -> processed.add(update.updateId()));
+        awaitProcessed(2);
+        int confirmed = dispatcher.dispatch(List.of(update(2, 2), update(3, 1)), update -> processed.add(update.updateId()));
+        awaitProcessed(3);
+
+        // check
+        assertEquals(3, confirmed);
+        assertEquals(3, processed.size());
+        assertTrue(processed.containsAll(List.of(1, 2, 3)));
+    }
+
+    @Test
+    void testUpdatesHandler_ConfirmsQueuedUpdateWithoutRepeatingGetUpdates() throws InterruptedException {
+        // data
+        dispatcher = new ChatPartitionedUpdateDispatcher(1, 100);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Integer> offsets = new CopyOnWriteArrayList<>();
+        TelegramBot bot = mock(TelegramBot.class);
+        when(bot.execute(any(GetUpdates.class), any())).thenAnswer(invocation -> {
+            GetUpdates request = invocation.getArgument(0);
+            Callback<GetUpdates, GetUpdatesResponse> callback = invocation.getArgument(1);
+            Integer offset = (Integer) request.getParameters().get("offset");
+            offsets.add(offset == null ? 0 : offset);
+            // Как Bot API: неподтвержденное обновление 1 возвращается, пока offset не больше 1
+            if ((offset == null || offset <= 1) && offsets.size() < 100) {
+                callback.onResponse(request, BotUtils.fromJson(
+                        "{\"ok\":true,\"result\":[" + UPDATE_1 + "]}", GetUpdatesResponse.class));
+            }
+            return null;
+        });
+        UpdatesListener listener = updates -> dispatcher.dispatch(updates, update -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        // test
+        new UpdatesHandler(0).start(bot, listener, null, new GetUpdates());
+
+        // check
+        assertEquals(List.of(0, 2), offsets);
+        assertEquals(1, dispatcher.getPendingCount());
+        release.countDown();
+        awaitProcessed(1);
+    }
+
+    @Test
+    void testDispatch_NothingToConfirm() {
+        // data
+        dispatcher = new ChatPartitionedUpdateDispatcher(1, 100);
+
+        // test & check
+        assertEquals(UpdatesListener.CONFIRMED_UPDATES_NONE, dispatcher.dispatch(List.of(), update -> {
+        }));
+    }
+
+    @Test
+    void testDispatch_HandlerExceptionStillConfirmsUpdate() throws InterruptedException {
+        // data
+        dispatcher = new ChatPartitionedUpdateDispatcher(1, 100);
+
+        // test
+        dispatcher.dispatch(List.of(update(5, 1)), update -> {
+            throw new IllegalStateException("ошибка");
+        });
+
+        // check
+        awaitProcessed(5);
+    }
+
+    private void awaitProcessed(int updateId) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 1000;
+        while (dispatcher.getProcessedUpdateId() != updateId && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(updateId, dispatcher.getProcessedUpdateId());
+    }
+}
@@ -0,0 +1,105 @@
+package bank.recommendationservice.fintech.telegrambot.listener;
+
+import bank.recommendationservice.fintech.configuration.AdaptiveConcurrencyLimiter;
+import bank.recommendationservice.fintech.exception.UserNotFoundException;
+import bank.recommendationservice.fintech.model.UserInfo;
+import bank.recommendationservice.fintech.repository.RecommendationsRepository;
+import bank.recommendationservice.fintech.service.RecommendationService;
+import bank.recommendationservice.fintech.telegrambot.sender.TelegramMessageSender;
+import com.pengrad.telegrambot.TelegramBot;
+import com.pengrad.telegrambot.model.Update;
+import com.pengrad.telegrambot.utility.BotUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class TelegramBotUpdatesListenerTest {
+    @Mock
+    private TelegramBot telegramBot;
+
+    @Mock
+    private RecommendationService recommendationService;
+
+    @Mock
+    private RecommendationsRepository recommendationsRepository;
+
+    @Mock
+    private AdaptiveConcurrencyLimiter telegramLimiter;
+
+    @Mock
+    private AdaptiveConcurrencyLimiter.Permit permit;
+
+    @Mock
+    private ChatPartitionedUpdateDispatcher updateDispatcher;
+
+    @Mock
+    private TelegramMessageSender messageSender;
+
+    private TelegramBotUpdatesListener listener;
+
+    @BeforeEach
+    void setUp() {
+        listener = new TelegramBotUpdatesListener(telegramBot, recommendationService, recommendationsRepository,
+                telegramLimiter, updateDispatcher, messageSender);
+        when(telegramLimiter.tryAcquire()).thenReturn(permit);
+    }
+
+    private static Update recommend(String userName) {
+        return BotUtils.parseUpdate("{\"update_id\":1,\"message\":{\"message_id\":1,\"text\":\"/recommend "
+                + userName + "\",\"chat\":{\"id\":7}}}");
+    }
+
+    @Test
+    void testHandleUpdate_Success() {
+        // data
+        when(recommendationsRepository.findUserByUserName("user")).thenReturn(Optional.of(new UserInfo(UUID.randomUUID(), "Иван", "Иванов")));
+        when(recommendationService.getRecommendations("user")).thenReturn(List.of());
+
+        // test
+        listener.handleUpdate(recommend("user"));
+
+        // check
+        verify(permit).onSuccess();
+        verify(permit, never()).onDropped();
+    }
+
+    @Test
+    void testHandleUpdate_UserNotFound() {
+        // data
+        when(recommendationsRepository.findUserByUserName("user")).thenReturn(Optional.of(new UserInfo(UUID.randomUUID(), "Иван", "Иванов")));
+        when(recommendationService.getRecommendations("user")).thenThrow(new UserNotFoundException("Пользователь не найден"));
+
+        // test
+        listener.handleUpdate(recommend("user"));
+
+        // check
+        verify(permit).onSuccess();
+        verify(permit, never()).onDropped();
+    }
+
+    @Test
+    void testHandleUpdate_DatabaseFailureDropsPermit() {
+        // data
+        when(recommendationsRepository.findUserByUserName("user"))
+                .thenThrow(new DataAccessResourceFailureException("Нет соединения"));
+
+        // test
+        assertThrows(DataAccessResourceFailureException.class, () -> listener.handleUpdate(recommend("user")));
+
+        // check
+        verify(permit).onDropped();
+    }
+}
@@ -0,0 +1,170 @@
+package bank.recommendationservice.fintech.telegrambot.sender;
+
+import com.pengrad.telegrambot.Callback;
+import com.pengrad.telegrambot.Cancellable;
+import com.pengrad.telegrambot.TelegramBot;
+import com.pengrad.telegrambot.request.BaseRequest;
+import com.pengrad.telegrambot.request.SendMessage;
+import com.pengrad.telegrambot.response.BaseResponse;
+import com.pengrad.telegrambot.response.SendResponse;
+import com.pengrad.telegrambot.utility.BotUtils;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TelegramMessageSenderTest {
+    private static final SendResponse OK = BotUtils.fromJson("{\"ok\":true}", SendResponse.class);
+    private static final SendResponse TOO_MANY_REQUESTS = BotUtils.fromJson(
+            "{\"ok\":false,\"error_code\":429,\"parameters\":{\"retry_after\":1}}", SendResponse.class);
+
+    private final StubTelegramBot telegramBot = new StubTelegramBot();
+    private TelegramMessageSender messageSender;
+
+    @AfterEach
+    void tearDown() {
+        messageSender.destroy();
+    }
+
+    /**
+     * Локальная заглушка бота: вместо HTTP-запроса сразу вызывает callback с заранее заданным результатом
+     * (ответ или сетевая ошибка) и запоминает время и текст каждой отправки.
+     */
+    private static class StubTelegramBot extends TelegramBot {
+        private final Queue<Object> outcomes = new ConcurrentLinkedQueue<>();
+        private final List<String> sentTexts = new CopyOnWriteArrayList<>();
+        private final List<Long> sentAtNanos = new CopyOnWriteArrayList<>();
+
+        StubTelegramBot() {
+            super("test-token");
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T extends BaseRequest<T, R>, R extends BaseResponse> Cancellable execute(T request, Callback<T, R> callback) {
+            sentTexts.add((String) request.getParameters().get("text"));
+            sentAtNanos.add(System.nanoTime());
+            Object outcome = outcomes.poll();
+            if (outcome instanceof IOException e) {
+                callback.onFailure(request, e);
+            } else {
+                callback.onResponse(request, (R) (outcome == null ? OK : outcome));
+            }
+            return () -> {
+            };
+        }
+    }
+
+    @Test
+    void testSend_PreservesOrderWithinChat() throws Exception {
+        // data
+        messageSender = new TelegramMessageSender(telegramBot, 30, 100, 10, 3);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        messageSender.bindTo(registry);
+
+        // test
+        CompletableFuture<SendResponse> first = messageSender.send(new SendMessage(1L, "first"));
+        CompletableFuture<SendResponse> second = messageSender.send(new SendMessage(1L, "second"));
+        CompletableFuture<SendResponse> third = messageSender.send(new SendMessage(1L, "third"));
+        CompletableFuture.allOf(first, second, third).get(1, TimeUnit.SECONDS);
+
+        // check
+        assertEquals(List.of("first", "second", "third"), telegramBot.sentTexts);
+        assertTrue(third.get().isOk());
+        assertEquals(0, messageSender.getQueueSize());
+        assertEquals(3, registry.get("telegram.outbound.queue.latency").timer().count());
+    }
+
+    @Test
+    void testSend_ServesChatsRoundRobinWhenGlobalRateExhausted() throws Exception {
+        // data
+        messageSender = new TelegramMessageSender(telegramBot, 2, 100, 10, 3);
+        messageSender.send(new SendMessage(3L, "c1"));
+        messageSender.send(new SendMessage(3L, "c2")).get(1, TimeUnit.SECONDS);
+
+        // test
+        messageSender.send(new SendMessage(1L, "a1"));
+        messageSender.send(new SendMessage(1L, "a2"));
+        messageSender.send(new SendMessage(1L, "a3"));
+        messageSender.send(new SendMessage(2L, "b1")).get(3, TimeUnit.SECONDS);
+
+        // check
+        assertEquals(List.of("c1", "c2", "a1", "b1"), telegramBot.sentTexts.subList(0, 4));
+    }
+
+    @Test
+    void testSend_EnforcesPerChatRate() throws Exception {
+        // data
+        messageSender = new TelegramMessageSender(telegramBot, 30, 10, 1, 3);
+
+        // test
+        CompletableFuture<SendResponse> first = messageSender.send(new SendMessage(1L, "first"));
+        CompletableFuture<SendResponse> second = messageSender.send(new SendMessage(1L, "second"));
+        CompletableFuture<SendResponse> other = messageSender.send(new SendMessage(2L, "other"));
+        CompletableFuture.allOf(first, second, other).get(1, TimeUnit.SECONDS);
+
+        // check
+        long firstAt = telegramBot.sentAtNanos.get(telegramBot.sentTexts.indexOf("first"));
+        long secondAt = telegramBot.sentAtNanos.get(telegramBot.sentTexts.indexOf("second"));
+        long otherAt = telegramBot.sentAtNanos.get(telegramBot.sentTexts.indexOf("other"));
+        assertTrue(secondAt - firstAt >= TimeUnit.MILLISECONDS.toNanos(80));
+        assertTrue(otherAt < secondAt);
+    }
+
+    @Test
+    void testSend_RetriesAfterTooManyRequests() throws Exception {
+        // data
+        messageSender = new TelegramMessageSender(telegramBot, 30, 100, 10, 3);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        messageSender.bindTo(registry);
+        telegramBot.outcomes.add(TOO_MANY_REQUESTS);
+
+        // test
+        SendResponse response = messageSender.send(new SendMessage(1L, "text")).get(3, TimeUnit.SECONDS);
+
+        // check
+        assertTrue(response.isOk());
+        assertEquals(2, telegramBot.sentTexts.size());
+        assertTrue(telegramBot.sentAtNanos.get(1) - telegramBot.sentAtNanos.get(0) >= TimeUnit.MILLISECONDS.toNanos(900));
+        assertEquals(1.0, registry.get("telegram.outbound.retries").functionCounter().count());
+    }
+
+    @Test
+    void testSend_RetriesNetworkFailure() throws Exception {
+        // data
+        messageSender = new TelegramMessageSender(telegramBot, 30, 100, 10, 3);
+        telegramBot.outcomes.add(new IOException("connection reset"));
+
+        // test
+        SendResponse response = messageSender.send(new SendMessage(1L, "text")).get(3, TimeUnit.SECONDS);
+
+        // check
+        assertTrue(response.isOk());
+        assertEquals(2, telegramBot.sentTexts.size());
+    }
+
+    @Test
+    void testSend_FailsAfterMaxAttempts() {
+        // data
+        messageSender = new TelegramMessageSender(telegramBot, 30, 100, 10, 1);
+        telegramBot.outcomes.add(new IOException("connection reset"));
+
+        // test
+        CompletableFuture<SendResponse> result = messageSender.send(new SendMessage(1L, "text"));
+
+        // check
+        ExecutionException exception = assertThrows(ExecutionException.class, () -> result.get(1, TimeUnit.SECONDS));
+        assertInstanceOf(IOException.class, exception.getCause());
+        assertEquals(0, messageSender.getQueueSize());
+    }
+}
@@ -0,0 +1,17 @@
+CREATE TABLE IF NOT EXISTS users (id UUID PRIMARY KEY, username VARCHAR(255), first_name VARCHAR(255), last_name VARCHAR(255));
+CREATE TABLE IF NOT EXISTS products (id UUID PRIMARY KEY, type VARCHAR(32), name VARCHAR(255));
+CREATE TABLE IF NOT EXISTS transactions (id UUID PRIMARY KEY, product_id UUID, user_id UUID, type VARCHAR(32), amount INT);
+
+MERGE INTO users KEY (id) VALUES ('f37ba8a8-3cd5-4976-9f74-2b21f105da67', 'budget_user', 'Иван', 'Петров');
+
+MERGE INTO products KEY (id) VALUES
+    ('11111111-0000-0000-0000-000000000001', 'DEBIT', 'Дебетовая карта'),
+    ('11111111-0000-0000-0000-000000000002', 'CREDIT', 'Кредитная карта'),
+    ('11111111-0000-0000-0000-000000000003', 'INVEST', 'Брокерский счет'),
+    ('11111111-0000-0000-0000-000000000004', 'SAVING', 'Накопительный счет');
+
+MERGE INTO transactions KEY (id) VALUES
+    ('22222222-0000-0000-0000-000000000001', '11111111-0000-0000-0000-000000000001', 'f37ba8a8-3cd5-4976-9f74-2b21f105da67', 'DEPOSIT', 60000),
+    ('22222222-0000-0000-0000-000000000002', '11111111-0000-0000-0000-000000000001', 'f37ba8a8-3cd5-4976-9f74-2b21f105da67', 'WITHDRAW', 20000),
+    ('22222222-0000-0000-0000-000000000003', '11111111-0000-0000-0000-000000000004', 'f37ba8a8-3cd5-4976-9f74-2b21f105da67', 'DEPOSIT', 5000),
+    ('22222222-0000-0000-0000-000000000004', '11111111-0000-0000-0000-000000000002', 'f37ba8a8-3cd5-4976-9f74-2b21f105da67', 'WITHDRAW', 1000);